@@ -57,6 +57,11 @@ class BaseSettings(val config: Config) {
     */
   lazy val restApiConcurrency = config.getInt("schedoscope.webservice.concurrency")
 
+  /**
+    * Configured number of view states per page or streamed chunk returned by the web service.
+    */
+  lazy val viewStatusPageSize = config.getInt("schedoscope.webservice.viewStatusPageSize")
+
   /**
     * Configured JDBC URL to the Hive server
     */
@@ -102,6 +107,16 @@ class BaseSettings(val config: Config) {
     */
   lazy val transformationVersioning = config.getBoolean("schedoscope.versioning.transformations")
 
+  /**
+    * Time for which listings of transformation resource files are reused when computing resource hashes.
+    */
+  lazy val resourceListingTtl = Duration.create(config.getDuration("schedoscope.versioning.resourceListingTtl", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS)
+
+  /**
+    * Maximum number of transformation resource file hashes kept in memory.
+    */
+  lazy val resourceHashCacheSize = config.getInt("schedoscope.versioning.resourceHashCacheSize")
+
   /**
     * The configured timeout for schema / metastore operations.
     */
@@ -112,6 +127,66 @@ class BaseSettings(val config: Config) {
     */
   lazy val schedulingCommandTimeout = Duration.create(config.getDuration("schedoscope.scheduler.timeouts.schedulingCommand", TimeUnit.SECONDS), TimeUnit.SECONDS)
 
+  /**
+    * Weight of the number of transitive dependents of a view when prioritizing its transformation.
+    */
+  lazy val transformationPriorityDependentsWeight = config.getDouble("schedoscope.scheduler.transformationQueue.dependentsWeight")
+
+  /**
+    * Weight of the longest chain of dependents of a view when prioritizing its transformation.
+    */
+  lazy val transformationPriorityDepthWeight = config.getDouble("schedoscope.scheduler.transformationQueue.depthWeight")
+
+  /**
+    * Priority penalty of a transformation for each queued transformation of the same table.
+    */
+  lazy val transformationPriorityTableFairnessWeight = config.getDouble("schedoscope.scheduler.transformationQueue.tableFairnessWeight")
+
+  /**
+    * Priority gain of a transformation per minute it has been waiting in the queue.
+    */
+  lazy val transformationPriorityAgingWeight = config.getDouble("schedoscope.scheduler.transformationQueue.agingWeight")
+
+  /**
+    * Whether the number of concurrently running transformations per type adapts to run failures, run times, and waiting transformations.
+    */
+  lazy val adaptiveConcurrencyEnabled = config.getBoolean("schedoscope.scheduler.adaptiveConcurrency.enabled")
+
+  /**
+    * Maximum number of transformations of all types running concurrently when concurrency is adaptive.
+    */
+  lazy val adaptiveConcurrencyGlobalLimit = config.getInt("schedoscope.scheduler.adaptiveConcurrency.globalLimit")
+
+  /**
+    * Lower bound of the adaptive concurrency of a transformation type.
+    */
+  lazy val adaptiveConcurrencyMinimum = config.getInt("schedoscope.scheduler.adaptiveConcurrency.minConcurrency")
+
+  /**
+    * Factor applied to the adaptive concurrency of a transformation type upon failures or degrading run times.
+    */
+  lazy val adaptiveConcurrencyBackOffRatio = config.getDouble("schedoscope.scheduler.adaptiveConcurrency.backOffRatio")
+
+  /**
+    * Factor by which recent run times may exceed long term run times before the adaptive concurrency is reduced.
+    */
+  lazy val adaptiveConcurrencyLatencyTolerance = config.getDouble("schedoscope.scheduler.adaptiveConcurrency.latencyTolerance")
+
+  /**
+    * Whether snapshots of view scheduling states are written and used for warm restarts.
+    */
+  lazy val stateSnapshotEnabled = config.getBoolean("schedoscope.scheduler.stateSnapshot.enabled")
+
+  /**
+    * Local path or HDFS URI of the view scheduling state snapshot.
+    */
+  lazy val stateSnapshotLocation = config.getString("schedoscope.scheduler.stateSnapshot.location")
+
+  /**
+    * Interval between snapshots of view scheduling states.
+    */
+  lazy val stateSnapshotInterval = Duration.create(config.getDuration("schedoscope.scheduler.stateSnapshot.interval", TimeUnit.SECONDS), TimeUnit.SECONDS)
+
   /**
     * The configured timeout for Schedoscope web service calls.
     */
@@ -173,6 +248,21 @@ class BaseSettings(val config: Config) {
     */
   lazy val metastoreReadBatchSize = config.getInt("schedoscope.metastore.readBatchSize")
 
+  /**
+    * Keep transformation metadata of partitions read from the metastore in memory
+    */
+  lazy val metastoreCachePartitionMetadata = config.getBoolean("schedoscope.metastore.cachePartitionMetadata")
+
+  /**
+    * Time after which the cached transformation metadata of the partitions of a table is read again from the metastore
+    */
+  lazy val metastorePartitionMetadataTtl = Duration.create(config.getDuration("schedoscope.metastore.partitionMetadataTtl", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS)
+
+  /**
+    * Number of tables whose partition metadata may be read from the metastore in parallel
+    */
+  lazy val metastorePartitionMetadataReadConcurrency = config.getInt("schedoscope.metastore.partitionMetadataReadConcurrency")
+
   /**
     * A salt to use when anonymizing fields during export
     */
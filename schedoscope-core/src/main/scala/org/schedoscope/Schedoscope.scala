@@ -17,6 +17,7 @@ package org.schedoscope
 
 import akka.actor.ActorSystem
 import org.schedoscope.scheduler.actors.{SchemaManagerRouter, TransformationManagerActor, ViewManagerActor, ViewSchedulingListenerManagerActor}
+import org.schedoscope.scheduler.utils.DependencyGraph
 
 /**
   * The Schedoscope object provides accessors for the various components of the schedoscope system.
@@ -38,7 +39,8 @@ object Schedoscope {
     ViewManagerActor.props(settings,
       transformationManagerActor,
       schemaManagerRouter,
-      viewSchedulingListenerManagerActor), "views")
+      viewSchedulingListenerManagerActor,
+      dependencyGraph), "views")
 
   /**
     * Pluggable builder function that returns the settings for schedoscope.
@@ -50,7 +52,13 @@ object Schedoscope {
     * Pluggable builder function that returns the transformation manager actor for schedoscope.
     * The default implementation creates a new transformation manager actor based on the actor system.
     */
-  var transformationManagerActorBuilder = () => actorSystem.actorOf(TransformationManagerActor.props(settings), "transformations")
+  var transformationManagerActorBuilder = () => actorSystem.actorOf(TransformationManagerActor.props(settings, dependencyGraph), "transformations")
+
+  /**
+    * Pluggable builder function that returns the dependency graph shared by the view manager and the transformation manager.
+    * The default implementation creates a new graph expanding views on the dependency graph dispatcher of the actor system.
+    */
+  var dependencyGraphBuilder = () => new DependencyGraph()(actorSystem.dispatchers.lookup("akka.actor.dependency-graph-dispatcher"))
 
   /**
     * Pluggable builder function that returns the schema manager actor for schedoscope.
@@ -76,6 +84,11 @@ object Schedoscope {
     */
   lazy val settings = settingsBuilder()
 
+  /**
+    * The dependency graph of all views known to Schedoscope.
+    */
+  lazy val dependencyGraph = dependencyGraphBuilder()
+
   /**
     * A reference to the Schedoscope transformation manager logger actor
     */
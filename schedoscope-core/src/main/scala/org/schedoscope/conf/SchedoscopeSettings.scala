@@ -214,6 +214,16 @@ class DriverSettings(val config: Config, val name: String) {
     */
   lazy val concurrency = config.getInt("concurrency")
 
+  /**
+    * Upper bound of parallel drivers when concurrency is adaptive. Defaults to the configured
+    * concurrency for transformation types not configuring it.
+    */
+  lazy val maxConcurrency = try {
+    math.max(config.getInt("maxConcurrency"), concurrency)
+  } catch {
+    case _: Throwable => concurrency
+  }
+
   /**
     * Backoff time slot for driver actor restart.
     */
@@ -239,6 +249,112 @@ class DriverSettings(val config: Config, val name: String) {
     */
   lazy val timeout = Duration.create(config.getDuration("timeout", TimeUnit.SECONDS), TimeUnit.SECONDS)
 
+  /**
+    * Number of idle sessions a driver keeps for reuse across driver runs. Defaults to 1 for
+    * transformation types not configuring it.
+    */
+  lazy val sessionPoolSize = try {
+    config.getInt("sessionPoolSize")
+  } catch {
+    case _: Throwable => 1
+  }
+
+  /**
+    * Time for which a driver may cache the fact that a function is registered with the metastore.
+    * Defaults to 10 minutes for transformation types not configuring it.
+    */
+  lazy val functionCacheTtl = try {
+    Duration.create(config.getDuration("functionCacheTtl", TimeUnit.SECONDS), TimeUnit.SECONDS)
+  } catch {
+    case _: Throwable => Duration.create(10, TimeUnit.MINUTES)
+  }
+
+  /**
+    * Number of files a driver copies or moves in parallel. Defaults to 1, i.e., sequential
+    * file operations, for transformation types not configuring it.
+    */
+  lazy val fileOperationWorkers = try {
+    math.max(config.getInt("fileOperationWorkers"), 1)
+  } catch {
+    case _: Throwable => 1
+  }
+
+  /**
+    * Number of times a driver retries copying a single file before failing. Defaults to 0
+    * for transformation types not configuring it.
+    */
+  lazy val fileOperationRetries = try {
+    math.max(config.getInt("fileOperationRetries"), 0)
+  } catch {
+    case _: Throwable => 0
+  }
+
+  /**
+    * Number of files uploaded in parallel when deploying the driver's libraries. Defaults to 8.
+    */
+  lazy val deploymentWorkers = try {
+    math.max(config.getInt("deploymentWorkers"), 1)
+  } catch {
+    case _: Throwable => 8
+  }
+
+  /**
+    * Initial interval at which the state of a driver run is polled when waiting for it. Defaults to 100 millis.
+    */
+  lazy val runStatePollingMinInterval = try {
+    Duration.create(config.getDuration("runStatePolling.minInterval", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS)
+  } catch {
+    case _: Throwable => Duration.create(100, TimeUnit.MILLISECONDS)
+  }
+
+  /**
+    * Upper bound of the interval at which the state of a driver run is polled. Defaults to 5 seconds.
+    */
+  lazy val runStatePollingMaxInterval = try {
+    Duration.create(config.getDuration("runStatePolling.maxInterval", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS)
+  } catch {
+    case _: Throwable => Duration.create(5, TimeUnit.SECONDS)
+  }
+
+  /**
+    * Factor by which the run state polling interval grows after each poll. Defaults to 2.
+    */
+  lazy val runStatePollingBackoffFactor = try {
+    math.max(config.getDouble("runStatePolling.backoffFactor"), 1.0)
+  } catch {
+    case _: Throwable => 2.0
+  }
+
+  /**
+    * Time a driver actor waits for its driver to warm up its connections before accepting work regardless.
+    * Defaults to 2 minutes.
+    */
+  lazy val warmUpTimeout = try {
+    Duration.create(config.getDuration("warmUpTimeout", TimeUnit.SECONDS), TimeUnit.SECONDS)
+  } catch {
+    case _: Throwable => Duration.create(2, TimeUnit.MINUTES)
+  }
+
+  /**
+    * Multiple of the 95th run time percentile of a transformation after which a speculative duplicate of a
+    * run is started, provided the driver supports it. Defaults to 0, i.e., no speculative execution.
+    */
+  lazy val speculationMultiple = try {
+    math.max(config.getDouble("speculation.multiple"), 0.0)
+  } catch {
+    case _: Throwable => 0.0
+  }
+
+  /**
+    * Number of successful runs of a transformation required before its runs are executed speculatively.
+    * Defaults to 10.
+    */
+  lazy val speculationMinimumRuns = try {
+    math.max(config.getInt("speculation.minimumRuns"), 1)
+  } catch {
+    case _: Throwable => 10
+  }
+
   /**
     * List of jars to upload to HDFS.
     */
@@ -284,4 +400,32 @@ class DriverSettings(val config: Config, val name: String) {
     */
   lazy val driverRunCompletionHandlers = config.getStringList("driverRunCompletionHandlers").toList
 
+  /**
+    * Number of workers invoking driver run completion handlers asynchronously for all drivers of the transformation
+    * type. If 0, handlers are invoked synchronously by the driver actor. Defaults to 0.
+    */
+  lazy val completionHandlerWorkers = try {
+    math.max(config.getInt("completionHandlers.workers"), 0)
+  } catch {
+    case _: Throwable => 0
+  }
+
+  /**
+    * Number of completion handler invocations that may wait for a worker. Defaults to 1000.
+    */
+  lazy val completionHandlerQueueSize = try {
+    math.max(config.getInt("completionHandlers.queueSize"), 1)
+  } catch {
+    case _: Throwable => 1000
+  }
+
+  /**
+    * Time a completion handler invoked asynchronously may take before it is interrupted. Defaults to 5 minutes.
+    */
+  lazy val completionHandlerTimeout = try {
+    Duration.create(config.getDuration("completionHandlers.timeout", TimeUnit.SECONDS), TimeUnit.SECONDS)
+  } catch {
+    case _: Throwable => Duration.create(5, TimeUnit.MINUTES)
+  }
+
 }
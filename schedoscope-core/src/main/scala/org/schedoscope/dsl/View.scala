@@ -15,10 +15,13 @@
   */
 package org.schedoscope.dsl
 
+import java.lang.invoke.{MethodHandle, MethodHandles}
+import java.util.concurrent.ConcurrentHashMap
+
 import com.openpojo.reflection.impl.PojoClassFactory
 import org.schedoscope.Schedoscope
 import org.schedoscope.dsl.storageformats._
-import org.schedoscope.dsl.transformations.{NoOp, SeqTransformation, Transformation}
+import org.schedoscope.dsl.transformations.{Checksum, NoOp, SeqTransformation, Transformation}
 import org.schedoscope.dsl.views.ViewUrlParser
 import org.schedoscope.dsl.views.ViewUrlParser.{ParsedView, ParsedViewAugmentor}
 import org.schedoscope.lineage.{DependencyAnalyzer, DependencyMap}
@@ -101,9 +104,10 @@ abstract class View extends Structure with ViewDsl with DelayedInit {
   override var avroSchemaPathPrefixBuilder = (env: String) => s"hdfs:///hdp/${env}/global/datadictionary/schema/avro"
 
   /**
-    * The view's environment.
+    * The view's environment. Volatile, as registered views are shared between threads and may be
+    * re-registered with a different environment.
     */
-  private var _env: String = "dev"
+  @volatile private var _env: String = "dev"
 
   def env: String = _env
 
@@ -369,6 +373,36 @@ abstract class View extends Structure with ViewDsl with DelayedInit {
       }
   }
 
+  private case class MemoizedTransformationChecksum(transformation: () => Transformation,
+                                                    exports: List[() => Transformation],
+                                                    resourceHashesGeneration: Long,
+                                                    resourceVersions: List[(String, Long)],
+                                                    checksum: String)
+
+  @volatile private var memoizedTransformationChecksum: Option[MemoizedTransformationChecksum] = None
+
+  /**
+    * The checksum of the transformation returned by transformation(). It is only recomputed after the registered
+    * transformation or exports have changed, a background listing has found one of the resources of the
+    * transformation changed, or the resource hashes have been cleared.
+    */
+  def transformationChecksum = {
+    val currentTransformation = registeredTransformation
+    val currentExports = registeredExports
+    val currentResourceHashesGeneration = Checksum.resourceHashesGeneration
+
+    memoizedTransformationChecksum match {
+      case Some(MemoizedTransformationChecksum(t, e, g, resourceVersions, checksum))
+        if (t eq currentTransformation) && (e eq currentExports) && g == currentResourceHashesGeneration &&
+          resourceVersions.forall { case (resource, version) => Checksum.resourceVersion(resource) == version } => checksum
+
+      case _ =>
+        val (checksum, resourceVersions) = Checksum.withResourceVersions(transformation().checksum)
+        memoizedTransformationChecksum = Some(MemoizedTransformationChecksum(currentTransformation, currentExports, currentResourceHashesGeneration, resourceVersions, checksum))
+        checksum
+    }
+  }
+
   /**
     * Materialize once makes sure that the given view is only materialized once, even if its dependencies or version checksum change
     * afterwards.
@@ -442,7 +476,7 @@ abstract class View extends Structure with ViewDsl with DelayedInit {
   * View helpers. Also a registry of created views ensuring that there are no duplicate objects representing the same view.
   */
 object View {
-  private val knownViews = HashMap[String, View]()
+  private val knownViews = new ConcurrentHashMap[String, View]()
 
   /**
     * Return all views from a given package.
@@ -494,32 +528,17 @@ object View {
     * Instantiate a new view given its class name, an environment, and a list of parameter values.
     */
   def newView[V <: View : Manifest](viewClass: Class[V], env: String, parameterValues: TypedAny*): V = {
-    val viewCompanionObjectClass = Class.forName(viewClass.getName() + "$")
-    val viewCompanionConstructor = viewCompanionObjectClass.getDeclaredConstructor()
-    viewCompanionConstructor.setAccessible(true)
-    val viewCompanionObject = viewCompanionConstructor.newInstance()
-
-    val applyMethods = viewCompanionObjectClass.getDeclaredMethods()
-      .filter {
-        _.getName() == "apply"
-      }
-
-    val viewConstructor = applyMethods
-      .filter { apply =>
-        val parameterTypes = apply.getGenericParameterTypes().distinct
-        !((parameterTypes.length == 1) && (parameterTypes.head == classOf[Object]))
-      }
-      .head
+    val viewConstructor = viewConstructorFor(viewClass)
 
     val parametersToPass = ListBuffer[Any]()
     val parameterValuesPassed = ListBuffer[TypedAny]()
     parameterValuesPassed ++= parameterValues
 
-    if (viewConstructor.getParameterTypes.size > parameterValues.size) {
-      throw new RuntimeException(s"Not enough arguments for constructing view ${viewClass.getSimpleName}; required ${viewConstructor.getParameterTypes.size}, found ${parameterValues.size}")
+    if (viewConstructor.parameterTypes.size > parameterValues.size) {
+      throw new RuntimeException(s"Not enough arguments for constructing view ${viewClass.getSimpleName}; required ${viewConstructor.parameterTypes.size}, found ${parameterValues.size}")
     }
 
-    for (constructorParameterType <- viewConstructor.getParameterTypes()) {
+    for (constructorParameterType <- viewConstructor.parameterTypes) {
       var passedValueForParameter: TypedAny = null
 
       for (parameterValue <- parameterValuesPassed; if passedValueForParameter == null) {
@@ -535,21 +554,79 @@ object View {
       parametersToPass += passedValueForParameter.v
     }
 
-    register(env, viewConstructor.invoke(viewCompanionObject, parametersToPass.asInstanceOf[Seq[Object]]: _*).asInstanceOf[V])
+    register(env, viewConstructor.handle.invokeWithArguments(parametersToPass.asInstanceOf[Seq[Object]]: _*).asInstanceOf[V])
   }
 
-  private def register[V <: View : Manifest](env: String, v: V): V = this.synchronized {
-    val registeredView = knownViews.get(v.urlPath) match {
-      case Some(registeredView) => {
-        registeredView.asInstanceOf[V]
+  /**
+    * A view constructor is the apply method of a view's companion object bound to that object, along with the
+    * types of the apply method's parameters.
+    */
+  private class ViewConstructor(val parameterTypes: Array[Class[_]], val handle: MethodHandle)
+
+  private val viewConstructors = new ConcurrentHashMap[Class[_], ViewConstructor]()
+
+  /**
+    * Returns the view constructor for a view class. Constructors are looked up via reflection only once per class
+    * and cached afterwards.
+    */
+  private def viewConstructorFor(viewClass: Class[_]): ViewConstructor = {
+    val cachedConstructor = viewConstructors.get(viewClass)
+
+    if (cachedConstructor != null)
+      return cachedConstructor
+
+    val viewCompanionObjectClass = Class.forName(viewClass.getName() + "$")
+    val viewCompanionConstructor = viewCompanionObjectClass.getDeclaredConstructor()
+    viewCompanionConstructor.setAccessible(true)
+    val viewCompanionObject = viewCompanionConstructor.newInstance()
+
+    val applyMethods = viewCompanionObjectClass.getDeclaredMethods()
+      .filter {
+        _.getName() == "apply"
       }
-      case None => {
-        knownViews.put(v.urlPath, v)
-        v
+
+    val applyMethod = applyMethods
+      .filter { apply =>
+        val parameterTypes = apply.getGenericParameterTypes().distinct
+        !((parameterTypes.length == 1) && (parameterTypes.head == classOf[Object]))
       }
-    }
-    registeredView.env = env
-    registeredView
+      .head
+
+    applyMethod.setAccessible(true)
+
+    val viewConstructor = new ViewConstructor(
+      applyMethod.getParameterTypes,
+      MethodHandles.lookup().unreflect(applyMethod).bindTo(viewCompanionObject))
+
+    val concurrentlyCachedConstructor = viewConstructors.putIfAbsent(viewClass, viewConstructor)
+
+    if (concurrentlyCachedConstructor != null)
+      concurrentlyCachedConstructor
+    else
+      viewConstructor
+  }
+
+  /**
+    * Registers a view with the registry if no view with the same URL path is known yet. Otherwise, the
+    * already known view is returned. Registration does not block concurrent registrations.
+    *
+    * A new view gets its environment before it is published to the registry, so other threads never see it with
+    * the default environment.
+    */
+  private def register[V <: View : Manifest](env: String, v: V): V = {
+    v.env = env
+
+    val alreadyRegisteredView = knownViews.putIfAbsent(v.urlPath, v)
+
+    if (alreadyRegisteredView != null) {
+      val registeredView = alreadyRegisteredView.asInstanceOf[V]
+
+      if (registeredView.env != env)
+        registeredView.env = env
+
+      registeredView
+    } else
+      v
   }
 
   private def recursiveDependenciesOf(view: View, soFar: mutable.Set[View] = mutable.Set[View]()): mutable.Set[View] = {
@@ -15,32 +15,60 @@
   */
 package org.schedoscope.dsl.transformations
 
+import java.io.FileNotFoundException
 import java.security.MessageDigest
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.{ConcurrentHashMap, Executors, ThreadFactory}
 
-import org.apache.hadoop.fs.{FileStatus, Path}
+import org.apache.hadoop.fs.{FileSystem, Path}
 import org.schedoscope.Schedoscope
 import org.schedoscope.scheduler.driver.FilesystemDriver._
 
-import scala.Array.canBuildFrom
-import scala.collection.mutable.HashMap
+import scala.collection.mutable.ListBuffer
 
 object Checksum {
   private def md5 = MessageDigest.getInstance("MD5")
 
-  private def listFiles(path: String): Array[FileStatus] = {
-    val files = fileSystem(path, Schedoscope.settings.hadoopConf).globStatus(new Path(path))
-    if (files != null)
-      files
-    else Array()
-  }
+  private def defaultFileSystem(path: String) = fileSystem(path, Schedoscope.settings.hadoopConf)
+
+  /**
+    * A file resource as of a given modification time and length.
+    */
+  private case class ResourceFile(path: String, modificationTime: Long, length: Long)
+
+  /**
+    * The files of a resource as of a listing taken at a given time. The version of a listing only changes along
+    * with the listed files.
+    */
+  private case class ResourceListing(listedAt: Long, files: List[ResourceFile], version: Long)
+
+  private val fileHashes = new ConcurrentHashMap[ResourceFile, String]()
+
+  private val resourceListings = new ConcurrentHashMap[String, ResourceListing]()
+
+  private val resourceListingVersions = new AtomicLong()
+
+  private val resourceHashCacheGeneration = new AtomicLong()
+
+  private val recordedResourceVersions = new ThreadLocal[ListBuffer[(String, Long)]]()
 
-  private def fileChecksum(path: String) =
+  private val pendingResourceListings = new ConcurrentHashMap[String, java.lang.Boolean]()
+
+  private lazy val resourceListingExecutor = Executors.newSingleThreadExecutor(new ThreadFactory {
+    def newThread(r: Runnable) = {
+      val thread = new Thread(r, "resource-listing")
+      thread.setDaemon(true)
+      thread
+    }
+  })
+
+  private def fileChecksum(path: String, fs: String => FileSystem) =
     if (path == null)
       "null-checksum"
     else if (path.endsWith(".jar"))
       path
     else try {
-      val cs = fileSystem(path, Schedoscope.settings.hadoopConf).getFileChecksum(new Path(path))
+      val cs = fs(path).getFileChecksum(new Path(path))
       if (cs == null)
         path
       else
@@ -49,20 +77,200 @@ object Checksum {
       case _: Throwable => path
     }
 
-  def fileChecksums(paths: List[String], recursive: Boolean): List[String] =
-    paths.flatMap(path => {
-      if (fileSystem(path, Schedoscope.settings.hadoopConf).isFile(new Path(path)))
-        List(fileChecksum(path))
-      else if (recursive)
-        fileChecksums(listFiles(path + "/*").map(f => f.getPath.toString()).toList, recursive)
+  private def fileHash(file: ResourceFile, fs: String => FileSystem, maxFileHashes: Int) = {
+    val cachedHash = fileHashes.get(file)
+
+    if (cachedHash != null)
+      cachedHash
+    else {
+      val hash = fileChecksum(file.path, fs)
+      fileHashes.put(file, hash)
+      evictFileHashes(maxFileHashes)
+      hash
+    }
+  }
+
+  /**
+    * Keep the number of cached file hashes below the given maximum by dropping arbitrary entries. Hashes of files
+    * that have changed are dropped already when their resource is listed again.
+    */
+  private def evictFileHashes(maxFileHashes: Int) {
+    if (fileHashes.size > maxFileHashes) {
+      val cachedFiles = fileHashes.keySet.iterator
+
+      while (fileHashes.size > maxFileHashes * 9 / 10 && cachedFiles.hasNext) {
+        cachedFiles.next()
+        cachedFiles.remove()
+      }
+    }
+  }
+
+  /**
+    * List the files of a resource. A directory resource is listed with a single recursive listFiles call. Like a
+    * file glob, this yields qualified paths for the files below a directory, whereas a file resource keeps its
+    * path as passed.
+    */
+  private def resourceFiles(resource: String, recursive: Boolean, fs: String => FileSystem): List[ResourceFile] = try {
+    val resourcePath = new Path(resource)
+    val resourceFileSystem = fs(resource)
+
+    if (recursive) {
+      val qualifiedResourcePath = resourceFileSystem.makeQualified(resourcePath)
+      val files = resourceFileSystem.listFiles(resourcePath, true)
+      val resourceFiles = ListBuffer[ResourceFile]()
+
+      while (files.hasNext) {
+        val file = files.next()
+        val path = if (file.getPath == qualifiedResourcePath) resource else file.getPath.toString
+
+        resourceFiles += ResourceFile(path, file.getModificationTime, file.getLen)
+      }
+
+      resourceFiles.toList
+    } else {
+      val status = resourceFileSystem.getFileStatus(resourcePath)
+
+      if (status.isFile)
+        List(ResourceFile(resource, status.getModificationTime, status.getLen))
       else
         List()
-    }).sorted
+    }
+  } catch {
+    case _: FileNotFoundException => List()
+  }
+
+  def fileChecksums(paths: List[String], recursive: Boolean): List[String] =
+    fileChecksums(paths, recursive, defaultFileSystem, Schedoscope.settings.resourceHashCacheSize)
+
+  private[transformations] def fileChecksums(paths: List[String], recursive: Boolean, fs: String => FileSystem, maxFileHashes: Int): List[String] =
+    paths
+      .flatMap(resourceFiles(_, recursive, fs))
+      .map(fileHash(_, fs, maxFileHashes))
+      .sorted
+
+  /**
+    * Return the hashes of the files of the given resources. Resources are listed again once their last listing is
+    * older than the configured resource listing TTL. Files are only hashed again after their modification time or
+    * length changed.
+    */
+  def resourceHashes(resources: List[String]): List[String] =
+    resourceHashes(resources, defaultFileSystem, Schedoscope.settings.resourceListingTtl.toMillis, Schedoscope.settings.resourceHashCacheSize)
+
+  private[transformations] def resourceHashes(resources: List[String], fs: String => FileSystem, listingTtlMillis: Long, maxFileHashes: Int): List[String] =
+    resources
+      .flatMap { resource =>
+        val listing = resourceListing(resource, fs, listingTtlMillis)
+
+        val recording = recordedResourceVersions.get
+        if (recording != null)
+          recording += ((resource, listing.version))
+
+        listing.files
+      }
+      .map(fileHash(_, fs, maxFileHashes))
+      .sorted
+
+  private def resourceListing(resource: String, fs: String => FileSystem, listingTtlMillis: Long) = {
+    val cachedListing = resourceListings.get(resource)
+
+    if (cachedListing != null && System.currentTimeMillis() - cachedListing.listedAt < listingTtlMillis)
+      cachedListing
+    else
+      listResource(resource, fs)
+  }
+
+  private def listResource(resource: String, fs: String => FileSystem) = {
+    val now = System.currentTimeMillis()
+    val cachedListing = resourceListings.get(resource)
+    val files = resourceFiles(resource, true, fs)
+
+    val listing =
+      if (cachedListing != null && cachedListing.files == files)
+        ResourceListing(now, files, cachedListing.version)
+      else {
+        if (cachedListing != null)
+          cachedListing.files.filterNot(files.contains).foreach(fileHashes.remove)
+
+        ResourceListing(now, files, resourceListingVersions.incrementAndGet())
+      }
+
+    resourceListings.put(resource, listing)
+    listing
+  }
+
+  /**
+    * List a resource again on the resource listing thread, unless a listing of the resource is already pending.
+    */
+  private def listResourceInBackground(resource: String, fs: String => FileSystem) {
+    if (pendingResourceListings.putIfAbsent(resource, true) == null)
+      resourceListingExecutor.execute(new Runnable {
+        def run() = try {
+          listResource(resource, fs)
+        } catch {
+          // the resource is listed again upon the next version request
+          case _: Throwable =>
+        } finally {
+          pendingResourceListings.remove(resource)
+        }
+      })
+  }
+
+  /**
+    * Return the version of the last listing of a resource, or -1 if the resource has not been listed yet. The version
+    * changes whenever files of the resource are added, removed, or changed. The calling thread never lists the
+    * resource: once the last listing is older than the configured resource listing TTL, the resource is listed again
+    * in the background and a changed version shows with a later request.
+    */
+  def resourceVersion(resource: String): Long =
+    resourceVersion(resource, defaultFileSystem, Schedoscope.settings.resourceListingTtl.toMillis)
+
+  private[transformations] def resourceVersion(resource: String, fs: String => FileSystem, listingTtlMillis: Long): Long = {
+    val cachedListing = resourceListings.get(resource)
+
+    if (cachedListing == null)
+      -1
+    else {
+      if (System.currentTimeMillis() - cachedListing.listedAt >= listingTtlMillis)
+        listResourceInBackground(resource, fs)
+
+      cachedListing.version
+    }
+  }
+
+  /**
+    * Evaluate an expression, returning its result along with the versions of all resources whose hashes the
+    * expression requested. A result computed from resource hashes is outdated once the version of one of these
+    * resources changes.
+    */
+  def withResourceVersions[T](f: => T): (T, List[(String, Long)]) = {
+    val outerRecording = recordedResourceVersions.get
+    val recording = ListBuffer[(String, Long)]()
+
+    recordedResourceVersions.set(recording)
+
+    try {
+      (f, recording.toList.distinct)
+    } finally {
+      recordedResourceVersions.set(outerRecording)
+
+      if (outerRecording != null)
+        outerRecording ++= recording
+    }
+  }
 
-  val resourceHashCache = new HashMap[List[String], List[String]]()
+  /**
+    * Counts the clearances of the resource hash cache. Checksums computed from resource hashes are outdated once
+    * this changes.
+    */
+  def resourceHashesGeneration = resourceHashCacheGeneration.get()
 
-  def resourceHashes(resources: List[String]): List[String] = synchronized {
-    resourceHashCache.getOrElseUpdate(resources, fileChecksums(resources, true))
+  /**
+    * Forget all resource listings and hashes, so that they are recomputed from the current file resources.
+    */
+  def clearResourceHashes(): Unit = {
+    resourceListings.clear()
+    fileHashes.clear()
+    resourceHashCacheGeneration.incrementAndGet()
   }
 
   val defaultDigest = "0"
@@ -16,6 +16,11 @@
 
 package org.schedoscope.lineage
 
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.{Callable, ExecutionException, Executors, ThreadFactory}
+
+import com.google.common.cache.CacheBuilder
+import com.google.common.util.concurrent.{ExecutionError, UncheckedExecutionException}
 import org.apache.calcite.rel.RelNode
 import org.apache.calcite.rel.core._
 import org.apache.calcite.rex._
@@ -26,7 +31,7 @@ import org.schedoscope.dsl.{FieldLike, View}
 import org.slf4j.LoggerFactory
 
 import scala.collection.JavaConverters._
-import scala.collection.mutable
+import scala.concurrent.{ExecutionContext, Future}
 import scala.util.matching.Regex.Match
 import scala.util.{Failure, Try}
 
@@ -37,14 +42,49 @@ object DependencyAnalyzer {
 
   private val log = LoggerFactory.getLogger(getClass)
 
+  /**
+    * A field of a table in the Calcite schema, given by the table's database and name and the field's name. Unlike
+    * [[org.schedoscope.dsl.FieldLike]]s, table fields do not depend on the partition of the table they belong to.
+    */
+  private type TableField = (String, String, String)
   /**
     * A function providing an ordered list of dependency sets for a relation
     */
-  private type DependencyFunction = (RelNode) => List[FieldSet]
+  private type DependencyFunction = (RelNode) => List[Set[TableField]]
+
+  /**
+    * The outcome of analyzing a HiveQL statement: whether the schema had to be built from recursive dependencies,
+    * and the ordered list of table fields each field of the view depends on
+    */
+  private type Analysis = (Boolean, List[Set[TableField]])
+
+  /**
+    * Maximum number of analyses kept in memory
+    */
+  private val maxCachedAnalyses = 10000
+
   /**
-    * A cache for dependency information grouped by a key
+    * Cache of successful analyses by kind of analysis, normalized HiveQL statement, and schema fingerprint.
+    * Partition values only enter a statement as literals, which the normalization blanks out, so all partitions
+    * of a table share one analysis. Concurrent requests for the same key wait for a single analysis.
     */
-  private type DependencyCache = mutable.Map[String, DependencyMap]
+  private[lineage] val analysisCache = CacheBuilder.newBuilder()
+    .maximumSize(maxCachedAnalyses)
+    .build[(String, String, String), Analysis]()
+
+  /**
+    * Number of analyses performed, i.e., of cache misses
+    */
+  private[lineage] val analyses = new AtomicLong()
+
+  private lazy val analysisExecutionContext = ExecutionContext.fromExecutorService(
+    Executors.newFixedThreadPool(Runtime.getRuntime.availableProcessors, new ThreadFactory {
+      def newThread(r: Runnable) = {
+        val thread = Executors.defaultThreadFactory().newThread(r)
+        thread.setDaemon(true)
+        thread
+      }
+    }))
 
   /**
     * Provides ''extended Where-Provenance'' information for a [[org.schedoscope.dsl.View]].
@@ -68,7 +108,7 @@ object DependencyAnalyzer {
     * @param view a view to analyze
     * @return a map, that assigns a set of dependencies to each field
     */
-  def analyzeDependencies(view: View): Try[DependencyMap] = analyze(view, dependenciesOf)
+  def analyzeDependencies(view: View): Try[DependencyMap] = analyze(view, "dependencies", dependenciesOf)
 
   /**
     * Provides ''Where-Provenance'' information for a [[org.schedoscope.dsl.View]].
@@ -87,21 +127,76 @@ object DependencyAnalyzer {
     * @param view a view to analyze
     * @return a map, that assigns a set of dependencies to each field
     */
-  def analyzeLineage(view: View): Try[DependencyMap] = analyze(view, lineageOf)
+  def analyzeLineage(view: View): Try[DependencyMap] = analyze(view, "lineage", lineageOf)
 
-  private def analyze(view: View, depFunc: DependencyFunction): Try[DependencyMap] = {
+  /**
+    * Provides ''Where-Provenance'' information for many [[org.schedoscope.dsl.View]]s, analyzing them in parallel
+    * on a pool of as many threads as there are processors.
+    *
+    * @param views the views to analyze
+    * @return a future of the lineage of each view, as returned by `analyzeLineage(view)`
+    */
+  def analyzeLineage(views: Seq[View]): Future[Map[View, Try[DependencyMap]]] = {
+    implicit val executionContext = analysisExecutionContext
+
+    Future.traverse(views.distinct) { view => Future(view -> analyzeLineage(view)) }.map(_.toMap)
+  }
+
+  private def analyze(view: View, kind: String, depFunc: DependencyFunction): Try[DependencyMap] = {
     view.hiveTransformation match {
-      case Some(ht) => Try(getMap(view, ht, depFunc))
+      case Some(ht) => Try {
+        val statement = firstStatement(ht)
+
+        try {
+          analysisCache.get((kind, normalizeLiterals(statement), schemaFingerprint(view)), new Callable[Analysis] {
+            def call() = getAnalysis(view, statement, depFunc)
+          })
+        } catch {
+          case e@(_: ExecutionException | _: UncheckedExecutionException | _: ExecutionError) if e.getCause != null =>
+            throw e.getCause
+        }
+      }.flatMap {
+        case (scanRecursive, dependencies) => Try(getMap(view, scanRecursive, dependencies))
+      }
       case _ => Failure(new NoHiveTransformationException())
     }
   }
 
-  private def getMap(view: View, ht: HiveTransformation, depFunc: DependencyFunction): DependencyMap = {
-    log.debug("Processing lineage of {}", view)
+  /**
+    * Blank out the numeric literals compared against in a pre-processed statement, as quoted literals already are.
+    * Such literals do not contribute to lineage, but unquoted partition values end up there.
+    */
+  private def normalizeLiterals(statement: String): String =
+    """(=|<>|!=|<=|>=|<|>)(\s*)-?\d+(?:\.\d+)?\b""".r.replaceAllIn(statement, m => s"${m.group(1)}${m.group(2)}0")
 
-    var planner = new NonFlatteningPlannerImpl(SchedoscopeConfig(view, scanRecursive = false))
+  /**
+    * Fingerprint of the tables and fields of a view and its dependencies.
+    */
+  private def schemaFingerprint(view: View) =
+    (view :: view.dependencies).map { v =>
+      s"${v.dbName}.${v.n}(${v.fieldsAndParameters.map(f => s"${f.n}:${f.t}").mkString(",")})"
+    }.mkString(";")
 
-    val firstStmt = (Some(ht.sql)
+  /**
+    * Assign the table fields of an analysis to the fields of the view and its dependencies.
+    */
+  private def getMap(view: View, scanRecursive: Boolean, dependencies: List[Set[TableField]]): DependencyMap = {
+    val tables = (if (scanRecursive) view.recursiveDependencies else view.dependencies)
+      .map(v => (v.dbName, v.n) -> v)
+      .toMap
+
+    dependencies.zipWithIndex.map {
+      case (set, i) => view.fields(i) -> set.map {
+        case (dbName, n, field) => tables((dbName, n)).fieldsAndParameters.find(_.n == field).get: FieldLike[_]
+      }
+    }.toMap
+  }
+
+  /**
+    * The first statement of a HiveQL transformation, with its parameters replaced and pre-processed for parsing.
+    */
+  private def firstStatement(ht: HiveTransformation): String =
+    (Some(ht.sql)
       map (replaceParameters(_, ht.configuration.toMap))
       map { sql => replaceParameters(sql, parseHiveVars(sql)) }
       map preprocessSql
@@ -113,22 +208,34 @@ object DependencyAnalyzer {
     }
       ).get
 
+  private def getAnalysis(view: View, firstStmt: String, depFunc: DependencyFunction): Analysis = {
+    log.debug("Processing lineage of {}", view)
+    analyses.incrementAndGet()
+
+    var planner = new NonFlatteningPlannerImpl(SchedoscopeConfig(view, scanRecursive = false))
+
     val parsed = planner.parse(firstStmt)
 
     // try with direct dependencies first, then recursively
+    var scanRecursive = false
+
     val validated = try {
       planner.validate(parsed)
     } catch {
       case _: ValidationException =>
         log.debug("Trying again with a recursively-built schema...")
+        scanRecursive = true
         planner = new NonFlatteningPlannerImpl(SchedoscopeConfig(view, scanRecursive = true))
         planner.validate(planner.parse(firstStmt))
     }
 
     val relNode = planner.convert(validated)
-    depFunc(relNode).zipWithIndex.map {
-      case (set, i) => view.fields(i) -> set
-    }.toMap
+    (scanRecursive, depFunc(relNode))
+  }
+
+  private def tableFieldsOf(ts: TableScan): List[Set[TableField]] = {
+    val view = ts.getTable.unwrap(classOf[SchedoscopeTable]).view
+    view.fieldsAndParameters.map(f => Set[TableField]((view.dbName, view.n, f.n))).toList
   }
 
   /**
@@ -143,10 +250,8 @@ object DependencyAnalyzer {
     * @param node the node to analyze
     * @return an ordered list of dependency sets, the nth set belongs to the nth field of the node
     */
-  private def dependenciesOf(node: RelNode): List[FieldSet] = node match {
-    case ts: TableScan => ts.getTable.unwrap(classOf[SchedoscopeTable]).view.fieldsAndParameters.map(
-      f => Set[FieldLike[_]](f)
-    ).toList
+  private def dependenciesOf(node: RelNode): List[Set[TableField]] = node match {
+    case ts: TableScan => tableFieldsOf(ts)
     case p: Project =>
       val inputDepList = dependenciesOf(p.getInput)
       p.getChildExps.asScala.toList
@@ -191,10 +296,8 @@ object DependencyAnalyzer {
     * @param node the node to analyze
     * @return an ordered list of dependency sets, the nth set belongs to the nth field of the node
     */
-  private def lineageOf(node: RelNode): List[FieldSet] = node match {
-    case ts: TableScan => ts.getTable.unwrap(classOf[SchedoscopeTable]).view.fieldsAndParameters.map(
-      f => Set[FieldLike[_]](f)
-    ).toList
+  private def lineageOf(node: RelNode): List[Set[TableField]] = node match {
+    case ts: TableScan => tableFieldsOf(ts)
     case p: Project =>
       val inputDepList = lineageOf(p.getInput)
       p.getChildExps.asScala.toList
@@ -17,7 +17,9 @@
 package org.schedoscope.lineage
 
 import java.util
+import java.util.concurrent.Callable
 
+import com.google.common.cache.CacheBuilder
 import org.apache.calcite.schema.Table
 import org.apache.calcite.schema.impl.AbstractSchema
 import org.schedoscope.dsl.View
@@ -27,10 +29,35 @@ import scala.collection.JavaConverters._
 /**
   * Schema based on reflection over [[org.schedoscope.dsl.View]]s.
   *
+  * Tables are shared between all schemas referring to views of the same table with the same fields, so
+  * that the tables of partitions of a table are only created once.
+  *
   * @author Jan Hicken (jhicken)
   */
 case class SchedoscopeSchema(views: Traversable[View]) extends AbstractSchema {
-  override def getTableMap: util.Map[String, Table] = views.map(
-    v => v.n -> SchedoscopeTable(v)
+  private lazy val tableMap = views.map(
+    v => v.n -> SchedoscopeSchema.tableFor(v)
   ).toMap[String, Table].asJava
+
+  override def getTableMap: util.Map[String, Table] = tableMap
+}
+
+object SchedoscopeSchema {
+  /**
+    * Maximum number of shared tables kept in memory
+    */
+  private val maxSharedTables = 10000
+
+  private val tables = CacheBuilder.newBuilder()
+    .maximumSize(maxSharedTables)
+    .build[String, SchedoscopeTable]()
+
+  /**
+    * The shared table for the table of a view.
+    */
+  def tableFor(view: View): SchedoscopeTable =
+    tables.get(s"${view.dbName}.${view.n}(${view.fieldsAndParameters.map(f => s"${f.n}:${f.t}").mkString(",")})",
+      new Callable[SchedoscopeTable] {
+        def call() = SchedoscopeTable(view)
+      })
 }
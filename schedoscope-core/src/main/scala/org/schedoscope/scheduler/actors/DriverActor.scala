@@ -15,21 +15,26 @@
   */
 package org.schedoscope.scheduler.actors
 
-import java.security.PrivilegedAction
+import java.util.concurrent.{LinkedBlockingQueue, ThreadFactory, ThreadPoolExecutor, TimeUnit, TimeoutException}
 
-import akka.actor.{Actor, ActorRef, Props, actorRef2Scala}
+import akka.actor.{Actor, ActorRef, Cancellable, Props, Stash, actorRef2Scala}
 import akka.event.{Logging, LoggingReceive}
 import org.apache.commons.lang.exception.ExceptionUtils
-import org.apache.hadoop.fs._
+import org.apache.hadoop.fs.FileSystem
+import org.joda.time.LocalDateTime
 import org.schedoscope.conf.{DriverSettings, SchedoscopeSettings}
 import org.schedoscope.dsl.View
 import org.schedoscope.dsl.transformations.{Transformation, _}
+import org.schedoscope.scheduler.actors.DriverActor.{DriverRunStateChanged, DriverWarmedUp, ViewOutputVerified}
 import org.schedoscope.scheduler.driver.FilesystemDriver.defaultFileSystem
 import org.schedoscope.scheduler.driver._
 import org.schedoscope.scheduler.messages._
+import org.schedoscope.scheduler.utils.{RunTimePercentiles, SchedulerMetrics, ViewOutputVerifier}
 
 import scala.concurrent.duration.{DurationInt, FiniteDuration}
+import scala.concurrent.{ExecutionContext, Future}
 import scala.language.postfixOps
+import scala.util.{Failure, Success, Try}
 
 /**
   * A driver actor manages the executions of transformations using hive, oozie etc. The actual
@@ -43,7 +48,8 @@ class DriverActor[T <: Transformation](transformationManagerActor: ActorRef,
                                        driverConstructor: (DriverSettings) => Driver[T],
                                        pingDuration: FiniteDuration,
                                        settings: SchedoscopeSettings,
-                                       hdfs: FileSystem) extends Actor {
+                                       hdfs: FileSystem,
+                                       warmUpDriver: Boolean) extends Actor with Stash {
 
   import context._
 
@@ -53,44 +59,152 @@ class DriverActor[T <: Transformation](transformationManagerActor: ActorRef,
 
   var runningCommand: Option[DriverCommand] = None
 
+  var pendingTick: Option[Cancellable] = None
+
+  var speculativeRun: Option[DriverRunHandle[T]] = None
+
+  var speculated = false
+
+  var pendingWarmUpTimeout: Option[Cancellable] = None
+
+  /**
+    * Number of transformation commands stashed until the actor becomes active.
+    */
+  var stashedCommands = 0
+
+  var pendingVerifications = 0
+
   val driverRouter = context.parent
 
+  val outputVerifier = ViewOutputVerifier(hdfs, settings.userGroupInformation, system.dispatchers.lookup("akka.actor.output-verification-dispatcher"))
+
+  val completionHandlerExecutor = CompletionHandlerExecutor.forDriver(ds)
+
 
   /**
-    * Log state upon start.
+    * Initialize the driver and, if requested, warm up its connections. The actor reports to have booted - and
+    * thus starts accepting work - once the warm-up has finished or timed out.
     */
   override def preStart() {
+    val startedAt = System.currentTimeMillis()
+
     try {
       driver = driverConstructor(ds)
     } catch {
       case t: Throwable => throw RetryableDriverException("Driver actor could not initialize driver because driver constructor throws exception (HINT: if Driver Actor start failure behaviour persists, validate the respective transformation driver config in conf file). Restarting driver actor...", t)
     }
+
+    if (warmUpDriver) {
+      become(warmingUp(startedAt))
+
+      Future(driver.warmUp())(DriverActor.warmUpExecutionContext).onComplete { warmUp =>
+        self ! DriverWarmedUp(warmUp)
+      }(DriverActor.warmUpExecutionContext)
+
+      pendingWarmUpTimeout = Some(system.scheduler.scheduleOnce(ds.warmUpTimeout, self,
+        DriverWarmedUp(Failure(new TimeoutException(s"Warm-up took longer than ${ds.warmUpTimeout}")))))
+    } else
+      booted(startedAt)
+  }
+
+  /**
+    * Record the startup time of the driver and report the actor as booted.
+    */
+  def booted(startedAt: Long) {
+    SchedulerMetrics.driverStartupTime(ds.name).record(System.currentTimeMillis() - startedAt)
     logStateInfo("booted", "DRIVER ACTOR: booted")
   }
 
+  /**
+    * Message handler while the driver warms up its connections. Transformation commands are stashed until the
+    * actor becomes active rather than being rescheduled, which would only bounce them between the driver router
+    * and the driver actors still warming up.
+    * Transitions only to the default state.
+    */
+  def warmingUp(startedAt: Long) = LoggingReceive {
+    case DriverWarmedUp(warmUp) =>
+      pendingWarmUpTimeout.foreach(_.cancel())
+      pendingWarmUpTimeout = None
+
+      warmUp match {
+        case Failure(t) => log.warning(s"DRIVER ACTOR: Driver could not warm up its connections, accepting work regardless: ${t}")
+        case _ =>
+      }
+
+      booted(startedAt)
+      become(receive)
+
+    case _: DriverCommand => stashCommand()
+
+    case v: ViewOutputVerified => viewOutputVerified(v)
+
+    case "reboot" => throw new RetryableDriverException()
+  }
+
   /**
     * If the driver actor is being restarted by the driver router actor, the currently running action is re-distributed to driver router for load balancing to another worker, and so it does not get lost.
     */
   override def preRestart(reason: Throwable, message: Option[Any]) {
+    pendingWarmUpTimeout.foreach(_.cancel())
+    unstashCommands()
+    speculativeRun.foreach(run => Try(driver.discardSpeculativeRun(run)))
+
     if (runningCommand.isDefined)
       driverRouter ! runningCommand.get
   }
 
+  /**
+    * If the driver actor is stopped, the transformation commands it still holds are lost. Report them as completed
+    * so that the transformation manager actor does not wait for them forever.
+    */
+  override def postStop() {
+    pendingWarmUpTimeout.foreach(_.cancel())
+
+    val heldCommands = pendingVerifications + stashedCommands + runningCommand.count(c => !c.command.isInstanceOf[DeployCommand])
+
+    (1 to heldCommands).foreach(_ => commandCompleted())
+  }
+
+  /**
+    * Hold back a transformation command until the actor becomes active.
+    */
+  def stashCommand() {
+    stashedCommands += 1
+    stash()
+  }
+
+  /**
+    * Put the stashed commands back into the mailbox.
+    */
+  def unstashCommands() {
+    unstashAll()
+    stashedCommands = 0
+  }
+
   /**
     * Provide continuous ticking in default state
     */
   def tick() {
-    system.scheduler.scheduleOnce(pingDuration, self, "tick")
+    pendingTick.foreach(_.cancel())
+    pendingTick = Some(system.scheduler.scheduleOnce(pingDuration, self, "tick"))
   }
 
   /**
-    * Message handler for the default state.
+    * Message handler for the default state. Transformation commands are stashed until the first tick activates
+    * the actor, which then runs them itself.
     * Transitions only to state activeReceive
     */
   def receive = LoggingReceive {
-    case "tick" => toActiveReceive()
+    case "tick" =>
+      toActiveReceive()
+      unstashCommands()
 
-    case c: DriverCommand => driverRouter ! c
+    case _: DriverCommand => stashCommand()
+
+    case v: ViewOutputVerified => viewOutputVerified(v)
+
+    // the outcome of a warm-up arriving after its timeout
+    case _: DriverWarmedUp =>
 
     case "reboot" => throw new RetryableDriverException()
   }
@@ -103,6 +217,12 @@ class DriverActor[T <: Transformation](transformationManagerActor: ActorRef,
   def activeReceive = LoggingReceive {
     case t: DriverCommand => toRunning(t)
 
+    case v: ViewOutputVerified => viewOutputVerified(v)
+
+    case _: DriverRunStateChanged =>
+
+    case _: DriverWarmedUp =>
+
     case "reboot" => throw new RetryableDriverException()
   }
 
@@ -115,100 +235,252 @@ class DriverActor[T <: Transformation](transformationManagerActor: ActorRef,
   def running(runHandle: DriverRunHandle[T], originalSender: ActorRef, transformingView: Option[View]): Receive = LoggingReceive {
     case KillCommand() => {
       driver.killRun(runHandle)
+      speculativeRun.foreach(driver.discardSpeculativeRun)
+      commandCompleted()
       toActiveReceive()
     }
     // If getting a command while being busy, reschedule it by sending it to the driver router for load balancing
     case c: DriverCommand => driverRouter ! c
 
+    case v: ViewOutputVerified => viewOutputVerified(v)
+
     // check all 10 seconds the state of the current running driver
-    case "tick" => try {
-      driver.getDriverRunState(runHandle) match {
-        case _: DriverRunOngoing[T] => tick()
+    case "tick" => checkDriverRunState(runHandle, originalSender, transformingView, ongoing = {
+      speculateIfStraggling(runHandle)
+      tick()
+    })
 
-        case success: DriverRunSucceeded[T] => {
+    // drivers pushing state changes of the current run make us check right away
+    case DriverRunStateChanged(changedRunHandle) =>
+      if ((changedRunHandle eq runHandle) || speculativeRun.exists(_ eq changedRunHandle))
+        checkDriverRunState(runHandle, originalSender, transformingView, ongoing = {})
 
-          log.info(s"DRIVER ACTOR: Driver run for handle=${runHandle} succeeded.")
+    case _: DriverWarmedUp =>
+
+    case "reboot" => throw new RetryableDriverException(s"Received reboot command from ${sender.path.toStringWithoutAddress}")
+
+  }
 
+  /**
+    * Invoke the completion handlers of a failed driver run. As the run has failed already, exceptions raised by a
+    * handler are logged along with the handler's class instead of being passed on, and the remaining handlers are
+    * still invoked.
+    */
+  def completeFailedRun(runHandle: DriverRunHandle[T]) =
+    driver.driverRunCompleted(runHandle, new CompletionHandlerExecutor {
+      def execute(transformationName: String, handler: DriverRunCompletionHandler[_])(invocation: => Unit) {
+        completionHandlerExecutor.execute(transformationName, handler) {
           try {
-            driver.driverRunCompleted(runHandle)
+            invocation
           } catch {
             case d: RetryableDriverException => throw d
 
-            case t: Throwable => {
-              log.error(s"DRIVER ACTOR: Driver run for handle=${runHandle} failed because completion handler threw exception ${t}, trace ${ExceptionUtils.getStackTrace(t)}")
+            case t: Throwable =>
+              log.error(s"DRIVER ACTOR: Completion handler ${handler.getClass.getName} failed for failed driver run with handle=${runHandle}: ${t}, trace ${ExceptionUtils.getStackTrace(t)}")
+          }
+        }
+      }
+    })
+
+  /**
+    * Check the state of the current driver run and report its result once it has finished.
+    *
+    * @param ongoing what to do if the run is still ongoing
+    */
+  def checkDriverRunState(originalRunHandle: DriverRunHandle[T], originalSender: ActorRef, transformingView: Option[View], ongoing: => Unit): Unit = try {
+    val (runHandle, runState) = decidingRunState(originalRunHandle)
+
+    runState match {
+      case _: DriverRunOngoing[T] => ongoing
+
+      case success: DriverRunSucceeded[T] => {
+
+        log.info(s"DRIVER ACTOR: Driver run for handle=${runHandle} succeeded.")
+        reportRunFinished(originalRunHandle, succeeded = true)
+        recordRunTime(runHandle)
+
+        val completionHandlerSucceeded = try {
+          driver.driverRunCompleted(runHandle, completionHandlerExecutor)
+          true
+        } catch {
+          case d: RetryableDriverException => throw d
 
-              sendTransformationResult(transformingView,
-                originalSender,
-                TransformationFailure(runHandle, DriverRunFailed[T](driver, "Completition handler failed", t)))
-              toActiveReceive()
-            }
+          case t: Throwable => {
+            log.error(s"DRIVER ACTOR: Driver run for handle=${runHandle} failed because completion handler threw exception ${t}, trace ${ExceptionUtils.getStackTrace(t)}")
+
+            sendTransformationResult(transformingView,
+              originalSender,
+              TransformationFailure(runHandle, DriverRunFailed[T](driver, "Completition handler failed", t)))
+            false
           }
+        }
 
-          //check if transformation produced some data
-          val viewHasData = transformingView match {
-            case Some(view) =>
-              if (runHandle.transformation.isInstanceOf[NoOp]) {
-                successFlagExists(view)
-              } else {
-                !folderEmpty(view)
+        if (completionHandlerSucceeded) transformingView match {
+          case Some(view) =>
+            //check asynchronously if transformation produced some data
+            val command = runningCommand.get
+            pendingVerifications += 1
+
+            outputVerifier
+              .hasData(view.fullPath, successFlag = runHandle.transformation.isInstanceOf[NoOp])
+              .onComplete { viewHasData =>
+                self ! ViewOutputVerified(command, view, originalSender, viewHasData.map(TransformationSuccess(runHandle, success, _)))
               }
-            case None =>
-              false
-          }
 
-          sendTransformationResult(transformingView,
-            originalSender,
-            TransformationSuccess(runHandle, success, viewHasData))
-          toActiveReceive()
+          case None =>
+            sendTransformationResult(None,
+              originalSender,
+              TransformationSuccess(runHandle, success, false))
         }
 
-        case failure: DriverRunFailed[T] => {
-          log.error(s"DRIVER ACTOR: Driver run for handle=${runHandle} failed. ${failure.reason}, cause ${failure.cause}, trace ${if (failure.cause != null) ExceptionUtils.getStackTrace(failure.cause) else "no trace available"}")
+        toActiveReceive()
+      }
 
-          try {
-            driver.driverRunCompleted(runHandle)
-          } catch {
-            case d: RetryableDriverException => throw d
+      case failure: DriverRunFailed[T] => {
+        log.error(s"DRIVER ACTOR: Driver run for handle=${runHandle} failed. ${failure.reason}, cause ${failure.cause}, trace ${if (failure.cause != null) ExceptionUtils.getStackTrace(failure.cause) else "no trace available"}")
+        reportRunFinished(runHandle, succeeded = false)
 
-            case t: Throwable => {
-            }
-          }
+        try {
+          completeFailedRun(runHandle)
+        } catch {
+          case d: RetryableDriverException => throw d
 
-          sendTransformationResult(transformingView,
-            originalSender,
-            TransformationFailure(runHandle, failure))
-          toActiveReceive()
+          case t: Throwable => {
+            log.error(s"DRIVER ACTOR: Completion handlers for failed driver run with handle=${runHandle} could not be invoked: ${t}, trace ${ExceptionUtils.getStackTrace(t)}")
+          }
         }
-      }
-    } catch {
-      case exception: RetryableDriverException => {
-        log.error(s"DRIVER ACTOR: Driver exception caught by driver actor in running state, rethrowing: ${exception.message}, cause ${exception.cause}, trace ${ExceptionUtils.getStackTrace(exception)}")
-        throw exception
-      }
 
-      case t: Throwable => {
-        log.error(s"DRIVER ACTOR: Unexpected exception caught by driver actor in running state, rethrowing: ${t.getMessage()}, cause ${t.getCause()}, trace ${ExceptionUtils.getStackTrace(t)}")
-        throw t
+        sendTransformationResult(transformingView,
+          originalSender,
+          TransformationFailure(runHandle, failure))
+        toActiveReceive()
       }
     }
+  } catch {
+    case exception: RetryableDriverException => {
+      log.error(s"DRIVER ACTOR: Driver exception caught by driver actor in running state, rethrowing: ${exception.message}, cause ${exception.cause}, trace ${ExceptionUtils.getStackTrace(exception)}")
+      throw exception
+    }
 
-    case "reboot" => throw new RetryableDriverException(s"Received reboot command from ${sender.path.toStringWithoutAddress}")
+    case t: Throwable => {
+      log.error(s"DRIVER ACTOR: Unexpected exception caught by driver actor in running state, rethrowing: ${t.getMessage()}, cause ${t.getCause()}, trace ${ExceptionUtils.getStackTrace(t)}")
+      throw t
+    }
+  }
+
+  /**
+    * Determine the run deciding the outcome of the current transformation along with its state. This is the
+    * original run unless a speculative duplicate of it has succeeded first. In that case, the original run is
+    * killed and the output of the duplicate committed. A duplicate losing against the original run or failing
+    * is discarded.
+    */
+  def decidingRunState(runHandle: DriverRunHandle[T]): (DriverRunHandle[T], DriverRunState[T]) = {
+    val runState = driver.getDriverRunState(runHandle)
+
+    speculativeRun match {
+      case Some(speculativeRunHandle) if runState.isInstanceOf[DriverRunOngoing[T]] =>
+        driver.getDriverRunState(speculativeRunHandle) match {
+          case speculativeSuccess: DriverRunSucceeded[T] =>
+            log.info(s"DRIVER ACTOR: Speculative driver run for handle=${speculativeRunHandle} succeeded before original run, committing its output")
+            speculativeRun = None
+            driver.killRun(runHandle)
+            driver.commitSpeculativeRun(speculativeRunHandle)
+            (speculativeRunHandle, speculativeSuccess)
+
+          case _: DriverRunFailed[T] =>
+            log.warning(s"DRIVER ACTOR: Speculative driver run for handle=${speculativeRunHandle} failed, waiting for original run")
+            speculativeRun = None
+            driver.discardSpeculativeRun(speculativeRunHandle)
+            (runHandle, runState)
+
+          case _ => (runHandle, runState)
+        }
+
+      case Some(speculativeRunHandle) =>
+        speculativeRun = None
+        driver.discardSpeculativeRun(speculativeRunHandle)
+        (runHandle, runState)
+
+      case None => (runHandle, runState)
+    }
+  }
+
+  /**
+    * Start a speculative duplicate of the given run if it has been running longer than the configured
+    * multiple of the 95th run time percentile of its transformation. Each run is duplicated at most once.
+    */
+  def speculateIfStraggling(runHandle: DriverRunHandle[T]) {
+    if (!speculated && ds.speculationMultiple > 0)
+      RunTimePercentiles.percentile(driver.transformationName, runHandle.transformation.checksum, 95, ds.speculationMinimumRuns).foreach { p95 =>
+        val runtimeMillis = new LocalDateTime().toDateTime.getMillis - runHandle.started.toDateTime.getMillis
+
+        if (runtimeMillis > p95 * ds.speculationMultiple) {
+          speculated = true
+          speculativeRun = driver.runSpeculatively(runHandle)
+
+          speculativeRun.foreach { speculativeRunHandle =>
+            log.info(s"DRIVER ACTOR: Driver run for handle=${runHandle} straggling after ${runtimeMillis}ms (p95 ${p95}ms), started speculative run ${speculativeRunHandle}")
+            speculativeRunHandle.onStateChange(() => self ! DriverRunStateChanged(speculativeRunHandle))
+          }
+        }
+      }
+  }
+
+  /**
+    * Record the run time of a successful run for deciding upon speculative execution.
+    */
+  def recordRunTime(runHandle: DriverRunHandle[T]) {
+    if (ds.speculationMultiple > 0)
+      RunTimePercentiles.record(driver.transformationName, runHandle.transformation.checksum,
+        new LocalDateTime().toDateTime.getMillis - runHandle.started.toDateTime.getMillis)
+  }
+
+  /**
+    * Report the success of a transformation once its output has been checked. If the output could not be checked,
+    * the transformation is rescheduled via the driver router.
+    */
+  def viewOutputVerified(verified: ViewOutputVerified) {
+    pendingVerifications = math.max(pendingVerifications - 1, 0)
 
+    verified match {
+      case ViewOutputVerified(_, view, originalSender, Success(transformationSuccess)) =>
+        sendTransformationResult(Some(view), originalSender, transformationSuccess)
+
+      case ViewOutputVerified(command, view, _, Failure(t)) =>
+        log.error(s"DRIVER ACTOR: Could not check output of view ${view} after successful transformation, rescheduling: ${t}, trace ${ExceptionUtils.getStackTrace(t)}")
+        driverRouter ! command
+    }
   }
 
+  /**
+    * Send the result of a transformation command to the requester, completing the command.
+    */
   def sendTransformationResult(transformingView: Option[View], actorRef: ActorRef, msg: AnyRef): Unit = {
     val message = transformingView match {
       case Some(v) => CommandForView(None, v, msg)
       case None => msg
     }
+    commandCompleted()
     actorRef ! message
   }
 
+  /**
+    * Notify the transformation manager actor that a transformation command dispatched to it has been completed.
+    */
+  def commandCompleted() {
+    transformationManagerActor ! TransformationCommandCompleted(ds.name)
+  }
+
   /**
     * State transition to default state.
     */
   def toActiveReceive() {
     runningCommand = None
+    speculativeRun = None
+    speculated = false
+
+    pendingTick.foreach(_.cancel())
+    pendingTick = None
 
     logStateInfo("idle", "DRIVER ACTOR: becoming idle")
 
@@ -241,6 +513,7 @@ class DriverActor[T <: Transformation](transformationManagerActor: ActorRef,
 
           val runHandle = driver.run(transformation)
           driver.driverRunStarted(runHandle)
+          runHandle.onStateChange(() => self ! DriverRunStateChanged(runHandle))
 
           logStateInfo("running", s"DRIVER ACTOR: Running transformation ${transformation}, configuration=${transformation.configuration}, runHandle=${runHandle}", runHandle, driver.getDriverRunState(runHandle))
           tick()
@@ -250,6 +523,7 @@ class DriverActor[T <: Transformation](transformationManagerActor: ActorRef,
 
           val runHandle = driver.run(transformation)
           driver.driverRunStarted(runHandle)
+          runHandle.onStateChange(() => self ! DriverRunStateChanged(runHandle))
 
           logStateInfo("running", s"DRIVER ACTOR: Running transformation ${transformation}, configuration=${transformation.configuration}, runHandle=${runHandle}", runHandle, driver.getDriverRunState(runHandle))
           tick()
@@ -275,33 +549,57 @@ class DriverActor[T <: Transformation](transformationManagerActor: ActorRef,
     log.info(message)
   }
 
-  def successFlagExists(view: View) = settings
-    .userGroupInformation.doAs(
-    new PrivilegedAction[Boolean]() {
-      def run() = {
-        hdfs.exists(new Path(view.fullPath + "/_SUCCESS"))
-      }
-    })
+  def reportRunFinished(runHandle: DriverRunHandle[T], succeeded: Boolean) {
+    val runtimeMillis = new LocalDateTime().toDateTime.getMillis - runHandle.started.toDateTime.getMillis
 
-  def folderEmpty(view: View) = settings
-    .userGroupInformation.doAs(
-    new PrivilegedAction[Array[FileStatus]]() {
-      def run() = {
-        hdfs.listStatus(new Path(view.fullPath), new PathFilter() {
-          def accept(p: Path): Boolean = !p.getName.startsWith("_")
-        })
-      }
-    })
-    .foldLeft(0l) {
-      (size, status) => size + status.getLen
-    } <= 0
+    SchedulerMetrics.driverRunTime(driver.transformationName).record(runtimeMillis)
+    transformationManagerActor ! TransformationRunFinished(driver.transformationName, succeeded, runtimeMillis)
+  }
 }
 
 /**
   * Factory methods for driver actors.
   */
 object DriverActor {
-  def props(settings: SchedoscopeSettings, transformationName: String, transformationManager: ActorRef, hdfs: FileSystem): Props =
+
+  /**
+    * Result of checking the output of a succeeded transformation, sent by a driver actor to itself.
+    */
+  case class ViewOutputVerified(command: DriverCommand, view: View, originalSender: ActorRef, transformationSuccess: Try[TransformationSuccess[_]])
+
+  /**
+    * Notification sent to a driver actor by a driver run whose driver pushes state changes.
+    */
+  case class DriverRunStateChanged(runHandle: DriverRunHandle[_])
+
+  /**
+    * Outcome of the warm-up of a driver's connections, sent by a driver actor to itself.
+    */
+  case class DriverWarmedUp(warmUp: Try[Unit])
+
+  /**
+    * Maximum number of drivers warming up at the same time.
+    */
+  val warmUpThreads = 32
+
+  /**
+    * Threads warming up drivers. Warm-ups block on connection setup and are thus kept off the driver dispatcher,
+    * letting up to warmUpThreads driver actors warm up in parallel. Idle threads are released.
+    */
+  lazy val warmUpExecutionContext = ExecutionContext.fromExecutorService {
+    val pool = new ThreadPoolExecutor(warmUpThreads, warmUpThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue[Runnable](), new ThreadFactory {
+      def newThread(r: Runnable) = {
+        val t = new Thread(r, "driver-warm-up")
+        t.setDaemon(true)
+        t
+      }
+    })
+
+    pool.allowCoreThreadTimeOut(true)
+    pool
+  }
+
+  def props(settings: SchedoscopeSettings, transformationName: String, transformationManager: ActorRef, hdfs: FileSystem, warmUpDriver: Boolean): Props =
     Props(
       classOf[DriverActor[_]],
       transformationManager,
@@ -314,13 +612,18 @@ object DriverActor {
       else
         5 seconds,
       settings,
-      hdfs: FileSystem).withDispatcher("akka.actor.driver-dispatcher")
+      hdfs: FileSystem,
+      warmUpDriver).withDispatcher("akka.actor.driver-dispatcher")
+
+  def props(settings: SchedoscopeSettings, transformationName: String, transformationManager: ActorRef, hdfs: FileSystem): Props =
+    props(settings, transformationName, transformationManager, hdfs, warmUpDriver = false)
 
-  def props(settings: SchedoscopeSettings, transformationName: String, transformationManager: ActorRef): Props =
+  def props(settings: SchedoscopeSettings, transformationName: String, transformationManager: ActorRef, warmUpDriver: Boolean = false): Props =
     props(settings,
       transformationName,
       transformationManager,
-      defaultFileSystem(settings.hadoopConf))
+      defaultFileSystem(settings.hadoopConf),
+      warmUpDriver)
 
 
 }
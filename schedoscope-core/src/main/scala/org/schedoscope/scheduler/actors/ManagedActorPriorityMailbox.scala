@@ -15,22 +15,82 @@
   */
 package org.schedoscope.scheduler.actors
 
-import akka.actor.ActorSystem
-import akka.dispatch.{PriorityGenerator, UnboundedPriorityMailbox}
+import java.util.concurrent.PriorityBlockingQueue
+import java.util.concurrent.atomic.AtomicLong
+
+import akka.actor.{ActorRef, ActorSystem}
+import akka.dispatch.{Envelope, MailboxType, MessageQueue, ProducesMessageQueue, UnboundedDequeBasedMessageQueueSemantics}
 import com.typesafe.config.Config
 
 /**
   * Schedoscope-managed actors which rely on a BackOffStrategy for activation
   * require prioritization of their activation messages, namely tick messages.
-  * The implementation of this UnboundedPriorityMailbox is done in config file
+  * The implementation of this mailbox is chosen in config file.
   *
+  * Messages of the same priority are dequeued in the order they were enqueued. Messages put back in front of the
+  * mailbox are dequeued before all other messages of the same priority. The mailbox is thus deque based, so that
+  * managed actors may stash messages.
   */
 class ManagedActorPriorityMailbox(settings: ActorSystem.Settings, config: Config)
-  extends UnboundedPriorityMailbox(
-    // Note: lower prio means more important
-    PriorityGenerator {
-      // prioritize tick for progress tracking
-      case "tick" => 0
-      // else default
-      case _ => 1
-    })
+  extends MailboxType with ProducesMessageQueue[ManagedActorPriorityMailbox.PriorityMessageQueue] {
+
+  final override def create(owner: Option[ActorRef], system: Option[ActorSystem]): MessageQueue =
+    new ManagedActorPriorityMailbox.PriorityMessageQueue()
+}
+
+object ManagedActorPriorityMailbox {
+
+  /**
+    * Priority of a message. Note: lower prio means more important
+    */
+  def priority(message: Any) = message match {
+    // prioritize tick for progress tracking
+    case "tick" => 0
+    // else default
+    case _ => 1
+  }
+
+  private case class QueuedEnvelope(envelope: Envelope, priority: Int, sequenceNumber: Long) extends Comparable[QueuedEnvelope] {
+    def compareTo(other: QueuedEnvelope) =
+      if (priority != other.priority)
+        Integer.compare(priority, other.priority)
+      else
+        java.lang.Long.compare(sequenceNumber, other.sequenceNumber)
+  }
+
+  class PriorityMessageQueue extends MessageQueue with UnboundedDequeBasedMessageQueueSemantics {
+
+    private val queue = new PriorityBlockingQueue[QueuedEnvelope]()
+
+    private val lastSequenceNumber = new AtomicLong()
+
+    private val firstSequenceNumber = new AtomicLong()
+
+    def enqueue(receiver: ActorRef, handle: Envelope) {
+      queue.add(QueuedEnvelope(handle, priority(handle.message), lastSequenceNumber.incrementAndGet()))
+    }
+
+    def enqueueFirst(receiver: ActorRef, handle: Envelope) {
+      queue.add(QueuedEnvelope(handle, priority(handle.message), firstSequenceNumber.decrementAndGet()))
+    }
+
+    def dequeue(): Envelope = {
+      val queued = queue.poll()
+      if (queued != null) queued.envelope else null
+    }
+
+    def numberOfMessages = queue.size
+
+    def hasMessages = !queue.isEmpty
+
+    def cleanUp(owner: ActorRef, deadLetters: MessageQueue) {
+      var queued = queue.poll()
+
+      while (queued != null) {
+        deadLetters.enqueue(owner, queued.envelope)
+        queued = queue.poll()
+      }
+    }
+  }
+
+}
@@ -0,0 +1,59 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.actors
+
+import akka.actor.{ActorRef, ActorSystem}
+import akka.dispatch.{Envelope, MailboxType, MessageQueue, ProducesMessageQueue, UnboundedDequeBasedMailbox}
+import com.typesafe.config.Config
+import org.schedoscope.scheduler.utils.{SchedulerMetrics, StripedCounter}
+
+/**
+  * Unbounded mailbox keeping track of the number of messages waiting in it. The depths of all mailboxes of a
+  * dispatcher are summed up in the mailbox depth metric labeled with the dispatcher's mailbox-metric setting.
+  * The implementation of this mailbox is chosen in the config file. The mailbox is deque based, so that actors
+  * on metered dispatchers may stash messages.
+  */
+class MeteredMailbox(settings: ActorSystem.Settings, config: Config) extends MailboxType with ProducesMessageQueue[MeteredMailbox.MeteredMessageQueue] {
+
+  val depth = SchedulerMetrics.mailboxDepth(
+    if (config.hasPath("mailbox-metric")) config.getString("mailbox-metric") else config.getString("id"))
+
+  final override def create(owner: Option[ActorRef], system: Option[ActorSystem]): MessageQueue =
+    new MeteredMailbox.MeteredMessageQueue(depth)
+}
+
+object MeteredMailbox {
+
+  class MeteredMessageQueue(depth: StripedCounter) extends UnboundedDequeBasedMailbox.MessageQueue {
+
+    override def enqueue(receiver: ActorRef, handle: Envelope) {
+      depth.increment()
+      super.enqueue(receiver, handle)
+    }
+
+    override def enqueueFirst(receiver: ActorRef, handle: Envelope) {
+      depth.increment()
+      super.enqueueFirst(receiver, handle)
+    }
+
+    override def dequeue(): Envelope = {
+      val envelope = super.dequeue()
+      if (envelope != null) depth.decrement()
+      envelope
+    }
+  }
+
+}
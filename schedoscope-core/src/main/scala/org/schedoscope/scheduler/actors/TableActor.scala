@@ -17,7 +17,7 @@ package org.schedoscope.scheduler.actors
 
 import java.lang.Math.pow
 
-import akka.actor.{Actor, ActorRef, Props, actorRef2Scala}
+import akka.actor.{Actor, ActorRef, Props, Stash, actorRef2Scala}
 import akka.event.{Logging, LoggingReceive}
 import org.joda.time.LocalDateTime
 import org.schedoscope.AskPattern.{queryActor, retryOnTimeout}
@@ -26,13 +26,18 @@ import org.schedoscope.dsl.View
 import org.schedoscope.dsl.transformations.{Checksum, Touch}
 import org.schedoscope.scheduler.messages._
 import org.schedoscope.scheduler.states._
+import org.schedoscope.scheduler.utils.ViewStateSnapshot
 
 import scala.collection.mutable
 import scala.concurrent.duration.Duration
 import scala.language.implicitConversions
+import scala.util.Success
 
 /**
   * Table actors manage the scheduling states of the views belonging to a given table.
+  *
+  * Views initialized from a snapshot are reconciled with the metastore before the table actor processes further
+  * messages, which are stashed in the meantime.
   */
 class TableActor(currentStates: Map[View, ViewSchedulingState],
                  settings: SchedoscopeSettings,
@@ -41,7 +46,7 @@ class TableActor(currentStates: Map[View, ViewSchedulingState],
                  transformationManagerActor: ActorRef,
                  schemaManagerRouter: ActorRef,
                  viewSchedulingListenerManagerActor: ActorRef
-                ) extends Actor {
+                ) extends Actor with Stash {
 
   import context._
 
@@ -53,111 +58,147 @@ class TableActor(currentStates: Map[View, ViewSchedulingState],
     case (view, state) => view.urlPath -> state
   }.toSeq: _*)
 
+  /**
+    * Views initialized from a snapshot whose metadata has not yet been read from the metastore.
+    */
+  val viewsToReconcile = mutable.HashMap[String, View]()
+
 
   def receive: Receive = LoggingReceive {
 
-    case CommandForView(sourceView, targetView, command) => {
+    case CommandForView(sourceView, targetView, command) =>
+      commandForView(targetView, command, AkkaActor(sourceView, sender))
 
-      //mark the currentState as implicit for calling  stateTransition
+    case CommandForViews(sourceView, targetViews, command) => {
+      initializeViews(targetViews)
 
-      implicit val currentState = viewStates.get(targetView.urlPath) match {
-        case Some(state) => state
-        case None =>
-          initializeViews(List(targetView)).head._2
+      val listener = AkkaActor(sourceView, system.deadLetters)
+      targetViews.foreach {
+        commandForView(_, command, listener)
       }
 
-      val senderRef = AkkaActor(sourceView, sender)
+      if (sender != system.deadLetters)
+        sender ! ViewStatusListResponse(Success(
+          targetViews.flatMap(v => viewStates.get(v.urlPath)).map(viewStatusResponse)
+        ))
+    }
 
-      command match {
+    case NewTableActorRef(view: View, viewRef: ActorRef) => {
+      knownDependencies += view.tableName -> viewRef
+    }
 
-        case MaterializeView(mode) => stateTransition {
-          stateMachine.materialize(currentState, senderRef, mode)
-        }
+    case InitializeViews(views) => {
+      initializeViews(views)
+    }
 
-        case MaterializeExternalView(mode) => {
-          schemaManagerRouter ! GetMetaDataForMaterialize(currentState.view, mode, senderRef)
-        }
+    case InitializeViewsFromSnapshot(metadata) => {
+      initializeViewsFromSnapshot(metadata)
+    }
 
-        case MetaDataForMaterialize(metadata, mode, source) => stateTransition {
+    case TransformationMetadata(metadata) => {
+      reconcileViews(metadata)
+    }
 
-          val externalState = metadata match {
-            case (view, (version, timestamp)) =>
-              TableActor.stateFromMetadata(view, view.transformation().checksum, timestamp)
-          }
+    case TableActor.ReconciliationTimeout =>
 
-          externalState match {
-            case CreatedByViewManager(v) =>
-              ResultingViewSchedulingState(
-                NoData(v),
-                Set(ReportNoDataAvailable(v, Set(source))))
+    case SnapshotViewStates(round) => {
+      sender ! ViewStatesSnapshot(round, viewStates.flatMap {
+        case (urlPath, state) => ViewStateSnapshot.metadataOf(state).map(urlPath -> _)
+      }.toMap)
+    }
 
-            case _ => stateMachine.materialize(externalState, source, mode)
-          }
-        }
+    case SchemaActionSuccess() => {
+      //do nothing
+    }
 
-        case InvalidateView() => stateTransition {
-          stateMachine.invalidate(currentState, senderRef)
-        }
+    case other =>
+      log.error(s"Illegal Message received by TableActor: $other")
+      throw new IllegalArgumentException(s"Illegal Message received by TableActor")
 
-        case ViewHasNoData(dependency) => stateTransition {
-          stateMachine.noDataAvailable(currentState.asInstanceOf[Waiting], dependency)
-        }
+  }
 
-        case ViewFailed(dependency) => stateTransition {
-          stateMachine.failed(currentState.asInstanceOf[Waiting], dependency)
-        }
 
-        case ViewMaterialized(dependency, incomplete, transformationTimestamp, withErrors) => stateTransition {
-          stateMachine.materialized(currentState.asInstanceOf[Waiting], dependency, transformationTimestamp, withErrors, incomplete)
-        }
+  def commandForView(targetView: View, command: AnyRef, senderRef: PartyInterestedInViewSchedulingStateChange) {
 
-        case s: TransformationSuccess[_] => stateTransition {
-          stateMachine.transformationSucceeded(currentState.asInstanceOf[Transforming], !s.viewHasData)
-        }
+    //mark the currentState as implicit for calling  stateTransition
 
-        case _: TransformationFailure[_] => stateTransition {
-          val s = currentState.asInstanceOf[Transforming]
-          val result = stateMachine.transformationFailed(s)
-          val retry = s.retry
+    implicit val currentState = viewStates.get(targetView.urlPath) match {
+      case Some(state) => state
+      case None =>
+        initializeViews(List(targetView)).head._2
+    }
+
+    command match {
+
+      case MaterializeView(mode) => stateTransition {
+        stateMachine.materialize(currentState, senderRef, mode)
+      }
 
-          result.currentState match {
-            case _: Retrying =>
-              system
-                .scheduler
-                .scheduleOnce(Duration.create(pow(2, retry).toLong, "seconds")) {
-                  self ! CommandForView(None, targetView, Retry())
-                }
+      case MaterializeExternalView(mode) => {
+        schemaManagerRouter ! GetMetaDataForMaterialize(currentState.view, mode, senderRef)
+      }
 
-              result
+      case MetaDataForMaterialize(metadata, mode, source) => stateTransition {
 
-            case _ => result
-          }
+        val externalState = metadata match {
+          case (view, (version, timestamp)) =>
+            TableActor.stateFromMetadata(view, view.transformationChecksum, timestamp)
         }
 
-        case Retry() => stateTransition {
-          stateMachine.retry(currentState.asInstanceOf[Retrying])
+        externalState match {
+          case CreatedByViewManager(v) =>
+            ResultingViewSchedulingState(
+              NoData(v),
+              Set(ReportNoDataAvailable(v, Set(source))))
+
+          case _ => stateMachine.materialize(externalState, source, mode)
         }
       }
-    }
 
-    case NewTableActorRef(view: View, viewRef: ActorRef) => {
-      knownDependencies += view.tableName -> viewRef
-    }
+      case InvalidateView() => stateTransition {
+        stateMachine.invalidate(currentState, senderRef)
+      }
 
-    case InitializeViews(views) => {
-      initializeViews(views)
-    }
+      case ViewHasNoData(dependency) => stateTransition {
+        stateMachine.noDataAvailable(currentState.asInstanceOf[Waiting], dependency)
+      }
 
-    case SchemaActionSuccess() => {
-      //do nothing
-    }
+      case ViewFailed(dependency) => stateTransition {
+        stateMachine.failed(currentState.asInstanceOf[Waiting], dependency)
+      }
 
-    case other =>
-      log.error(s"Illegal Message received by TableActor: $other")
-      throw new IllegalArgumentException(s"Illegal Message received by TableActor")
+      case ViewMaterialized(dependency, incomplete, transformationTimestamp, withErrors) => stateTransition {
+        stateMachine.materialized(currentState.asInstanceOf[Waiting], dependency, transformationTimestamp, withErrors, incomplete)
+      }
 
-  }
+      case s: TransformationSuccess[_] => stateTransition {
+        stateMachine.transformationSucceeded(currentState.asInstanceOf[Transforming], !s.viewHasData)
+      }
+
+      case _: TransformationFailure[_] => stateTransition {
+        val s = currentState.asInstanceOf[Transforming]
+        val result = stateMachine.transformationFailed(s)
+        val retry = s.retry
+
+        result.currentState match {
+          case _: Retrying =>
+            system
+              .scheduler
+              .scheduleOnce(Duration.create(pow(2, retry).toLong, "seconds")) {
+                self ! CommandForView(None, targetView, Retry())
+              }
+
+            result
 
+          case _ => result
+        }
+      }
+
+      case Retry() => stateTransition {
+        stateMachine.retry(currentState.asInstanceOf[Retrying])
+      }
+    }
+  }
 
   def stateTransition(messageApplication: ResultingViewSchedulingState)
                      (implicit currentState: ViewSchedulingState) = messageApplication match {
@@ -286,19 +327,19 @@ class TableActor(currentStates: Map[View, ViewSchedulingState],
   def stateChange(currentState: ViewSchedulingState, updatedState: ViewSchedulingState) = currentState.getClass != updatedState.getClass
 
   def communicateStateChange(newState: ViewSchedulingState, previousState: ViewSchedulingState) {
-    val vsr = newState match {
-      case Waiting(view, _, _, _, _, _, _, withErrors, incomplete, _) =>
-        ViewStatusResponse(newState.label, view, self, Some(withErrors), Some(incomplete))
-      case Transforming(view, _, _, _, withErrors, incomplete, _) =>
-        ViewStatusResponse(newState.label, view, self, Some(withErrors), Some(incomplete))
-      case Materialized(view, _, _, withErrors, incomplete) =>
-        ViewStatusResponse(newState.label, view, self, Some(withErrors), Some(incomplete))
-      case Retrying(view, _, _, _, withErrors, incomplete, _) =>
-        ViewStatusResponse(newState.label, view, self, Some(withErrors), Some(incomplete))
-      case _ => ViewStatusResponse(newState.label, newState.view, self)
-    }
+    viewManagerActor ! viewStatusResponse(newState)
+  }
 
-    viewManagerActor ! vsr
+  def viewStatusResponse(state: ViewSchedulingState) = state match {
+    case Waiting(view, _, _, _, _, _, _, withErrors, incomplete, _) =>
+      ViewStatusResponse(state.label, view, self, Some(withErrors), Some(incomplete))
+    case Transforming(view, _, _, _, withErrors, incomplete, _) =>
+      ViewStatusResponse(state.label, view, self, Some(withErrors), Some(incomplete))
+    case Materialized(view, _, _, withErrors, incomplete) =>
+      ViewStatusResponse(state.label, view, self, Some(withErrors), Some(incomplete))
+    case Retrying(view, _, _, _, withErrors, incomplete, _) =>
+      ViewStatusResponse(state.label, view, self, Some(withErrors), Some(incomplete))
+    case _ => ViewStatusResponse(state.label, state.view, self)
   }
 
   def initializeViews(views: List[View]): Map[View, ViewSchedulingState] = {
@@ -335,7 +376,7 @@ class TableActor(currentStates: Map[View, ViewSchedulingState],
 
         case (view, (version, timestamp)) => {
 
-          val initialState = TableActor.stateFromMetadata(view, if (view.isExternal) view.transformation().checksum else version, timestamp)
+          val initialState = TableActor.stateFromMetadata(view, if (view.isExternal) view.transformationChecksum else version, timestamp)
           viewStates.put(view.urlPath, initialState)
           //          sender ! ViewStatusResponse("receive", view, self)
           (view, initialState)
@@ -350,9 +391,114 @@ class TableActor(currentStates: Map[View, ViewSchedulingState],
     }
   }
 
+  /**
+    * Initialize views not yet known from snapshotted metadata without blocking on the metastore. Their partitions are
+    * then created or read asynchronously. Until the metastore has answered for all of them and their states have
+    * been reconciled, all other messages are stashed, so that no view is scheduled based on a stale snapshot.
+    */
+  def initializeViewsFromSnapshot(metadata: Map[View, (String, Long)]) {
+
+    val viewsToRestore = metadata.filterKeys(v => !viewStates.contains(v.urlPath))
+
+    if (viewsToRestore.nonEmpty) {
+
+      val reconciling = viewsToReconcile.nonEmpty
+
+      if (viewStates.isEmpty)
+        schemaManagerRouter ! CheckOrCreateTables(viewsToRestore.keys.toList)
+
+      viewsToRestore.foreach {
+        case (view, (version, timestamp)) =>
+          viewStates.put(view.urlPath, TableActor.stateFromMetadata(view, if (view.isExternal) view.transformationChecksum else version, timestamp))
+          viewsToReconcile.put(view.urlPath, view)
+      }
+
+      log.info(s"Initialized ${viewsToRestore.size} views of table ${viewsToRestore.head._1.dbName}.${viewsToRestore.head._1.n} from snapshot")
+
+      schemaManagerRouter ! AddPartitions(viewsToRestore.keys.toList)
+
+      if (!reconciling) {
+        scheduleReconciliationTimeout()
+        become(this.reconciling, discardOld = true)
+      }
+    }
+  }
+
+  def scheduleReconciliationTimeout() {
+    system.scheduler.scheduleOnce(settings.schemaTimeout, self, TableActor.ReconciliationTimeout)
+  }
+
+  /**
+    * Receive the metastore's answers for views initialized from a snapshot, stashing all other messages.
+    * Partitions of views the metastore has not answered for in time are requested again.
+    */
+  def reconciling: Receive = LoggingReceive {
+
+    case InitializeViewsFromSnapshot(metadata) => {
+      initializeViewsFromSnapshot(metadata)
+    }
+
+    case TransformationMetadata(metadata) => {
+      reconcileViews(metadata)
+    }
+
+    case TableActor.ReconciliationTimeout => {
+      log.warning(s"Metastore did not answer in time for ${viewsToReconcile.size} views initialized from snapshot, requesting their partitions again")
+
+      schemaManagerRouter ! AddPartitions(viewsToReconcile.values.toList)
+      scheduleReconciliationTimeout()
+    }
+
+    case SchemaActionSuccess() => {
+      //do nothing
+    }
+
+    case _ => stash()
+  }
+
+  /**
+    * Update the states of views initialized from a snapshot with the metadata read from the metastore. Views
+    * that have been scheduled since then keep their state, as their metadata is going to be written anyway.
+    * Once all views initialized from a snapshot have been reconciled, stashed messages are processed.
+    */
+  def reconcileViews(metadata: Map[View, (String, Long)]) {
+
+    metadata.keys.foreach(view => viewsToReconcile.remove(view.urlPath))
+
+    val reconciledViews = metadata.count {
+      case (view, (version, timestamp)) =>
+        viewStates.get(view.urlPath) match {
+          case Some(state@(_: ReadFromSchemaManager | _: CreatedByViewManager)) =>
+            val reconciledState = TableActor.stateFromMetadata(view, if (view.isExternal) view.transformationChecksum else version, timestamp)
+
+            if (reconciledState != state) {
+              viewStates.put(view.urlPath, reconciledState)
+              true
+            } else
+              false
+
+          case _ => false
+        }
+    }
+
+    if (reconciledViews > 0)
+      log.warning(s"Reconciled ${reconciledViews} views whose snapshotted state differed from the metastore")
+
+    if (viewsToReconcile.isEmpty) {
+      unstashAll()
+      become(receive, discardOld = true)
+    }
+  }
+
 }
 
 object TableActor {
+
+  /**
+    * Reminder to a table actor that the metastore has not yet answered for all views initialized from a snapshot.
+    */
+  case object ReconciliationTimeout
+
   def props(states: Map[View, ViewSchedulingState],
             settings: SchedoscopeSettings,
             dependencies: Map[String, ActorRef],
@@ -24,7 +24,7 @@ import org.schedoscope.dsl.View
 import org.schedoscope.dsl.transformations.{FilesystemTransformation, Transformation}
 import org.schedoscope.scheduler.driver.{Driver, RetryableDriverException}
 import org.schedoscope.scheduler.messages._
-import org.schedoscope.scheduler.utils.BackOffSupervision
+import org.schedoscope.scheduler.utils.{AdaptiveConcurrencyLimit, BackOffSupervision, DependencyGraph, SchedulerMetrics, TransformationQueue}
 
 import scala.collection.JavaConversions.asScalaSet
 import scala.collection.mutable.HashMap
@@ -36,9 +36,22 @@ import scala.concurrent.duration._
   * It pushes all requests to the correspondent transformation type driver router, which, in turn, load balances work
   * among its children, the Driver Actors.
   *
+  * Transformation requests are queued per transformation type and only pushed to the driver router while there are
+  * fewer transformations in flight than configured driver actors. Queued view transformations are prioritized by the
+  * number and depth of the views depending on them, with fairness across tables and aging.
+  *
+  * A dispatched command counts as in flight until a driver actor reports it as completed. Commands held back by a
+  * driver actor warming up or rescheduled within a driver router - because a driver actor was busy, restarted, or
+  * could not verify the output of a transformation - stay in flight.
+  *
+  * If adaptive concurrency is enabled, driver routers spawn as many driver actors as the maximum concurrency of their
+  * transformation type, and the number of transformations in flight per type is limited by an
+  * [[AdaptiveConcurrencyLimit]] as well as by a global limit across all types.
+  *
   */
 class TransformationManagerActor(settings: SchedoscopeSettings,
-                                 bootstrapDriverActors: Boolean) extends Actor {
+                                 bootstrapDriverActors: Boolean,
+                                 dependencyGraph: DependencyGraph) extends Actor {
 
   import context._
 
@@ -63,6 +76,18 @@ class TransformationManagerActor(settings: SchedoscopeSettings,
   }
 
   val driverStates = HashMap[String, TransformationStatusResponse[_]]()
+
+  val transformationQueues = HashMap[String, TransformationQueue]()
+
+  val transformationsInFlight = HashMap[String, Int]()
+
+  val concurrencyLimits = HashMap[String, AdaptiveConcurrencyLimit]()
+
+  /**
+    * Memoized transformation priorities per view URL path.
+    */
+  val transformationPriorities = HashMap[String, Double]()
+
   val driverActorsBackOffSupervision = new BackOffSupervision(
     managerName = "TRANSFORMATION MANAGER ACTOR",
     system = context.system)
@@ -89,6 +114,94 @@ class TransformationManagerActor(settings: SchedoscopeSettings,
 
   }
 
+  def transformationQueue(transformation: String) = transformationQueues.getOrElseUpdate(transformation,
+    new TransformationQueue(settings.transformationPriorityTableFairnessWeight, settings.transformationPriorityAgingWeight,
+      waitTimes = Some(SchedulerMetrics.driverQueueWait(transformation))))
+
+  /**
+    * The adaptive concurrency limit of the given transformation type.
+    */
+  def concurrencyLimit(transformation: String) = concurrencyLimits.getOrElseUpdate(transformation, {
+    val driverSettings = settings.getDriverSettings(transformation)
+
+    new AdaptiveConcurrencyLimit(
+      driverSettings.concurrency,
+      settings.adaptiveConcurrencyMinimum,
+      driverSettings.maxConcurrency,
+      settings.adaptiveConcurrencyBackOffRatio,
+      settings.adaptiveConcurrencyLatencyTolerance)
+  })
+
+  /**
+    * The number of transformations of the given type allowed to be in flight.
+    */
+  def transformationCapacity(transformation: String) =
+    if (settings.adaptiveConcurrencyEnabled)
+      math.min(concurrencyLimit(transformation).limit,
+        settings.adaptiveConcurrencyGlobalLimit - transformationsInFlight.values.sum + transformationsInFlight.getOrElse(transformation, 0))
+    else
+      settings.getDriverSettings(transformation).concurrency
+
+  /**
+    * Adapt the concurrency limit of a transformation type to a finished run.
+    */
+  def adaptConcurrency(runFinished: TransformationRunFinished) = if (settings.adaptiveConcurrencyEnabled) {
+    val limit = concurrencyLimit(runFinished.transformation)
+
+    limit.runCompleted(runFinished.runtimeMillis, runFinished.succeeded, transformationQueue(runFinished.transformation).size)
+      .foreach { decision =>
+        log.info(s"TRANSFORMATION MANAGER ACTOR: concurrency of ${runFinished.transformation} transformations adapted, ${decision}")
+      }
+  }
+
+  /**
+    * Free the slot of a completed transformation command and dispatch further queued commands.
+    */
+  def commandCompleted(transformation: String) {
+    transformationsInFlight.put(transformation, math.max(transformationsInFlight.getOrElse(transformation, 0) - 1, 0))
+
+    if (settings.adaptiveConcurrencyEnabled)
+      transformationQueues.keys.foreach(dispatchTransformations)
+    else
+      dispatchTransformations(transformation)
+  }
+
+  /**
+    * The priority of a view's transformation, based on the number of views transitively depending on the view and
+    * the longest chain of views depending on it. Priorities are memoized per view until further views become
+    * known to depend on the view or on one of the views depending on it.
+    */
+  def transformationPriority(view: View) = {
+    dependencyGraph.takeViewsWithChangedDependents().foreach(v => transformationPriorities.remove(v.urlPath))
+
+    transformationPriorities.getOrElseUpdate(view.urlPath,
+      settings.transformationPriorityDependentsWeight * dependencyGraph.transitiveDependentsCountOf(view) +
+        settings.transformationPriorityDepthWeight * dependencyGraph.dependentsDepthOf(view))
+  }
+
+  /**
+    * Queue a driver command for the given transformation type and dispatch queued commands if drivers are available.
+    */
+  def enqueueTransformation(transformation: String, commandToExecute: DriverCommand, table: String, priority: Double) {
+    transformationQueue(transformation).enqueue(commandToExecute, sender, table, priority)
+    dispatchTransformations(transformation)
+  }
+
+  /**
+    * Push the most urgent queued commands for the given transformation type to its driver router as long as
+    * there are fewer transformations in flight than the capacity of the transformation type.
+    */
+  def dispatchTransformations(transformation: String) {
+    val queue = transformationQueue(transformation)
+
+    while (queue.nonEmpty && transformationsInFlight.getOrElse(transformation, 0) < transformationCapacity(transformation)) {
+      val Some((commandToExecute, commandSender)) = queue.dequeue()
+
+      transformationsInFlight.put(transformation, transformationsInFlight.getOrElse(transformation, 0) + 1)
+      context.actorSelection(s"${self.path}/${transformation}-driver").tell(commandToExecute, commandSender)
+    }
+  }
+
   def getTransformationName(actor: ActorRef): String = {
     val router = actor.path.toString
       .slice(self.path.toString.size, actor.path.toString.size)
@@ -99,6 +212,7 @@ class TransformationManagerActor(settings: SchedoscopeSettings,
 
   /**
     * Create one driver router per transformation type, which themselves spawn driver actors as required by configured transformation concurrency.
+    * The driver actors warm up the connections of their drivers in parallel before accepting work.
     */
   override def preStart {
 
@@ -106,10 +220,14 @@ class TransformationManagerActor(settings: SchedoscopeSettings,
       for (transformation <- Driver.transformationsWithDrivers) {
         actorOf(
           SmallestMailboxPool(
-            nrOfInstances = settings.getDriverSettings(transformation).concurrency,
+            nrOfInstances =
+              if (settings.adaptiveConcurrencyEnabled)
+                settings.getDriverSettings(transformation).maxConcurrency
+              else
+                settings.getDriverSettings(transformation).concurrency,
             supervisorStrategy = driverRouterSupervisorStrategy,
             routerDispatcher = "akka.actor.driver-router-dispatcher"
-          ).props(routeeProps = DriverActor.props(settings, transformation, self)),
+          ).props(routeeProps = DriverActor.props(settings, transformation, self, warmUpDriver = true)),
           s"${transformation}-driver"
         )
       }
@@ -123,26 +241,37 @@ class TransformationManagerActor(settings: SchedoscopeSettings,
 
     case asr: TransformationStatusResponse[_] => manageDriverLifeCycle(asr)
 
-    case GetTransformations() => sender ! TransformationStatusListResponse(driverStates.values.toList)
+    case runFinished: TransformationRunFinished => adaptConcurrency(runFinished)
+
+    case TransformationCommandCompleted(transformation) => commandCompleted(transformation)
+
+    case GetTransformations() => sender ! TransformationStatusListResponse(
+      driverStates.values.toList,
+      transformationQueues.map {
+        case (transformation, queue) => transformation -> queue.statistics.copy(
+          inFlight = transformationsInFlight.getOrElse(transformation, 0),
+          concurrencyLimit = transformationCapacity(transformation),
+          scalingDecision = concurrencyLimits.get(transformation).map(_.lastDecision))
+      }.toMap)
 
     case commandToExecute: DriverCommand =>
       commandToExecute.command match {
         case TransformView(transformation, view) =>
-          context.actorSelection(s"${self.path}/${transformation}-driver") forward commandToExecute
+          enqueueTransformation(transformation.name, commandToExecute, view.urlPathPrefix, transformationPriority(view))
         case DeployCommand() =>
           context.actorSelection(s"${self.path}/*-driver/*") forward commandToExecute
         case transformation: Transformation =>
-          context.actorSelection(s"${self.path}/${transformation.name}-driver") forward commandToExecute
+          enqueueTransformation(transformation.name, commandToExecute, "", 0)
       }
 
     case viewToTransform: View =>
       val transformation = viewToTransform.transformation().forView(viewToTransform)
       val commandRequest = DriverCommand(TransformView(transformation, viewToTransform), sender)
-      context.actorSelection(s"${self.path}/${transformation.name}-driver") forward commandRequest
+      enqueueTransformation(transformation.name, commandRequest, viewToTransform.urlPathPrefix, transformationPriority(viewToTransform))
 
     case filesystemTransformation: FilesystemTransformation =>
       val driverCommand = DriverCommand(filesystemTransformation, sender)
-      context.actorSelection(s"${self.path}/${filesystemTransformation.name}-driver") forward driverCommand
+      enqueueTransformation(filesystemTransformation.name, driverCommand, "", 0)
 
     case deploy: DeployCommand =>
       context.actorSelection(s"${self.path}/*-driver/*") forward DriverCommand(deploy, sender)
@@ -154,8 +283,10 @@ class TransformationManagerActor(settings: SchedoscopeSettings,
   */
 object TransformationManagerActor {
   def props(settings: SchedoscopeSettings,
+            dependencyGraph: DependencyGraph,
             bootstrapDriverActors: Boolean = true) =
     Props(classOf[TransformationManagerActor],
       settings,
-      bootstrapDriverActors).withDispatcher("akka.actor.transformation-manager-dispatcher")
+      bootstrapDriverActors,
+      dependencyGraph).withDispatcher("akka.actor.transformation-manager-dispatcher")
 }
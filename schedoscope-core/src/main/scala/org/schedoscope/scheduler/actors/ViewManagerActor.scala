@@ -16,27 +16,40 @@
 package org.schedoscope.scheduler.actors
 
 import akka.actor.SupervisorStrategy.Escalate
-import akka.actor.{Actor, ActorRef, OneForOneStrategy, Props, actorRef2Scala}
+import akka.actor.{Actor, ActorRef, Cancellable, OneForOneStrategy, Props, Stash, actorRef2Scala}
 import akka.event.{Logging, LoggingReceive}
+import akka.pattern.pipe
+import org.apache.hadoop.fs.Path
 import org.schedoscope.conf.SchedoscopeSettings
 import org.schedoscope.dsl.View
+import org.schedoscope.scheduler.driver.FilesystemDriver
 import org.schedoscope.scheduler.messages._
 import org.schedoscope.scheduler.states.ViewSchedulingState
+import org.schedoscope.scheduler.utils.{DependencyGraph, ViewStateSnapshot}
 
 import scala.collection.mutable
 import scala.collection.mutable.HashMap
+import scala.concurrent.Future
 import scala.util.{Failure, Success, Try}
 
 /**
   * The view manager actor is the factory and supervisor of table actors managing all views of a table. It also serves
   * as the central access point for the schedoscope service.
   *
+  * If view state snapshots are enabled, the view manager periodically collects the transformation metadata of all
+  * views from the table actors and writes it to a snapshot. After a restart, views found in the snapshot are
+  * initialized from it instead of waiting for the metastore.
+  *
+  * Before table actors for views not yet known can be handed out, the dependency graph of these views needs to be
+  * expanded. Expansion happens asynchronously; the result is sent back to the view manager as a message. While an
+  * expansion is pending, further view requests are stashed, so that requests are answered in order.
   */
 class ViewManagerActor(settings: SchedoscopeSettings,
                        actionsManagerActor: ActorRef,
                        schemaManagerRouter: ActorRef,
-                       viewSchedulingListenerManagerActor: ActorRef
-                      ) extends Actor {
+                       viewSchedulingListenerManagerActor: ActorRef,
+                       dependencyGraph: DependencyGraph
+                      ) extends Actor with Stash {
 
   import ViewManagerActor._
   import context._
@@ -53,20 +66,130 @@ class ViewManagerActor(settings: SchedoscopeSettings,
 
   val viewStatusMap = HashMap[String, ViewStatusResponse]()
 
+  /**
+    * URL paths of all views in the view status map in order, to page through view states without sorting them.
+    */
+  val viewUrlPaths = mutable.TreeSet[String]()
+
+  /**
+    * Snapshotted metadata of views not yet requested since startup, per view URL path.
+    */
+  val restoredMetadata = HashMap[String, (String, Long)]()
+
+  var snapshotSchedule: Option[Cancellable] = None
+
+  var snapshotRound = 0l
+
+  var pendingSnapshots = 0
+
+  val snapshotMetadata = HashMap[String, (String, Long)]()
+
+  var expandingDependencyGraph = false
+
+  /**
+    * Load the view state snapshot, if enabled, and schedule writing snapshots.
+    */
+  override def preStart() {
+    if (settings.stateSnapshotEnabled) {
+      try {
+        val startLoading = System.currentTimeMillis()
+        restoredMetadata ++= ViewStateSnapshot.read(snapshotFileSystem, new Path(settings.stateSnapshotLocation))
+        log.info(s"Loaded snapshotted states of ${restoredMetadata.size} views in ${System.currentTimeMillis() - startLoading} ms")
+      } catch {
+        case t: Throwable => log.warning(s"Could not load view state snapshot from ${settings.stateSnapshotLocation}, initializing views from metastore: ${t}")
+      }
+
+      snapshotSchedule = Some(system.scheduler.schedule(settings.stateSnapshotInterval, settings.stateSnapshotInterval, self, TakeStateSnapshot))
+    }
+  }
+
+  override def postStop() {
+    snapshotSchedule.foreach(_.cancel())
+  }
+
   /**
     * Message handler.
     */
   def receive = LoggingReceive({
 
     case vsr: ViewStatusResponse =>
-      viewStatusMap.put(vsr.view.urlPath, vsr)
+      putViewStatus(vsr)
+
+    case TakeStateSnapshot =>
+      if (pendingSnapshots > 0)
+        log.warning(s"Discarding incomplete view state snapshot ${snapshotRound}, ${pendingSnapshots} table actors did not answer")
+
+      snapshotRound += 1
+      pendingSnapshots = children.size
+      snapshotMetadata.clear()
+
+      children.foreach(_ ! SnapshotViewStates(snapshotRound))
+
+    case ViewStatesSnapshot(round, metadata) =>
+      if (round == snapshotRound && pendingSnapshots > 0) {
+        snapshotMetadata ++= metadata
+        pendingSnapshots -= 1
+
+        if (pendingSnapshots == 0)
+          writeSnapshot((restoredMetadata ++ snapshotMetadata).toList)
+      }
+
+    case DependencyGraphExpanded(msg, requester, expansion) =>
+      expandingDependencyGraph = false
+      unstashAll()
+      handleViewRequest(msg, requester, expansion)
+
+    case msg@GetViews(views, _, _, _, _, _, _, _, _) =>
+      viewRequest(msg, views.getOrElse(List()).toSet)
+
+    case v: View =>
+      viewRequest(v, Set(v))
+
+    case msg@DelegateMessageToView(v, _) =>
+      viewRequest(msg, Set(v))
+
+  })
+
+  /**
+    * Handles a request addressing the given views right away if all of them are known. Otherwise, the dependency
+    * graph of the views is expanded asynchronously before the request is handled. Only one expansion is pending
+    * at a time, so all view requests arriving meanwhile are stashed, even those for known views. This way, requests
+    * are answered in the order they were received.
+    */
+  def viewRequest(msg: Any, vs: Set[View]) {
+    if (expandingDependencyGraph)
+      stash()
+    else if (vs.forall(v => viewStatusMap.contains(v.urlPath)))
+      handleViewRequest(msg, sender, Success(()))
+    else {
+      expandingDependencyGraph = true
+
+      val requester = sender
+
+      dependencyGraph.expand(vs.toList)
+        .map(_ => DependencyGraphExpanded(msg, requester, Success(())))
+        .recover { case t: Throwable => DependencyGraphExpanded(msg, requester, Failure(t)) } pipeTo self
+    }
+  }
 
-    case GetViews(views, status, filter, issueFilter, withDependencies) =>
-      tableActorsForViews(views.getOrElse(List()).toSet, withDependencies) match {
+  /**
+    * Handles a request addressing views once the dependency graph of these views has been expanded.
+    */
+  def handleViewRequest(msg: Any, requester: ActorRef, expansion: Try[Unit]) = msg match {
+
+    case GetViews(views, status, filter, issueFilter, withDependencies, table, offset, after, limit) =>
+      tableActorsForViews(views.getOrElse(List()).toSet, withDependencies, expansion) match {
         case Success(tableActors) =>
-          val viewStates = viewStatusMap.values
+          val urlPaths = after match {
+            case Some(previousUrlPath) => viewUrlPaths.from(previousUrlPath).iterator.dropWhile(_ == previousUrlPath)
+            case None => viewUrlPaths.iterator
+          }
+
+          val viewStates = urlPaths
+            .map(viewStatusMap)
             .filter(vs => views.isEmpty || tableActors.contains(vs.view))
             .filter(vs => status.isEmpty || status.get.equals(vs.status))
+            .filter(vs => table.isEmpty || table.get.equals(vs.view.tableName) || table.get.equals(vs.view.n))
             .filter(vs => filter.isEmpty || vs.view.urlPath.matches(filter.get))
             .filter(vs => issueFilter.isEmpty || (
               List("materialized", "failed").contains(vs.status) && (
@@ -75,31 +198,75 @@ class ViewManagerActor(settings: SchedoscopeSettings,
                   || (issueFilter.get.contains("AND") && vs.incomplete.getOrElse(false) && vs.errors.getOrElse(false))
                 )
               )
-            ).toList.distinct
+            )
+
+          val pageOffset = math.max(offset.getOrElse(0), 0)
+          val pageEnd = limit.map(pageOffset + math.max(_, 0))
+
+          if (after.isDefined)
+            requester ! ViewStatusListResponse(Success(viewStates.slice(pageOffset, pageEnd.getOrElse(Int.MaxValue)).toList))
+          else {
+            val pageViewStates = mutable.ListBuffer[ViewStatusResponse]()
+            val overview = HashMap[String, Int]()
+            var total = 0
 
-          sender ! ViewStatusListResponse(Success(viewStates))
+            viewStates.foreach { vs =>
+              if (total >= pageOffset && pageEnd.forall(total < _))
+                pageViewStates += vs
 
-        case Failure(t) => sender ! ViewStatusListResponse(Failure(t))
+              overview.put(vs.status, overview.getOrElse(vs.status, 0) + 1)
+              total += 1
+            }
+
+            requester ! ViewStatusListResponse(Success(pageViewStates.toList), overview.toMap, total)
+          }
+
+        case Failure(t) => requester ! ViewStatusListResponse(Failure(t))
       }
 
     case v: View =>
-      tableActorForView(v) match {
+      tableActorsForViews(Set(v), false, expansion).map(_ (v)) match {
         case Success(a) =>
-          sender ! a
+          requester ! a
 
         case Failure(t) => throw t
       }
 
     case DelegateMessageToView(v, msg) =>
-      tableActorForView(v) match {
+      tableActorsForViews(Set(v), false, expansion).map(_ (v)) match {
         case Success(a) =>
-          a forward msg
-          sender ! NewTableActorRef(v, a)
+          a.tell(msg, requester)
+          requester ! NewTableActorRef(v, a)
 
         case Failure(t) => throw t
       }
+  }
 
-  })
+  /**
+    * Register the state of a view in the view status map and its URL path in the ordered index.
+    */
+  def putViewStatus(vsr: ViewStatusResponse) {
+    viewStatusMap.put(vsr.view.urlPath, vsr)
+    viewUrlPaths += vsr.view.urlPath
+  }
+
+  /**
+    * Write a view state snapshot asynchronously, so that the view manager stays responsive.
+    */
+  def writeSnapshot(metadata: List[(String, (String, Long))]) {
+    val snapshotExecutionContext = system.dispatchers.lookup("akka.actor.state-snapshot-dispatcher")
+
+    val round = snapshotRound
+
+    Future {
+      ViewStateSnapshot.write(snapshotFileSystem, new Path(settings.stateSnapshotLocation), metadata)
+    }(snapshotExecutionContext).onComplete {
+      case Success(views) => log.info(s"Wrote view state snapshot ${round} of ${views} views to ${settings.stateSnapshotLocation}")
+      case Failure(t) => log.warning(s"Could not write view state snapshot ${round} to ${settings.stateSnapshotLocation}: ${t}")
+    }(snapshotExecutionContext)
+  }
+
+  def snapshotFileSystem = FilesystemDriver.fileSystem(settings.stateSnapshotLocation, settings.hadoopConf)
 
   /**
     * Convenience "private" method to validate external Views and their dependencies
@@ -128,28 +295,22 @@ class ViewManagerActor(settings: SchedoscopeSettings,
     }
   }
 
-  /**
-    * This method returns the table actor for the given view, creating it if necessary.
-    *
-    * @param v the view to obtain table actor for
-    * @return the actor or a failure if the view or a dependency could not be initialized
-    */
-  def tableActorForView(v: View): Try[ActorRef] = tableActorsForViews(Set(v), false).map(_ (v))
-
   /**
     * This method returns the table actors for the given views, creating them if necessary.
     *
     * @param vs               the views to obtain table actors for
-    * @param withDependencies includes the dependencies of the given views (defaults to false)
+    * @param withDependencies includes the dependencies of the given views
+    * @param expansion        the outcome of expanding the dependency graph of the views
     * @return a map assigning each view its responsible table actor or a failure if some dependencies of the views could
     *         not be instantiated for some reason. Note that other problems will still raise an exception and
     *         terminate the actor system and thereby Schedoscope.
     */
-  def tableActorsForViews(vs: Set[View], withDependencies: Boolean = false): Try[Map[View, ActorRef]] = {
+  def tableActorsForViews(vs: Set[View], withDependencies: Boolean, expansion: Try[Unit]): Try[Map[View, ActorRef]] = {
 
     log.info(s"Looking for unknown views or dependencies for a set of ${vs.size} views.")
 
     val viewsRequiringInitialization = try {
+      expansion.get
       unknownViewsOrDependencies(vs.toList)
     } catch {
       case t: Throwable => return Failure(new IllegalArgumentException("Some dependencies of the views passed could not be instantiated by the view manager", t))
@@ -183,9 +344,17 @@ class ViewManagerActor(settings: SchedoscopeSettings,
         )
       )
 
-      tableActorRef ! InitializeViews(vst)
+      val (restorableViews, viewsToInitialize) = vst.partition(v => restoredMetadata.contains(v.urlPath))
 
-      vst.foreach(v => viewStatusMap.put(v.urlPath, ViewStatusResponse("receive", v, tableActorRef)))
+      if (restorableViews.nonEmpty) {
+        tableActorRef ! InitializeViewsFromSnapshot(restorableViews.map(v => v -> restoredMetadata(v.urlPath)).toMap)
+        restoredMetadata --= restorableViews.map(_.urlPath)
+      }
+
+      if (viewsToInitialize.nonEmpty)
+        tableActorRef ! InitializeViews(viewsToInitialize)
+
+      vst.foreach(v => putViewStatus(ViewStatusResponse("receive", v, tableActorRef)))
     }
 
     //
@@ -193,8 +362,8 @@ class ViewManagerActor(settings: SchedoscopeSettings,
     //
     viewsPerTable.flatten.foreach { v =>
 
-      val newDepsActorRefs = v
-        .dependencies
+      val newDepsActorRefs = dependencyGraph
+        .dependenciesOf(v)
         .flatMap(v => existingTableActorForView(v).map(NewTableActorRef(v, _)))
 
       existingTableActorForView(v) match {
@@ -212,7 +381,7 @@ class ViewManagerActor(settings: SchedoscopeSettings,
     //
     val addressedViews =
     if (withDependencies)
-      vs ++ vs.flatMap(_.transitiveDependencies)
+      vs ++ vs.flatMap(dependencyGraph.transitiveDependenciesOf)
     else
       vs
 
@@ -235,7 +404,7 @@ class ViewManagerActor(settings: SchedoscopeSettings,
         List()
       } else {
         visited.add(v)
-        v :: unknownViewsOrDependencies(v.dependencies, visited)
+        v :: unknownViewsOrDependencies(dependencyGraph.dependenciesOf(v), visited)
       }
     }
 
@@ -254,10 +423,22 @@ object ViewManagerActor {
   def props(settings: SchedoscopeSettings,
             actionsManagerActor: ActorRef,
             schemaManagerRouter: ActorRef,
-            viewSchedulingListenerManagerActor: ActorRef): Props =
+            viewSchedulingListenerManagerActor: ActorRef,
+            dependencyGraph: DependencyGraph): Props =
     Props(classOf[ViewManagerActor], settings: SchedoscopeSettings,
-      actionsManagerActor, schemaManagerRouter, viewSchedulingListenerManagerActor)
+      actionsManagerActor, schemaManagerRouter, viewSchedulingListenerManagerActor, dependencyGraph)
       .withDispatcher("akka.actor.view-manager-dispatcher")
 
   def tableActorNameForView(view: View): String = view.urlPathPrefix.replaceAll("/", ":")
+
+  /**
+    * Tick triggering a view state snapshot, sent by the view manager actor to itself.
+    */
+  case object TakeStateSnapshot
+
+  /**
+    * Outcome of expanding the dependency graph of the views addressed by a request, sent by the view manager actor
+    * to itself.
+    */
+  case class DependencyGraphExpanded(msg: Any, requester: ActorRef, expansion: Try[Unit])
 }
@@ -35,7 +35,7 @@ class SchedoscopeCliCommandRunner(schedoscope: SchedoscopeService) {
 
   import Action._
 
-  case class Config(action: Option[Action.Value] = None, viewUrlPath: Option[String] = None, status: Option[String] = None, typ: Option[String] = None, dependencies: Option[Boolean] = Some(false), filter: Option[String] = None, issueFilter: Option[String] = None, mode: Option[String] = None, overview: Option[Boolean] = None, all: Option[Boolean] = None)
+  case class Config(action: Option[Action.Value] = None, viewUrlPath: Option[String] = None, status: Option[String] = None, typ: Option[String] = None, dependencies: Option[Boolean] = Some(false), filter: Option[String] = None, issueFilter: Option[String] = None, mode: Option[String] = None, overview: Option[Boolean] = None, all: Option[Boolean] = None, table: Option[String] = None, offset: Option[Int] = None, limit: Option[Int] = None)
 
   val parser = new scopt.OptionParser[Config]("schedoscope-control") {
     override def showUsageOnError = true
@@ -50,7 +50,10 @@ class SchedoscopeCliCommandRunner(schedoscope: SchedoscopeService) {
       opt[String]('i', "issueFilter") action { (x, c) => c.copy(issueFilter = Some(x)) } optional() valueName "<errors|incomplete>" text "filter views by the dependencies that had issues when transforming (e.g. 'errors' or 'incomplete' or 'errorsANDincomplete')",
       opt[Unit]('d', "dependencies") action { (_, c) => c.copy(dependencies = Some(true)) } optional() text "include dependencies",
       opt[Unit]('o', "overview") action { (_, c) => c.copy(overview = Some(true)) } optional() text "show only overview, skip individual views",
-      opt[Unit]('a', "all") action { (_, c) => c.copy(all = Some(true)) } optional() text "show details for views")
+      opt[Unit]('a', "all") action { (_, c) => c.copy(all = Some(true)) } optional() text "show details for views",
+      opt[String]('t', "table") action { (x, c) => c.copy(table = Some(x)) } optional() valueName "<table>" text "filter views by their table (e.g. 'my_database.my_view')",
+      opt[Int]("offset") action { (x, c) => c.copy(offset = Some(x)) } optional() valueName "<offset>" text "return views starting from the given position in view url path order",
+      opt[Int]("limit") action { (x, c) => c.copy(limit = Some(x)) } optional() valueName "<limit>" text "return at most the given number of views")
 
     cmd("transformations") action { (_, c) => c.copy(action = Some(TRANSFORMATIONS)) } text "show status of transformation drivers" children(
       opt[String]('s', "status") action { (x, c) => c.copy(status = Some(x)) } optional() valueName "<status>" text "filter transformation drivers by their status (e.g. 'running, idle')",
@@ -96,7 +99,7 @@ class SchedoscopeCliCommandRunner(schedoscope: SchedoscopeService) {
               Await.result(res, TIMEOUT)
 
             case VIEWS =>
-              val res = schedoscope.views(config.viewUrlPath, config.status, config.filter, config.issueFilter, config.dependencies, config.overview, config.all)
+              val res = schedoscope.views(config.viewUrlPath, config.status, config.filter, config.issueFilter, config.dependencies, config.overview, config.all, config.table, config.offset, config.limit)
               Await.result(res, TIMEOUT)
 
             case MATERIALIZE =>
@@ -53,6 +53,14 @@ object SchedoscopeCliFormat {
           sb.append(ASCIITable.getInstance.getTable(header, running))
           sb.append(s"Total: ${running.size}\n")
         }
+        if (as.queues.isDefined && as.queues.get.nonEmpty) {
+          val header = Array("TRANSFORMATION TYPE", "QUEUED", "OLDEST WAIT (MS)", "AVERAGE WAIT (MS)", "DEQUEUED", "IN FLIGHT", "LIMIT", "LAST SCALING")
+          val queues = as.queues.get.toSeq.sortBy(_._1).map {
+            case (typ, q) => Array(typ, q.depth.toString, q.oldestWaitMillis.toString, q.averageWaitMillis.toString, q.dequeued.toString,
+              q.inFlight.toString, q.concurrencyLimit.toString, q.scalingDecision.getOrElse(""))
+          }.toArray
+          sb.append(ASCIITable.getInstance.getTable(header, queues))
+        }
         sb.append("\n" + as.overview.map(el => s"${el._1} : ${el._2}").mkString("\n") + "\n")
       }
 
@@ -92,6 +100,10 @@ object SchedoscopeCliFormat {
           sb.append(ASCIITable.getInstance.getTable(header, data))
           sb.append(s"Total: ${data.size}\n")
         }
+        vl.page.foreach { page =>
+          sb.append(s"Page: offset ${page.offset}, limit ${page.limit} of ${page.total} views" +
+            page.nextOffset.map(nextOffset => s", next offset ${nextOffset}").getOrElse("") + "\n")
+        }
         sb.append("\n" + vl.overview.map(el => s"${el._1}: ${el._2}").mkString("\n") + "\n")
       }
 
@@ -0,0 +1,150 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.driver
+
+import java.util.concurrent.{Callable, ConcurrentHashMap, FutureTask, LinkedBlockingQueue, ScheduledThreadPoolExecutor, ThreadFactory, ThreadPoolExecutor, TimeUnit}
+
+import org.apache.commons.lang.exception.ExceptionUtils
+import org.schedoscope.conf.DriverSettings
+import org.schedoscope.scheduler.utils.SchedulerMetrics
+import org.slf4j.LoggerFactory
+
+import scala.concurrent.duration.FiniteDuration
+
+/**
+  * Decides where the completion handlers of driver runs are invoked (@see Driver.driverRunCompleted).
+  */
+trait CompletionHandlerExecutor {
+
+  /**
+    * Invoke the given completion handler of a driver run of the given transformation type.
+    */
+  def execute(transformationName: String, handler: DriverRunCompletionHandler[_])(invocation: => Unit)
+}
+
+/**
+  * Invokes completion handlers right away in the calling thread. Exceptions raised by handlers are passed
+  * on to the caller.
+  */
+object SynchronousCompletionHandlerExecutor extends CompletionHandlerExecutor {
+
+  def execute(transformationName: String, handler: DriverRunCompletionHandler[_])(invocation: => Unit) {
+    invocation
+  }
+}
+
+/**
+  * Invokes completion handlers on a bounded pool of workers, so that a driver actor does not wait for slow
+  * handlers before picking up its next transformation.
+  *
+  * Each invocation may take up to timeout; a handler still running by then is interrupted. Exceptions raised by
+  * handlers are logged only: they neither fail the transformation nor restart the driver actor.
+  *
+  * Should more than queueSize invocations be waiting for a worker, further handlers are invoked in the calling
+  * thread, slowing down the caller rather than piling up invocations.
+  *
+  * The latency of handlers and the number of waiting invocations are recorded as metrics per transformation type.
+  */
+class AsynchronousCompletionHandlerExecutor(workers: Int, queueSize: Int, timeout: FiniteDuration, metrics: SchedulerMetrics = SchedulerMetrics) extends CompletionHandlerExecutor {
+
+  private val log = LoggerFactory.getLogger(classOf[AsynchronousCompletionHandlerExecutor])
+
+  private def daemonThreads(name: String) = new ThreadFactory {
+    def newThread(r: Runnable) = {
+      val t = new Thread(r, name)
+      t.setDaemon(true)
+      t
+    }
+  }
+
+  private val pool = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS, new LinkedBlockingQueue[Runnable](queueSize),
+    daemonThreads("completion-handler"), new ThreadPoolExecutor.CallerRunsPolicy())
+
+  pool.allowCoreThreadTimeOut(true)
+
+  private val watchdog = new ScheduledThreadPoolExecutor(1, daemonThreads("completion-handler-watchdog"))
+
+  watchdog.setRemoveOnCancelPolicy(true)
+
+  def execute(transformationName: String, handler: DriverRunCompletionHandler[_])(invocation: => Unit) {
+    val queueDepth = metrics.completionHandlerQueueDepth(transformationName)
+    val latency = metrics.completionHandlerLatency(transformationName)
+    val handlerName = handler.getClass.getName
+
+    @volatile var invoker: Thread = null
+
+    lazy val task: FutureTask[Unit] = new FutureTask[Unit](new Callable[Unit] {
+      def call() {
+        invoker = Thread.currentThread()
+        queueDepth.decrement()
+
+        val timer = watchdog.schedule(new Runnable {
+          def run() = task.cancel(true)
+        }, timeout.toMillis, TimeUnit.MILLISECONDS)
+
+        try {
+          latency.time(invocation)
+        } catch {
+          case _: InterruptedException =>
+            log.error(s"Completion handler ${handlerName} for ${transformationName} transformation interrupted after timeout of ${timeout}")
+
+          case t: Throwable =>
+            log.error(s"Completion handler ${handlerName} for ${transformationName} transformation failed: ${t}, trace ${ExceptionUtils.getStackTrace(t)}")
+        } finally {
+          timer.cancel(false)
+        }
+      }
+    })
+
+    queueDepth.increment()
+    pool.execute(task)
+
+    // a handler that timed out in the calling thread must not leave that thread interrupted
+    if (task.isCancelled && (invoker eq Thread.currentThread()))
+      Thread.interrupted()
+  }
+
+  /**
+    * Number of handler invocations waiting for a worker.
+    */
+  def queued = pool.getQueue.size
+}
+
+object CompletionHandlerExecutor {
+
+  private val executors = new ConcurrentHashMap[String, CompletionHandlerExecutor]()
+
+  /**
+    * Returns the completion handler executor shared by all drivers of the given settings' transformation type.
+    * Completion handlers are invoked synchronously if completionHandlerWorkers is 0.
+    */
+  def forDriver(ds: DriverSettings): CompletionHandlerExecutor = {
+    val existingExecutor = executors.get(ds.name)
+
+    if (existingExecutor != null)
+      existingExecutor
+    else {
+      val executor =
+        if (ds.completionHandlerWorkers == 0)
+          SynchronousCompletionHandlerExecutor
+        else
+          new AsynchronousCompletionHandlerExecutor(ds.completionHandlerWorkers, ds.completionHandlerQueueSize, ds.completionHandlerTimeout)
+
+      val concurrentlyCreatedExecutor = executors.putIfAbsent(ds.name, executor)
+      if (concurrentlyCreatedExecutor != null) concurrentlyCreatedExecutor else executor
+    }
+  }
+}
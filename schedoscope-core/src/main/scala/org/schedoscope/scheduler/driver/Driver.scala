@@ -15,10 +15,8 @@
   */
 package org.schedoscope.scheduler.driver
 
-import java.nio.file.Files
+import java.io.IOException
 
-import net.lingala.zip4j.core.ZipFile
-import org.apache.commons.io.FileUtils
 import org.schedoscope.Schedoscope
 import org.schedoscope.conf.DriverSettings
 import org.schedoscope.dsl.transformations.Transformation
@@ -26,7 +24,7 @@ import org.schedoscope.test.resources.TestResources
 
 import scala.concurrent.duration.Duration
 import scala.concurrent.{Await, Future}
-import scala.util.{Failure, Random, Success}
+import scala.util.{Failure, Success}
 
 /**
   * In Schedoscope, drivers are responsible for executing transformations.
@@ -52,6 +50,29 @@ trait Driver[T <: Transformation] {
     */
   def killRun(run: DriverRunHandle[T]): Unit = {}
 
+  /**
+    * Open and verify the connections the driver needs to execute transformations, so that its first run does not
+    * pay for setting them up. Called by the driver actor before it accepts work. Default: do nothing
+    */
+  def warmUp(): Unit = {}
+
+  /**
+    * Start a speculative duplicate of a straggling driver run writing into an isolated temporary output.
+    * Returns None if the driver cannot isolate the output of the run's transformation. Default: None
+    */
+  def runSpeculatively(run: DriverRunHandle[T]): Option[DriverRunHandle[T]] = None
+
+  /**
+    * Make the output of a speculative driver run that succeeded before its original run the output of the
+    * transformation. The original run has been killed already. Default: do nothing
+    */
+  def commitSpeculativeRun(speculativeRun: DriverRunHandle[T]): Unit = {}
+
+  /**
+    * Kill a speculative driver run no longer needed and discard its output. Default: kill the run
+    */
+  def discardSpeculativeRun(speculativeRun: DriverRunHandle[T]): Unit = killRun(speculativeRun)
+
   /**
     * Get the current driver run state for a given driver run represented by the handle.
     */
@@ -70,29 +91,17 @@ trait Driver[T <: Transformation] {
 
   /**
     * Deploy all resources for this transformation type to the cluster. By default, this deploys all
-    * jars defined in the libJars section of the transformation configuration (@see DriverSettings)
+    * jars defined in the libJars section of the transformation configuration (@see DriverSettings).
+    *
+    * Deployment is incremental: only jars (or unpacked files) that changed since the last deployment are
+    * uploaded, deploymentWorkers at a time (@see LibraryDeployment).
     */
-  def deployAll(ds: DriverSettings): Boolean = {
-    val fsd = FilesystemDriver(ds)
-
-    // clear destination
-    fsd.delete(ds.location, true)
-    fsd.mkdirs(ds.location)
-
-    val succ = ds.libJars
-      .map(f => {
-        if (ds.unpack) {
-          val tmpDir = Files.createTempDirectory("schedoscope-" + Random.nextLong.abs.toString).toFile
-          new ZipFile(f.replaceAll("file:", "")).extractAll(tmpDir.getAbsolutePath)
-          val succ = fsd.copy("file://" + tmpDir + "/*", ds.location, true)
-          FileUtils.deleteDirectory(tmpDir)
-          succ
-        } else {
-          fsd.copy(f, ds.location, true)
-        }
-      })
-
-    succ.filter(_.isInstanceOf[DriverRunFailed[_]]).isEmpty
+  def deployAll(ds: DriverSettings): Boolean = try {
+    val fsd = new FilesystemDriver(List(), Schedoscope.settings.userGroupInformation, Schedoscope.settings.hadoopConf, ds.deploymentWorkers, ds.fileOperationRetries)
+
+    LibraryDeployment.deploy(fsd, ds.libJars, ds.location, ds.unpack)
+  } catch {
+    case _: IOException => false
   }
 
   /**
@@ -126,11 +135,22 @@ trait Driver[T <: Transformation] {
     * Invokes completion handlers after the given driver run.
     */
   def driverRunCompleted(run: DriverRunHandle[T]) {
-    getDriverRunState(run) match {
-      case s: DriverRunSucceeded[T] => driverRunCompletionHandlers.foreach(_.driverRunCompleted(s, run))
-      case f: DriverRunFailed[T] => driverRunCompletionHandlers.foreach(_.driverRunCompleted(f, run))
+    driverRunCompleted(run, SynchronousCompletionHandlerExecutor)
+  }
+
+  /**
+    * Invokes completion handlers after the given driver run using the given executor.
+    */
+  def driverRunCompleted(run: DriverRunHandle[T], executor: CompletionHandlerExecutor) {
+    val stateOfCompletion = getDriverRunState(run) match {
+      case s: DriverRunSucceeded[T] => s
+      case f: DriverRunFailed[T] => f
       case _ => throw RetryableDriverException("driverRunCompleted called with non-final driver run state")
     }
+
+    driverRunCompletionHandlers.foreach { handler =>
+      executor.execute(transformationName, handler)(handler.driverRunCompleted(stateOfCompletion, run))
+    }
   }
 }
 
@@ -176,18 +196,22 @@ trait DriverOnBlockingApi[T <: Transformation] extends Driver[T] {
   * The state handle of driver run handles for such APIs should be the corresponding handle
   * mechanism used by that API.
   *
+  * Waiting for a run is served by a shared poller (@see DriverRunStatePoller) backing off according to
+  * runStatePollingBackoff.
+  *
   * As examples, @see MapreduceDriver and @see OozieDriver
   */
 trait DriverOnNonBlockingApi[T <: Transformation] extends Driver[T] {
 
-  def runAndWait(t: T): DriverRunState[T] = {
-    val runHandle = run(t)
+  def runStatePollingBackoff: RunStatePollingBackoff = RunStatePollingBackoff(Schedoscope.settings.getDriverSettings(transformationName))
 
-    while (getDriverRunState(runHandle).isInstanceOf[DriverRunOngoing[T]])
-      Thread.sleep(5000)
+  /**
+    * Returns a future completing with the final state of the given driver run.
+    */
+  def runCompletion(runHandle: DriverRunHandle[T]): Future[DriverRunState[T]] =
+    DriverRunStatePoller.completion(runHandle, runStatePollingBackoff)
 
-    getDriverRunState(runHandle)
-  }
+  def runAndWait(t: T): DriverRunState[T] = Await.result(runCompletion(run(t)), Duration.Inf)
 
 }
 
@@ -30,6 +30,9 @@ import org.schedoscope.dsl.transformations.Transformation
   *
   * Any other raised exception will cause the driver run to fail and the transformation subsequently to be retried by the view actor.
   *
+  * This only holds for handlers invoked synchronously. By default, driver actors invoke driverRunCompleted
+  * asynchronously, in which case exceptions are logged only (@see CompletionHandlerExecutor).
+  *
   */
 trait DriverRunCompletionHandler[T <: Transformation] {
 
@@ -23,5 +23,38 @@ import org.schedoscope.dsl.transformations.Transformation
   * The real, technology-specific handle for a executions of a transformation type is kept
   * in the property stateHandle.
   */
-class DriverRunHandle[T <: Transformation](val driver: Driver[T], val started: LocalDateTime, val transformation: T, var stateHandle: Any)
+class DriverRunHandle[T <: Transformation](val driver: Driver[T], val started: LocalDateTime, val transformation: T, var stateHandle: Any) {
+
+  private var stateChangeListeners = List[() => Unit]()
+
+  private var stateHasChanged = false
+
+  /**
+    * Register a callback to invoke whenever the driver learns about a state change of this run on its own,
+    * e.g., from a listener of the underlying API. If such a change has already happened, the callback
+    * is invoked right away.
+    */
+  def onStateChange(listener: () => Unit) {
+    val changedBefore = synchronized {
+      stateChangeListeners = listener :: stateChangeListeners
+      stateHasChanged
+    }
+
+    if (changedBefore)
+      listener()
+  }
+
+  /**
+    * Called by drivers able to push state changes so that the driver run state is queried
+    * without waiting for the next poll.
+    */
+  def stateChanged() {
+    val listeners = synchronized {
+      stateHasChanged = true
+      stateChangeListeners
+    }
+
+    listeners.foreach(l => l())
+  }
+}
 
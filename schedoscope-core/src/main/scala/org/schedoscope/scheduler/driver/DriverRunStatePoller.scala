@@ -0,0 +1,106 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.driver
+
+import java.util.concurrent.{Executors, ScheduledFuture, ThreadFactory, TimeUnit}
+
+import org.schedoscope.conf.DriverSettings
+import org.schedoscope.dsl.transformations.Transformation
+
+import scala.concurrent.duration.{Duration, FiniteDuration}
+import scala.concurrent.{Future, Promise}
+
+/**
+  * Polling intervals for the state of a driver run: polling starts at minInterval, and each poll finding the
+  * run still ongoing multiplies the interval by factor, up to maxInterval.
+  */
+case class RunStatePollingBackoff(minInterval: FiniteDuration, maxInterval: FiniteDuration, factor: Double) {
+
+  def next(interval: FiniteDuration) =
+    Duration.create(math.min((interval.toMillis * factor).toLong, maxInterval.toMillis), TimeUnit.MILLISECONDS)
+}
+
+object RunStatePollingBackoff {
+
+  def apply(ds: DriverSettings): RunStatePollingBackoff =
+    RunStatePollingBackoff(ds.runStatePollingMinInterval, ds.runStatePollingMaxInterval, ds.runStatePollingBackoffFactor)
+}
+
+/**
+  * Polls the states of driver runs until they are no longer ongoing. All runs are served from a single timer thread,
+  * so waiting for a run does not tie up a thread of its own.
+  *
+  * Runs of drivers pushing state changes (@see DriverRunHandle.stateChanged) are polled right away upon a change.
+  */
+object DriverRunStatePoller {
+
+  private lazy val timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory {
+    def newThread(r: Runnable) = {
+      val t = new Thread(r, "driver-run-state-poller")
+      t.setDaemon(true)
+      t
+    }
+  })
+
+  /**
+    * Returns a future completing with the final state of the given driver run, or failing with the exception
+    * raised when querying it.
+    */
+  def completion[T <: Transformation](run: DriverRunHandle[T], backoff: RunStatePollingBackoff): Future[DriverRunState[T]] = {
+    val polling = new Polling(run, backoff)
+
+    polling.schedule(Duration.Zero)
+    run.onStateChange(() => polling.schedule(Duration.Zero))
+
+    polling.result.future
+  }
+
+  private class Polling[T <: Transformation](driverRun: DriverRunHandle[T], backoff: RunStatePollingBackoff) extends Runnable {
+
+    val result = Promise[DriverRunState[T]]()
+
+    private var interval = backoff.minInterval
+
+    private var pending: Option[ScheduledFuture[_]] = None
+
+    def schedule(delay: FiniteDuration) = synchronized {
+      if (!result.isCompleted) {
+        pending.foreach(_.cancel(false))
+        pending = Some(timer.schedule(this, delay.toMillis, TimeUnit.MILLISECONDS))
+      }
+    }
+
+    def run() {
+      try {
+        driverRun.driver.getDriverRunState(driverRun) match {
+          case _: DriverRunOngoing[T] =>
+            val delay = synchronized {
+              val current = interval
+              interval = backoff.next(interval)
+              current
+            }
+
+            schedule(delay)
+
+          case finalState => result.trySuccess(finalState)
+        }
+      } catch {
+        case t: Throwable => result.tryFailure(t)
+      }
+    }
+  }
+
+}
@@ -18,7 +18,9 @@ package org.schedoscope.scheduler.driver
 import java.io.{File, IOException, InputStream}
 import java.net.URI
 import java.nio.file.Files
-import java.security.PrivilegedAction
+import java.security.{AccessController, PrivilegedAction}
+import java.util.concurrent.{ConcurrentHashMap, Executors, LinkedBlockingQueue, ThreadFactory, ThreadPoolExecutor, TimeUnit}
+import javax.security.auth.Subject
 
 import org.apache.commons.io.FileUtils
 import org.apache.hadoop.conf.Configuration
@@ -30,15 +32,33 @@ import org.schedoscope.conf.DriverSettings
 import org.schedoscope.dsl.transformations._
 import org.schedoscope.test.resources.TestResources
 
-import scala.concurrent.Future
+import scala.concurrent.duration.Duration
+import scala.concurrent.{Await, ExecutionContext, Future}
 
 /**
-  * Driver for executing file system transformations
+  * Driver for executing file system transformations. With more than one file operation worker, the files of
+  * copy and move transformations are copied in parallel by that many threads, each file being retried up to
+  * fileOperationRetries times upon IO errors.
   */
-class FilesystemDriver(val driverRunCompletionHandlerClassNames: List[String], val ugi: UserGroupInformation, val conf: Configuration) extends DriverOnBlockingApi[FilesystemTransformation] {
+class FilesystemDriver(val driverRunCompletionHandlerClassNames: List[String], val ugi: UserGroupInformation, val conf: Configuration, val fileOperationWorkers: Int = 1, val fileOperationRetries: Int = 0) extends DriverOnBlockingApi[FilesystemTransformation] {
 
   def transformationName = "filesystem"
 
+  private lazy val fileOperationExecutionContext = {
+    val executor = new ThreadPoolExecutor(fileOperationWorkers, fileOperationWorkers, 60, TimeUnit.SECONDS, new LinkedBlockingQueue[Runnable](), new ThreadFactory() {
+      def newThread(r: Runnable) = {
+        val thread = Executors.defaultThreadFactory().newThread(r)
+        thread.setDaemon(true)
+        thread
+      }
+    })
+
+    // idle workers go away, e.g., after deploying libraries with a short-lived driver
+    executor.allowCoreThreadTimeOut(true)
+
+    ExecutionContext.fromExecutorService(executor)
+  }
+
   /**
     * Construct a future-based driver run handle
     */
@@ -79,14 +99,34 @@ class FilesystemDriver(val driverRunCompletionHandlerClassNames: List[String], v
     }
 
   /**
-    * Encapsulates a filesystem transformation run as a PrivilegedAction to operate in kerberized clusters
+    * Encapsulates a filesystem transformation run as a PrivilegedAction to operate in kerberized clusters.
+    * Cached file systems are dropped after IO errors, as these may stem from file systems closed elsewhere.
     */
   def doAs(f: () => DriverRunState[FilesystemTransformation]): DriverRunState[FilesystemTransformation] = ugi.doAs(new PrivilegedAction[DriverRunState[FilesystemTransformation]]() {
     def run(): DriverRunState[FilesystemTransformation] = {
-      f()
+      val runState = f()
+
+      runState match {
+        case DriverRunFailed(_, _, _: IOException) => FilesystemDriver.evictFileSystems()
+        case _ =>
+      }
+
+      runState
     }
   })
 
+  /**
+    * Connect to the default file system and verify the connection by looking up its root.
+    */
+  override def warmUp() {
+    ugi.doAs(new PrivilegedAction[Unit]() {
+      def run() {
+        val defaultFS = FileSystem.get(conf)
+        defaultFS.getFileStatus(new Path("/"))
+      }
+    })
+  }
+
   /**
     * Writes all bytes from an given InputStream to a file in the view locationPath
     */
@@ -114,19 +154,6 @@ class FilesystemDriver(val driverRunCompletionHandlerClassNames: List[String], v
     */
   def copy(from: String, to: String, recursive: Boolean): DriverRunState[FilesystemTransformation] = {
 
-    def inner(fromFS: FileSystem, toFS: FileSystem, files: Seq[FileStatus], to: Path): Unit = {
-      toFS.mkdirs(to)
-      if (recursive) {
-        files.filter(p => (p.isDirectory() && !p.getPath().getName().startsWith("."))).
-          foreach(path => {
-            inner(fromFS, toFS, fromFS.globStatus(new Path(path.getPath(), "*")), new Path(to, path.getPath().getName()))
-          })
-      }
-      files.filter(p => !p.isDirectory()).map(status => status.getPath()).foreach { p =>
-        FileUtil.copy(fromFS, p, toFS, to, false, true, conf)
-      }
-    }
-
     try {
       // is the source a resource that resides in a JAR with classpath?
       val fromIncludingResources = if (from.startsWith("classpath://"))
@@ -136,7 +163,7 @@ class FilesystemDriver(val driverRunCompletionHandlerClassNames: List[String], v
 
       val fromFS = fileSystem(fromIncludingResources)
       val toFS = fileSystem(to)
-      inner(fromFS, toFS, listFiles(fromIncludingResources), new Path(to))
+      copyFiles(fromFS, toFS, filesToCopy(fromFS, toFS, listFiles(fromIncludingResources), new Path(to), recursive, includeHidden = false))
 
       DriverRunSucceeded(this, s"Copy from ${from} to ${to} succeeded")
     } catch {
@@ -192,15 +219,31 @@ class FilesystemDriver(val driverRunCompletionHandlerClassNames: List[String], v
     }
 
   /**
-    * Moves files from one location to the other.
+    * Moves files from one location to the other. Like with FileUtil.copy, a single file or directory moved
+    * to a target that is not a directory takes the place of the target, whereas otherwise the moved files
+    * and directories are placed into the target directory.
     */
   def move(from: String, to: String): DriverRunState[FilesystemTransformation] =
     try {
       val fromFS = fileSystem(from)
       val toFS = fileSystem(to)
       val files = listFiles(from)
-
-      FileUtil.copy(fromFS, FileUtil.stat2Paths(files), toFS, new Path(to), true, true, conf)
+      val target = new Path(to)
+
+      if (fileOperationWorkers > 1) {
+        val filesToMove =
+          if (files.size == 1 && !toFS.isDirectory(target))
+            if (files.head.isDirectory)
+              filesToCopy(fromFS, toFS, fromFS.globStatus(new Path(files.head.getPath, "*")), target, recursive = true, includeHidden = true)
+            else
+              Seq((files.head.getPath, target))
+          else
+            filesToCopy(fromFS, toFS, files, target, recursive = true, includeHidden = true)
+
+        copyFiles(fromFS, toFS, filesToMove)
+        files.foreach(status => fromFS.delete(status.getPath, true))
+      } else
+        FileUtil.copy(fromFS, FileUtil.stat2Paths(files), toFS, new Path(to), true, true, conf)
 
       DriverRunSucceeded(this, s"Moving from ${from} to ${to} succeeded")
     } catch {
@@ -208,6 +251,59 @@ class FilesystemDriver(val driverRunCompletionHandlerClassNames: List[String], v
       case t: Throwable => throw RetryableDriverException(s"Runtime exception while moving from ${from} to ${to}", t)
     }
 
+  /**
+    * Determine the files to copy into a target directory, (recursively) creating the target directories
+    * of the given source directories along the way. Returns pairs of source files and target directories.
+    */
+  def filesToCopy(fromFS: FileSystem, toFS: FileSystem, files: Seq[FileStatus], to: Path, recursive: Boolean, includeHidden: Boolean): Seq[(Path, Path)] = {
+    toFS.mkdirs(to)
+
+    val filesInDirectories = if (recursive)
+      files
+        .filter(p => p.isDirectory() && (includeHidden || !p.getPath().getName().startsWith(".")))
+        .flatMap(directory =>
+          filesToCopy(fromFS, toFS, fromFS.globStatus(new Path(directory.getPath(), "*")), new Path(to, directory.getPath().getName()), recursive, includeHidden)
+        )
+    else
+      Seq()
+
+    files.filter(p => !p.isDirectory()).map(status => (status.getPath(), to)) ++ filesInDirectories
+  }
+
+  /**
+    * Copy files into their target directories, in parallel if there is more than one file operation worker.
+    * Throws the first IO exception remaining after retries once all files have been processed.
+    */
+  def copyFiles(fromFS: FileSystem, toFS: FileSystem, files: Seq[(Path, Path)]) {
+
+    def copyFile(file: Path, to: Path, retries: Int): Unit = try {
+      FileUtil.copy(fromFS, file, toFS, to, false, true, conf)
+    } catch {
+      case i: IOException if retries > 0 => copyFile(file, to, retries - 1)
+    }
+
+    if (fileOperationWorkers <= 1 || files.size <= 1)
+      files.foreach { case (file, to) => copyFile(file, to, fileOperationRetries) }
+    else {
+      implicit val executionContext = fileOperationExecutionContext
+
+      val copies = files.map {
+        case (file, to) => Future {
+          ugi.doAs(new PrivilegedAction[Option[IOException]]() {
+            def run() = try {
+              copyFile(file, to, fileOperationRetries)
+              None
+            } catch {
+              case i: IOException => Some(i)
+            }
+          })
+        }
+      }
+
+      Await.result(Future.sequence(copies), Duration.Inf).flatten.headOption.foreach(i => throw i)
+    }
+  }
+
   def listFiles(path: String): Array[FileStatus] = {
     val files = fileSystem(path).globStatus(new Path(path))
     if (files != null)
@@ -228,10 +324,10 @@ class FilesystemDriver(val driverRunCompletionHandlerClassNames: List[String], v
 object FilesystemDriver extends DriverCompanionObject[FilesystemTransformation] {
 
   def apply(ds: DriverSettings) =
-    new FilesystemDriver(ds.driverRunCompletionHandlers, Schedoscope.settings.userGroupInformation, Schedoscope.settings.hadoopConf)
+    new FilesystemDriver(ds.driverRunCompletionHandlers, Schedoscope.settings.userGroupInformation, Schedoscope.settings.hadoopConf, ds.fileOperationWorkers, ds.fileOperationRetries)
 
   def apply(driverSettings: DriverSettings, testResources: TestResources): Driver[FilesystemTransformation] =
-    new FilesystemDriver(List("org.schedoscope.test.resources.TestDriverRunCompletionHandler"), testResources.ugi, new Configuration(true))
+    new FilesystemDriver(List("org.schedoscope.test.resources.TestDriverRunCompletionHandler"), testResources.ugi, new Configuration(true), driverSettings.fileOperationWorkers, driverSettings.fileOperationRetries)
 
   private def uri(pathOrUri: String) =
     try {
@@ -240,11 +336,55 @@ object FilesystemDriver extends DriverCompanionObject[FilesystemTransformation]
       case _: Throwable => new File(pathOrUri).toURI()
     }
 
-  def localFilesystem(hadoopConfiguration: Configuration): FileSystem = synchronized(FileSystem.getLocal(hadoopConfiguration))
+  /**
+    * Key of cached file systems. Configurations and the subjects of the calling users are compared by identity,
+    * as FileSystem.get would create different file system instances for different users.
+    */
+  private class FileSystemKey(val scheme: String, val authority: String, val conf: Configuration, val subject: Subject) {
+    override def equals(other: Any) = other match {
+      case k: FileSystemKey => scheme == k.scheme && authority == k.authority && (conf eq k.conf) && (subject eq k.subject)
+      case _ => false
+    }
+
+    override def hashCode = (scheme, authority, System.identityHashCode(conf), System.identityHashCode(subject)).hashCode
+  }
+
+  private val fileSystems = new ConcurrentHashMap[FileSystemKey, FileSystem]()
+
+  /**
+    * Look up a file system per URI scheme and authority, configuration and user without taking the
+    * global locks of FileSystem.get and UserGroupInformation.getCurrentUser for file systems used before.
+    */
+  private def cachedFileSystem(fsUri: URI, hadoopConfiguration: Configuration)(newFileSystem: => FileSystem) = {
+    val key = new FileSystemKey(fsUri.getScheme, fsUri.getAuthority, hadoopConfiguration, Subject.getSubject(AccessController.getContext()))
+    val fileSystem = fileSystems.get(key)
+
+    if (fileSystem != null)
+      fileSystem
+    else {
+      val existingFileSystem = fileSystems.putIfAbsent(key, newFileSystem)
+      if (existingFileSystem != null) existingFileSystem else fileSystems.get(key)
+    }
+  }
+
+  /**
+    * Drop all cached file systems, so that they are looked up again upon their next use. File systems closed
+    * in the meantime are thus replaced by new instances.
+    */
+  def evictFileSystems() {
+    fileSystems.clear()
+  }
+
+  def localFilesystem(hadoopConfiguration: Configuration): FileSystem =
+    cachedFileSystem(URI.create("file:///"), hadoopConfiguration)(FileSystem.getLocal(hadoopConfiguration))
 
-  def fileSystem(path: String, hadoopConfiguration: Configuration) = synchronized(FileSystem.get(uri(path), hadoopConfiguration))
+  def fileSystem(path: String, hadoopConfiguration: Configuration) = {
+    val fsUri = uri(path)
+    cachedFileSystem(fsUri, hadoopConfiguration)(FileSystem.get(fsUri, hadoopConfiguration))
+  }
 
-  def defaultFileSystem(hadoopConfiguration: Configuration) = synchronized(FileSystem.get(hadoopConfiguration))
+  def defaultFileSystem(hadoopConfiguration: Configuration) =
+    cachedFileSystem(FileSystem.getDefaultUri(hadoopConfiguration), hadoopConfiguration)(FileSystem.get(hadoopConfiguration))
 
   def classpathResourceToFile(classpathResourceUrl: String) = {
     val remainingPath = classpathResourceUrl.replace("classpath://", "")
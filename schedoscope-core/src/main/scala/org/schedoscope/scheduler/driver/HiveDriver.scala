@@ -17,11 +17,14 @@ package org.schedoscope.scheduler.driver
 
 
 import java.io.{OutputStream, PrintStream}
+import java.util.concurrent.{ArrayBlockingQueue, ConcurrentHashMap}
 
 import org.apache.commons.lang.StringUtils
 import org.apache.hadoop.hive.conf.HiveConf
 import org.apache.hadoop.hive.conf.HiveConf.ConfVars._
+import org.apache.hadoop.hive.metastore.MetaStoreUtils
 import org.apache.hadoop.hive.metastore.api.{Function, ResourceType, ResourceUri}
+import org.apache.hadoop.hive.ql.log.PerfLogger
 import org.apache.hadoop.hive.ql.metadata.Hive
 import org.apache.hadoop.hive.ql.processors.{CommandProcessor, CommandProcessorFactory}
 import org.apache.hadoop.hive.ql.session.SessionState
@@ -33,19 +36,26 @@ import org.schedoscope.dsl.transformations.Transformation.replaceParameters
 import org.schedoscope.test.resources.TestResources
 import org.slf4j.LoggerFactory
 
-import scala.collection.JavaConversions.{asScalaBuffer, seqAsJavaList}
+import scala.collection.JavaConversions.{asScalaBuffer, asScalaSet, seqAsJavaList}
 import scala.collection.mutable.Stack
 import scala.concurrent.Future
+import scala.concurrent.duration._
 
 /**
-  * Driver for executing Hive transformations
+  * Driver for executing Hive transformations.
+  *
+  * Hive session states are kept in a session pool and reused across driver runs. Lookups of registered
+  * functions in the metastore are cached for functionCacheTtl.
   */
-class HiveDriver(val driverRunCompletionHandlerClassNames: List[String], val conf: HiveConf) extends DriverOnBlockingApi[HiveTransformation] {
+class HiveDriver(val driverRunCompletionHandlerClassNames: List[String], val conf: HiveConf,
+                 val sessionPoolSize: Int = 1, val functionCacheTtl: Duration = 10.minutes) extends DriverOnBlockingApi[HiveTransformation] {
 
   def transformationName = "hive"
 
   val log = LoggerFactory.getLogger(classOf[HiveDriver])
 
+  val sessionPool = new HiveSessionPool(conf, sessionPoolSize)
+
   /**
     * Construct a future-based driver run handle
     */
@@ -56,6 +66,23 @@ class HiveDriver(val driverRunCompletionHandlerClassNames: List[String], val con
         t.getShortName())
     })
 
+  /**
+    * Create a session state for the session pool and verify the metastore connection. As metastore connections
+    * are bound to the calling thread, the session pool closes the connection opened for verification again.
+    */
+  override def warmUp() {
+    val session = sessionPool.acquire()
+
+    try {
+      Hive.get().getMSC.getAllDatabases
+      sessionPool.release(session)
+    } catch {
+      case t: Throwable =>
+        sessionPool.discard(session)
+        throw t
+    }
+  }
+
   /**
     * Rig Hive transformations prior to test by tweaking UDF path references to local classpath references.
     */
@@ -76,22 +103,20 @@ class HiveDriver(val driverRunCompletionHandlerClassNames: List[String], val con
     */
   def executeHiveQuery(functionsToRegister: List[Function], sql: String, jobName: String): DriverRunState[HiveTransformation] = {
 
+    val setupStarted = System.currentTimeMillis()
+
     //
-    // Setup session state
+    // Acquire session state
     //
 
-    try {
-      setupSessionState()
+    val session = try {
+      sessionPool.acquire()
     } catch {
       case t: Throwable =>
 
         //
         // Could not create session state but we should retry
         //
-        // Cleanup
-        //
-
-        tearDownSessionState()
 
         throw RetryableDriverException(s"Cannot create session state for query ${sql}", t)
     }
@@ -104,8 +129,8 @@ class HiveDriver(val driverRunCompletionHandlerClassNames: List[String], val con
 
         case (sqlSoFar, f) =>
 
-          val existing = try {
-            Hive.get().getMSC.getFunctions(f.getDbName, f.getFunctionName)
+          val registered = try {
+            functionRegistered(f)
           } catch {
             case t: Throwable =>
 
@@ -115,23 +140,29 @@ class HiveDriver(val driverRunCompletionHandlerClassNames: List[String], val con
               // Cleanup session state
               //
 
-              tearDownSessionState()
+              sessionPool.discard(session)
 
               throw RetryableDriverException(s"Runtime exception while querying registered function ${f}", t)
           }
 
-          if (existing == null || existing.isEmpty)
+          if (!registered)
             s"CREATE FUNCTION ${f.getDbName}.${f.getFunctionName} AS '${f.getClassName}' USING ${f.getResourceUris.map(jar => s"JAR '${jar.getUri}'").mkString(", ")}; ${sqlSoFar}"
           else
             sqlSoFar
       }
 
+    val setupMillis = System.currentTimeMillis() - setupStarted
+    var compileMillis = 0l
+    var executeMillis = 0l
+
     //
     // Execute query statements one by one
     //
 
+    var sessionReusable = false
+
     try {
-      splitQueryIntoStatements(sqlPlusCreateFunctions)
+      val runState = splitQueryIntoStatements(sqlPlusCreateFunctions)
         .foldLeft[DriverRunState[HiveTransformation]](
         DriverRunSucceeded[HiveTransformation](this, s"Hive query ${sql} executed")
       ) {
@@ -142,12 +173,18 @@ class HiveDriver(val driverRunCompletionHandlerClassNames: List[String], val con
           val commandType = commandTokens(0)
           val remainingStatement = statement.trim.substring(commandType.length)
 
+          val statementStarted = System.currentTimeMillis()
+
           val result = CommandProcessorFactory.get(commandType) match {
-            case statementDriver: org.apache.hadoop.hive.ql.Driver => statementDriver.run(s"--$jobName\n ${statement}\n --\n")
+            case statementDriver: org.apache.hadoop.hive.ql.Driver =>
+              val statementResult = statementDriver.run(s"--$jobName\n ${statement}\n --\n")
+              compileMillis += compileMillisOfLastStatement
+              statementResult
 
             case otherProcessor: CommandProcessor => otherProcessor.run(remainingStatement)
           }
 
+          executeMillis += System.currentTimeMillis() - statementStarted
 
           if (result.getResponseCode != 0) {
 
@@ -163,6 +200,10 @@ class HiveDriver(val driverRunCompletionHandlerClassNames: List[String], val con
 
         case (failure, _) => failure
       }
+
+      sessionReusable = runState.isInstanceOf[DriverRunSucceeded[HiveTransformation]]
+
+      runState
     } catch {
       case t: Throwable =>
 
@@ -175,13 +216,59 @@ class HiveDriver(val driverRunCompletionHandlerClassNames: List[String], val con
     } finally {
 
       //
-      // Cleanup session state in any case
+      // Return session state to the pool after successful runs, discard it otherwise
       //
 
-      tearDownSessionState()
+      if (sessionReusable)
+        sessionPool.release(session)
+      else
+        sessionPool.discard(session)
+
+      executeMillis -= compileMillis
+
+      log.info(s"HIVE DRIVER: Query ${jobName} took ${setupMillis + compileMillis + executeMillis} ms (setup ${setupMillis} ms, compile ${compileMillis} ms, execute ${executeMillis} ms)")
     }
   }
 
+  /**
+    * Checks whether the given function is registered with the metastore. Positive answers of the metastore are
+    * cached for functionCacheTtl.
+    */
+  private def functionRegistered(f: Function): Boolean = {
+    val functionKey = s"${conf.getVar(METASTOREURIS)}/${f.getDbName}.${f.getFunctionName}"
+    val confirmedAt = HiveDriver.registeredFunctions.get(functionKey)
+
+    if (confirmedAt != null && System.currentTimeMillis() - confirmedAt.longValue < functionCacheTtl.toMillis)
+      return true
+
+    val existing = Hive.get().getMSC.getFunctions(f.getDbName, f.getFunctionName)
+    val registered = existing != null && !existing.isEmpty
+
+    if (registered)
+      HiveDriver.registeredFunctions.put(functionKey, System.currentTimeMillis())
+    else
+      HiveDriver.registeredFunctions.remove(functionKey)
+
+    registered
+  }
+
+  /**
+    * Returns the compile time of the statement last run by the Hive driver in the current session as recorded
+    * by Hive's perf logger.
+    */
+  private def compileMillisOfLastStatement = try {
+    val perfLogger = PerfLogger.getPerfLogger()
+    val compileStarted = perfLogger.getStartTimes.get(PerfLogger.COMPILE)
+    val compileEnded = perfLogger.getEndTimes.get(PerfLogger.COMPILE)
+
+    if (compileStarted != null && compileEnded != null)
+      compileEnded.longValue - compileStarted.longValue
+    else
+      0l
+  } catch {
+    case _: Throwable => 0l
+  }
+
   private def splitQueryIntoStatements(sql: String) = {
     val queryStack = Stack[String]("")
 
@@ -200,27 +287,126 @@ class HiveDriver(val driverRunCompletionHandlerClassNames: List[String], val con
       !StringUtils.isBlank(_)
     }
   }
+}
+
+/**
+  * A pool of Hive session states for reuse across driver runs.
+  *
+  * As session states are thread-bound in Hive, an acquired session state is made the current session state
+  * of the calling thread. Upon release, it is detached from that thread, the thread's metastore connection is closed,
+  * and the session state is reset: configuration overridden via SET, Hive variables,
+  * and the current database are reverted. Session states that cannot be reset or do not fit into the pool are closed.
+  *
+  * @param conf            the Hive configuration to create session states with
+  * @param maxIdleSessions the maximum number of idle session states kept for reuse
+  */
+class HiveSessionPool(conf: HiveConf, maxIdleSessions: Int) {
+
+  private val idleSessions = new ArrayBlockingQueue[SessionState](math.max(maxIdleSessions, 1))
+
+  /**
+    * Returns an idle session state or creates a new one if none is available. The session state becomes the current
+    * session state of the calling thread.
+    */
+  def acquire(): SessionState = {
+    val idleSession = idleSessions.poll()
+
+    val session = if (idleSession != null) {
+      SessionState.setCurrentSessionState(idleSession)
+      idleSession
+    } else
+      try {
+        SessionState.start(new HiveConf(conf))
+      } catch {
+        case t: Throwable =>
+          closeCurrent()
+          throw t
+      }
+
+    session.out = muton
+    session.err = muton
+    session.info = muton
+
+    session
+  }
+
+  /**
+    * Detaches the given session state from the calling thread, closes the thread's metastore connection, and
+    * keeps the session state for reuse after resetting it.
+    */
+  def release(session: SessionState) {
+    closeHive()
+    detach(session)
 
-  private def setupSessionState() {
-    SessionState.start(new HiveConf(conf))
-    SessionState.get().out = muton
-    SessionState.get().err = muton
-    SessionState.get().info = muton
+    if (!reset(session) || !idleSessions.offer(session))
+      discard(session)
   }
 
+  /**
+    * Closes the given session state along with the metastore connection of the calling thread and detaches it
+    * from that thread.
+    */
+  def discard(session: SessionState) {
+    closeHive()
 
-  private def tearDownSessionState() {
     try {
-      Hive.closeCurrent()
+      session.close()
     } catch {
       case _: Throwable =>
     }
 
+    detach(session)
+  }
+
+  /**
+    * Returns the number of idle session states.
+    */
+  def idle = idleSessions.size
+
+  private def reset(session: SessionState): Boolean = try {
+    val overriddenConfigurations = session.getOverriddenConfigurations
+
+    overriddenConfigurations.keySet.foreach { key =>
+      val originalValue = conf.get(key)
+
+      if (originalValue == null)
+        session.getConf.unset(key)
+      else
+        session.getConf.set(key, originalValue)
+    }
+
+    overriddenConfigurations.clear()
+    session.getHiveVariables.clear()
+    session.setCurrentDatabase(MetaStoreUtils.DEFAULT_DATABASE_NAME)
+
+    session.getTempTables.isEmpty
+  } catch {
+    case _: Throwable => false
+  }
+
+  private def closeCurrent() {
+    closeHive()
+
     try {
       SessionState.get().close()
     } catch {
       case _: Throwable =>
     }
+
+    SessionState.detachSession()
+  }
+
+  private def closeHive() {
+    try {
+      Hive.closeCurrent()
+    } catch {
+      case _: Throwable =>
+    }
+  }
+
+  private def detach(session: SessionState) {
+    if (SessionState.get() eq session)
+      SessionState.detachSession()
   }
 
   private def muton = new PrintStream(new OutputStream {
@@ -233,6 +419,11 @@ class HiveDriver(val driverRunCompletionHandlerClassNames: List[String], val con
   */
 object HiveDriver extends DriverCompanionObject[HiveTransformation] {
 
+  /**
+    * Functions known to be registered with a metastore along with the time of confirmation.
+    */
+  private val registeredFunctions = new ConcurrentHashMap[String, java.lang.Long]()
+
   def apply(ds: DriverSettings) = {
     val conf = new HiveConf(classOf[SessionState])
 
@@ -248,7 +439,7 @@ object HiveDriver extends DriverCompanionObject[HiveTransformation] {
       conf.setVar(METASTORE_KERBEROS_PRINCIPAL, Schedoscope.settings.kerberosPrincipal)
     }
 
-    new HiveDriver(ds.driverRunCompletionHandlers, conf)
+    new HiveDriver(ds.driverRunCompletionHandlers, conf, ds.sessionPoolSize, ds.functionCacheTtl)
   }
 
   def apply(driverSettings: DriverSettings, testResources: TestResources): Driver[HiveTransformation] =
@@ -0,0 +1,184 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.driver
+
+import java.io.InputStream
+import java.nio.charset.StandardCharsets.UTF_8
+import java.nio.file.Files
+import java.security.{DigestInputStream, MessageDigest}
+
+import net.lingala.zip4j.core.ZipFile
+import org.apache.commons.io.FileUtils
+import org.apache.hadoop.fs.{FileSystem, Path}
+
+import scala.collection.JavaConversions._
+import scala.io.Source
+import scala.util.Random
+
+/**
+  * Deploys library jars to a driver's location incrementally.
+  *
+  * A manifest in the location records the MD5 hash of every artifact deployed and of every file uploaded for it.
+  * If the artifacts are unchanged, nothing is written at all. Otherwise, only files whose hash differs from the
+  * manifest are uploaded - in parallel - and files no longer deployed are deleted. Without a manifest, the location
+  * is cleared and fully deployed as before.
+  */
+object LibraryDeployment {
+
+  val manifestName = ".schedoscope-deployment-manifest"
+
+  /**
+    * Hashes of the deployed artifacts (by name) and uploaded files (by path relative to the location).
+    */
+  case class Manifest(artifacts: Map[String, String], files: Map[String, String])
+
+  /**
+    * Deploy the given jars to the location, unpacking them if requested. Returns whether the deployment succeeded.
+    */
+  def deploy(fsd: FilesystemDriver, libJars: List[String], location: String, unpack: Boolean): Boolean = {
+    val target = new Path(location)
+    val targetFS = fsd.fileSystem(location)
+    val manifestPath = new Path(target, manifestName)
+
+    val deployed = readManifest(targetFS, manifestPath)
+
+    val artifacts = libJars.map { jar =>
+      val path = new Path(jar)
+      (path.getName, md5(fsd.fileSystem(jar).open(path)))
+    }.toMap
+
+    if (deployed.exists(_.artifacts == artifacts))
+      true
+    else
+      upload(fsd, libJars, artifacts, deployed, target, targetFS, manifestPath, unpack)
+  }
+
+  private def upload(fsd: FilesystemDriver, libJars: List[String], artifacts: Map[String, String], deployed: Option[Manifest],
+                     target: Path, targetFS: FileSystem, manifestPath: Path, unpack: Boolean) = {
+
+    val unpacked = if (unpack)
+      libJars.map(jar => Files.createTempDirectory("schedoscope-" + Random.nextLong.abs.toString).toFile)
+    else
+      List()
+
+    try {
+      val files: Map[String, (Path, String)] = if (unpack)
+        libJars.zip(unpacked).flatMap { case (jar, dir) =>
+          new ZipFile(jar.replaceAll("file:", "")).extractAll(dir.getAbsolutePath)
+
+          FileUtils.listFiles(dir, null, true).toList.map { file =>
+            val relativePath = dir.toURI.relativize(file.toURI).getPath
+            (relativePath, (new Path(file.toURI), md5(Files.newInputStream(file.toPath))))
+          }
+        }.toMap
+      else
+        libJars.map { jar =>
+          val path = new Path(jar)
+          (path.getName, (path, artifacts(path.getName)))
+        }.toMap
+
+      val previousFiles = deployed match {
+        case Some(m) => m.files
+        case None =>
+          fsd.delete(target.toString, true)
+          Map[String, String]()
+      }
+
+      targetFS.mkdirs(target)
+
+      targetFS.delete(manifestPath, false)
+
+      val toUpload = files.filter { case (relativePath, (_, hash)) => previousFiles.get(relativePath) != Some(hash) }
+      val toDelete = previousFiles.keySet -- files.keySet
+
+      toDelete.foreach(relativePath => targetFS.delete(new Path(target, relativePath), false))
+
+      val uploads = toUpload.toSeq.map { case (relativePath, (source, _)) =>
+        val targetFile = new Path(target, relativePath)
+        targetFS.mkdirs(targetFile.getParent)
+        (source, targetFile.getParent)
+      }
+
+      uploads.groupBy { case (source, _) => source.toUri.getScheme }.values.foreach { group =>
+        fsd.copyFiles(fsd.fileSystem(group.head._1.toString), targetFS, group)
+      }
+
+      writeManifest(targetFS, manifestPath, Manifest(artifacts, files.map { case (relativePath, (_, hash)) => (relativePath, hash) }))
+
+      true
+    } finally {
+      unpacked.foreach(FileUtils.deleteQuietly)
+    }
+  }
+
+  /**
+    * Hex MD5 hash of a stream's contents. The stream is closed.
+    */
+  def md5(in: InputStream) = {
+    val digest = MessageDigest.getInstance("MD5")
+    val digestIn = new DigestInputStream(in, digest)
+
+    try {
+      val buffer = new Array[Byte](65536)
+      while (digestIn.read(buffer) != -1) {}
+    } finally {
+      digestIn.close()
+    }
+
+    digest.digest().map("%02x".format(_)).mkString
+  }
+
+  def readManifest(fs: FileSystem, manifestPath: Path): Option[Manifest] = try {
+    if (!fs.exists(manifestPath))
+      None
+    else {
+      val in = fs.open(manifestPath)
+
+      val entries = try {
+        Source.fromInputStream(in, "UTF-8").getLines().map(_.split("\t", 3)).toList
+      } finally {
+        in.close()
+      }
+
+      def section(kind: String) = entries.collect { case Array(`kind`, hash, name) => (name, hash) }.toMap
+
+      Some(Manifest(section("artifact"), section("file")))
+    }
+  } catch {
+    case _: Throwable => None
+  }
+
+  /**
+    * Write the manifest to a temporary file first and rename it, so that an interrupted deployment leaves no manifest
+    * behind and the next one starts from scratch.
+    */
+  def writeManifest(fs: FileSystem, manifestPath: Path, manifest: Manifest) {
+    val temporaryPath = new Path(manifestPath.getParent, manifestPath.getName + ".tmp")
+    val out = fs.create(temporaryPath, true)
+
+    try {
+      val lines =
+        manifest.artifacts.toSeq.sorted.map { case (name, hash) => s"artifact\t$hash\t$name" } ++
+          manifest.files.toSeq.sorted.map { case (name, hash) => s"file\t$hash\t$name" }
+
+      out.write(lines.mkString("", "\n", "\n").getBytes(UTF_8))
+    } finally {
+      out.close()
+    }
+
+    fs.rename(temporaryPath, manifestPath)
+  }
+}
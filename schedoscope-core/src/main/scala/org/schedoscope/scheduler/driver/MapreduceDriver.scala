@@ -18,8 +18,10 @@ package org.schedoscope.scheduler.driver
 import java.security.PrivilegedAction
 
 import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.fs.Path
 import org.apache.hadoop.mapreduce.Job
 import org.apache.hadoop.mapreduce.JobStatus.State._
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat
 import org.apache.hadoop.security.UserGroupInformation
 import org.joda.time.LocalDateTime
 import org.schedoscope.Schedoscope
@@ -97,6 +99,83 @@ class MapreduceDriver(val driverRunCompletionHandlerClassNames: List[String], va
     case e: Throwable => throw RetryableDriverException(s"Unexpected error occurred while killing Mapreduce job", e)
   }
 
+  /**
+    * Warm up the file system connection used for preparing jobs.
+    */
+  override def warmUp() {
+    fileSystemDriver.warmUp()
+  }
+
+  /**
+    * Resubmit the job of a straggling run with its output directory replaced by a temporary sibling directory.
+    */
+  override def runSpeculatively(runHandle: DriverRunHandle[MapreduceTransformation]) = try {
+    val original = runHandle.transformation
+    val outputDirectory = original.job.getConfiguration.get(FileOutputFormat.OUTDIR)
+
+    if (outputDirectory == null)
+      None
+    else ugi.doAs {
+
+      new PrivilegedAction[Option[DriverRunHandle[MapreduceTransformation]]]() {
+
+        def run(): Option[DriverRunHandle[MapreduceTransformation]] = {
+          val t = original.copy(dirsToDelete = List(), deleteViewPath = false).configureWith(original.configuration.toMap)
+          t.view = original.view
+          t.configure
+
+          val output = new Path(outputDirectory)
+          val temporaryOutput = new Path(output.getParent, s".${output.getName}-speculative-${System.nanoTime}")
+
+          t.job.getConfiguration.set(FileOutputFormat.OUTDIR, temporaryOutput.toString)
+          t.job.getConfiguration.set(MapreduceDriver.speculativeOutputFor, outputDirectory)
+          t.job.setJobName(s"${t.getViewUrl()} (speculative)")
+          t.job.submit()
+
+          Some(new DriverRunHandle[MapreduceTransformation](driver, new LocalDateTime(), t, t.job))
+        }
+      }
+    }
+  } catch {
+    case e: Throwable => throw RetryableDriverException("Unexpected error occurred while submitting speculative Mapreduce job", e)
+  }
+
+  /**
+    * Replace the output directory of the transformation with the temporary output directory of the speculative run.
+    */
+  override def commitSpeculativeRun(runHandle: DriverRunHandle[MapreduceTransformation]) {
+    val configuration = runHandle.stateHandle.asInstanceOf[Job].getConfiguration
+    val temporaryOutput = configuration.get(FileOutputFormat.OUTDIR)
+    val output = configuration.get(MapreduceDriver.speculativeOutputFor)
+
+    ugi.doAs {
+
+      new PrivilegedAction[Unit]() {
+
+        def run() {
+          val fs = fileSystemDriver.fileSystem(output)
+
+          fs.delete(new Path(output), true)
+
+          if (!fs.rename(new Path(temporaryOutput), new Path(output)))
+            throw RetryableDriverException(s"Could not move output of speculative Mapreduce job from ${temporaryOutput} to ${output}")
+        }
+
+      }
+    }
+  }
+
+  /**
+    * Kill a speculative run and delete its temporary output directory.
+    */
+  override def discardSpeculativeRun(runHandle: DriverRunHandle[MapreduceTransformation]) {
+    try {
+      killRun(runHandle)
+    } finally {
+      fileSystemDriver.delete(runHandle.stateHandle.asInstanceOf[Job].getConfiguration.get(FileOutputFormat.OUTDIR), true)
+    }
+  }
+
   private def driver = this
 
 }
@@ -106,6 +185,11 @@ class MapreduceDriver(val driverRunCompletionHandlerClassNames: List[String], va
   */
 object MapreduceDriver extends DriverCompanionObject[MapreduceTransformation] {
 
+  /**
+    * Job configuration property holding the output directory for which a speculative job writes a temporary output.
+    */
+  val speculativeOutputFor = "schedoscope.speculative.output.for"
+
   def apply(ds: DriverSettings) =
     new MapreduceDriver(ds.driverRunCompletionHandlers, Schedoscope.settings.userGroupInformation, FilesystemDriver(Schedoscope.settings.getDriverSettings("filesystem")))
 
@@ -22,12 +22,20 @@ import org.schedoscope.dsl.transformations.Transformation
 import org.schedoscope.scheduler.driver._
 import org.schedoscope.scheduler.messages.MaterializeViewMode.MaterializeViewMode
 import org.schedoscope.scheduler.states.{PartyInterestedInViewSchedulingStateChange, ViewSchedulingAction, ViewSchedulingState}
+import org.schedoscope.scheduler.utils.TransformationQueueStatistics
 
 import scala.util.Try
 
 
 case class CommandForView(sender: Option[View], receiver: View, anyRef: AnyRef)
 
+/**
+  * Command for a batch of views of the same table, sent to their table actor in a single message. Unless sent
+  * without a sender, the table actor answers with a ViewStatusListResponse carrying the states of the views after
+  * applying the command. State changes of the views resulting from the command are not reported back to the sender.
+  */
+case class CommandForViews(sender: Option[View], receivers: List[View], anyRef: AnyRef)
+
 /**
   * Superclass for failure messages.
   */
@@ -115,8 +123,13 @@ case class GetTransformationStatusList(statusRequester: ActorRef, transformation
   * @param status       filter the result by view status
   * @param filter       filter the result by regular expression on the view name
   * @param dependencies also return all dependent views
+  * @param table        filter the result by table name, with or without database prefix
+  * @param offset       skip this number of selected views in view URL path order
+  * @param after        only return the selected views whose URL paths sort after this one, to continue a previous
+  *                     request. Such requests do not count the selected views for the overview and total.
+  * @param limit        return at most this number of selected views in view URL path order
   */
-case class GetViews(views: Option[List[View]], status: Option[String], issueFilter: Option[String], filter: Option[String], dependencies: Boolean = false)
+case class GetViews(views: Option[List[View]], status: Option[String], issueFilter: Option[String], filter: Option[String], dependencies: Boolean = false, table: Option[String] = None, offset: Option[Int] = None, after: Option[String] = None, limit: Option[Int] = None)
 
 /**
   * Request to view manager to send a message to a specific view
@@ -152,6 +165,21 @@ object MaterializeViewMode extends Enumeration {
   */
 case class InitializeViews(vs: List[View]) extends CommandRequest
 
+/**
+  * Instructs a table actor to initialize views from a snapshot of their transformation metadata (version checksum,
+  * timestamp), if not yet initialized. The table actor reconciles these views with the metastore in the background.
+  *
+  * @param metadata snapshotted metadata of the views to initialize
+  */
+case class InitializeViewsFromSnapshot(metadata: Map[View, (String, Long)]) extends CommandRequest
+
+/**
+  * Request to a table actor to return the transformation metadata of its views for a view state snapshot.
+  *
+  * @param round number of the snapshot round
+  */
+case class SnapshotViewStates(round: Long) extends CommandRequest
+
 /**
   * Instructs a view actor to materialize itself
   */
@@ -229,18 +257,21 @@ case class TransformationSuccess[T <: Transformation](driverRunHandle: DriverRun
 /**
   * Response message of transformation manager actor with state of actions
   *
-  * @param transformationStatusList List of entities of TransformationStatusResponse
+  * @param transformationStatusList      List of entities of TransformationStatusResponse
+  * @param transformationQueueStatistics statistics of the queues of pending transformations per transformation type
   * @see TransformationStatusResponse
   */
-case class TransformationStatusListResponse(transformationStatusList: List[TransformationStatusResponse[_]]) extends CommandResponse
+case class TransformationStatusListResponse(transformationStatusList: List[TransformationStatusResponse[_]], transformationQueueStatistics: Map[String, TransformationQueueStatistics] = Map()) extends CommandResponse
 
 /**
   * Response message of view manager actor with state of view actors
   *
   * @param viewStatusList list of view metadata or a failure, if the views for the actors could not be initialized
+  * @param overview       number of selected views per status, including those not returned
+  * @param total          number of selected views, including those not returned
   * @see ViewStatusResponse
   */
-case class ViewStatusListResponse(viewStatusList: Try[List[ViewStatusResponse]]) extends CommandResponse
+case class ViewStatusListResponse(viewStatusList: Try[List[ViewStatusResponse]], overview: Map[String, Int] = Map(), total: Int = 0) extends CommandResponse
 
 /**
   * Driver actor responding to the transformation manager actor with the state of the running transformation
@@ -252,6 +283,25 @@ case class ViewStatusListResponse(viewStatusList: Try[List[ViewStatusResponse]])
   */
 case class TransformationStatusResponse[T <: Transformation](message: String, actor: ActorRef, driver: Driver[T], driverRunHandle: DriverRunHandle[T], driverRunStatus: DriverRunState[T]) extends CommandResponse
 
+/**
+  * Driver actor notifying the transformation manager actor of a finished transformation run
+  *
+  * @param transformation name of the transformation type
+  * @param succeeded      whether the run succeeded
+  * @param runtimeMillis  time between start and end of the run
+  */
+case class TransformationRunFinished(transformation: String, succeeded: Boolean, runtimeMillis: Long) extends CommandResponse
+
+/**
+  * Driver actor notifying the transformation manager actor that a transformation command dispatched to it has been
+  * completed, i.e., its result has been sent, the run has been killed, or the driver actor has stopped while
+  * holding it. Each dispatched transformation command is completed exactly once, no matter how often it has been
+  * rescheduled within the driver router.
+  *
+  * @param transformation name of the transformation type
+  */
+case class TransformationCommandCompleted(transformation: String) extends CommandResponse
+
 /**
   * View actor responding to the view manager actor with the state of the view
   *
@@ -270,6 +320,15 @@ case class ViewStatusResponse(status: String, view: View, actor: ActorRef, error
   */
 case class TransformationMetadata(metadata: Map[View, (String, Long)]) extends CommandResponse
 
+/**
+  * Table actor returning the transformation metadata (version checksum, timestamp) of its views for a view state
+  * snapshot.
+  *
+  * @param round    number of the snapshot round
+  * @param metadata metadata per view URL path
+  */
+case class ViewStatesSnapshot(round: Long, metadata: Map[String, (String, Long)]) extends CommandResponse
+
 /**
   * A view actor notifying a depending view that it has no data available
   */
@@ -25,10 +25,12 @@ import spray.json.{DefaultJsonProtocol, JsonFormat}
 object SchedoscopeJsonDataFormat extends DefaultJsonProtocol {
   implicit val runStatusFormat = jsonFormat5(RunStatus)
   implicit val actionStatusFormat = jsonFormat5(TransformationStatus)
-  implicit val actionStatusListFormat = jsonFormat2(TransformationStatusList)
+  implicit val transformationQueueStatusFormat = jsonFormat7(TransformationQueueStatus)
+  implicit val actionStatusListFormat = jsonFormat3(TransformationStatusList)
   implicit val viewTransformationStatusFormat: JsonFormat[ViewTransformationStatus] = lazyFormat(jsonFormat2(ViewTransformationStatus))
   implicit val viewStatusFormat: JsonFormat[ViewStatus] = lazyFormat(jsonFormat14(ViewStatus))
   implicit val fieldStatusFormat: JsonFormat[FieldStatus] = lazyFormat(jsonFormat3(FieldStatus))
-  implicit val viewStatusListFormat = jsonFormat2(ViewStatusList)
+  implicit val viewStatusPageFormat = jsonFormat4(ViewStatusPage)
+  implicit val viewStatusListFormat = jsonFormat3(ViewStatusList)
   implicit val queueStatusListFormat = jsonFormat2(QueueStatusList)
 }
@@ -8,7 +8,7 @@ import org.schedoscope.scheduler.commandline.SchedoscopeCliCommandRunner
   * REST web service and renders the results.
   */
 object SchedoscopeRestCli extends App {
-  val schedoscope = new SchedoscopeServiceRestClientImpl(Schedoscope.settings.host, Schedoscope.settings.port)
+  val schedoscope = new SchedoscopeServiceRestClientImpl(Schedoscope.settings.host, Schedoscope.settings.port, Schedoscope.settings.viewStatusPageSize)
 
   new SchedoscopeCliCommandRunner(schedoscope).run(args)
 
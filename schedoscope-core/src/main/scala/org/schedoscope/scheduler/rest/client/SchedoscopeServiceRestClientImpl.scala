@@ -25,15 +25,17 @@ import spray.http.{HttpResponse, StatusCode, Uri}
 import spray.httpx.SprayJsonSupport.sprayJsonUnmarshaller
 
 import scala.collection.immutable.Map
+import scala.collection.mutable
 import scala.concurrent.Future
 import scala.concurrent.duration.DurationInt
 import scala.language.postfixOps
 
 /**
   * Implementation of the schedoscope service that maps the given scheduling commands
-  * to REST web service calls and parse the returned results.
+  * to REST web service calls and parse the returned results. View state streams are fetched page by page
+  * with the given page size; each page is only requested when its chunk is taken from the stream.
   */
-class SchedoscopeServiceRestClientImpl(val host: String, val port: Int) extends SchedoscopeService {
+class SchedoscopeServiceRestClientImpl(val host: String, val port: Int, val viewStatusPageSize: Int = 1000) extends SchedoscopeService {
 
   import SchedoscopeJsonDataFormat._
 
@@ -95,10 +97,46 @@ class SchedoscopeServiceRestClientImpl(val host: String, val port: Int) extends
     get[ViewStatusList](s"/newdata/${viewUrlPath.getOrElse("")}", paramsFrom(("status", status), ("filter", filter)))
   }
 
-  def views(viewUrlPath: Option[String], status: Option[String], filter: Option[String], issueFilter: Option[String], dependencies: Option[Boolean], overview: Option[Boolean], all: Option[Boolean]): Future[ViewStatusList] = {
-    get[ViewStatusList](s"/views/${viewUrlPath.getOrElse("")}", paramsFrom(("status", status), ("filter", filter), ("issueFilter", issueFilter), ("dependencies", dependencies), ("overview", overview), ("all", all)))
+  def views(viewUrlPath: Option[String], status: Option[String], filter: Option[String], issueFilter: Option[String], dependencies: Option[Boolean], overview: Option[Boolean], all: Option[Boolean], table: Option[String], offset: Option[Int], limit: Option[Int]): Future[ViewStatusList] = {
+    get[ViewStatusList](s"/views/${viewUrlPath.getOrElse("")}", paramsFrom(("status", status), ("filter", filter), ("issueFilter", issueFilter), ("dependencies", dependencies), ("overview", overview), ("all", all), ("table", table), ("offset", offset), ("limit", limit)))
   }
 
+  def viewsStream(viewUrlPath: Option[String], status: Option[String], filter: Option[String], issueFilter: Option[String], dependencies: Option[Boolean], overview: Option[Boolean], all: Option[Boolean], table: Option[String], offset: Option[Int], limit: Option[Int]): Future[ViewStatusStream] =
+    if (overview.getOrElse(false))
+      views(viewUrlPath, status, filter, issueFilter, dependencies, overview, all, table, None, None).map { viewStatusList =>
+        ViewStatusStream(viewStatusList.overview, viewStatusList.overview.values.sum, Iterator.empty)
+      }
+    else {
+      val streamOffset = math.max(offset.getOrElse(0), 0)
+      val streamEnd = limit.map(streamOffset + math.max(_, 0))
+
+      def pageFrom(pageOffset: Int) =
+        views(viewUrlPath, status, filter, issueFilter, dependencies, None, all, table,
+          Some(pageOffset), Some(streamEnd.map(end => math.min(end - pageOffset, viewStatusPageSize)).getOrElse(viewStatusPageSize)))
+
+      pageFrom(streamOffset).map { firstPage =>
+        val total = firstPage.page.map(_.total).getOrElse(firstPage.overview.values.sum)
+        val streamLimit = math.max(streamEnd.getOrElse(total) - streamOffset, 0)
+        val streamed = math.min(streamLimit, math.max(total - streamOffset, 0))
+
+        // each page lists the details of the tables of its views, keep only the first listing of a table
+        val listedTables = mutable.HashSet[String]()
+
+        val pages = (streamOffset until streamOffset + streamed by viewStatusPageSize).iterator.map { pageOffset =>
+          (if (pageOffset == streamOffset) Future.successful(firstPage) else pageFrom(pageOffset)).map { page =>
+            page.views.filter(v => v.isTable != Some(true) || listedTables.add(v.viewTableName.getOrElse(v.viewPath)))
+          }
+        }
+
+        ViewStatusStream(firstPage.overview, total, pages,
+          if (offset.isEmpty && limit.isEmpty)
+            None
+          else
+            Some(ViewStatusPage(streamOffset, streamLimit, total, if (streamOffset + streamLimit < total) Some(streamOffset + streamLimit) else None))
+        )
+      }
+    }
+
   def transformations(status: Option[String], filter: Option[String]): Future[TransformationStatusList] = {
     get[TransformationStatusList](s"/transformations", paramsFrom(("status", status), ("filter", filter)))
   }
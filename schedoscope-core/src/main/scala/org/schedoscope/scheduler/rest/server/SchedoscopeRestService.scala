@@ -17,24 +17,28 @@ package org.schedoscope.scheduler.rest.server
 
 import java.util.logging.{Level, LogManager, Logger}
 
-import akka.actor.{Actor, ActorContext, ActorRef, ActorSystem, Props}
+import akka.actor.{Actor, ActorContext, ActorRef, ActorSystem, Props, ReceiveTimeout, Status}
 import akka.io.IO
-import akka.pattern.ask
+import akka.pattern.{ask, pipe}
 import akka.routing.SmallestMailboxPool
 import akka.util.Timeout
 import org.schedoscope.Schedoscope
 import org.schedoscope.scheduler.commandline.SchedoscopeCliRepl
 import org.schedoscope.scheduler.rest.SchedoscopeJsonDataFormat
 import org.schedoscope.scheduler.service._
+import org.schedoscope.scheduler.utils.SchedulerMetrics
 import org.slf4j.bridge.SLF4JBridgeHandler
 import spray.can.Http
 import spray.http.HttpHeaders.RawHeader
 import spray.http.StatusCodes._
+import spray.http.{ChunkedMessageEnd, ChunkedResponseStart, ContentType, ContentTypes, HttpCharsets, HttpEntity, HttpResponse, MediaTypes, MessageChunk}
+import spray.json.pimpAny
 import spray.routing.Directive.pimpApply
-import spray.routing.{ExceptionHandler, HttpService}
+import spray.routing.{ExceptionHandler, HttpService, RequestContext}
 import spray.util.LoggingContext
 
-import scala.concurrent.ExecutionContextExecutor
+import scala.concurrent.duration.Duration
+import scala.concurrent.{ExecutionContextExecutor, Future}
 import scala.language.postfixOps
 
 
@@ -67,13 +71,19 @@ class SchedoscopeRestServiceActor(schedoscope: SchedoscopeService) extends Actor
 
   override def receive: Receive = runRoute(get {
     respondWithHeader(RawHeader("Access-Control-Allow-Origin", "*")) {
-      parameters("status" ?, "filter" ?, "issueFilter" ?, "dependencies".as[Boolean] ?, "typ" ?, "mode" ?, "overview".as[Boolean] ?, "all".as[Boolean] ?) {
-        (status, filter, issueFilter, dependencies, typ, mode, overview, all) =>
+      parameters("status" ?, "filter" ?, "issueFilter" ?, "dependencies".as[Boolean] ?, "typ" ?, "mode" ?, "overview".as[Boolean] ?, "all".as[Boolean] ?, "table" ?, "offset".as[Int] ?, "limit".as[Int] ?, "stream".as[Boolean] ?) {
+        (status, filter, issueFilter, dependencies, typ, mode, overview, all, table, offset, limit, stream) =>
           path("transformations") {
             complete(schedoscope.transformations(status, filter))
           } ~
+            path("metrics") {
+              complete(HttpEntity(ContentType(MediaTypes.`text/plain`, HttpCharsets.`UTF-8`), SchedulerMetrics.render))
+            } ~
             path("views" / Rest.?) { viewUrlPath =>
-              complete(schedoscope.views(viewUrlPath, status, filter, issueFilter, dependencies, overview, all))
+              if (stream.getOrElse(false))
+                ctx => actorRefFactory.actorOf(ViewStatusStreamActor.props(ctx, schedoscope.viewsStream(viewUrlPath, status, filter, issueFilter, dependencies, overview, all, table, offset, limit)))
+              else
+                complete(schedoscope.views(viewUrlPath, status, filter, issueFilter, dependencies, overview, all, table, offset, limit))
             } ~
             path("materialize" / Rest.?) { viewUrlPath =>
               complete(schedoscope.materialize(viewUrlPath, status, filter, issueFilter, mode))
@@ -86,6 +96,78 @@ class SchedoscopeRestServiceActor(schedoscope: SchedoscopeService) extends Actor
   })
 }
 
+/**
+  * Actor writing the view states of a view status stream as a chunked JSON response. The next chunk
+  * is only requested and sent after the previous one has been acknowledged by the connection, so that
+  * memory stays flat no matter how many views are returned.
+  *
+  * If the view states are not available, a chunk fails, or the connection stops acknowledging chunks within
+  * the given timeout, the actor terminates the response and stops.
+  */
+class ViewStatusStreamActor(ctx: RequestContext, viewStatusStream: Future[ViewStatusStream], timeout: Duration) extends Actor {
+
+  import SchedoscopeJsonDataFormat._
+  import context.dispatcher
+
+  case class ChunkSent(first: Boolean)
+
+  case class ChunkBuilt(chunk: List[ViewStatus], first: Boolean)
+
+  context.setReceiveTimeout(timeout)
+
+  viewStatusStream pipeTo self
+
+  def receive: Receive = {
+    case ViewStatusStream(overview, total, chunks, page) =>
+      ctx.responder ! ChunkedResponseStart(HttpResponse(entity = HttpEntity(ContentTypes.`application/json`,
+        s"""{"overview":${overview.toJson.compactPrint},"total":$total,""" +
+          page.map(p => s""""page":${p.toJson.compactPrint},""").getOrElse("") +
+          """"views":["""))).withAck(ChunkSent(first = true))
+      context.become(streaming(chunks))
+
+    case Status.Failure(t) =>
+      ctx.failWith(t)
+      context.stop(self)
+
+    case ReceiveTimeout =>
+      ctx.complete(ServiceUnavailable, "Timed out waiting for view states")
+      context.stop(self)
+  }
+
+  def streaming(chunks: Iterator[Future[List[ViewStatus]]]): Receive = {
+    case ChunkSent(first) =>
+      if (chunks.hasNext)
+        chunks.next().map(ChunkBuilt(_, first)) pipeTo self
+      else {
+        ctx.responder ! MessageChunk("]}")
+        ctx.responder ! ChunkedMessageEnd
+        context.stop(self)
+      }
+
+    case ChunkBuilt(chunk, first) =>
+      if (chunk.nonEmpty)
+        ctx.responder ! MessageChunk(chunk.map(_.toJson.compactPrint).mkString(if (first) "" else ",", ",", "")).withAck(ChunkSent(first = false))
+      else
+        self ! ChunkSent(first)
+
+    case Status.Failure(_) =>
+      ctx.responder ! ChunkedMessageEnd
+      context.stop(self)
+
+    case ReceiveTimeout =>
+      ctx.responder ! ChunkedMessageEnd
+      context.stop(self)
+
+    case _: Http.ConnectionClosed =>
+      context.stop(self)
+  }
+}
+
+object ViewStatusStreamActor {
+  def props(ctx: RequestContext, viewStatusStream: Future[ViewStatusStream], timeout: Duration = Schedoscope.settings.webserviceTimeout) =
+    Props(classOf[ViewStatusStreamActor], ctx, viewStatusStream, timeout)
+}
+
 /**
   * Main object for launching the schedoscope rest service.
   */
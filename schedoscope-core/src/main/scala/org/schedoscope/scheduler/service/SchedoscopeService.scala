@@ -21,7 +21,9 @@ import scala.concurrent.Future
 
 case class TransformationStatus(actor: String, typ: String, status: String, runStatus: Option[RunStatus], properties: Option[Map[String, String]])
 
-case class TransformationStatusList(overview: Map[String, Int], transformations: List[TransformationStatus])
+case class TransformationStatusList(overview: Map[String, Int], transformations: List[TransformationStatus], queues: Option[Map[String, TransformationQueueStatus]] = None)
+
+case class TransformationQueueStatus(depth: Int, oldestWaitMillis: Long, averageWaitMillis: Long, dequeued: Long, inFlight: Int, concurrencyLimit: Int, scalingDecision: Option[String])
 
 case class ViewStatus(
                        viewPath: String,
@@ -43,7 +45,11 @@ case class FieldStatus(name: String, fieldtype: String, comment: Option[String])
 
 case class ViewTransformationStatus(name: String, properties: Option[Map[String, String]])
 
-case class ViewStatusList(overview: Map[String, Int], views: List[ViewStatus])
+case class ViewStatusList(overview: Map[String, Int], views: List[ViewStatus], page: Option[ViewStatusPage] = None)
+
+case class ViewStatusPage(offset: Int, limit: Int, total: Int, nextOffset: Option[Int])
+
+case class ViewStatusStream(overview: Map[String, Int], total: Int, chunks: Iterator[Future[List[ViewStatus]]], page: Option[ViewStatusPage] = None)
 
 case class QueueStatusList(overview: Map[String, Int], queues: Map[String, List[RunStatus]])
 
@@ -97,9 +103,26 @@ trait SchedoscopeService {
     *
     * Finally, there is the option to just return an overview count of views in states instead of returning the states themselves.
     *
+    * Views can also be restricted to a table. Passing an offset or limit returns a single page of view states
+    * ordered by view URL path, the overview still counting all selected views.
+    *
+    * Throws an InvalidArgumentException if an invalid view URL pattern or regexp filter are passed.
+    */
+  def views(viewUrlPath: Option[String], status: Option[String], filter: Option[String], issueFilter: Option[String], dependencies: Option[Boolean], overview: Option[Boolean], all: Option[Boolean], table: Option[String] = None, offset: Option[Int] = None, limit: Option[Int] = None): Future[ViewStatusList]
+
+  /**
+    * Return view(s) and their state(s) like views(), but as a stream of chunks of view states that are only
+    * fetched and built when the chunks are consumed. This allows to serve the states of a large number of views
+    * with constant memory. Taking the next chunk does not block but returns a future of it; a chunk should only be
+    * taken after the previous one has completed.
+    *
+    * With overview set, no view states are streamed. Passing an offset or limit streams the view states of
+    * that range of views ordered by view URL path. Unlike with views(), a missing limit streams all views
+    * after the offset.
+    *
     * Throws an InvalidArgumentException if an invalid view URL pattern or regexp filter are passed.
     */
-  def views(viewUrlPath: Option[String], status: Option[String], filter: Option[String], issueFilter: Option[String], dependencies: Option[Boolean], overview: Option[Boolean], all: Option[Boolean]): Future[ViewStatusList]
+  def viewsStream(viewUrlPath: Option[String], status: Option[String], filter: Option[String], issueFilter: Option[String], dependencies: Option[Boolean], overview: Option[Boolean], all: Option[Boolean], table: Option[String] = None, offset: Option[Int] = None, limit: Option[Int] = None): Future[ViewStatusStream]
 
   /**
     * Return the states of the transformation drivers. Transformation driver info can be filtered by transformation state or a regexp
@@ -24,15 +24,17 @@ import org.schedoscope.AskPattern._
 import org.schedoscope.conf.SchedoscopeSettings
 import org.schedoscope.dsl.View
 import org.schedoscope.dsl.transformations._
+import org.schedoscope.lineage.DependencyAnalyzer
 import org.schedoscope.scheduler.actors.ViewManagerActor
 import org.schedoscope.scheduler.driver.{DriverRunFailed, DriverRunOngoing, DriverRunState, DriverRunSucceeded}
 import org.schedoscope.scheduler.messages._
 import org.schedoscope.schema.ddl.HiveQl
 
+import scala.collection.mutable
 import scala.concurrent.Future
 import scala.concurrent.duration.DurationInt
 import scala.language.postfixOps
-import scala.util.{Failure, Success}
+import scala.util.Failure
 
 
 class SchedoscopeServiceImpl(actorSystem: ActorSystem, settings: SchedoscopeSettings, viewManagerActor: ActorRef, transformationManagerActor: ActorRef) extends SchedoscopeService {
@@ -151,12 +153,24 @@ class SchedoscopeServiceImpl(actorSystem: ActorSystem, settings: SchedoscopeSett
       isTable = isTable
     )
 
-  private def viewStatusListFromStatusResponses(viewStatusResponses: List[ViewStatusResponse],
-                                                dependencies: Option[Boolean],
-                                                overview: Option[Boolean],
-                                                all: Option[Boolean],
-                                                issueFilter: Option[String]
-                                               ) = {
+  /**
+    * Count views per status without building view states.
+    */
+  private def statusOverview(viewStatusResponses: List[ViewStatusResponse]) =
+    viewStatusResponses.foldLeft(Map[String, Int]()) { (overview, v) =>
+      overview.updated(v.status, overview.getOrElse(v.status, 0) + 1)
+    }
+
+  /**
+    * Build the view states for the given responses. With all set, the detailed state of a table is put in
+    * front of the first view of each table that has not been listed before.
+    */
+  private def viewStatusesFromStatusResponses(viewStatusResponses: List[ViewStatusResponse],
+                                              dependencies: Option[Boolean],
+                                              all: Option[Boolean],
+                                              issueFilter: Option[String],
+                                              listedTables: mutable.Set[String] = mutable.HashSet()
+                                             ) = {
 
     val viewStatusListWithoutViewDetails = viewStatusResponses.map { v =>
       viewStatusOutput(vsr = v,
@@ -169,10 +183,10 @@ class SchedoscopeServiceImpl(actorSystem: ActorSystem, settings: SchedoscopeSett
       )
     }
 
-    lazy val viewStatusList = if (all.getOrElse(false))
-      viewStatusResponses
-        .groupBy(v => v.view.tableName)
-        .map(e => e._2.head)
+    if (all.getOrElse(false)) {
+      val tableViewStatusResponses = viewStatusResponses.filter(v => listedTables.add(v.view.tableName))
+
+      tableViewStatusResponses
         .map(v =>
           viewStatusOutput(vsr = v,
             viewTableName = Option(v.view.tableName),
@@ -182,15 +196,58 @@ class SchedoscopeServiceImpl(actorSystem: ActorSystem, settings: SchedoscopeSett
             all = all,
             issueFilter
           )
-        )
-        .toList ::: viewStatusListWithoutViewDetails
-    else
+        ) ::: viewStatusListWithoutViewDetails
+    } else
       viewStatusListWithoutViewDetails
+  }
 
-    val statusOverview = viewStatusListWithoutViewDetails.groupBy(_.status).mapValues(_.size)
+  /**
+    * Analyze the lineage of the tables whose detailed states are built for the given responses in parallel, such
+    * that building these states finds it cached.
+    */
+  private def analyzeTableLineage(viewStatusResponses: List[ViewStatusResponse],
+                                  all: Option[Boolean],
+                                  listedTables: collection.Set[String] = Set()
+                                 ) =
+    if (all.getOrElse(false))
+      DependencyAnalyzer.analyzeLineage(
+        viewStatusResponses
+          .filterNot(v => listedTables.contains(v.view.tableName))
+          .groupBy(_.view.tableName)
+          .values
+          .map(_.head.view)
+          .toList
+      )
+    else
+      Future.successful(Map[View, Nothing]())
 
-    ViewStatusList(statusOverview, if (overview.getOrElse(false)) List() else viewStatusList)
-  }
+  /**
+    * Build the view states for the given responses, analyzing the lineage of the tables listed in detail first.
+    */
+  private def viewStatuses(viewStatusResponses: List[ViewStatusResponse],
+                           dependencies: Option[Boolean],
+                           all: Option[Boolean],
+                           issueFilter: Option[String],
+                           listedTables: mutable.Set[String] = mutable.HashSet()
+                          ) =
+    analyzeTableLineage(viewStatusResponses, all, listedTables).map { _ =>
+      viewStatusesFromStatusResponses(viewStatusResponses, dependencies, all, issueFilter, listedTables)
+    }
+
+  private def viewStatusListFromStatusResponses(viewStatusResponses: List[ViewStatusResponse],
+                                                dependencies: Option[Boolean],
+                                                all: Option[Boolean],
+                                                issueFilter: Option[String]
+                                               ) =
+    viewStatuses(viewStatusResponses, dependencies, all, issueFilter).map { viewStatuses =>
+      ViewStatusList(statusOverview(viewStatusResponses), viewStatuses)
+    }
+
+  /**
+    * Describe the page of the selected views starting at the offset and not exceeding the limit.
+    */
+  private def viewStatusPage(offset: Int, limit: Int, total: Int) =
+    ViewStatusPage(offset, limit, total, if (offset + limit < total) Some(offset + limit) else None)
 
   private def runStatusFromTransformationStatusResponse(a: TransformationStatusResponse[_]): TransformationStatus = {
 
@@ -241,69 +298,152 @@ class SchedoscopeServiceImpl(actorSystem: ActorSystem, settings: SchedoscopeSett
   }
 
 
-  private def queryViewStatus(viewUrlPath: Option[String],
-                              status: Option[String],
-                              filter: Option[String],
-                              issueFilter: Option[String],
-                              dependencies: Boolean = false) = {
+  /**
+    * Check the filter and view URL pattern passed and resolve the views addressed by the pattern, if any.
+    */
+  private def resolveViews(viewUrlPath: Option[String], filter: Option[String]) = {
 
     val cf = Future(checkFilter(filter))
     val cvup = Future(checkViewUrlPath(viewUrlPath))
 
-    Future.sequence(List(cf, cvup)).flatMap { r =>
-      Future {
-        val resolvedViews = if (viewUrlPath.isDefined && !viewUrlPath.get.isEmpty) Some(viewsFromUrl(viewUrlPath.get)) else None
-        queryActor[ViewStatusListResponse](
-          viewManagerActor,
-          GetViews(resolvedViews, status, filter, issueFilter, dependencies),
-          settings.schedulingCommandTimeout).viewStatusList match {
-          case Success(vsl) => vsl
-          case Failure(t) => throw t
-        }
+    Future.sequence(List(cf, cvup)).map { r =>
+      if (viewUrlPath.isDefined && !viewUrlPath.get.isEmpty) Some(viewsFromUrl(viewUrlPath.get)) else None
+    }
+  }
+
+  /**
+    * Query the view manager for the states of the selected views.
+    */
+  private def queryViews(getViews: GetViews) =
+    Future {
+      queryActor[ViewStatusListResponse](
+        viewManagerActor,
+        getViews,
+        settings.schedulingCommandTimeout) match {
+        case ViewStatusListResponse(Failure(t), _, _) => throw t
+        case response => response
       }
     }
+
+  private def queryViewStatus(viewUrlPath: Option[String],
+                              status: Option[String],
+                              filter: Option[String],
+                              issueFilter: Option[String],
+                              dependencies: Boolean = false,
+                              table: Option[String] = None) =
+    resolveViews(viewUrlPath, filter).flatMap { resolvedViews =>
+      queryViews(GetViews(resolvedViews, status, filter, issueFilter, dependencies, table)).map(_.viewStatusList.get)
+    }
+
+  /**
+    * Send a command to the given views with one message per table actor.
+    */
+  private def commandForViews(viewStatusResponses: List[ViewStatusResponse], command: AnyRef) {
+    viewStatusResponses.groupBy(_.actor).foreach {
+      case (tableActor, tableViewStatusResponses) =>
+        tableActor ! CommandForViews(None, tableViewStatusResponses.map(_.view), command)
+    }
   }
 
   def materialize(viewUrlPath: Option[String], status: Option[String], filter: Option[String], issueFilter: Option[String], mode: Option[String]) = {
-    queryViewStatus(viewUrlPath, status, filter, issueFilter).map {
-      viewStatusResponses =>
-        viewStatusResponses
-          .foreach { vsr =>
-            vsr.actor ! CommandForView(None, vsr.view, MaterializeView(
-              try {
-                MaterializeViewMode.withName(mode.getOrElse("DEFAULT"))
-              } catch {
-                case _: NoSuchElementException => MaterializeViewMode.DEFAULT
-              }))
-          }
-        viewStatusListFromStatusResponses(viewStatusResponses, None, None, None, issueFilter)
+    val materializeView = MaterializeView(
+      try {
+        MaterializeViewMode.withName(mode.getOrElse("DEFAULT"))
+      } catch {
+        case _: NoSuchElementException => MaterializeViewMode.DEFAULT
+      })
+
+    queryViewStatus(viewUrlPath, status, filter, issueFilter).flatMap { viewStatusResponses =>
+      commandForViews(viewStatusResponses, materializeView)
+      viewStatusListFromStatusResponses(viewStatusResponses, None, None, issueFilter)
     }
   }
 
   def invalidate(viewUrlPath: Option[String], status: Option[String], filter: Option[String], issueFilter: Option[String], dependencies: Option[Boolean]) = {
-    queryViewStatus(viewUrlPath, status, filter, issueFilter, dependencies.getOrElse(false)).map {
-      viewStatusResponses =>
-        viewStatusResponses
-          .foreach { vsr =>
-            vsr.actor ! CommandForView(None, vsr.view, InvalidateView())
-          }
-        viewStatusListFromStatusResponses(viewStatusResponses, dependencies, None, None, issueFilter)
+    queryViewStatus(viewUrlPath, status, filter, issueFilter, dependencies.getOrElse(false)).flatMap { viewStatusResponses =>
+      commandForViews(viewStatusResponses, InvalidateView())
+      viewStatusListFromStatusResponses(viewStatusResponses, dependencies, None, issueFilter)
     }
   }
 
   def newdata(viewUrlPath: Option[String], status: Option[String], filter: Option[String]) = {
-    queryViewStatus(viewUrlPath, status, filter, None).map { viewStatusResponses =>
+    queryViewStatus(viewUrlPath, status, filter, None).flatMap { viewStatusResponses =>
       viewStatusResponses
         .foreach { vsr =>
           vsr.actor ! "newdata"
         }
-      viewStatusListFromStatusResponses(viewStatusResponses, None, None, None, None)
+      viewStatusListFromStatusResponses(viewStatusResponses, None, None, None)
     }
   }
 
-  def views(viewUrlPath: Option[String], status: Option[String], filter: Option[String], issueFilter: Option[String], dependencies: Option[Boolean], overview: Option[Boolean], all: Option[Boolean]) =
-    queryViewStatus(viewUrlPath, status, filter, issueFilter, dependencies.getOrElse(false)).map { viewStatusResponses =>
-      viewStatusListFromStatusResponses(viewStatusResponses, dependencies, overview, all, issueFilter)
+  def views(viewUrlPath: Option[String], status: Option[String], filter: Option[String], issueFilter: Option[String], dependencies: Option[Boolean], overview: Option[Boolean], all: Option[Boolean], table: Option[String], offset: Option[Int], limit: Option[Int]) =
+    resolveViews(viewUrlPath, filter).flatMap { resolvedViews =>
+      val getViews = GetViews(resolvedViews, status, filter, issueFilter, dependencies.getOrElse(false), table)
+
+      if (overview.getOrElse(false))
+        queryViews(getViews.copy(limit = Some(0))).map { response =>
+          ViewStatusList(response.overview, List())
+        }
+      else if (offset.isEmpty && limit.isEmpty)
+        queryViews(getViews).flatMap { response =>
+          viewStatusListFromStatusResponses(response.viewStatusList.get, dependencies, all, issueFilter)
+        }
+      else {
+        val pageOffset = math.max(offset.getOrElse(0), 0)
+        val pageLimit = math.max(limit.getOrElse(settings.viewStatusPageSize), 0)
+
+        queryViews(getViews.copy(offset = Some(pageOffset), limit = Some(pageLimit))).flatMap { response =>
+          viewStatuses(response.viewStatusList.get, dependencies, all, issueFilter).map { viewStatuses =>
+            ViewStatusList(response.overview, viewStatuses, Some(viewStatusPage(pageOffset, pageLimit, response.total)))
+          }
+        }
+      }
+    }
+
+  /**
+    * Stream view states in chunks of the configured view status page size. The view manager selects the first chunk
+    * along with the overview; each further chunk is only requested from the view manager when it is consumed,
+    * continuing after the last view of the previous chunk.
+    */
+  def viewsStream(viewUrlPath: Option[String], status: Option[String], filter: Option[String], issueFilter: Option[String], dependencies: Option[Boolean], overview: Option[Boolean], all: Option[Boolean], table: Option[String], offset: Option[Int], limit: Option[Int]) =
+    resolveViews(viewUrlPath, filter).flatMap { resolvedViews =>
+      val getViews = GetViews(resolvedViews, status, filter, issueFilter, dependencies.getOrElse(false), table)
+      val chunkSize = math.max(settings.viewStatusPageSize, 1)
+      val streamOffset = math.max(offset.getOrElse(0), 0)
+      val firstChunkSize = if (overview.getOrElse(false)) 0 else math.min(math.max(limit.getOrElse(chunkSize), 0), chunkSize)
+
+      queryViews(getViews.copy(offset = Some(streamOffset), limit = Some(firstChunkSize))).map { firstChunk =>
+        val total = firstChunk.total
+        val streamLimit = math.max(limit.getOrElse(total - streamOffset), 0)
+        val streamed = if (overview.getOrElse(false)) 0 else math.min(streamLimit, math.max(total - streamOffset, 0))
+
+        val listedTables = mutable.HashSet[String]()
+        var previousChunk = Future.successful(firstChunk.viewStatusList.get)
+
+        val chunks = (0 until streamed by chunkSize).iterator.map { chunkOffset =>
+          val chunk =
+            if (chunkOffset == 0)
+              previousChunk
+            else
+              previousChunk.flatMap {
+                case Nil => Future.successful(Nil)
+                case previous => queryViews(getViews.copy(
+                  after = Some(previous.last.view.urlPath),
+                  limit = Some(math.min(chunkSize, streamed - chunkOffset)))
+                ).map(_.viewStatusList.get)
+              }
+
+          previousChunk = chunk
+          chunk.flatMap(viewStatuses(_, dependencies, all, issueFilter, listedTables))
+        }
+
+        ViewStatusStream(firstChunk.overview, total, chunks,
+          if (overview.getOrElse(false) || (offset.isEmpty && limit.isEmpty))
+            None
+          else
+            Some(viewStatusPage(streamOffset, streamLimit, total))
+        )
+      }
     }
 
   def transformations(status: Option[String], filter: Option[String]): Future[TransformationStatusList] = {
@@ -321,7 +461,11 @@ class SchedoscopeServiceImpl(actorSystem: ActorSystem, settings: SchedoscopeSett
           .groupBy(_.status)
           .map(el => (el._1, el._2.size))
 
-        TransformationStatusList(overview, actions)
+        val queues = result.transformationQueueStatistics.map {
+          case (transformationName, q) => transformationName -> TransformationQueueStatus(q.depth, q.oldestWaitMillis, q.averageWaitMillis, q.dequeued, q.inFlight, q.concurrencyLimit, q.scalingDecision)
+        }
+
+        TransformationStatusList(overview, actions, Some(queues))
       }
     }
   }
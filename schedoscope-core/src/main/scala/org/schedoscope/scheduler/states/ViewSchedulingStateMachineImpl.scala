@@ -29,11 +29,11 @@ class ViewSchedulingStateMachineImpl extends ViewSchedulingStateMachine {
       ResultingViewSchedulingState(
         Materialized(
           view,
-          view.transformation().checksum,
+          view.transformationChecksum,
           currentTime,
           false,
           false), {
-          if (lastTransformationChecksum != view.transformation().checksum)
+          if (lastTransformationChecksum != view.transformationChecksum)
             Set(WriteTransformationCheckum(view))
           else
             Set()
@@ -115,16 +115,16 @@ class ViewSchedulingStateMachineImpl extends ViewSchedulingStateMachine {
           })
 
       else if (oneDependencyReturnedData) {
-        if (lastTransformationTimestamp < dependenciesFreshness || (materializationMode != RESET_TRANSFORMATION_CHECKSUMS && lastTransformationChecksum != view.transformation().checksum)) {
+        if (lastTransformationTimestamp < dependenciesFreshness || (materializationMode != RESET_TRANSFORMATION_CHECKSUMS && lastTransformationChecksum != view.transformationChecksum)) {
           if (materializationMode == RESET_TRANSFORMATION_CHECKSUMS_AND_TIMESTAMPS)
             ResultingViewSchedulingState(
               Materialized(
                 view,
-                view.transformation().checksum,
+                view.transformationChecksum,
                 currentTime,
                 withErrors = withErrors | setError,
                 incomplete = incomplete | setIncomplete), {
-                if (lastTransformationChecksum != view.transformation().checksum)
+                if (lastTransformationChecksum != view.transformationChecksum)
                   Set(WriteTransformationCheckum(view))
                 else
                   Set()
@@ -415,11 +415,11 @@ class ViewSchedulingStateMachineImpl extends ViewSchedulingStateMachine {
         ResultingViewSchedulingState(
           Materialized(
             view,
-            view.transformation().checksum,
+            view.transformationChecksum,
             currentTime,
             withErrors = withErrors, //HERE!!
             incomplete = incomplete), {
-            if (materializationMode == RESET_TRANSFORMATION_CHECKSUMS || lastTransformationChecksum != view.transformation().checksum)
+            if (materializationMode == RESET_TRANSFORMATION_CHECKSUMS || lastTransformationChecksum != view.transformationChecksum)
               Set(WriteTransformationCheckum(view))
             else
               Set()
@@ -0,0 +1,112 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.utils
+
+/**
+  * An additive-increase / multiplicative-decrease limit for the number of transformations of one type
+  * running concurrently.
+  *
+  * While transformations are waiting for a driver and runs succeed without degrading, the limit grows by one
+  * per limit completed runs. It is multiplied by backOffRatio upon a failed run or when the recent average run
+  * time exceeds the long term average by more than latencyTolerance, but at most once per limit completed runs
+  * so that a burst of failures of runs started under the old limit does not collapse it.
+  *
+  * @param initialLimit     limit to start with
+  * @param minLimit         lower bound of the limit
+  * @param maxLimit         upper bound of the limit
+  * @param backOffRatio     factor applied to the limit upon failures or degrading run times
+  * @param latencyTolerance factor by which the recent average run time may exceed the long term average
+  */
+class AdaptiveConcurrencyLimit(initialLimit: Int, minLimit: Int, maxLimit: Int, backOffRatio: Double, latencyTolerance: Double) {
+
+  private val lowerBound = math.max(1, math.min(minLimit, maxLimit))
+
+  private var currentLimit = math.min(math.max(initialLimit, lowerBound), maxLimit)
+
+  private var recentRuntime = 0.0
+
+  private var longTermRuntime = 0.0
+
+  private var completionsSinceDecrease = currentLimit
+
+  private var successesSinceIncrease = 0
+
+  private var decision = s"initial limit ${limit}"
+
+  /**
+    * The current number of transformations allowed to run concurrently.
+    */
+  def limit = currentLimit
+
+  /**
+    * Description of the last change of the limit.
+    */
+  def lastDecision = decision
+
+  /**
+    * Adapt the limit to a completed run.
+    *
+    * @param runtimeMillis run time of the transformation
+    * @param succeeded     whether the transformation succeeded
+    * @param waiting       number of transformations waiting for a driver
+    * @return the description of the change if the limit changed
+    */
+  def runCompleted(runtimeMillis: Long, succeeded: Boolean, waiting: Int): Option[String] = {
+    if (longTermRuntime == 0.0) {
+      recentRuntime = runtimeMillis
+      longTermRuntime = runtimeMillis
+    } else {
+      recentRuntime = 0.5 * recentRuntime + 0.5 * runtimeMillis
+      longTermRuntime = 0.95 * longTermRuntime + 0.05 * runtimeMillis
+    }
+
+    completionsSinceDecrease += 1
+
+    val previousLimit = currentLimit
+    val mayDecrease = completionsSinceDecrease >= previousLimit
+    val degraded = recentRuntime > latencyTolerance * longTermRuntime
+
+    val reason = if (!succeeded && mayDecrease) {
+      decrease()
+      Some("failed run")
+    } else if (degraded && mayDecrease) {
+      decrease()
+      Some(f"run time degraded to ${recentRuntime}%.0f ms from ${longTermRuntime}%.0f ms")
+    } else if (succeeded && !degraded && waiting > 0) {
+      successesSinceIncrease += 1
+
+      if (successesSinceIncrease >= previousLimit) {
+        currentLimit = math.min(maxLimit, currentLimit + 1)
+        successesSinceIncrease = 0
+      }
+
+      Some(s"${waiting} transformations waiting")
+    } else
+      None
+
+    if (currentLimit != previousLimit) {
+      decision = s"limit ${previousLimit} -> ${limit}: ${reason.get}"
+      Some(decision)
+    } else
+      None
+  }
+
+  private def decrease() {
+    currentLimit = math.max(lowerBound, (currentLimit * backOffRatio).toInt)
+    completionsSinceDecrease = 0
+    successesSinceIncrease = 0
+  }
+}
@@ -0,0 +1,292 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.utils
+
+import java.util.Collections
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{ConcurrentHashMap, ConcurrentLinkedQueue}
+
+import org.schedoscope.dsl.View
+
+import scala.collection.JavaConversions.asScalaSet
+import scala.collection.mutable
+import scala.concurrent.{ExecutionContext, Future}
+
+/**
+  * A cache of the dependency graph between views.
+  *
+  * Each view known to the graph is assigned a compact integer id. The direct dependencies of a view are
+  * evaluated at most once and kept as an array of dependency ids. This avoids re-evaluating the deferred
+  * dependency closures of views - and thereby the creation and registration of dependency views - over and over
+  * again.
+  *
+  * The reverse edges - the views directly depending on a view - are kept as well, as far as the dependencies of the
+  * dependent views have been evaluated.
+  *
+  * The graph is safe for concurrent use. Independent subgraphs can be expanded in parallel using expand().
+  *
+  * @param executionContext the execution context on which parallel expansion of subgraphs takes place
+  */
+class DependencyGraph(implicit executionContext: ExecutionContext) {
+
+  private val nextId = new AtomicInteger(0)
+
+  private val ids = new ConcurrentHashMap[String, Integer]()
+
+  private val views = new ConcurrentHashMap[Integer, View]()
+
+  private val adjacency = new ConcurrentHashMap[Integer, Array[Int]]()
+
+  private val reverseAdjacency = new ConcurrentHashMap[Integer, java.util.Set[Integer]]()
+
+  private val idsWithNewDependents = new ConcurrentLinkedQueue[Integer]()
+
+  /**
+    * Returns the id of the given view, assigning a new one if the view is not yet known.
+    */
+  def idOf(view: View): Int = {
+    val knownId = ids.get(view.urlPath)
+
+    if (knownId != null)
+      return knownId.intValue
+
+    val newId = Int.box(nextId.getAndIncrement())
+    views.put(newId, view)
+
+    val concurrentlyAssignedId = ids.putIfAbsent(view.urlPath, newId)
+
+    if (concurrentlyAssignedId != null) {
+      views.remove(newId)
+      concurrentlyAssignedId.intValue
+    } else
+      newId.intValue
+  }
+
+  /**
+    * Returns the view with the given id.
+    */
+  def viewOf(id: Int): View = views.get(Int.box(id))
+
+  /**
+    * Returns the number of views known to the graph.
+    */
+  def size = ids.size
+
+  /**
+    * Returns the ids of the direct dependencies of the view with the given id, evaluating them if not yet known.
+    */
+  def dependencyIdsOf(id: Int): Array[Int] = {
+    val knownDependencyIds = adjacency.get(Int.box(id))
+
+    if (knownDependencyIds != null)
+      return knownDependencyIds
+
+    val dependencyIds = viewOf(id).dependencies.map(idOf).toArray
+    val concurrentlyEvaluatedDependencyIds = adjacency.putIfAbsent(Int.box(id), dependencyIds)
+
+    if (concurrentlyEvaluatedDependencyIds != null)
+      concurrentlyEvaluatedDependencyIds
+    else {
+      addDependents(id, dependencyIds)
+      dependencyIds
+    }
+  }
+
+  /**
+    * Returns the direct dependencies of a view in the order they have been declared.
+    */
+  def dependenciesOf(view: View): List[View] = dependencyIdsOf(idOf(view)).map(viewOf).toList
+
+  /**
+    * Returns all transitive dependencies of a view.
+    */
+  def transitiveDependenciesOf(view: View): Set[View] = {
+    val viewId = idOf(view)
+
+    val visited = mutable.BitSet()
+    val toVisit = mutable.Stack(viewId)
+
+    while (toVisit.nonEmpty) {
+      val id = toVisit.pop()
+
+      if (visited.add(id))
+        toVisit.pushAll(dependencyIdsOf(id))
+    }
+
+    (visited - viewId).toSet.map(viewOf)
+  }
+
+  /**
+    * Returns the ids of the views known to directly depend on the view with the given id. Only views whose
+    * dependencies have been evaluated are taken into account.
+    */
+  def dependentIdsOf(id: Int): Set[Int] = {
+    val dependentIds = reverseAdjacency.get(Int.box(id))
+
+    if (dependentIds == null)
+      Set()
+    else
+      dependentIds.map(_.intValue).toSet
+  }
+
+  /**
+    * Returns the views whose transitive dependents have changed since the last call: the views that have become
+    * known to be directly depended on by further views, along with their known transitive dependencies. Results
+    * derived from the reverse edges of the graph for any other view remain valid. Meant for a single consumer.
+    */
+  def takeViewsWithChangedDependents(): Set[View] = {
+    val visited = mutable.BitSet()
+    val toVisit = mutable.Stack[Int]()
+
+    var idWithNewDependents = idsWithNewDependents.poll()
+
+    while (idWithNewDependents != null) {
+      toVisit.push(idWithNewDependents.intValue)
+      idWithNewDependents = idsWithNewDependents.poll()
+    }
+
+    while (toVisit.nonEmpty) {
+      val id = toVisit.pop()
+
+      if (visited.add(id)) {
+        val knownDependencyIds = adjacency.get(Int.box(id))
+
+        if (knownDependencyIds != null)
+          toVisit.pushAll(knownDependencyIds)
+      }
+    }
+
+    visited.toSet.map(viewOf)
+  }
+
+  /**
+    * Returns the number of views known to transitively depend on the given view.
+    */
+  def transitiveDependentsCountOf(view: View): Int = {
+    val viewId = idOf(view)
+
+    val visited = mutable.BitSet()
+    val toVisit = mutable.Stack(viewId)
+
+    while (toVisit.nonEmpty) {
+      val id = toVisit.pop()
+
+      if (visited.add(id))
+        toVisit.pushAll(dependentIdsOf(id))
+    }
+
+    (visited - viewId).size
+  }
+
+  /**
+    * Returns the length of the longest chain of views known to transitively depend on the given view, i.e., the
+    * number of transformations that at least have to follow the transformation of the view.
+    */
+  def dependentsDepthOf(view: View): Int = {
+    val viewId = idOf(view)
+
+    val depths = mutable.HashMap[Int, Int]()
+    val dependents = mutable.HashMap[Int, Set[Int]]()
+
+    //
+    // Depth-first traversal with an explicit stack: a view is pushed once to visit its dependents and once more
+    // to compute its depth after all its dependents are done. Views are marked with depth 0 upon their first
+    // visit, which also cuts cycles.
+    //
+    val toVisit = mutable.Stack((viewId, false))
+
+    while (toVisit.nonEmpty) {
+      val (id, dependentsDone) = toVisit.pop()
+
+      if (dependentsDone) {
+        val dependentIds = dependents(id)
+        depths.put(id, if (dependentIds.isEmpty) 0 else dependentIds.map(depths).max + 1)
+      } else if (!depths.contains(id)) {
+        depths.put(id, 0)
+
+        val dependentIds = dependentIdsOf(id)
+        dependents.put(id, dependentIds)
+
+        toVisit.push((id, true))
+        dependentIds.filterNot(depths.contains).foreach(dependentId => toVisit.push((dependentId, false)))
+      }
+    }
+
+    depths(viewId)
+  }
+
+  /**
+    * Expands the dependencies of the given views and their transitive dependencies. The views are grouped by
+    * table and the subgraphs of each group are expanded in parallel.
+    *
+    * @param vs the views to expand
+    * @return a future completing once all transitive dependencies of vs are known to the graph. The future
+    *         fails if some dependency could not be instantiated.
+    */
+  def expand(vs: Seq[View]): Future[Unit] = {
+    val expansions = vs
+      .groupBy(_.urlPathPrefix)
+      .values
+      .map { viewsOfTable =>
+        val rootIds = viewsOfTable.map(idOf)
+        Future {
+          expandFrom(rootIds)
+        }
+      }
+
+    Future.sequence(expansions).map(_ => ())
+  }
+
+  private def addDependents(id: Int, dependencyIds: Array[Int]) {
+    dependencyIds.foreach { dependencyId =>
+      val knownDependentIds = reverseAdjacency.get(Int.box(dependencyId))
+
+      val dependentIds = if (knownDependentIds != null)
+        knownDependentIds
+      else {
+        val newDependentIds = Collections.newSetFromMap(new ConcurrentHashMap[Integer, java.lang.Boolean]())
+        val concurrentlyCreatedDependentIds = reverseAdjacency.putIfAbsent(Int.box(dependencyId), newDependentIds)
+
+        if (concurrentlyCreatedDependentIds != null) concurrentlyCreatedDependentIds else newDependentIds
+      }
+
+      if (dependentIds.add(Int.box(id)))
+        idsWithNewDependents.add(Int.box(dependencyId))
+    }
+  }
+
+  /**
+    * Depth-first expansion of the subgraph reachable from the given view ids. Each view is expanded only by the
+    * thread that managed to store its dependency ids first. As that thread continues with the dependencies,
+    * all reachable views are expanded once all concurrent expansions are done.
+    */
+  private def expandFrom(rootIds: Seq[Int]) {
+    val toVisit = mutable.Stack(rootIds: _*)
+
+    while (toVisit.nonEmpty) {
+      val id = toVisit.pop()
+
+      if (!adjacency.containsKey(Int.box(id))) {
+        val dependencyIds = viewOf(id).dependencies.map(idOf).toArray
+
+        if (adjacency.putIfAbsent(Int.box(id), dependencyIds) == null) {
+          addDependents(id, dependencyIds)
+          toVisit.pushAll(dependencyIds)
+        }
+      }
+    }
+  }
+}
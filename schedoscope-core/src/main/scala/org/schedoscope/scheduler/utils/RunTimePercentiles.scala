@@ -0,0 +1,84 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.utils
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+  * Keeps the run times of the most recent successful runs of each transformation type and checksum, so that
+  * percentiles of the run time of a transformation can be estimated.
+  *
+  * @param window number of most recent run times kept per transformation type and checksum
+  */
+class RunTimePercentiles(window: Int = 100) {
+
+  private class RunTimes {
+    private val runTimes = new Array[Long](window)
+
+    private var recorded = 0l
+
+    def record(millis: Long) = synchronized {
+      runTimes((recorded % window).toInt) = millis
+      recorded += 1
+    }
+
+    def percentile(p: Double, minimumRuns: Int) = synchronized {
+      val count = math.min(recorded, window).toInt
+
+      if (count < math.max(minimumRuns, 1))
+        None
+      else {
+        val sorted = runTimes.take(count).sorted
+        val rank = math.ceil(p / 100 * count).toInt
+        Some(sorted(math.max(math.min(rank, count), 1) - 1))
+      }
+    }
+  }
+
+  private val runTimesByTransformation = new ConcurrentHashMap[(String, String), RunTimes]()
+
+  private def runTimes(transformation: String, checksum: String) = {
+    val key = (transformation, checksum)
+    val existingRunTimes = runTimesByTransformation.get(key)
+
+    if (existingRunTimes != null)
+      existingRunTimes
+    else {
+      val newRunTimes = new RunTimes
+      val concurrentlyCreatedRunTimes = runTimesByTransformation.putIfAbsent(key, newRunTimes)
+      if (concurrentlyCreatedRunTimes != null) concurrentlyCreatedRunTimes else newRunTimes
+    }
+  }
+
+  /**
+    * Record the run time of a successful run of the given transformation type and checksum.
+    */
+  def record(transformation: String, checksum: String, millis: Long) {
+    runTimes(transformation, checksum).record(millis)
+  }
+
+  /**
+    * The p-th percentile of the recorded run times of the given transformation type and checksum, or None if
+    * fewer than minimumRuns run times have been recorded.
+    */
+  def percentile(transformation: String, checksum: String, p: Double, minimumRuns: Int = 1): Option[Long] =
+    runTimes(transformation, checksum).percentile(p, minimumRuns)
+}
+
+/**
+  * The run time percentiles of the transformations of this JVM.
+  */
+object RunTimePercentiles extends RunTimePercentiles()
@@ -0,0 +1,235 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.utils
+
+import java.lang.reflect.{InvocationHandler, InvocationTargetException, Method, Proxy}
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLongArray
+
+import scala.collection.JavaConversions.mapAsScalaConcurrentMap
+
+/**
+  * A counter spreading its updates across cache-line padded cells picked by the updating thread, so that
+  * threads counting concurrently do not contend on a single memory location. Reading sums up all cells.
+  */
+class StripedCounter(stripes: Int = StripedCounter.defaultStripes) {
+
+  import StripedCounter._
+
+  private val cells = new AtomicLongArray(stripes * padding)
+
+  def add(delta: Long) {
+    cells.addAndGet(stripeOfCurrentThread(stripes) * padding, delta)
+  }
+
+  def increment() = add(1)
+
+  def decrement() = add(-1)
+
+  def sum = (0 until stripes).map(stripe => cells.get(stripe * padding)).sum
+}
+
+object StripedCounter {
+  /**
+    * Number of longs per cell so that cells lie on separate cache lines.
+    */
+  val padding = 8
+
+  val defaultStripes = math.max(4, Integer.highestOneBit(Runtime.getRuntime.availableProcessors()) * 2)
+
+  def stripeOfCurrentThread(stripes: Int) = (Thread.currentThread().getId % stripes).toInt
+}
+
+/**
+  * A latency histogram with fixed bucket bounds in milliseconds. Like the counts of an HdrHistogram, bucket
+  * counts are plain striped counters, so that recording takes no locks and concurrently recording threads
+  * do not contend.
+  *
+  * @param bounds ascending upper bounds of the buckets, the last bucket is unbounded
+  */
+class LatencyHistogram(val bounds: Array[Long] = LatencyHistogram.defaultBounds, stripes: Int = StripedCounter.defaultStripes) {
+
+  import StripedCounter._
+
+  // one row per stripe: the bucket counts followed by the sum, padded to whole cache lines
+  private val rowLength = ((bounds.length + 2 + padding - 1) / padding) * padding
+
+  private val cells = new AtomicLongArray(stripes * rowLength)
+
+  private def bucketOf(millis: Long) = {
+    var bucket = 0
+    while (bucket < bounds.length && millis > bounds(bucket))
+      bucket += 1
+    bucket
+  }
+
+  /**
+    * Record a latency
+    */
+  def record(millis: Long) {
+    val row = stripeOfCurrentThread(stripes) * rowLength
+
+    cells.incrementAndGet(row + bucketOf(millis))
+    cells.addAndGet(row + bounds.length + 1, millis)
+  }
+
+  /**
+    * Record the time a block takes to execute.
+    */
+  def time[T](block: => T): T = {
+    val start = System.nanoTime()
+    try
+      block
+    finally
+      record((System.nanoTime() - start) / 1000000)
+  }
+
+  /**
+    * The counts of the buckets, including the unbounded one.
+    */
+  def bucketCounts = (0 to bounds.length).map(bucket => (0 until stripes).map(stripe => cells.get(stripe * rowLength + bucket)).sum)
+
+  def count = bucketCounts.sum
+
+  def sum = (0 until stripes).map(stripe => cells.get(stripe * rowLength + bounds.length + 1)).sum
+}
+
+object LatencyHistogram {
+  val defaultBounds = Array[Long](1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 300000, 900000, 3600000)
+}
+
+/**
+  * Registry of the metrics of the scheduler, rendered in the Prometheus text exposition format. Metrics are
+  * created upon first use; their updates are lock-free.
+  */
+class SchedulerMetrics {
+
+  private val mailboxDepths = new ConcurrentHashMap[String, StripedCounter]()
+
+  private val driverQueueWaits = new ConcurrentHashMap[String, LatencyHistogram]()
+
+  private val driverRunTimes = new ConcurrentHashMap[String, LatencyHistogram]()
+
+  private val metastoreCalls = new ConcurrentHashMap[String, LatencyHistogram]()
+
+  private val driverStartupTimes = new ConcurrentHashMap[String, LatencyHistogram]()
+
+  private val completionHandlerQueueDepths = new ConcurrentHashMap[String, StripedCounter]()
+
+  private val completionHandlerLatencies = new ConcurrentHashMap[String, LatencyHistogram]()
+
+  private def metric[M](metrics: ConcurrentHashMap[String, M], label: String, newMetric: => M) = {
+    val existingMetric = metrics.get(label)
+
+    if (existingMetric != null)
+      existingMetric
+    else {
+      val metric = newMetric
+      val concurrentlyCreatedMetric = metrics.putIfAbsent(label, metric)
+      if (concurrentlyCreatedMetric != null) concurrentlyCreatedMetric else metric
+    }
+  }
+
+  /**
+    * Number of messages in the mailboxes of the given kind of actor.
+    */
+  def mailboxDepth(actor: String) = metric(mailboxDepths, actor, new StripedCounter())
+
+  /**
+    * Time commands of the given transformation type wait for a driver.
+    */
+  def driverQueueWait(transformation: String) = metric(driverQueueWaits, transformation, new LatencyHistogram())
+
+  /**
+    * Run time of transformations of the given type.
+    */
+  def driverRunTime(transformation: String) = metric(driverRunTimes, transformation, new LatencyHistogram())
+
+  /**
+    * Latency of calls of the given metastore client method.
+    */
+  def metastoreCall(method: String) = metric(metastoreCalls, method, new LatencyHistogram())
+
+  /**
+    * Time drivers of the given transformation type take to start up, including the warm-up of their connections.
+    */
+  def driverStartupTime(transformation: String) = metric(driverStartupTimes, transformation, new LatencyHistogram())
+
+  /**
+    * Number of completion handler invocations for transformations of the given type waiting to be executed.
+    */
+  def completionHandlerQueueDepth(transformation: String) = metric(completionHandlerQueueDepths, transformation, new StripedCounter())
+
+  /**
+    * Latency of completion handlers invoked for transformations of the given type.
+    */
+  def completionHandlerLatency(transformation: String) = metric(completionHandlerLatencies, transformation, new LatencyHistogram())
+
+  /**
+    * Wrap a client such that the latency of all calls of its interface methods is recorded as metastore calls.
+    */
+  def timedMetastoreClient[C](client: C, clientInterface: Class[C]): C =
+    Proxy.newProxyInstance(clientInterface.getClassLoader, Array(clientInterface), new InvocationHandler {
+      def invoke(proxy: AnyRef, method: Method, args: Array[AnyRef]) = metastoreCall(method.getName).time {
+        try {
+          method.invoke(client, (if (args == null) Array[AnyRef]() else args): _*)
+        } catch {
+          case e: InvocationTargetException => throw e.getCause
+        }
+      }
+    }).asInstanceOf[C]
+
+  private def escape(label: String) = label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")
+
+  private def renderGauge(name: String, help: String, labelName: String, gauges: ConcurrentHashMap[String, StripedCounter]) =
+    s"# HELP $name $help\n# TYPE $name gauge\n" +
+      gauges.toSeq.sortBy(_._1).map {
+        case (label, gauge) => s"""$name{$labelName="${escape(label)}"} ${math.max(gauge.sum, 0)}\n"""
+      }.mkString
+
+  private def renderHistograms(name: String, help: String, labelName: String, histograms: ConcurrentHashMap[String, LatencyHistogram]) =
+    s"# HELP $name $help\n# TYPE $name histogram\n" +
+      histograms.toSeq.sortBy(_._1).map {
+        case (label, histogram) =>
+          val labels = s"""$labelName="${escape(label)}""""
+          val cumulativeCounts = histogram.bucketCounts.scanLeft(0l)(_ + _).tail
+          val upperBounds = histogram.bounds.map(_.toString) :+ "+Inf"
+
+          upperBounds.zip(cumulativeCounts).map {
+            case (le, count) => s"""${name}_bucket{$labels,le="$le"} $count\n"""
+          }.mkString +
+            s"${name}_sum{$labels} ${histogram.sum}\n" +
+            s"${name}_count{$labels} ${cumulativeCounts.last}\n"
+      }.mkString
+
+  /**
+    * Render all metrics in the Prometheus text exposition format. Metric families and labels are sorted, so that
+    * the output only changes with the recorded values.
+    */
+  def render: String =
+    renderGauge("schedoscope_mailbox_depth", "Number of messages waiting in the mailboxes of scheduler actors.", "actor", mailboxDepths) +
+      renderHistograms("schedoscope_driver_queue_wait_milliseconds", "Time transformations wait for a driver.", "transformation", driverQueueWaits) +
+      renderHistograms("schedoscope_driver_run_time_milliseconds", "Run time of transformations.", "transformation", driverRunTimes) +
+      renderHistograms("schedoscope_metastore_call_milliseconds", "Latency of metastore client calls.", "method", metastoreCalls) +
+      renderHistograms("schedoscope_driver_startup_milliseconds", "Time drivers take to start up and warm up their connections.", "transformation", driverStartupTimes) +
+      renderGauge("schedoscope_completion_handler_queue_depth", "Number of completion handler invocations waiting to be executed.", "transformation", completionHandlerQueueDepths) +
+      renderHistograms("schedoscope_completion_handler_milliseconds", "Latency of driver run completion handlers.", "transformation", completionHandlerLatencies)
+}
+
+/**
+  * The metrics of the scheduler of this JVM.
+  */
+object SchedulerMetrics extends SchedulerMetrics
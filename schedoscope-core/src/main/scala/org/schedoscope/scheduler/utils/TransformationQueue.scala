@@ -0,0 +1,147 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.utils
+
+import java.util.{Comparator, PriorityQueue}
+
+import akka.actor.ActorRef
+
+import scala.collection.JavaConversions.iterableAsScalaIterable
+import scala.collection.mutable.HashMap
+
+/**
+  * Statistics of a transformation queue.
+  *
+  * @param depth             number of queued commands
+  * @param oldestWaitMillis  time the longest waiting queued command has been waiting
+  * @param averageWaitMillis average time dequeued commands have been waiting
+  * @param dequeued          number of dequeued commands
+  * @param inFlight          number of dequeued commands currently running
+  * @param concurrencyLimit  number of commands allowed to run concurrently
+  * @param scalingDecision   last change of an adaptive concurrency limit, if any
+  */
+case class TransformationQueueStatistics(depth: Int, oldestWaitMillis: Long, averageWaitMillis: Long, dequeued: Long,
+                                         inFlight: Int = 0, concurrencyLimit: Int = 0, scalingDecision: Option[String] = None)
+
+/**
+  * A priority queue of commands for drivers of a transformation type.
+  *
+  * The urgency of a queued command grows with the time it waits:
+  *
+  * urgency = priority - tableFairnessWeight * (commands of the same table queued before) + agingWeight * (minutes waited)
+  *
+  * Commands are dequeued in order of descending urgency and in FIFO order among commands of equal urgency. As all
+  * queued commands age at the same rate, their order does not change while they wait. This allows us to keep the
+  * queue ordered by a static key.
+  *
+  * @param tableFairnessWeight urgency penalty for each command of the same table already queued
+  * @param agingWeight         urgency gain per minute waited
+  * @param clock               source of the current time in milliseconds
+  * @param waitTimes           histogram to record the wait times of dequeued commands in, if any
+  */
+class TransformationQueue(tableFairnessWeight: Double, agingWeight: Double, clock: () => Long = () => System.currentTimeMillis(), waitTimes: Option[LatencyHistogram] = None) {
+
+  private case class QueuedCommand(command: Any, sender: ActorRef, table: String, key: Double, sequence: Long, enqueuedAt: Long)
+
+  private val createdAt = clock()
+
+  private val queue = new PriorityQueue[QueuedCommand](11, new Comparator[QueuedCommand] {
+    def compare(a: QueuedCommand, b: QueuedCommand) =
+      if (a.key != b.key)
+        java.lang.Double.compare(b.key, a.key)
+      else
+        java.lang.Long.compare(a.sequence, b.sequence)
+  })
+
+  private val queuedPerTable = HashMap[String, Int]()
+
+  private var sequence = 0l
+
+  private var dequeued = 0l
+
+  private var totalWaitMillis = 0l
+
+  /**
+    * Enqueue a command along with its sender.
+    *
+    * @param command  the command to enqueue
+    * @param sender   the sender of the command
+    * @param table    the table the command is working on, used for fairness across tables
+    * @param priority the priority of the command
+    */
+  def enqueue(command: Any, sender: ActorRef, table: String, priority: Double) {
+    val now = clock()
+    val queuedOfTable = queuedPerTable.getOrElse(table, 0)
+
+    val key = priority - tableFairnessWeight * queuedOfTable - agingWeight * (now - createdAt) / 60000.0
+
+    queue.add(QueuedCommand(command, sender, table, key, sequence, now))
+
+    sequence += 1
+    queuedPerTable.put(table, queuedOfTable + 1)
+  }
+
+  /**
+    * Dequeue the most urgent command along with its sender.
+    */
+  def dequeue(): Option[(Any, ActorRef)] = {
+    val queuedCommand = queue.poll()
+
+    if (queuedCommand == null)
+      None
+    else {
+      val queuedOfTable = queuedPerTable(queuedCommand.table) - 1
+
+      if (queuedOfTable > 0)
+        queuedPerTable.put(queuedCommand.table, queuedOfTable)
+      else
+        queuedPerTable.remove(queuedCommand.table)
+
+      val waitMillis = clock() - queuedCommand.enqueuedAt
+
+      dequeued += 1
+      totalWaitMillis += waitMillis
+      waitTimes.foreach(_.record(waitMillis))
+
+      Some((queuedCommand.command, queuedCommand.sender))
+    }
+  }
+
+  def isEmpty = queue.isEmpty
+
+  def nonEmpty = !isEmpty
+
+  def size = queue.size
+
+  /**
+    * Return the current statistics of the queue.
+    */
+  def statistics = {
+    val now = clock()
+
+    val oldestWaitMillis =
+      if (queue.isEmpty)
+        0l
+      else
+        now - queue.map(_.enqueuedAt).min
+
+    TransformationQueueStatistics(
+      queue.size,
+      oldestWaitMillis,
+      if (dequeued > 0) totalWaitMillis / dequeued else 0l,
+      dequeued)
+  }
+}
@@ -0,0 +1,118 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.utils
+
+import java.io.FileNotFoundException
+import java.security.PrivilegedAction
+import java.util.concurrent.{ConcurrentHashMap, ConcurrentLinkedQueue}
+
+import org.apache.hadoop.fs.{FileSystem, Path, PathFilter}
+import org.apache.hadoop.security.UserGroupInformation
+
+import scala.concurrent.{ExecutionContext, Future, Promise}
+import scala.util.Try
+
+/**
+  * Checks whether view folders hold data after their transformations succeeded, without blocking the caller.
+  *
+  * Checks are queued and executed on the given execution context, which should be bounded. Every execution
+  * takes all checks queued so far, so that checks piling up while the NameNode is slow are run as a batch.
+  * Identical checks within a batch are only run once.
+  *
+  * @param hdfs     the file system holding the view folders
+  * @param ugi      the user performing the checks
+  * @param executor the execution context performing the checks
+  */
+class ViewOutputVerifier(hdfs: FileSystem, ugi: UserGroupInformation, executor: ExecutionContext) {
+
+  private case class Check(folder: Path, successFlag: Boolean, result: Promise[Boolean])
+
+  private val pendingChecks = new ConcurrentLinkedQueue[Check]()
+
+  private val dataFiles = new PathFilter() {
+    def accept(p: Path): Boolean = !p.getName.startsWith("_")
+  }
+
+  /**
+    * Check whether a folder holds data, i.e., files of non-zero length whose names do not start with _.
+    * With successFlag set, check whether the folder contains a _SUCCESS flag instead.
+    *
+    * @param folder      the folder to check
+    * @param successFlag check for a _SUCCESS flag instead of data files
+    * @return a future with the result of the check, failing if the file system cannot be accessed
+    */
+  def hasData(folder: String, successFlag: Boolean = false): Future[Boolean] = {
+    val check = Check(new Path(folder), successFlag, Promise[Boolean]())
+
+    pendingChecks.add(check)
+    executor.execute(new Runnable() {
+      def run() {
+        runPendingChecks()
+      }
+    })
+
+    check.result.future
+  }
+
+  private def runPendingChecks() {
+    val checks = Iterator.continually(pendingChecks.poll()).takeWhile(_ != null).toList
+
+    if (checks.nonEmpty)
+      ugi.doAs(new PrivilegedAction[Unit]() {
+        def run() {
+          checks.groupBy(c => (c.folder, c.successFlag)).foreach {
+            case ((folder, successFlag), sameChecks) =>
+              val result = Try {
+                if (successFlag) hdfs.exists(new Path(folder, "_SUCCESS")) else !folderEmpty(folder)
+              }
+
+              sameChecks.foreach(_.result.complete(result))
+          }
+        }
+      })
+  }
+
+  private def folderEmpty(folder: Path) = try {
+    hdfs.listStatus(folder, dataFiles).foldLeft(0l) {
+      (size, status) => size + status.getLen
+    } <= 0
+  } catch {
+    case _: FileNotFoundException => true
+  }
+}
+
+object ViewOutputVerifier {
+
+  private val verifiers = new ConcurrentHashMap[(FileSystem, UserGroupInformation, ExecutionContext), ViewOutputVerifier]()
+
+  /**
+    * Return the verifier shared by all callers checking folders of the given file system as the given user on the
+    * given execution context.
+    */
+  def apply(hdfs: FileSystem, ugi: UserGroupInformation, executor: ExecutionContext): ViewOutputVerifier = {
+    val key = (hdfs, ugi, executor)
+    val verifier = verifiers.get(key)
+
+    if (verifier != null)
+      verifier
+    else {
+      val newVerifier = new ViewOutputVerifier(hdfs, ugi, executor)
+      val existingVerifier = verifiers.putIfAbsent(key, newVerifier)
+
+      if (existingVerifier != null) existingVerifier else newVerifier
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.utils
+
+import java.io.{DataInputStream, DataOutputStream, FileNotFoundException}
+import java.nio.file.{Files, StandardCopyOption}
+import java.util.zip.{GZIPInputStream, GZIPOutputStream}
+
+import org.apache.hadoop.fs._
+import org.schedoscope.scheduler.states._
+
+import scala.collection.mutable
+
+/**
+  * Reading and writing of compact binary snapshots of view scheduling states, used to warm restart the scheduler.
+  *
+  * Per view, a snapshot keeps the transformation checksum and timestamp that the view's scheduling state would be
+  * read from in the metastore, keyed by the view's URL path. Checksums, which are mostly shared by the views of a table,
+  * are stored once in a dictionary. The format is:
+  *
+  * magic, format version, number of checksums, checksums, number of views, (URL path, checksum index, timestamp)*
+  *
+  * gzipped as a whole.
+  */
+object ViewStateSnapshot {
+
+  val magic = 0x5343564e
+
+  val formatVersion = 1
+
+  /**
+    * The transformation checksum and timestamp of a view scheduling state, if the state is stable enough
+    * to be restored from these. Views which are transforming or retrying are not part of snapshots and will be
+    * initialized from the metastore after a restart.
+    */
+  def metadataOf(state: ViewSchedulingState): Option[(String, Long)] = state match {
+    case ReadFromSchemaManager(_, checksum, timestamp) => Some((checksum, timestamp))
+    case Materialized(_, checksum, timestamp, _, _) => Some((checksum, timestamp))
+    case Waiting(_, checksum, timestamp, _, _, _, _, _, _, _) => Some((checksum, timestamp))
+    case _ => None
+  }
+
+  /**
+    * Snapshots are written to local file systems without checksum files, as these would not be replaced along
+    * with the snapshot.
+    */
+  private def snapshotFileSystem(fs: FileSystem) = fs match {
+    case local: LocalFileSystem => local.getRawFileSystem
+    case _ => fs
+  }
+
+  /**
+    * Atomically replace a file by another. Local files are moved with an atomic move, other file systems are
+    * expected to implement renames overwriting their target atomically, as HDFS does.
+    */
+  private def replace(fs: FileSystem, from: Path, to: Path) = fs match {
+    case local: RawLocalFileSystem =>
+      Files.move(local.pathToFile(from).toPath, local.pathToFile(to).toPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING)
+
+    case _ =>
+      FileContext.getFileContext(fs.getUri, fs.getConf).rename(from, to, Options.Rename.OVERWRITE)
+  }
+
+  /**
+    * Write a snapshot atomically by first writing to a temporary file and then replacing the previous snapshot.
+    *
+    * @param fs       the file system to write to
+    * @param location path of the snapshot
+    * @param metadata transformation checksum and timestamp per view URL path
+    * @return the number of views written
+    */
+  def write(fs: FileSystem, location: Path, metadata: Iterable[(String, (String, Long))]): Int = {
+    val snapshotFs = snapshotFileSystem(fs)
+    val temporaryLocation = new Path(location.getParent, s".${location.getName}.tmp")
+
+    val checksums = mutable.LinkedHashMap[String, Int]()
+    metadata.foreach { case (_, (checksum, _)) => checksums.getOrElseUpdate(checksum, checksums.size) }
+
+    val out = new DataOutputStream(new GZIPOutputStream(snapshotFs.create(temporaryLocation, true), 65536))
+
+    try {
+      out.writeInt(magic)
+      out.writeInt(formatVersion)
+
+      out.writeInt(checksums.size)
+      checksums.keys.foreach(out.writeUTF)
+
+      out.writeInt(metadata.size)
+      metadata.foreach {
+        case (urlPath, (checksum, timestamp)) =>
+          out.writeUTF(urlPath)
+          out.writeInt(checksums(checksum))
+          out.writeLong(timestamp)
+      }
+    } finally {
+      out.close()
+    }
+
+    replace(snapshotFs, temporaryLocation, location)
+
+    metadata.size
+  }
+
+  /**
+    * Read a snapshot.
+    *
+    * @param fs       the file system to read from
+    * @param location path of the snapshot
+    * @return transformation checksum and timestamp per view URL path, empty if there is no snapshot
+    */
+  def read(fs: FileSystem, location: Path): Map[String, (String, Long)] = {
+    val in = try {
+      new DataInputStream(new GZIPInputStream(snapshotFileSystem(fs).open(location), 65536))
+    } catch {
+      case _: FileNotFoundException => return Map()
+    }
+
+    try {
+      if (in.readInt() != magic || in.readInt() != formatVersion)
+        throw new IllegalStateException(s"${location} is not a view state snapshot of format version ${formatVersion}")
+
+      val checksums = Array.fill(in.readInt())(in.readUTF())
+
+      val views = in.readInt()
+      val metadata = Map.newBuilder[String, (String, Long)]
+      metadata.sizeHint(views)
+
+      for (_ <- 0 until views) {
+        val urlPath = in.readUTF()
+        val checksum = checksums(in.readInt())
+        metadata += urlPath -> (checksum, in.readLong())
+      }
+
+      metadata.result()
+    } finally {
+      in.close()
+    }
+  }
+}
@@ -0,0 +1,207 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.schema
+
+import java.util.concurrent.{ConcurrentHashMap, CountDownLatch, Semaphore}
+
+import scala.collection.JavaConversions.collectionAsScalaIterable
+import scala.collection.mutable.ListBuffer
+import scala.concurrent.duration.Duration
+
+/**
+  * Cache of the transformation metadata (transformation version checksum and timestamp of last transformation) of
+  * the partitions of tables. A table is cached as a whole, so that a partition missing from a cached table does not
+  * exist in the metastore.
+  *
+  * The cache is shared by the schema managers connected to the same metastore. These update it as they write
+  * transformation metadata or create partitions. Updates arriving while a table is being loaded are applied once the
+  * load has finished, so that they are not overwritten by the metadata read.
+  *
+  * @param timeToLive      time after which a cached table is loaded again, picking up partitions changed or dropped
+  *                        outside of the cache
+  * @param readConcurrency maximum number of tables loaded in parallel
+  */
+class PartitionMetadataCache(timeToLive: Duration = Duration.Inf, readConcurrency: Int = Int.MaxValue) {
+
+  private type Update = ((String, Long)) => (String, Long)
+
+  /**
+    * The cached partitions of a table along with the state of their loading.
+    */
+  private class CachedTable {
+    val partitions = new ConcurrentHashMap[String, (String, Long)]()
+
+    private val loading = new CountDownLatch(1)
+
+    private val pendingUpdates = ListBuffer[(String, (String, Long), Update)]()
+
+    @volatile private var loaded = false
+
+    @volatile private var loadedAt = 0l
+
+    def isLoaded = loaded
+
+    def isExpired = loaded && timeToLive.isFinite && System.currentTimeMillis() - loadedAt > timeToLive.toMillis
+
+    /**
+      * Wait for the table to be loaded, returning whether loading succeeded.
+      */
+    def awaitLoad() = {
+      loading.await()
+      loaded
+    }
+
+    def loadSucceeded() {
+      synchronized {
+        pendingUpdates.foreach { case (partition, defaultMetadata, f) => applyUpdate(partition, defaultMetadata, f) }
+        pendingUpdates.clear()
+
+        loadedAt = System.currentTimeMillis()
+        loaded = true
+      }
+
+      loading.countDown()
+    }
+
+    def loadFailed() {
+      loading.countDown()
+    }
+
+    /**
+      * Update the metadata of a partition, deferring the update until the table is loaded.
+      */
+    def update(partition: String, defaultMetadata: (String, Long), f: Update) {
+      val deferred = !loaded && synchronized {
+        if (!loaded) {
+          pendingUpdates += ((partition, defaultMetadata, f))
+          true
+        } else
+          false
+      }
+
+      if (!deferred)
+        applyUpdate(partition, defaultMetadata, f)
+    }
+
+    private def applyUpdate(partition: String, defaultMetadata: (String, Long), f: Update) {
+      var updated = false
+
+      while (!updated) {
+        val current = partitions.get(partition)
+
+        updated =
+          if (current == null)
+            partitions.putIfAbsent(partition, f(defaultMetadata)) == null
+          else
+            partitions.replace(partition, current, f(current))
+      }
+    }
+  }
+
+  private val tables = new ConcurrentHashMap[String, CachedTable]()
+
+  private val readPermits = new Semaphore(readConcurrency)
+
+  /**
+    * Return the transformation metadata of the partitions of a table keyed by partition values, loading it
+    * unless cached. If another thread is loading the table already, wait for it.
+    *
+    * @param table the table name, qualified by database
+    * @param load  reads the transformation metadata of all partitions of the table keyed by partition values
+    */
+  def partitionsOf(table: String)(load: => TraversableOnce[(String, (String, Long))]): java.util.Map[String, (String, Long)] = {
+    val cached = tables.get(table)
+
+    if (cached == null) {
+      val cachedTable = new CachedTable
+
+      if (tables.putIfAbsent(table, cachedTable) == null)
+        loadInto(table, cachedTable, load)
+      else
+        partitionsOf(table)(load)
+    } else if (cached.awaitLoad() && !cached.isExpired)
+      cached.partitions
+    else {
+      tables.remove(table, cached)
+      partitionsOf(table)(load)
+    }
+  }
+
+  private def loadInto(table: String, cachedTable: CachedTable, load: => TraversableOnce[(String, (String, Long))]) = try {
+    readPermits.acquire()
+
+    try {
+      load.foreach {
+        case (partition, (checksum, timestamp)) => cachedTable.partitions.put(partition, (checksum.intern(), timestamp))
+      }
+    } finally {
+      readPermits.release()
+    }
+
+    cachedTable.loadSucceeded()
+    cachedTable.partitions
+  } catch {
+    case t: Throwable =>
+      tables.remove(table, cachedTable)
+      cachedTable.loadFailed()
+      throw t
+  }
+
+  /**
+    * Whether the partitions of the given table are cached.
+    */
+  def isCached(table: String) = {
+    val cached = tables.get(table)
+    cached != null && cached.isLoaded
+  }
+
+  /**
+    * Register the transformation metadata of a partition if its table is cached or being loaded.
+    */
+  def put(table: String, partition: String, metadata: (String, Long)) =
+    update(table, partition, metadata) { _ => (metadata._1.intern(), metadata._2) }
+
+  /**
+    * Change the transformation version checksum of a partition if its table is cached or being loaded.
+    */
+  def updateChecksum(table: String, partition: String, checksum: String, defaultMetadata: (String, Long)) =
+    update(table, partition, defaultMetadata) { case (_, timestamp) => (checksum.intern(), timestamp) }
+
+  /**
+    * Change the timestamp of last transformation of a partition if its table is cached or being loaded.
+    */
+  def updateTimestamp(table: String, partition: String, timestamp: Long, defaultMetadata: (String, Long)) =
+    update(table, partition, defaultMetadata) { case (checksum, _) => (checksum, timestamp) }
+
+  private def update(table: String, partition: String, defaultMetadata: (String, Long))(f: Update) {
+    val cached = tables.get(table)
+
+    if (cached != null)
+      cached.update(partition, defaultMetadata, f)
+  }
+
+  /**
+    * Drop the cached partitions of a table.
+    */
+  def invalidate(table: String) {
+    tables.remove(table)
+  }
+
+  /**
+    * Number of cached partitions over all tables.
+    */
+  def size = tables.values.map(_.partitions.size).sum
+}
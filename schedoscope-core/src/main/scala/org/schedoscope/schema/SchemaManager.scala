@@ -17,19 +17,21 @@ package org.schedoscope.schema
 
 import java.security.PrivilegedAction
 import java.sql.{Connection, DriverManager}
+import java.util.concurrent.ConcurrentHashMap
 
 import org.apache.hadoop.hive.conf.HiveConf
-import org.apache.hadoop.hive.metastore.api.{AlreadyExistsException, Partition}
+import org.apache.hadoop.hive.metastore.api.{AlreadyExistsException, NoSuchObjectException, Partition}
 import org.apache.hadoop.hive.metastore.{HiveMetaStoreClient, IMetaStoreClient}
 import org.apache.thrift.TException
 import org.joda.time.DateTime
 import org.schedoscope.Schedoscope.settings
 import org.schedoscope.dsl.View
 import org.schedoscope.dsl.transformations.Checksum
+import org.schedoscope.scheduler.utils.SchedulerMetrics
 import org.schedoscope.schema.ddl.HiveQl
 import org.slf4j.LoggerFactory
 
-import scala.collection.JavaConversions.{asScalaBuffer, mapAsScalaMap, mutableMapAsJavaMap, seqAsJavaList}
+import scala.collection.JavaConversions.{asScalaBuffer, mapAsJavaMap, mapAsScalaMap, mutableMapAsJavaMap, seqAsJavaList}
 import scala.collection.mutable.HashMap
 
 /**
@@ -48,8 +50,12 @@ case class FatalSchemaManagerException(message: String = null, cause: Throwable
 
 /**
   * Interface to the Hive metastore. Used by partition creator actor and metadata logger actor.
+  *
+  * Transformation metadata of partitions of non-external tables is read per table as a whole into a partition
+  * metadata cache, which is kept up to date when writing transformation metadata or creating partitions. Should the
+  * cache turn out to disagree with the metastore about the existence of a partition, the cached table is dropped.
   */
-class SchemaManager(val metastoreClient: IMetaStoreClient, val connection: Connection) {
+class SchemaManager(val metastoreClient: IMetaStoreClient, val connection: Connection, val partitionMetadataCache: PartitionMetadataCache = new PartitionMetadataCache) {
   private val existingSchemas = collection.mutable.Set[String]()
 
   private val log = LoggerFactory.getLogger(classOf[SchemaManager])
@@ -63,6 +69,7 @@ class SchemaManager(val metastoreClient: IMetaStoreClient, val connection: Conne
     if (view.isPartitioned()) {
       try {
         metastoreClient.add_partitions(List(partition), false, false)
+        partitionMetadataCache.put(cacheKey(view), partitionKey(view), (Checksum.defaultDigest, 0l))
       } catch {
         case _: AlreadyExistsException => // Accept
         case t: Throwable =>
@@ -116,6 +123,7 @@ class SchemaManager(val metastoreClient: IMetaStoreClient, val connection: Conne
     }
     log.info(s"Creating table:\n${ddl}")
     stmt.execute(ddl)
+    partitionMetadataCache.invalidate(cacheKey(view))
 
     stmt.close()
     log.info(s"Successfully created table ${view.dbName}.${view.n}; now adding Checksum '${HiveQl.ddlChecksum(view)}' to table properties.")
@@ -178,11 +186,19 @@ class SchemaManager(val metastoreClient: IMetaStoreClient, val connection: Conne
     */
   def setTransformationVersion(view: View) = try {
     if (view.isPartitioned()) {
-      setPartitionProperty(view.dbName, view.n, view.partitionSpec, Checksum.TransformationChecksum.checksumProperty, view.transformation().checksum)
+      val checksum = view.transformationChecksum
+      setPartitionProperty(view.dbName, view.n, view.partitionSpec, Checksum.TransformationChecksum.checksumProperty, checksum)
+      partitionMetadataCache.updateChecksum(cacheKey(view), partitionKey(view), checksum, (Checksum.defaultDigest, 0l))
     } else {
-      setTableProperty(view.dbName, view.n, Checksum.TransformationChecksum.checksumProperty, view.transformation().checksum)
+      setTableProperty(view.dbName, view.n, Checksum.TransformationChecksum.checksumProperty, view.transformationChecksum)
     }
   } catch {
+    case nso: NoSuchObjectException => {
+      partitionMetadataCache.invalidate(cacheKey(view))
+      log.error(s"Schema Manager could not find partition ${view.partitionSpec} of table ${view.dbName}.${view.n} while setting transformation version in Metastore.", nso)
+      throw RetryableSchemaManagerException(s"Schema Manager could not find partition ${view.partitionSpec} of table ${view.dbName}.${view.n} while setting transformation version in Metastore.", nso)
+    }
+
     case te: TException => {
       log.error(s"Schema Manager facing potentially recoverable Thrift protocol exception while setting transformation version in Metastore.", te)
       throw RetryableSchemaManagerException(s"Schema Manager facing potentially recoverable Thrift protocol exception while setting transformation version in Metastore.", te)
@@ -217,10 +233,17 @@ class SchemaManager(val metastoreClient: IMetaStoreClient, val connection: Conne
   def setTransformationTimestamp(view: View, timestamp: Long) = try {
     if (view.isPartitioned()) {
       setPartitionProperty(view.dbName, view.n, view.partitionSpec, Checksum.TransformationChecksum.timestampProperty, timestamp.toString)
+      partitionMetadataCache.updateTimestamp(cacheKey(view), partitionKey(view), timestamp, (Checksum.defaultDigest, 0l))
     } else {
       setTableProperty(view.dbName, view.n, Checksum.TransformationChecksum.timestampProperty, timestamp.toString)
     }
   } catch {
+    case nso: NoSuchObjectException => {
+      partitionMetadataCache.invalidate(cacheKey(view))
+      log.error(s"Schema Manager could not find partition ${view.partitionSpec} of table ${view.dbName}.${view.n} while setting transformation timestamp in Metastore.", nso)
+      throw RetryableSchemaManagerException(s"Schema Manager could not find partition ${view.partitionSpec} of table ${view.dbName}.${view.n} while setting transformation timestamp in Metastore.", nso)
+    }
+
     case te: TException => {
       log.error(s"Schema Manager facing potentially recoverable Thrift protocol exception while setting transformation timestamp in Metastore.", te)
       throw RetryableSchemaManagerException(s"Schema Manager facing potentially recoverable Thrift protocol exception while setting transformation timestamp in Metastore.", te)
@@ -248,30 +271,32 @@ class SchemaManager(val metastoreClient: IMetaStoreClient, val connection: Conne
 
     if (!tablePrototype.isPartitioned) {
       log.info(s"View ${tablePrototype.module}.${tablePrototype.n} is not partitioned, returning metadata from table properties")
-      return getExistingTransformationMetadata(tablePrototype, Map[String, Partition]())
+      return getExistingTransformationMetadata(tablePrototype)
     }
 
-    val existingPartitionNames = metastoreClient.listPartitionNames(tablePrototype.dbName, tablePrototype.n, -1).map("/" + _).toSet
-
-    val existingPartitions = viewsToPartitions(views.filter(v => existingPartitionNames.contains(v.partitionSpec)))
+    val existingPartitions =
+      if (isCacheable(tablePrototype))
+        partitionMetadataCache.partitionsOf(cacheKey(tablePrototype)) {
+          log.info(s"Reading transformation metadata of all partitions of view ${tablePrototype.module}.${tablePrototype.n}")
+          readTransformationMetadata(tablePrototype, metastoreClient.listPartitionNames(tablePrototype.dbName, tablePrototype.n, -1).toList)
+        }
+      else {
+        val requiredPartitionSpecs = views.map(_.partitionSpec).toSet
 
-    val nonExistingPartitions = viewsToPartitions(views.filter(v => !existingPartitionNames.contains(v.partitionSpec)))
+        mapAsJavaMap(readTransformationMetadata(tablePrototype,
+          metastoreClient.listPartitionNames(tablePrototype.dbName, tablePrototype.n, -1).filter(n => requiredPartitionSpecs.contains("/" + n)).toList).toMap)
+      }
 
-    log.info(s"Table for view ${tablePrototype.module}.${tablePrototype.n} requires partitions: ${existingPartitions.size} existing / ${nonExistingPartitions.size} not yet existing")
+    val (existingViews, nonExistingViews) = views.partition(v => existingPartitions.containsKey(partitionKey(v)))
 
-    log.info(s"Retrieving existing transformation metadata for view ${tablePrototype.module}.${tablePrototype.n} from partitions.")
+    log.info(s"Table for view ${tablePrototype.module}.${tablePrototype.n} requires partitions: ${existingViews.size} existing / ${nonExistingViews.size} not yet existing")
 
-    val existingMetadata = existingPartitions.grouped(settings.metastoreReadBatchSize)
-      .map { ep => {
-        log.info(s"Reading ${ep.size} partition metadata for view ${tablePrototype.module}.${tablePrototype.n}")
-        getExistingTransformationMetadata(tablePrototype, ep)
-      }
-      }.reduceOption(_ ++ _).getOrElse(Map())
+    val existingMetadata = existingViews.map(v => v -> existingPartitions.get(partitionKey(v))).toMap
 
-    val createdMetadata = nonExistingPartitions.grouped(settings.metastoreWriteBatchSize)
-      .map(nep => {
-        log.info(s"Creating ${nep.size} partitions for view ${tablePrototype.module}.${tablePrototype.n}")
-        createNonExistingPartitions(tablePrototype, nep.values.toList)
+    val createdMetadata = nonExistingViews.grouped(settings.metastoreWriteBatchSize)
+      .map(nev => {
+        log.info(s"Creating ${nev.size} partitions for view ${tablePrototype.module}.${tablePrototype.n}")
+        createNonExistingPartitions(tablePrototype, nev, viewsToPartitions(nev).values.toList)
       }).reduceOption(_ ++ _).getOrElse(Map())
 
     existingMetadata ++ createdMetadata
@@ -288,44 +313,53 @@ class SchemaManager(val metastoreClient: IMetaStoreClient, val connection: Conne
     }
   }
 
-  private def createNonExistingPartitions(tablePrototype: View, partitions: List[Partition], retry: Int = 3): Map[View, (String, Long)] = try {
+  private def createNonExistingPartitions(tablePrototype: View, views: List[View], partitions: List[Partition], retry: Int = 3): Map[View, (String, Long)] = try {
     if (partitions.isEmpty || !tablePrototype.isPartitioned()) {
       Map()
     } else {
       metastoreClient.add_partitions(partitions, false, false)
-      partitions.map(p => (partitionToView(tablePrototype, p) -> (Checksum.defaultDigest, 0.toLong))).toMap
+      views.map { v =>
+        partitionMetadataCache.put(cacheKey(v), partitionKey(v), (Checksum.defaultDigest, 0l))
+        v -> (Checksum.defaultDigest, 0l)
+      }.toMap
     }
   } catch {
-    case are: AlreadyExistsException => throw are
+    case are: AlreadyExistsException =>
+      partitionMetadataCache.invalidate(cacheKey(tablePrototype))
+      throw are
 
     case t: Throwable => if (retry > 0) {
       log.info(s"Caught exception ${t}, retrying")
       Thread.sleep(5000)
-      createNonExistingPartitions(tablePrototype, partitions, retry - 1)
+      createNonExistingPartitions(tablePrototype, views, partitions, retry - 1)
     } else {
       throw t
     }
   }
 
-  private def getExistingTransformationMetadata(tablePrototype: View, partitions: Map[String, Partition]): Map[View, (String, Long)] = {
-    if (tablePrototype.isPartitioned) {
-      val existingPartitions = metastoreClient.getPartitionsByNames(tablePrototype.dbName, tablePrototype.n, partitions.keys.toList)
-      existingPartitions.map { p => (partitionToView(tablePrototype, p), (p.getParameters.getOrElse(Checksum.TransformationChecksum.checksumProperty, Checksum.defaultDigest), p.getParameters.getOrElse(Checksum.TransformationChecksum.timestampProperty, "0").toLong)) }.toMap
-    } else {
-      val tableMetadata = metastoreClient.getTable(tablePrototype.dbName, tablePrototype.n).getParameters
-      Map((tablePrototype,
-        (tableMetadata.getOrElse(Checksum.TransformationChecksum.checksumProperty, Checksum.defaultDigest),
-          tableMetadata.getOrElse(Checksum.TransformationChecksum.timestampProperty, "0").toLong)))
-    }
+  private def getExistingTransformationMetadata(tablePrototype: View): Map[View, (String, Long)] =
+    Map(tablePrototype -> transformationMetadata(metastoreClient.getTable(tablePrototype.dbName, tablePrototype.n).getParameters))
 
-  }
+  /**
+    * Read the transformation metadata of the given partitions of a table in batches, keyed by partition values.
+    */
+  private def readTransformationMetadata(tablePrototype: View, partitionNames: List[String]): Iterator[(String, (String, Long))] =
+    partitionNames.grouped(settings.metastoreReadBatchSize)
+      .flatMap { batch =>
+        log.info(s"Reading ${batch.size} partition metadata for view ${tablePrototype.module}.${tablePrototype.n}")
+        metastoreClient.getPartitionsByNames(tablePrototype.dbName, tablePrototype.n, batch)
+          .map { p => p.getValues.mkString("/") -> transformationMetadata(p.getParameters) }
+      }
 
-  private def partitionToView(tablePrototype: View, p: Partition) = {
-    val viewUrl = s"${tablePrototype.urlPathPrefix}/${p.getValues.mkString("/")}"
-    View.viewsFromUrl(settings.env,
-      viewUrl,
-      settings.viewAugmentor).head
-  }
+  private def transformationMetadata(parameters: java.util.Map[String, String]) =
+    (parameters.getOrElse(Checksum.TransformationChecksum.checksumProperty, Checksum.defaultDigest),
+      parameters.getOrElse(Checksum.TransformationChecksum.timestampProperty, "0").toLong)
+
+  private def isCacheable(view: View) = settings.metastoreCachePartitionMetadata && !view.isExternal
+
+  private def cacheKey(view: View) = s"${view.dbName}.${view.n}"
+
+  private def partitionKey(view: View) = view.partitionValues().mkString("/")
 
 }
 
@@ -349,9 +383,9 @@ object SchemaManager {
       conf.setVar(HiveConf.ConfVars.METASTORE_KERBEROS_PRINCIPAL,
         serverKerberosPrincipal)
     }
-    val metastoreClient = new HiveMetaStoreClient(conf)
+    val metastoreClient = SchedulerMetrics.timedMetastoreClient[IMetaStoreClient](new HiveMetaStoreClient(conf), classOf[IMetaStoreClient])
 
-    SchemaManager(metastoreClient, connection)
+    SchemaManager(metastoreClient, connection, partitionMetadataCacheFor(metaStoreUri))
   } catch {
     case te: TException => {
       throw RetryableSchemaManagerException(s"Schema Manager initialization facing Thrift protocol exception.", te)
@@ -370,5 +404,20 @@ object SchemaManager {
   def apply(metastoreClient: IMetaStoreClient, connection: Connection) =
     new SchemaManager(metastoreClient, connection)
 
+  def apply(metastoreClient: IMetaStoreClient, connection: Connection, partitionMetadataCache: PartitionMetadataCache) =
+    new SchemaManager(metastoreClient, connection, partitionMetadataCache)
+
+  private val partitionMetadataCaches = new ConcurrentHashMap[String, PartitionMetadataCache]()
+
+  /**
+    * The partition metadata cache shared by all schema managers connected to the given metastore.
+    */
+  def partitionMetadataCacheFor(metaStoreUri: String) = {
+    val cache = new PartitionMetadataCache(settings.metastorePartitionMetadataTtl, settings.metastorePartitionMetadataReadConcurrency)
+    val existingCache = partitionMetadataCaches.putIfAbsent(metaStoreUri.trim(), cache)
+
+    if (existingCache != null) existingCache else cache
+  }
+
 
 }
@@ -21,7 +21,7 @@ import org.scalatest.{FlatSpec, Matchers}
 import org.schedoscope.dsl.Parameter.p
 import org.schedoscope.dsl.TypedAny.typedAny
 import org.schedoscope.dsl.storageformats.{Avro, Parquet, TextFile}
-import org.schedoscope.dsl.transformations.{HiveTransformation, NoOp}
+import org.schedoscope.dsl.transformations.{Checksum, HiveTransformation, NoOp}
 import org.schedoscope.dsl.views.{DailyParameterization, JobMetadata, PointOccurrence}
 import org.schedoscope.schema.ddl.HiveQl._
 import test.extviews.ExternalShop
@@ -292,6 +292,46 @@ class DslTest extends FlatSpec with Matchers {
     checksumOriginal shouldEqual checksumModifiedSchema
   }
 
+  it should "compute its transformation checksum only once" in {
+    val brand = Brand(p("checksummemo"))
+    var transformationsBuilt = 0
+
+    brand.transformVia { () =>
+      transformationsBuilt += 1
+      HiveTransformation("SELECT 1")
+    }
+
+    val checksum = brand.transformationChecksum
+
+    (1 to 1000).foreach { _ => brand.transformationChecksum shouldBe checksum }
+
+    transformationsBuilt shouldBe 1
+    checksum shouldBe brand.transformation().checksum
+  }
+
+  it should "recompute its transformation checksum after its transformation or resource hashes changed" in {
+    val brand = Brand(p("checksumchange"))
+
+    brand.transformVia(() => HiveTransformation("SELECT 1"))
+    val checksum = brand.transformationChecksum
+
+    brand.transformVia(() => HiveTransformation("SELECT 2"))
+    brand.transformationChecksum should not equal checksum
+    brand.transformationChecksum shouldBe brand.transformation().checksum
+
+    var transformationsBuilt = 0
+    brand.transformVia { () =>
+      transformationsBuilt += 1
+      HiveTransformation("SELECT 2")
+    }
+
+    brand.transformationChecksum
+    Checksum.clearResourceHashes()
+    brand.transformationChecksum
+
+    transformationsBuilt shouldBe 2
+  }
+
 
   "A parameter" should "be equal to another one of the same parameterization" in {
     val p1: Parameter[Int] = p(2)
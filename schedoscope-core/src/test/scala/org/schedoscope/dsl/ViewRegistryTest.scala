@@ -0,0 +1,76 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.dsl
+
+import java.util.concurrent.{Callable, Executors, TimeUnit}
+
+import org.scalatest.{FlatSpec, Matchers}
+import org.schedoscope.dsl.Parameter.p
+import org.schedoscope.dsl.TypedAny.typedAny
+import test.views.ProductBrand
+
+import scala.collection.JavaConversions._
+
+class ViewRegistryTest extends FlatSpec with Matchers {
+
+  val numberOfThreads = 8
+  val viewsPerThread = 5000
+
+  def createViewsConcurrently(shops: Int => String) = {
+    val executor = Executors.newFixedThreadPool(numberOfThreads)
+
+    try {
+      val tasks = (0 until numberOfThreads).map { thread =>
+        new Callable[Seq[View]] {
+          def call() = (0 until viewsPerThread).map { i =>
+            View.newView(classOf[ProductBrand], "dev", p(shops(thread)), p("2014"), p("01"), p(f"${i % 28 + 1}%02d"))
+          }
+        }
+      }
+
+      val started = System.nanoTime()
+      val views = executor.invokeAll(seqAsJavaList(tasks)).flatMap(_.get())
+      val elapsed = System.nanoTime() - started
+
+      (views, elapsed)
+    } finally {
+      executor.shutdown()
+      executor.awaitTermination(1, TimeUnit.MINUTES)
+    }
+  }
+
+  "The view registry" should "return the identical view object for equal views created concurrently" in {
+    val (views, _) = createViewsConcurrently(_ => "ec0106")
+
+    views.size shouldBe numberOfThreads * viewsPerThread
+
+    views.groupBy(_.urlPath).foreach {
+      case (_, viewsWithSameUrlPath) =>
+        viewsWithSameUrlPath.forall(_ eq viewsWithSameUrlPath.head) shouldBe true
+    }
+  }
+
+  it should "create views from many threads with reasonable throughput" in {
+    val (views, elapsed) = createViewsConcurrently(thread => s"ec01$thread")
+
+    val viewsPerSecond = views.size * 1000000000l / math.max(elapsed, 1l)
+
+    info(s"Created ${views.size} views with ${numberOfThreads} threads in ${elapsed / 1000000} ms (${viewsPerSecond} views / s)")
+
+    views.map(_.urlPath).distinct.size shouldBe numberOfThreads * 28
+    viewsPerSecond should be > 1000l
+  }
+}
@@ -0,0 +1,171 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.dsl.transformations
+
+import java.nio.file.Files
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.apache.commons.io.FileUtils
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.fs.{FileSystem, FilterFileSystem, Path}
+import org.scalatest.{FlatSpec, Matchers}
+
+import scala.collection.JavaConversions._
+import scala.concurrent.duration._
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.{Await, Future}
+
+class ChecksumTest extends FlatSpec with Matchers {
+
+  class CountingFileSystem extends FilterFileSystem(FileSystem.getLocal(new Configuration())) {
+    val listings = new AtomicInteger()
+    val checksums = new AtomicInteger()
+    val listingThreads = new ConcurrentLinkedQueue[Thread]()
+
+    override def listFiles(f: Path, recursive: Boolean) = {
+      listings.incrementAndGet()
+      listingThreads.add(Thread.currentThread)
+      super.listFiles(f, recursive)
+    }
+
+    override def getFileChecksum(f: Path) = {
+      checksums.incrementAndGet()
+      super.getFileChecksum(f)
+    }
+  }
+
+  trait ResourceDirectory {
+    val fs = new CountingFileSystem()
+
+    val root = Files.createTempDirectory("checksum").toFile
+    val jar = new java.io.File(root, "lib/udf.jar")
+    val nested = new java.io.File(root, "lib/nested/query.sql")
+    val script = new java.io.File(Files.createTempDirectory("checksum").toFile, "script.sh")
+
+    FileUtils.writeStringToFile(jar, "jar")
+    FileUtils.writeStringToFile(nested, "SELECT 1")
+    FileUtils.writeStringToFile(script, "echo 1")
+
+    val resources = List(root.toString, script.toString)
+
+    def resourceHashes(listingTtlMillis: Long = 0, maxFileHashes: Int = 100000) =
+      Checksum.resourceHashes(resources, _ => fs, listingTtlMillis, maxFileHashes)
+
+    def resourceVersion(resource: String) = Checksum.resourceVersion(resource, _ => fs, 0)
+  }
+
+  "Resource hashes" should "be computed with one recursive listing per directory resource" in new ResourceDirectory {
+    val hashes = resourceHashes()
+
+    fs.listings.get shouldBe 2
+    fs.checksums.get shouldBe 2
+    hashes should contain(s"file:${jar.toString}")
+    hashes should contain(script.toString)
+    hashes.size shouldBe 3
+  }
+
+  it should "not hash unchanged files again" in new ResourceDirectory {
+    val hashes = resourceHashes()
+    resourceHashes() shouldBe hashes
+
+    fs.listings.get shouldBe 4
+    fs.checksums.get shouldBe 2
+  }
+
+  it should "hash changed files again" in new ResourceDirectory {
+    resourceHashes()
+    val rootVersion = resourceVersion(root.toString)
+    val scriptVersion = resourceVersion(script.toString)
+
+    FileUtils.writeStringToFile(nested, "SELECT 1, 2")
+    resourceHashes()
+
+    fs.checksums.get shouldBe 3
+    resourceVersion(root.toString) should not equal rootVersion
+    resourceVersion(script.toString) shouldBe scriptVersion
+  }
+
+  it should "not keep hashes of changed files" in new ResourceDirectory {
+    val modificationTime = nested.lastModified
+    resourceHashes()
+
+    FileUtils.writeStringToFile(nested, "SELECT 1, 2")
+    nested.setLastModified(modificationTime + 1000)
+    resourceHashes()
+
+    FileUtils.writeStringToFile(nested, "SELECT 1")
+    nested.setLastModified(modificationTime)
+    resourceHashes()
+
+    fs.checksums.get shouldBe 4
+  }
+
+  it should "keep the number of cached hashes bounded" in new ResourceDirectory {
+    resourceHashes(maxFileHashes = 1)
+    resourceHashes(maxFileHashes = 1)
+
+    fs.checksums.get should be > 2
+  }
+
+  it should "record the versions of the resources hashed" in new ResourceDirectory {
+    val (hashes, versions) = Checksum.withResourceVersions(resourceHashes())
+
+    hashes shouldBe resourceHashes()
+    versions.map(_._1) shouldBe resources
+    versions.foreach { case (resource, version) => resourceVersion(resource) shouldBe version }
+  }
+
+  it should "reuse resource listings within their time to live" in new ResourceDirectory {
+    resourceHashes(listingTtlMillis = 60000)
+    resourceHashes(listingTtlMillis = 60000)
+
+    fs.listings.get shouldBe 2
+  }
+
+  it should "have their versions compared without listing resources on the calling thread" in new ResourceDirectory {
+    resourceVersion(root.toString) shouldBe -1
+    fs.listings.get shouldBe 0
+
+    resourceHashes()
+    val rootVersion = resourceVersion(root.toString)
+    fs.listingThreads.clear()
+
+    FileUtils.writeStringToFile(nested, "SELECT 1, 2")
+
+    val deadline = 5.seconds.fromNow
+    while (resourceVersion(root.toString) == rootVersion && deadline.hasTimeLeft)
+      Thread.sleep(10)
+
+    resourceVersion(root.toString) should not equal rootVersion
+    fs.listingThreads should not be empty
+    fs.listingThreads.foreach(_ should not be Thread.currentThread)
+  }
+
+  it should "be computed concurrently" in new ResourceDirectory {
+    val expectedHashes = resourceHashes()
+
+    val concurrentHashes = Await.result(Future.sequence((1 to 16).map(_ => Future(resourceHashes()))), 30 seconds)
+
+    concurrentHashes.foreach(_ shouldBe expectedHashes)
+    fs.checksums.get shouldBe 2
+  }
+
+  "File checksums" should "only include directories when recursive" in new ResourceDirectory {
+    Checksum.fileChecksums(List(root.toString), recursive = false, _ => fs, 100000) shouldBe empty
+    Checksum.fileChecksums(List(script.toString), recursive = false, _ => fs, 100000) shouldBe List(script.toString)
+  }
+}
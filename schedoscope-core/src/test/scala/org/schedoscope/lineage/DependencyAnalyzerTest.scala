@@ -20,14 +20,19 @@ import org.scalatest.prop.TableDrivenPropertyChecks
 import org.scalatest.{FlatSpec, Matchers, PrivateMethodTester}
 import org.schedoscope.dsl.Parameter.p
 import org.schedoscope.dsl.views.DateParameterizationUtils.today
-import org.schedoscope.lineage.DependencyAnalyzer.{analyzeDependencies, analyzeLineage}
+import org.schedoscope.lineage.DependencyAnalyzer.{analyses, analysisCache, analyzeDependencies, analyzeLineage}
 import test.views.{ClickOfEC01, ProductBrand}
 
+import scala.concurrent.Await
+import scala.concurrent.duration.DurationInt
+import scala.language.postfixOps
+
 /**
   * @author Jan Hicken (jhicken)
   */
 class DependencyAnalyzerTest extends FlatSpec with Matchers with PrivateMethodTester with TableDrivenPropertyChecks {
   private val preprocessSql = PrivateMethod[String]('preprocessSql)
+  private val normalizeLiterals = PrivateMethod[String]('normalizeLiterals)
 
   "The dependency analyzer" should "analyze lineage for ProductBrand correctly" in {
     val v = ProductBrand(p("EC0101"), today._1, today._2, today._3)
@@ -94,4 +99,38 @@ class DependencyAnalyzerTest extends FlatSpec with Matchers with PrivateMethodTe
 
     DependencyAnalyzer invokePrivate preprocessSql(badSql) shouldEqual goodSql
   }
+
+  it should "normalize numeric literals compared against" in {
+    val sql = "SELECT a1 FROM t2 WHERE year = 2015 AND month>=-1 AND ratio <> 0.5 LIMIT 10"
+    val normalizedSql = "SELECT a1 FROM t2 WHERE year = 0 AND month>=0 AND ratio <> 0 LIMIT 10"
+
+    DependencyAnalyzer invokePrivate normalizeLiterals(sql) shouldEqual normalizedSql
+  }
+
+  it should "reuse the analysis of a table for all its partitions" in {
+    val partitions = for (month <- 1 to 12; day <- 1 to 28)
+      yield ProductBrand(p("EC0301"), p("2015"), p(f"$month%02d"), p(f"$day%02d"))
+
+    analysisCache.invalidateAll()
+    val analysesBefore = analyses.get
+
+    val startAll = System.currentTimeMillis()
+    val lineages = Await.result(analyzeLineage(partitions), 1 minute)
+    val allTime = System.currentTimeMillis() - startAll
+
+    analyses.get - analysesBefore shouldBe 1
+    lineages.size shouldBe partitions.size
+    partitions.foreach { v =>
+      lineages(v).get shouldEqual Map(
+        v.occurredAt → Set(v.product().occurredAt),
+        v.productId → Set(v.product().id),
+        v.brandName → Set(v.brand().name),
+        v.createdAt → Set(),
+        v.createdBy → Set()
+      )
+    }
+
+    info(s"Analyzed lineage of all ${partitions.size} partitions in ${allTime} ms")
+  }
+
 }
@@ -15,19 +15,96 @@
   */
 package org.schedoscope.scheduler.actors
 
-import akka.actor.{ActorRef, ActorSystem}
+import java.util.concurrent.atomic.AtomicInteger
+
+import akka.actor.{ActorRef, ActorSystem, Props}
 import akka.testkit.{TestActorRef, TestKit, TestProbe}
+import com.typesafe.config.ConfigFactory
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.fs.{FileSystem, FilterFileSystem, Path}
+import org.joda.time.LocalDateTime
 import org.scalatest.{BeforeAndAfterAll, FlatSpecLike, Matchers}
 import org.schedoscope.Settings
+import org.schedoscope.conf.DriverSettings
 import org.schedoscope.dsl.Parameter._
-import org.schedoscope.dsl.transformations.HiveTransformation
+import org.schedoscope.dsl.transformations.{HiveTransformation, NoOp, Transformation}
+import org.schedoscope.scheduler.driver._
 import org.schedoscope.scheduler.messages._
+import org.schedoscope.scheduler.utils.SchedulerMetrics
 import org.schedoscope.schema.ddl.HiveQl
 import test.views.ProductBrand
 
 import scala.concurrent.duration._
 import scala.util.Random
 
+class SlowCompletionHandler[T <: Transformation] extends DriverRunCompletionHandler[T] {
+
+  def driverRunStarted(run: DriverRunHandle[T]) {}
+
+  def driverRunCompleted(stateOfCompletion: DriverRunState[T], run: DriverRunHandle[T]) {
+    Thread.sleep(2000)
+  }
+}
+
+/**
+  * A driver whose runs take 100ms, except for the sixth, which straggles for 10 seconds. Speculative runs
+  * take 100ms as well.
+  */
+class StragglingDriver extends Driver[NoOp] {
+
+  class StragglingRun(val duration: Long) {
+    @volatile var killed = false
+  }
+
+  val runs = new AtomicInteger(0)
+
+  val killedRuns = new AtomicInteger(0)
+
+  val commits = new AtomicInteger(0)
+
+  def transformationName = "straggling"
+
+  def driverRunCompletionHandlerClassNames = List()
+
+  def run(t: NoOp) =
+    new DriverRunHandle[NoOp](this, new LocalDateTime(), t, new StragglingRun(if (runs.incrementAndGet() == 6) 10000 else 100))
+
+  def runAndWait(t: NoOp) = throw new UnsupportedOperationException
+
+  override def runSpeculatively(run: DriverRunHandle[NoOp]) =
+    Some(new DriverRunHandle[NoOp](this, new LocalDateTime(), run.transformation, new StragglingRun(100)))
+
+  override def commitSpeculativeRun(speculativeRun: DriverRunHandle[NoOp]) {
+    commits.incrementAndGet()
+  }
+
+  override def killRun(run: DriverRunHandle[NoOp]) {
+    killedRuns.incrementAndGet()
+    run.stateHandle.asInstanceOf[StragglingRun].killed = true
+  }
+
+  def getDriverRunState(run: DriverRunHandle[NoOp]) =
+    if (run.stateHandle.asInstanceOf[StragglingRun].killed)
+      DriverRunFailed[NoOp](this, "killed", null)
+    else if (new LocalDateTime().toDateTime.getMillis - run.started.toDateTime.getMillis < run.stateHandle.asInstanceOf[StragglingRun].duration)
+      DriverRunOngoing[NoOp](this, run)
+    else
+      DriverRunSucceeded[NoOp](this, "done")
+}
+
+/**
+  * A NoOp driver taking the given time to warm up.
+  */
+class WarmingUpDriver(warmUpMillis: Long) extends NoOpDriver(List()) {
+
+  @volatile var warmedUp = false
+
+  override def warmUp() {
+    Thread.sleep(warmUpMillis)
+    warmedUp = true
+  }
+}
+
 class DriverActorSpec extends TestKit(ActorSystem("schedoscope"))
   with FlatSpecLike
   with Matchers
@@ -188,6 +265,8 @@ class DriverActorSpec extends TestKit(ActorSystem("schedoscope"))
     // pseudo kill op
     transformationManagerActor.send(hivedriverActor, KillCommand())
 
+    transformationManagerActor.expectMsg(TransformationCommandCompleted("hive"))
+
     transformationManagerActor.expectMsgPF() {
       case TransformationStatusResponse(msg, actor, driver,
       driverHandle, driverRunStatus) => {
@@ -197,4 +276,238 @@ class DriverActorSpec extends TestKit(ActorSystem("schedoscope"))
     }
   }
 
+  "A driver actor" should "stay responsive while checking the output of a transformation on a slow file system" in {
+    val slowFileSystem = new FilterFileSystem(FileSystem.getLocal(new Configuration())) {
+      override def getFileStatus(f: Path) = {
+        Thread.sleep(3000)
+        super.getFileStatus(f)
+      }
+    }
+
+    val transformationManager = TestProbe()
+    val noopDriverActor = TestActorRef(DriverActor.props(settings,
+      "noop", transformationManager.ref, slowFileSystem))
+    transformationManager.expectMsgPF() {
+      case TransformationStatusResponse(msg, _, _, _, _) =>
+        msg shouldBe "booted"
+    }
+    transformationManager.send(noopDriverActor, "tick")
+    transformationManager.expectMsgPF() {
+      case TransformationStatusResponse(msg, _, _, _, _) =>
+        msg shouldBe "idle"
+    }
+
+    transformationManager.send(noopDriverActor, DriverCommand(TransformView(NoOp(), view), transformationManager.ref))
+    transformationManager.expectMsgPF() {
+      case TransformationStatusResponse(msg, _, _, _, _) =>
+        msg shouldBe "running"
+    }
+    transformationManager.expectMsgType[TransformationRunFinished]
+    transformationManager.expectMsgPF(1 second) {
+      case TransformationStatusResponse(msg, _, _, _, _) =>
+        msg shouldBe "idle"
+    }
+
+    transformationManager.send(noopDriverActor, DriverCommand(DeployCommand(), transformationManager.ref))
+    transformationManager.expectMsgPF(1 second) {
+      case TransformationStatusResponse(msg, _, _, _, _) =>
+        msg shouldBe "deploy"
+    }
+    transformationManager.expectMsg(1 second, DeployCommandSuccess())
+    transformationManager.expectMsgPF(1 second) {
+      case TransformationStatusResponse(msg, _, _, _, _) =>
+        msg shouldBe "idle"
+    }
+
+    transformationManager.expectMsg(5 seconds, TransformationCommandCompleted("noop"))
+    transformationManager.expectMsgPF(5 seconds) {
+      case CommandForView(None, `view`, TransformationSuccess(_, _, viewHasData)) =>
+        viewHasData shouldBe false
+    }
+  }
+
+  it should "not be slowed down by slow completion handlers invoked asynchronously" in {
+    val transformationManager = TestProbe()
+    val ds = new DriverSettings(
+      ConfigFactory.parseString("completionHandlers { workers = 4 }").withFallback(settings.getDriverSettings("noop").config),
+      "slowly-completing")
+
+    val noopDriverActor = TestActorRef[DriverActor[NoOp]](Props(
+      classOf[DriverActor[NoOp]],
+      transformationManager.ref,
+      ds,
+      (ds: DriverSettings) => new NoOpDriver(List(classOf[SlowCompletionHandler[NoOp]].getName)),
+      10 milliseconds,
+      settings,
+      FileSystem.getLocal(new Configuration()),
+      false))
+
+    transformationManager.expectMsgPF() {
+      case TransformationStatusResponse(msg, _, _, _, _) =>
+        msg shouldBe "booted"
+    }
+    transformationManager.send(noopDriverActor, "tick")
+
+    val start = System.currentTimeMillis()
+
+    (1 to 3).foreach { _ =>
+      transformationManager.send(noopDriverActor, DriverCommand(TransformView(NoOp(), view), transformationManager.ref))
+      transformationManager.fishForMessage(5 seconds) {
+        case CommandForView(None, `view`, _: TransformationSuccess[_]) => true
+        case _ => false
+      }
+    }
+
+    System.currentTimeMillis() - start should be < 2000l
+  }
+
+  it should "duplicate straggling runs speculatively and commit the first result" in {
+    val transformationManager = TestProbe()
+    val driver = new StragglingDriver
+    val ds = new DriverSettings(
+      ConfigFactory.parseString("speculation { multiple = 3.0, minimumRuns = 5 }")
+        .withFallback(settings.getDriverSettings("noop").config),
+      "straggling")
+
+    val stragglingDriverActor = TestActorRef[DriverActor[NoOp]](Props(
+      classOf[DriverActor[NoOp]],
+      transformationManager.ref,
+      ds,
+      (ds: DriverSettings) => driver,
+      10 milliseconds,
+      settings,
+      FileSystem.getLocal(new Configuration()),
+      false))
+
+    transformationManager.expectMsgPF() {
+      case TransformationStatusResponse(msg, _, _, _, _) =>
+        msg shouldBe "booted"
+    }
+    transformationManager.send(stragglingDriverActor, "tick")
+
+    def transform() = {
+      val start = System.currentTimeMillis()
+
+      transformationManager.send(stragglingDriverActor, DriverCommand(TransformView(NoOp(), view), transformationManager.ref))
+      transformationManager.fishForMessage(15 seconds) {
+        case CommandForView(None, `view`, _: TransformationSuccess[_]) => true
+        case _ => false
+      }
+
+      System.currentTimeMillis() - start
+    }
+
+    (1 to 5).foreach(_ => transform())
+
+    driver.commits.get shouldBe 0
+
+    val stragglingDuration = transform()
+
+    stragglingDuration should be < 2000l
+    driver.commits.get shouldBe 1
+    driver.killedRuns.get shouldBe 1
+
+    transformationManager.expectNoMsg(500 milliseconds)
+  }
+
+  def warmingUpDriverActor(transformationManager: TestProbe, driver: Driver[NoOp], ds: DriverSettings) =
+    TestActorRef[DriverActor[NoOp]](Props(
+      classOf[DriverActor[NoOp]],
+      transformationManager.ref,
+      ds,
+      (ds: DriverSettings) => driver,
+      10 milliseconds,
+      settings,
+      FileSystem.getLocal(new Configuration()),
+      true))
+
+  it should "warm up its driver in parallel with other driver actors before booting" in {
+    val transformationManager = TestProbe()
+    val ds = new DriverSettings(settings.getDriverSettings("noop").config, "warming")
+    val drivers = (1 to 5).map(_ => new WarmingUpDriver(500))
+
+    val start = System.currentTimeMillis()
+
+    drivers.foreach(driver => warmingUpDriverActor(transformationManager, driver, ds))
+
+    (1 to 5).foreach { _ =>
+      transformationManager.expectMsgPF(5 seconds) {
+        case TransformationStatusResponse(msg, _, _, _, _) =>
+          msg shouldBe "booted"
+      }
+    }
+
+    System.currentTimeMillis() - start should be < 2000l
+    drivers.forall(_.warmedUp) shouldBe true
+
+    val startupTimes = SchedulerMetrics.driverStartupTime("warming")
+    startupTimes.count shouldBe 5
+    startupTimes.sum should be >= 2500l
+  }
+
+  it should "hold back transformation commands while its driver warms up and run them once active" in {
+    val transformationManager = TestProbe()
+    val driverRouter = TestProbe()
+    val ds = new DriverSettings(settings.getDriverSettings("noop").config, "stashing")
+    val command = DriverCommand(TransformView(NoOp(), view), transformationManager.ref)
+
+    val driverActor = TestActorRef[DriverActor[NoOp]](Props(
+      classOf[DriverActor[NoOp]],
+      transformationManager.ref,
+      ds,
+      (ds: DriverSettings) => new WarmingUpDriver(1000),
+      10 milliseconds,
+      settings,
+      FileSystem.getLocal(new Configuration()),
+      true), driverRouter.ref, "stashing-driver")
+
+    driverActor ! command
+
+    driverRouter.expectNoMsg(500 milliseconds)
+
+    transformationManager.expectMsgPF(5 seconds) {
+      case TransformationStatusResponse(msg, _, _, _, _) =>
+        msg shouldBe "booted"
+    }
+
+    driverRouter.expectNoMsg(500 milliseconds)
+
+    transformationManager.send(driverActor, "tick")
+
+    transformationManager.fishForMessage(5 seconds) {
+      case TransformationStatusResponse("running", `driverActor`, _, _, _) => true
+      case _ => false
+    }
+    transformationManager.fishForMessage(5 seconds) {
+      case CommandForView(None, `view`, _: TransformationSuccess[_]) => true
+      case _ => false
+    }
+
+    driverRouter.expectNoMsg(500 milliseconds)
+  }
+
+  it should "boot regardless once the warm-up of its driver times out" in {
+    val transformationManager = TestProbe()
+    val ds = new DriverSettings(
+      ConfigFactory.parseString("warmUpTimeout = 1 second").withFallback(settings.getDriverSettings("noop").config),
+      "hanging")
+    val driver = new WarmingUpDriver(60000)
+
+    val driverActor = warmingUpDriverActor(transformationManager, driver, ds)
+
+    transformationManager.expectNoMsg(500 milliseconds)
+    transformationManager.expectMsgPF(5 seconds) {
+      case TransformationStatusResponse(msg, _, _, _, _) =>
+        msg shouldBe "booted"
+    }
+
+    driver.warmedUp shouldBe false
+
+    transformationManager.send(driverActor, "tick")
+    transformationManager.expectMsgPF() {
+      case TransformationStatusResponse(msg, _, _, _, _) =>
+        msg shouldBe "idle"
+    }
+  }
+
 }
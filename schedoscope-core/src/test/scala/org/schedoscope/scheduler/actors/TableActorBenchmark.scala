@@ -0,0 +1,97 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.actors
+
+import akka.actor.ActorSystem
+import akka.testkit.{ImplicitSender, TestActorRef, TestKit, TestProbe}
+import org.scalatest.{BeforeAndAfterAll, FlatSpecLike, Matchers}
+import org.schedoscope.Settings
+import org.schedoscope.dsl.Parameter._
+import org.schedoscope.scheduler.messages._
+import org.schedoscope.scheduler.states.CreatedByViewManager
+import org.schedoscope.test.Benchmark
+import test.views.ProductBrand
+
+import scala.concurrent.duration.DurationInt
+import scala.language.postfixOps
+
+class TableActorBenchmark extends TestKit(ActorSystem("schedoscope"))
+  with ImplicitSender
+  with FlatSpecLike
+  with Matchers
+  with BeforeAndAfterAll {
+
+  override def afterAll() = {
+    TestKit.shutdownActorSystem(system)
+  }
+
+  def productBrands(count: Int) = (0 until count).map { i =>
+    ProductBrand(p("ec0106"), p(f"${2000 + i / 336}%04d"), p(f"${i % 336 / 28 + 1}%02d"), p(f"${i % 28 + 1}%02d"))
+  }.toList
+
+  "The TableActor" should "apply a batched command to 100k views faster than one command per view" taggedAs Benchmark in {
+    val views = productBrands(100000)
+
+    val tableActor = TestActorRef(TableActor.props(
+      views.map(v => v -> CreatedByViewManager(v)).toMap,
+      Settings(),
+      Map(),
+      TestProbe().ref,
+      TestProbe().ref,
+      TestProbe().ref,
+      TestProbe().ref))
+
+    val startPerView = System.currentTimeMillis()
+    views.foreach { v => tableActor ! CommandForView(None, v, InvalidateView()) }
+    receiveN(views.size, 60 seconds)
+    val perViewTime = System.currentTimeMillis() - startPerView
+
+    val startBatched = System.currentTimeMillis()
+    tableActor ! CommandForViews(None, views, InvalidateView())
+    expectMsgType[ViewStatusListResponse](60 seconds).viewStatusList.get.size shouldBe views.size
+    val batchedTime = System.currentTimeMillis() - startBatched
+
+    info(s"Invalidated ${views.size} views in ${perViewTime} ms with one command per view, in ${batchedTime} ms with one batched command")
+  }
+
+  it should "be ready for commands after initializing and reconciling 500k views from a snapshot" taggedAs Benchmark in {
+    val metadata = productBrands(500000).map(v => v -> ("checksum", 1L)).toMap
+    val schemaManagerRouter = TestProbe()
+
+    val tableActor = system.actorOf(TableActor.props(
+      Map(),
+      Settings(),
+      Map(),
+      TestProbe().ref,
+      TestProbe().ref,
+      schemaManagerRouter.ref,
+      TestProbe().ref))
+
+    val start = System.currentTimeMillis()
+    tableActor ! InitializeViewsFromSnapshot(metadata)
+    tableActor ! SnapshotViewStates(1)
+
+    schemaManagerRouter.expectMsgType[CheckOrCreateTables](60 seconds)
+    schemaManagerRouter.expectMsgType[AddPartitions](60 seconds)
+    val initializationTime = System.currentTimeMillis() - start
+
+    schemaManagerRouter.reply(TransformationMetadata(metadata))
+    expectMsgType[ViewStatesSnapshot](60 seconds).metadata.size shouldBe metadata.size
+    val readinessTime = System.currentTimeMillis() - start
+
+    info(s"Initialized ${metadata.size} views from snapshot in ${initializationTime} ms, ready for commands after reconciliation in ${readinessTime} ms")
+  }
+}
@@ -28,6 +28,9 @@ import org.schedoscope.scheduler.messages._
 import org.schedoscope.scheduler.states.CreatedByViewManager
 import test.views.{ProductBrand, ViewWithExternalDeps}
 
+import scala.concurrent.duration.DurationInt
+import scala.language.postfixOps
+
 class TableActorSpec extends TestKit(ActorSystem("schedoscope"))
   with ImplicitSender
   with FlatSpecLike
@@ -235,6 +238,53 @@ class TableActorSpec extends TestKit(ActorSystem("schedoscope"))
     materializeProductBrandView(newView)
   }
 
+  it should "apply a command to a batch of views and answer with their resulting states at once" in new TableActorTest {
+    val newView = ProductBrand(p("ec0106"), p("2017"), p("12"), p("13"))
+
+    val batchActor = TestActorRef(TableActor.props(
+      Map(view -> CreatedByViewManager(view), newView -> CreatedByViewManager(newView)),
+      Settings(),
+      Map(),
+      viewManagerActor.ref,
+      transformationManagerActor.ref,
+      schemaManagerRouter.ref,
+      viewSchedulingListenerManagerActor.ref))
+
+    batchActor ! CommandForViews(None, List(view, newView), InvalidateView())
+
+    val response = expectMsgType[ViewStatusListResponse]
+    response.viewStatusList.get.map(vsr => (vsr.view, vsr.status)) shouldBe List(view -> "invalidated", newView -> "invalidated")
+  }
+
+  it should "hold back commands for views initialized from a snapshot until the metastore has answered for them" in new TableActorTest {
+    val snapshotActor = TestActorRef(TableActor.props(
+      Map(),
+      Settings(),
+      Map(brandDependency.tableName -> brandViewActor.ref,
+        productDependency.tableName -> productViewActor.ref),
+      viewManagerActor.ref,
+      transformationManagerActor.ref,
+      schemaManagerRouter.ref,
+      viewSchedulingListenerManagerActor.ref))
+
+    snapshotActor ! InitializeViewsFromSnapshot(Map(view -> ("snapshotted", 1L)))
+
+    schemaManagerRouter.expectMsg(CheckOrCreateTables(List(view)))
+    schemaManagerRouter.expectMsg(AddPartitions(List(view)))
+
+    snapshotActor ! SnapshotViewStates(1)
+    snapshotActor ! CommandForView(None, view, MaterializeView())
+
+    expectNoMsg(500 millis)
+    brandViewActor.expectNoMsg(0 millis)
+
+    schemaManagerRouter.reply(TransformationMetadata(Map(view -> ("reconciled", 2L))))
+
+    expectMsg(ViewStatesSnapshot(1, Map(view.urlPath -> ("reconciled", 2L))))
+    brandViewActor.expectMsg(CommandForView(Some(view), brandDependency, MaterializeView()))
+    productViewActor.expectMsg(CommandForView(Some(view), productDependency, MaterializeView()))
+  }
+
   "A external view" should "reload it's state and ignore it's deps" in new TableActorTest {
     val extView = ExternalView(ProductBrand(p("ec0101"), p("2016"), p("11"), p("07")))
 
@@ -24,6 +24,7 @@ import org.schedoscope.dsl.Parameter._
 import org.schedoscope.dsl.transformations.FilesystemTransformation
 import org.schedoscope.scheduler.driver.{Driver, HiveDriver}
 import org.schedoscope.scheduler.messages._
+import org.schedoscope.scheduler.utils.DependencyGraph
 import org.schedoscope.{Settings, TestUtils}
 import test.views.ProductBrand
 
@@ -60,7 +61,7 @@ class TransformationManagerActorSpec extends TestKit(ActorSystem("schedoscope",
     val fsDriverRouter = TestProbe()
 
     val transformationManagerActor = TestActorRef(new TransformationManagerActor(settings,
-      bootstrapDriverActors = false) {
+      bootstrapDriverActors = false, dependencyGraph = new DependencyGraph()(system.dispatcher)) {
       override def preStart {
         context.actorOf(Props(new ForwardChildActor(hiveDriverRouter.ref)), "hive-driver")
         context.actorOf(Props(new ForwardChildActor(mapRedDriverRouter.ref)), "mapreduce-driver")
@@ -110,7 +111,7 @@ class TransformationManagerActorSpec extends TestKit(ActorSystem("schedoscope",
       msgSender.send(transformationManagerActor, GetTransformations())
 
       msgSender.expectMsgPF() {
-        case TransformationStatusListResponse(statusList) => {
+        case TransformationStatusListResponse(statusList, _) => {
           statusList.size shouldBe 5
           statusList should contain(idleHiveStatus)
           statusList should contain(idleFSStatus)
@@ -137,7 +138,7 @@ class TransformationManagerActorSpec extends TestKit(ActorSystem("schedoscope",
       msgSender.send(transformationManagerActor, GetTransformations())
 
       msgSender.expectMsgPF() {
-        case TransformationStatusListResponse(statusList) => {
+        case TransformationStatusListResponse(statusList, _) => {
           statusList.size shouldBe 5
           statusList should contain(busyHiveStatus)
           statusList should contain(idleFSStatus)
@@ -148,11 +149,40 @@ class TransformationManagerActorSpec extends TestKit(ActorSystem("schedoscope",
       }
     }
 
+  it should "keep a transformation slot occupied until a driver actor completes the command" in {
+    val oneHiveSlotSettings = TestUtils.createSettings("schedoscope.transformations.hive.concurrency=1")
+    val hiveDriverRouter = TestProbe()
+
+    val transformationManagerActor = TestActorRef(new TransformationManagerActor(oneHiveSlotSettings,
+      bootstrapDriverActors = false, dependencyGraph = new DependencyGraph()(system.dispatcher)) {
+      override def preStart {
+        context.actorOf(Props(new ForwardChildActor(hiveDriverRouter.ref)), "hive-driver")
+      }
+    })
+
+    val msgSender = TestProbe()
+    val otherView = ProductBrand(p("1"), p("2"), p("3"), p("5"))
+
+    msgSender.send(transformationManagerActor, testView)
+    msgSender.send(transformationManagerActor, otherView)
+
+    hiveDriverRouter.expectMsgType[DriverCommand]
+    hiveDriverRouter.expectNoMsg(1 second)
+
+    val hiveDriver = HiveDriver(oneHiveSlotSettings.getDriverSettings("hive"))
+    hiveDriverRouter.send(transformationManagerActor, TransformationStatusResponse("running", hiveDriverRouter.ref, hiveDriver, null, null))
+    hiveDriverRouter.send(transformationManagerActor, TransformationStatusResponse("idle", hiveDriverRouter.ref, hiveDriver, null, null))
+    hiveDriverRouter.expectNoMsg(1 second)
+
+    hiveDriverRouter.send(transformationManagerActor, TransformationCommandCompleted("hive"))
+    hiveDriverRouter.expectMsgType[DriverCommand]
+  }
+
   // integration test transformationManager + DriverRouter + Drivers
   it should "directly broadcast to all driver actors, instead of using driver router" in {
     val msgSender = TestProbe()
     val transformationManagerActor = TestActorRef(new TransformationManagerActor(settings,
-      bootstrapDriverActors = true))
+      bootstrapDriverActors = true, dependencyGraph = new DependencyGraph()(system.dispatcher)))
     val cmd = DriverCommand(DeployCommand(), msgSender.ref)
     msgSender.send(transformationManagerActor, cmd)
     val numberOfMessages = Driver
@@ -198,7 +228,7 @@ class TransformationManagerActorSpec extends TestKit(ActorSystem("schedoscope",
     EventFilter.info(pattern = "DRIVER ACTOR: becoming idle",
       occurrences = totalCountDrivers) intercept {
       transformationManagerActor = TestActorRef(new TransformationManagerActor(newSettings,
-        bootstrapDriverActors = true))
+        bootstrapDriverActors = true, dependencyGraph = new DependencyGraph()(system.dispatcher)))
     }
 
     EventFilter.info(pattern = "DRIVER ACTOR: becoming idle",
@@ -231,7 +261,7 @@ class TransformationManagerActorSpec extends TestKit(ActorSystem("schedoscope",
     EventFilter.info(pattern = "DRIVER ACTOR: becoming idle",
       occurrences = totalCountDrivers) intercept {
       transformationManagerActor = TestActorRef(new TransformationManagerActor(newSettings,
-        bootstrapDriverActors = true))
+        bootstrapDriverActors = true, dependencyGraph = new DependencyGraph()(system.dispatcher)))
     }
 
     val expectedActorsReplyingWithinTestTimeOut = 0
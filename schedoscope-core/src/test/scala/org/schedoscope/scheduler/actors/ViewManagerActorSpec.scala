@@ -15,20 +15,25 @@
   */
 package org.schedoscope.scheduler.actors
 
+import java.io.File
+
 import akka.actor.{ActorRef, ActorSystem}
 import akka.pattern.ask
 import akka.testkit.{ImplicitSender, TestActorRef, TestKit, TestProbe}
 import akka.util.Timeout
+import org.apache.hadoop.fs.Path
 import org.scalatest.mock.MockitoSugar
 import org.scalatest.{BeforeAndAfterAll, FlatSpecLike, Matchers}
 import org.schedoscope.dsl.Parameter._
 import org.schedoscope.dsl.View
+import org.schedoscope.scheduler.driver.FilesystemDriver
 import org.schedoscope.scheduler.messages._
+import org.schedoscope.scheduler.utils.{DependencyGraph, ViewStateSnapshot}
 import org.schedoscope.{Schedoscope, Settings, TestUtils}
 import test.extviews.ExternalShop
 import test.views._
 
-import scala.concurrent.Await
+import scala.concurrent.{Await, Promise}
 import scala.concurrent.duration._
 
 class ViewManagerActorSpec extends TestKit(ActorSystem("schedoscope"))
@@ -55,7 +60,8 @@ class ViewManagerActorSpec extends TestKit(ActorSystem("schedoscope"))
       settings,
       actionsManagerActor.ref,
       schemaManagerRouter.ref,
-      viewSchedulingListenerManagerActor.ref))
+      viewSchedulingListenerManagerActor.ref,
+      new DependencyGraph()(system.dispatcher)))
     val transformationManagerActor = TestProbe()
 
     Schedoscope.viewManagerActorBuilder = () => viewManagerActor
@@ -125,6 +131,52 @@ class ViewManagerActorSpec extends TestKit(ActorSystem("schedoscope"))
     initializeView(view)
   }
 
+  it should "page through view states in view URL path order and continue after a given view" in new ViewManagerActorTest {
+    initializeView(view)
+
+    viewManagerActor ! GetViews(None, None, None, None, offset = Some(1), limit = Some(1))
+
+    val page = expectMsgType[ViewStatusListResponse]
+    page.viewStatusList.get.map(_.view) shouldBe List(productDependency)
+    page.overview.values.sum shouldBe 3
+    page.total shouldBe 3
+
+    viewManagerActor ! GetViews(None, None, None, None, after = Some(productDependency.urlPath), limit = Some(5))
+
+    val continuation = expectMsgType[ViewStatusListResponse]
+    continuation.viewStatusList.get.map(_.view) shouldBe List(view)
+    continuation.total shouldBe 0
+  }
+
+  it should "answer view requests in order while a dependency graph expansion is pending" in new ViewManagerActorTest {
+    @volatile var expansionGate = Promise[Unit]().success(())
+
+    val gatedViewManagerActor = TestActorRef(ViewManagerActor.props(
+      settings,
+      actionsManagerActor.ref,
+      schemaManagerRouter.ref,
+      viewSchedulingListenerManagerActor.ref,
+      new DependencyGraph()(system.dispatcher) {
+        override def expand(vs: Seq[View]) = expansionGate.future.flatMap(_ => super.expand(vs))(system.dispatcher)
+      }))
+
+    gatedViewManagerActor ! view
+    expectMsgType[ActorRef]
+
+    val unknownView = ProductBrand(p("ec0106"), p("2014"), p("01"), p("02"))
+    expansionGate = Promise[Unit]()
+
+    gatedViewManagerActor ! GetViews(Some(List(unknownView)), None, None, None)
+    gatedViewManagerActor ! GetViews(Some(List(view)), None, None, None)
+
+    expectNoMsg(500 millis)
+
+    expansionGate.success(())
+
+    expectMsgType[ViewStatusListResponse].viewStatusList.get.map(_.view) shouldBe List(unknownView)
+    expectMsgType[ViewStatusListResponse].viewStatusList.get.map(_.view) shouldBe List(view)
+  }
+
   it should "delegate a message to a view" in new ViewManagerActorTest {
     val actorRef = initializeView(view)
 
@@ -194,4 +246,37 @@ class ViewManagerActorSpec extends TestKit(ActorSystem("schedoscope"))
     }
 
   }
+
+  it should "initialize views from a snapshot and reconcile them with the metastore in the background" in new ViewManagerActorTest {
+    val snapshot = File.createTempFile("view-states", ".snapshot")
+    snapshot.deleteOnExit()
+
+    val snapshotSettings = TestUtils.createSettings("schedoscope.scheduler.stateSnapshot.enabled=true",
+      s"""schedoscope.scheduler.stateSnapshot.location="${snapshot.getAbsolutePath}"""")
+
+    ViewStateSnapshot.write(FilesystemDriver.fileSystem(snapshot.getAbsolutePath, snapshotSettings.hadoopConf), new Path(snapshot.getAbsolutePath),
+      List(view, brandDependency, productDependency).map(_.urlPath -> ("test", 1L)))
+
+    val restartedViewManagerActor = TestActorRef(ViewManagerActor.props(
+      snapshotSettings,
+      actionsManagerActor.ref,
+      schemaManagerRouter.ref,
+      viewSchedulingListenerManagerActor.ref,
+      new DependencyGraph()(system.dispatcher)))
+
+    val tableActor = Await.result(restartedViewManagerActor ? view, 5 seconds).asInstanceOf[ActorRef]
+
+    schemaManagerRouter.receiveWhile(messages = 6) {
+      case CheckOrCreateTables(_) =>
+      case AddPartitions(List(`view`)) =>
+        schemaManagerRouter.reply(TransformationMetadata(Map(view -> ("test", 2L))))
+      case AddPartitions(List(v)) =>
+        schemaManagerRouter.reply(TransformationMetadata(Map(v -> ("test", 1L))))
+    }.size shouldBe 6
+
+    awaitAssert {
+      Await.result(tableActor ? SnapshotViewStates(1), 5 seconds) shouldBe ViewStatesSnapshot(1, Map(view.urlPath -> ("test", 2L)))
+    }
+  }
+
 }
@@ -27,6 +27,7 @@ import org.schedoscope.dsl.Parameter._
 import org.schedoscope.dsl.View
 import org.schedoscope.scheduler.messages._
 import org.schedoscope.scheduler.states._
+import org.schedoscope.scheduler.utils.DependencyGraph
 import org.schedoscope.{Schedoscope, Settings}
 import test.views.Brand
 
@@ -65,7 +66,8 @@ class ViewSchedulingListenerManagerActorSpec extends TestKit(ActorSystem("schedo
       settings,
       actionsManagerActor.ref,
       schemaManagerRouter.ref,
-      viewSchedulingListenerManagerActor.ref))
+      viewSchedulingListenerManagerActor.ref,
+      new DependencyGraph()(system.dispatcher)))
     val transformationManagerActor = TestProbe()
 
     Schedoscope.viewManagerActorBuilder = () => viewManagerActor
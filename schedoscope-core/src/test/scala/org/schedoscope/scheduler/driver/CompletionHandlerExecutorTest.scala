@@ -0,0 +1,145 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.driver
+
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.{CountDownLatch, TimeUnit}
+
+import org.scalatest.{FlatSpec, Matchers}
+import org.schedoscope.Settings
+import org.schedoscope.dsl.transformations.NoOp
+import org.schedoscope.scheduler.utils.SchedulerMetrics
+
+import scala.concurrent.duration.Duration
+
+class CompletionHandlerExecutorTest extends FlatSpec with Matchers {
+
+  val handler = new DoNothingCompletionHandler[NoOp]
+
+  def executor(workers: Int = 2, queueSize: Int = 10, timeoutMillis: Long = 5000, metrics: SchedulerMetrics = new SchedulerMetrics) =
+    new AsynchronousCompletionHandlerExecutor(workers, queueSize, Duration.create(timeoutMillis, TimeUnit.MILLISECONDS), metrics)
+
+  "SynchronousCompletionHandlerExecutor" should "invoke handlers in the calling thread" in {
+    var invoker: Thread = null
+
+    SynchronousCompletionHandlerExecutor.execute("noop", handler) {
+      invoker = Thread.currentThread()
+    }
+
+    invoker shouldBe Thread.currentThread()
+  }
+
+  "AsynchronousCompletionHandlerExecutor" should "not make the caller wait for slow handlers" in {
+    val metrics = new SchedulerMetrics
+    val done = new CountDownLatch(1)
+
+    val start = System.currentTimeMillis()
+
+    executor(metrics = metrics).execute("noop", handler) {
+      Thread.sleep(1000)
+      done.countDown()
+    }
+
+    System.currentTimeMillis() - start should be < 500l
+
+    done.await(5, TimeUnit.SECONDS) shouldBe true
+
+    val latency = metrics.completionHandlerLatency("noop")
+    while (latency.count == 0) Thread.sleep(10)
+
+    latency.sum should be >= 1000l
+    metrics.completionHandlerQueueDepth("noop").sum shouldBe 0
+  }
+
+  it should "swallow exceptions of handlers" in {
+    val done = new CountDownLatch(1)
+    val e = executor(workers = 1)
+
+    e.execute("noop", handler) {
+      throw RetryableDriverException("handler failure")
+    }
+
+    e.execute("noop", handler) {
+      done.countDown()
+    }
+
+    done.await(5, TimeUnit.SECONDS) shouldBe true
+  }
+
+  it should "interrupt handlers exceeding the timeout" in {
+    val interrupted = new CountDownLatch(1)
+
+    executor(timeoutMillis = 100).execute("noop", handler) {
+      try {
+        Thread.sleep(60000)
+      } catch {
+        case i: InterruptedException =>
+          interrupted.countDown()
+          throw i
+      }
+    }
+
+    interrupted.await(5, TimeUnit.SECONDS) shouldBe true
+  }
+
+  it should "count invocations waiting for a worker" in {
+    val metrics = new SchedulerMetrics
+    val release = new CountDownLatch(1)
+    val e = executor(workers = 1, metrics = metrics)
+
+    (1 to 3).foreach { _ =>
+      e.execute("noop", handler) {
+        release.await()
+      }
+    }
+
+    while (metrics.completionHandlerQueueDepth("noop").sum != 2) Thread.sleep(10)
+    e.queued shouldBe 2
+
+    release.countDown()
+
+    while (e.queued != 0) Thread.sleep(10)
+  }
+
+  it should "invoke handlers in the calling thread once its queue is full" in {
+    val release = new CountDownLatch(1)
+    val e = executor(workers = 1, queueSize = 1)
+
+    (1 to 2).foreach { _ =>
+      e.execute("noop", handler) {
+        release.await()
+      }
+    }
+
+    val invokedByCaller = new AtomicBoolean(false)
+    val caller = Thread.currentThread()
+
+    e.execute("noop", handler) {
+      invokedByCaller.set(Thread.currentThread() eq caller)
+    }
+
+    invokedByCaller.get shouldBe true
+
+    release.countDown()
+  }
+
+  "CompletionHandlerExecutor" should "share one executor among all drivers of a transformation type" in {
+    val ds = Settings().getDriverSettings("noop")
+
+    CompletionHandlerExecutor.forDriver(ds) should be theSameInstanceAs CompletionHandlerExecutor.forDriver(ds)
+    CompletionHandlerExecutor.forDriver(ds) shouldBe an[AsynchronousCompletionHandlerExecutor]
+  }
+}
@@ -0,0 +1,120 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.driver
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.joda.time.LocalDateTime
+import org.scalatest.{FlatSpec, Matchers}
+import org.schedoscope.dsl.transformations.NoOp
+
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.duration.Duration
+import scala.concurrent.{Await, Future}
+
+class DriverRunStatePollerTest extends FlatSpec with Matchers {
+
+  /**
+    * A driver on a non-blocking API whose runs are done once their deadline has passed.
+    */
+  class DeadlineDriver(runDuration: Long) extends DriverOnNonBlockingApi[NoOp] {
+
+    val stateQueries = new AtomicInteger(0)
+
+    def transformationName = "noop"
+
+    def driverRunCompletionHandlerClassNames = List()
+
+    override def runStatePollingBackoff =
+      RunStatePollingBackoff(Duration.create(10, TimeUnit.MILLISECONDS), Duration.create(100, TimeUnit.MILLISECONDS), 2.0)
+
+    def run(t: NoOp) = new DriverRunHandle[NoOp](this, new LocalDateTime(), t, System.currentTimeMillis() + runDuration)
+
+    def getDriverRunState(run: DriverRunHandle[NoOp]) = {
+      stateQueries.incrementAndGet()
+
+      if (System.currentTimeMillis() < run.stateHandle.asInstanceOf[Long])
+        DriverRunOngoing(this, run)
+      else if (run.transformation == null)
+        throw RetryableDriverException("run without transformation")
+      else
+        DriverRunSucceeded(this, "done")
+    }
+  }
+
+  def threadCount = Thread.getAllStackTraces.size
+
+  "DriverOnNonBlockingApi" should "wait for a run synchronously" in {
+    val driver = new DeadlineDriver(200)
+
+    driver.runAndWait(NoOp()) shouldBe a[DriverRunSucceeded[_]]
+  }
+
+  it should "fail the completion of a run whose state cannot be queried" in {
+    val driver = new DeadlineDriver(0)
+
+    val completion = driver.runCompletion(driver.run(null))
+
+    a[RetryableDriverException] should be thrownBy Await.result(completion, Duration.create(5, TimeUnit.SECONDS))
+  }
+
+  it should "back off when polling long runs" in {
+    val driver = new DeadlineDriver(1000)
+
+    Await.result(driver.runCompletion(driver.run(NoOp())), Duration.create(5, TimeUnit.SECONDS))
+
+    driver.stateQueries.get should be < 20
+  }
+
+  it should "poll runs right away upon pushed state changes" in {
+    val driver = new DeadlineDriver(0) {
+      override def runStatePollingBackoff =
+        RunStatePollingBackoff(Duration.create(1, TimeUnit.HOURS), Duration.create(1, TimeUnit.HOURS), 1.0)
+    }
+
+    val runHandle = driver.run(NoOp())
+    runHandle.stateHandle = System.currentTimeMillis() + 60000
+
+    val completion = driver.runCompletion(runHandle)
+    Thread.sleep(50)
+
+    runHandle.stateHandle = 0l
+    runHandle.stateChanged()
+
+    Await.result(completion, Duration.create(1, TimeUnit.SECONDS)) shouldBe a[DriverRunSucceeded[_]]
+  }
+
+  it should "serve 500 concurrent waits with a constant number of threads" in {
+    val driver = new DeadlineDriver(1000)
+
+    Await.result(driver.runCompletion(driver.run(NoOp())), Duration.create(5, TimeUnit.SECONDS))
+
+    val threadsBefore = threadCount
+
+    val completions = (1 to 500).map(_ => driver.runCompletion(driver.run(NoOp())))
+
+    Thread.sleep(500)
+
+    completions.exists(_.isCompleted) shouldBe false
+    threadCount should be <= threadsBefore
+
+    val states = Await.result(Future.sequence(completions), Duration.create(10, TimeUnit.SECONDS))
+
+    states.forall(_.isInstanceOf[DriverRunSucceeded[_]]) shouldBe true
+  }
+
+}
@@ -17,6 +17,8 @@ package org.schedoscope.scheduler.driver
 
 import java.io.File
 
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.security.UserGroupInformation
 import org.scalatest.{FlatSpec, Matchers}
 import org.schedoscope.dsl.Parameter.p
 import org.schedoscope.dsl.transformations.{FilesystemTransformation, _}
@@ -27,6 +29,8 @@ import test.views.Product
 class FilesystemDriverTest extends FlatSpec with Matchers with TestFolder {
   lazy val driver: Driver[FilesystemTransformation] = new LocalTestResources().driverFor[FilesystemTransformation]("filesystem")
 
+  def driverWithWorkers(workers: Int) = new FilesystemDriver(List("org.schedoscope.test.resources.TestDriverRunCompletionHandler"), UserGroupInformation.getCurrentUser, new Configuration(true), workers, 2)
+
   "FileSystemDriver" should "be have transformation name filesystem" in {
     driver.transformationName shouldBe "filesystem"
   }
@@ -258,4 +262,84 @@ class FilesystemDriverTest extends FlatSpec with Matchers with TestFolder {
     driverRunStartedCalled(runHandle) shouldBe true
   }
 
+  it should "execute Copy and Move file transformations recursively with multiple workers" in {
+    val parallelDriver = driverWithWorkers(4)
+
+    createInputFile(s"subfolder${/}aTest.file")
+    createInputFile(s"subfolder${/}anotherSubfolder${/}anotherTest.file")
+    createInputFile("yetAnotherTest.file")
+
+    parallelDriver.runAndWait(Copy(inputPath("/*"), outputPath("copy"), true)) shouldBe a[DriverRunSucceeded[_]]
+
+    outputFile(s"copy${/}subfolder${/}aTest.file") shouldBe 'exists
+    outputFile(s"copy${/}subfolder${/}anotherSubfolder${/}anotherTest.file") shouldBe 'exists
+    outputFile(s"copy${/}yetAnotherTest.file") shouldBe 'exists
+
+    parallelDriver.runAndWait(Move(inputPath("/*"), outputPath("move"))) shouldBe a[DriverRunSucceeded[_]]
+
+    inputFile("subfolder") should not be 'exists
+    inputFile("yetAnotherTest.file") should not be 'exists
+    outputFile(s"move${/}subfolder${/}anotherSubfolder${/}anotherTest.file") shouldBe 'exists
+    outputFile(s"move${/}yetAnotherTest.file") shouldBe 'exists
+  }
+
+  it should "execute Move file transformation of a single file to a new name like with one worker" in {
+    List(1, 4).foreach { workers =>
+      createInputFile(s"aTest${workers}.file")
+
+      driverWithWorkers(workers).runAndWait(Move(inputPath(s"aTest${workers}.file"), outputPath(s"renamed${workers}.file"))) shouldBe a[DriverRunSucceeded[_]]
+
+      inputFile(s"aTest${workers}.file") should not be 'exists
+      outputFile(s"renamed${workers}.file") shouldBe 'file
+    }
+  }
+
+  it should "execute Move file transformation of a single folder to a new folder like with one worker" in {
+    List(1, 4).foreach { workers =>
+      createInputFile(s"subfolder${workers}${/}aTest.file")
+      createInputFile(s"subfolder${workers}${/}anotherSubfolder${/}anotherTest.file")
+
+      driverWithWorkers(workers).runAndWait(Move(inputPath(s"subfolder${workers}"), outputPath(s"newFolder${workers}"))) shouldBe a[DriverRunSucceeded[_]]
+
+      inputFile(s"subfolder${workers}") should not be 'exists
+      outputFile(s"newFolder${workers}${/}aTest.file") shouldBe 'file
+      outputFile(s"newFolder${workers}${/}anotherSubfolder${/}anotherTest.file") shouldBe 'file
+      outputFile(s"newFolder${workers}${/}subfolder${workers}") should not be 'exists
+    }
+  }
+
+  it should "look up file systems again after they have been evicted" in {
+    val conf = new Configuration(true)
+    val fs = FilesystemDriver.fileSystem(in, conf)
+
+    FilesystemDriver.fileSystem(in, conf) should be theSameInstanceAs fs
+
+    fs.close()
+    FilesystemDriver.evictFileSystems()
+
+    FilesystemDriver.fileSystem(in, conf) should not be theSameInstanceAs(fs)
+  }
+
+  it should "copy many files faster with multiple workers" in {
+    val fileCount = 10000
+
+    for (i <- 1 to fileCount)
+      createInputFile(s"subfolder${i % 10}${/}test${i}.file")
+
+    def copyTime(workers: Int, target: String) = {
+      val start = System.currentTimeMillis()
+      driverWithWorkers(workers).runAndWait(Copy(inputPath("/*"), outputPath(target), true)) shouldBe a[DriverRunSucceeded[_]]
+      val time = System.currentTimeMillis() - start
+
+      (0 until 10).map(i => outputFile(s"${target}${/}subfolder${i}").list().count(_.endsWith(".file"))).sum shouldBe fileCount
+
+      time
+    }
+
+    val sequentialTime = copyTime(1, "sequential")
+    val parallelTime = copyTime(8, "parallel")
+
+    info(s"Copied ${fileCount} files in ${sequentialTime} ms with 1 worker, in ${parallelTime} ms with 8 workers")
+  }
+
 }
\ No newline at end of file
@@ -15,6 +15,7 @@
   */
 package org.schedoscope.scheduler.driver
 
+import org.apache.hadoop.hive.ql.session.SessionState
 import org.scalatest.{FlatSpec, Matchers}
 import org.schedoscope.dsl.transformations.HiveTransformation
 import org.schedoscope.test.resources.LocalTestResources
@@ -87,4 +88,47 @@ class HiveDriverTest extends FlatSpec with Matchers {
 
     driverRunStartedCalled(runHandle) shouldBe true
   }
-}
\ No newline at end of file
+
+  it should "keep the session state of successful runs for reuse" in {
+    val hiveDriver = driver.asInstanceOf[HiveDriver]
+
+    hiveDriver.runAndWait(HiveTransformation("SHOW TABLES")) shouldBe a[DriverRunSucceeded[_]]
+    hiveDriver.sessionPool.idle shouldBe 1
+
+    hiveDriver.runAndWait(HiveTransformation("SHOW TABLES")) shouldBe a[DriverRunSucceeded[_]]
+    hiveDriver.sessionPool.idle shouldBe 1
+  }
+
+  it should "discard the session state of failed runs" in {
+    val hiveDriver = driver.asInstanceOf[HiveDriver]
+
+    hiveDriver.runAndWait(HiveTransformation("FAIL ME")) shouldBe a[DriverRunFailed[_]]
+    hiveDriver.sessionPool.idle shouldBe 0
+
+    hiveDriver.runAndWait(HiveTransformation("SHOW TABLES")) shouldBe a[DriverRunSucceeded[_]]
+  }
+
+  it should "reset configuration overridden by a run before reusing its session state" in {
+    val hiveDriver = driver.asInstanceOf[HiveDriver]
+
+    hiveDriver.runAndWait(HiveTransformation("SET schedoscope.test.property=overridden")) shouldBe a[DriverRunSucceeded[_]]
+
+    val session = hiveDriver.sessionPool.acquire()
+
+    session.getConf.get("schedoscope.test.property") shouldBe null
+
+    hiveDriver.sessionPool.release(session)
+  }
+
+  it should "detach released session states from the releasing thread" in {
+    val hiveDriver = driver.asInstanceOf[HiveDriver]
+
+    val session = hiveDriver.sessionPool.acquire()
+
+    SessionState.get() shouldBe theSameInstanceAs(session)
+
+    hiveDriver.sessionPool.release(session)
+
+    SessionState.get() shouldBe null
+  }
+}
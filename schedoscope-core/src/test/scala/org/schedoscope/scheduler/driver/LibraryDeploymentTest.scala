@@ -0,0 +1,133 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.driver
+
+import java.io.{File, FileOutputStream}
+import java.util.zip.{ZipEntry, ZipOutputStream}
+
+import org.apache.commons.io.FileUtils
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.fs.FileSystem
+import org.apache.hadoop.security.UserGroupInformation
+import org.scalatest.{FlatSpec, Matchers}
+
+import scala.collection.JavaConversions._
+
+class LibraryDeploymentTest extends FlatSpec with Matchers with TestFolder {
+
+  lazy val fsd = new FilesystemDriver(List(), UserGroupInformation.getCurrentUser, new Configuration(true), 4, 0)
+
+  def bytesWritten = FileSystem.getAllStatistics.map(_.getBytesWritten).sum
+
+  def writeOps = FileSystem.getAllStatistics.map(_.getWriteOps).sum
+
+  def createJar(name: String, entries: (String, String)*) = {
+    val zip = new ZipOutputStream(new FileOutputStream(inputFile(name)))
+
+    try {
+      entries.foreach { case (entry, content) =>
+        zip.putNextEntry(new ZipEntry(entry))
+        zip.write(content.getBytes("UTF-8"))
+        zip.closeEntry()
+      }
+    } finally {
+      zip.close()
+    }
+
+    s"file://${inputPath(name)}"
+  }
+
+  "LibraryDeployment" should "upload all jars and a manifest upon the first deployment" in {
+    val jars = List(createJar("a.jar", "a.txt" -> "a"), createJar("b.jar", "b.txt" -> "b"))
+
+    LibraryDeployment.deploy(fsd, jars, out, unpack = false) shouldBe true
+
+    outputFile("a.jar") shouldBe 'exists
+    outputFile("b.jar") shouldBe 'exists
+    outputFile(LibraryDeployment.manifestName) shouldBe 'exists
+  }
+
+  it should "write nothing when redeploying unchanged jars" in {
+    val jars = (1 to 20).map(i => createJar(s"lib$i.jar", s"file$i.txt" -> ("content" * 10000))).toList
+
+    LibraryDeployment.deploy(fsd, jars, out, unpack = false) shouldBe true
+
+    val modified = outputFolder.listFiles().map(f => (f.getName, f.lastModified())).toMap
+    val bytesWrittenBefore = bytesWritten
+    val writeOpsBefore = writeOps
+
+    val start = System.currentTimeMillis()
+    LibraryDeployment.deploy(fsd, jars, out, unpack = false) shouldBe true
+    val redeploymentTime = System.currentTimeMillis() - start
+
+    bytesWritten shouldBe bytesWrittenBefore
+    writeOps shouldBe writeOpsBefore
+    outputFolder.listFiles().map(f => (f.getName, f.lastModified())).toMap shouldBe modified
+    redeploymentTime should be < 1000l
+  }
+
+  it should "upload only changed jars and delete removed ones" in {
+    val a = createJar("a.jar", "a.txt" -> "a")
+    val b = createJar("b.jar", "b.txt" -> "b")
+    val c = createJar("c.jar", "c.txt" -> "c")
+
+    LibraryDeployment.deploy(fsd, List(a, b, c), out, unpack = false) shouldBe true
+
+    val unchangedModified = outputFile("a.jar").lastModified()
+    outputFile("a.jar").setLastModified(unchangedModified - 10000)
+
+    createJar("b.jar", "b.txt" -> "changed b")
+
+    LibraryDeployment.deploy(fsd, List(a, b), out, unpack = false) shouldBe true
+
+    outputFile("a.jar").lastModified() shouldBe unchangedModified - 10000
+    FileUtils.contentEquals(outputFile("b.jar"), inputFile("b.jar")) shouldBe true
+    outputFile("c.jar") should not be 'exists
+  }
+
+  it should "upload only changed files of unpacked jars" in {
+    val jar = createJar("unpacked.jar", "org/x/One.class" -> "one", "org/x/Two.class" -> "two")
+
+    LibraryDeployment.deploy(fsd, List(jar), out, unpack = true) shouldBe true
+
+    outputFile("org/x/One.class") shouldBe 'exists
+    outputFile("org/x/Two.class") shouldBe 'exists
+
+    outputFile("org/x/One.class").setLastModified(outputFile("org/x/One.class").lastModified() - 10000)
+    val unchangedModified = outputFile("org/x/One.class").lastModified()
+
+    createJar("unpacked.jar", "org/x/One.class" -> "one", "org/x/Two.class" -> "changed two")
+
+    LibraryDeployment.deploy(fsd, List(jar), out, unpack = true) shouldBe true
+
+    outputFile("org/x/One.class").lastModified() shouldBe unchangedModified
+    FileUtils.readFileToString(outputFile("org/x/Two.class")) shouldBe "changed two"
+  }
+
+  it should "deploy everything again if the manifest is missing" in {
+    val jar = createJar("a.jar", "a.txt" -> "a")
+
+    LibraryDeployment.deploy(fsd, List(jar), out, unpack = false) shouldBe true
+
+    new File(outputFolder, LibraryDeployment.manifestName).delete()
+    FileUtils.touch(outputFile("stale.jar"))
+
+    LibraryDeployment.deploy(fsd, List(jar), out, unpack = false) shouldBe true
+
+    outputFile("a.jar") shouldBe 'exists
+    outputFile("stale.jar") should not be 'exists
+  }
+}
@@ -0,0 +1,144 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.rest.server
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import akka.actor.ActorSystem
+import akka.testkit.{TestKit, TestProbe}
+import org.scalatest.{BeforeAndAfterAll, FlatSpecLike, Matchers}
+import org.schedoscope.scheduler.service.{ViewStatus, ViewStatusPage, ViewStatusStream}
+import spray.http.StatusCodes.ServiceUnavailable
+import spray.http._
+import spray.routing.RequestContext
+
+import scala.concurrent.duration._
+import scala.concurrent.{Future, Promise}
+
+class ViewStatusStreamActorSpec extends TestKit(ActorSystem("schedoscope"))
+  with FlatSpecLike
+  with Matchers
+  with BeforeAndAfterAll {
+
+  override def afterAll() = {
+    TestKit.shutdownActorSystem(system)
+  }
+
+  def viewStatus(viewPath: String) =
+    ViewStatus(viewPath, None, "materialized", None, None, None, None, None, None, None, None, None, None, None)
+
+  trait ViewStatusStreamTest {
+    val connection = TestProbe()
+    val ctx = RequestContext(HttpRequest(), connection.ref, Uri.Path.Empty)
+
+    def streamActor(viewStatusStream: Future[ViewStatusStream], timeout: Duration = 5 seconds) =
+      system.actorOf(ViewStatusStreamActor.props(ctx, viewStatusStream, timeout))
+
+    def expectChunk() = connection.expectMsgPF() {
+      case Confirmed(MessageChunk(data, _), ack) =>
+        connection.reply(ack)
+        data.asString
+    }
+  }
+
+  "A view status stream actor" should "send the next chunk only after the previous one was acknowledged" in new ViewStatusStreamTest {
+    streamActor(Future.successful(ViewStatusStream(Map("materialized" -> 3), 3,
+      Iterator(Future.successful(List(viewStatus("a"), viewStatus("b"))), Future.successful(List(viewStatus("c")))))))
+
+    val start = connection.expectMsgPF() {
+      case Confirmed(ChunkedResponseStart(response), ack) => (response.entity.asString, ack)
+    }
+    start._1 shouldBe """{"overview":{"materialized":3},"total":3,"views":["""
+
+    connection.expectNoMsg(500 millis)
+    connection.reply(start._2)
+
+    expectChunk() should (startWith("""{"viewPath":"a"""") and include(""",{"viewPath":"b""""))
+    expectChunk() should startWith(""",{"viewPath":"c"""")
+
+    connection.expectMsg(MessageChunk("]}"))
+    connection.expectMsg(ChunkedMessageEnd)
+  }
+
+  it should "include the page of a paged stream" in new ViewStatusStreamTest {
+    streamActor(Future.successful(ViewStatusStream(Map("materialized" -> 3), 3,
+      Iterator(Future.successful(List(viewStatus("b")))), Some(ViewStatusPage(1, 1, 3, Some(2))))))
+
+    connection.expectMsgPF() {
+      case Confirmed(ChunkedResponseStart(response), _) => response.entity.asString
+    } shouldBe """{"overview":{"materialized":3},"total":3,"page":{"offset":1,"limit":1,"total":3,"nextOffset":2},"views":["""
+  }
+
+  it should "terminate the response when the connection stops acknowledging chunks" in new ViewStatusStreamTest {
+    val actor = streamActor(Future.successful(ViewStatusStream(Map("materialized" -> 2), 2,
+      Iterator(Future.successful(List(viewStatus("a"))), Future.successful(List(viewStatus("b")))))), 1 second)
+
+    watch(actor)
+
+    connection.expectMsgPF() {
+      case Confirmed(ChunkedResponseStart(_), ack) => connection.reply(ack)
+    }
+    connection.expectMsgPF() {
+      case Confirmed(MessageChunk(_, _), _) =>
+    }
+
+    connection.expectMsg(3 seconds, ChunkedMessageEnd)
+    expectTerminated(actor)
+  }
+
+  it should "request the next chunk only after the previous one was acknowledged and end the response when it fails" in new ViewStatusStreamTest {
+    val secondChunk = Promise[List[ViewStatus]]()
+    val requestedChunks = new AtomicInteger()
+
+    val actor = streamActor(Future.successful(ViewStatusStream(Map("materialized" -> 2), 2,
+      Iterator(List(viewStatus("a")), List()).map { chunk =>
+        requestedChunks.incrementAndGet()
+        if (chunk.nonEmpty) Future.successful(chunk) else secondChunk.future
+      })))
+
+    watch(actor)
+
+    connection.expectMsgPF() {
+      case Confirmed(ChunkedResponseStart(_), ack) => connection.reply(ack)
+    }
+    val firstChunkAck = connection.expectMsgPF() {
+      case Confirmed(MessageChunk(_, _), ack) => ack
+    }
+
+    requestedChunks.get shouldBe 1
+
+    connection.reply(firstChunkAck)
+    connection.expectNoMsg(500 millis)
+    requestedChunks.get shouldBe 2
+
+    secondChunk.failure(new IllegalStateException("view manager unavailable"))
+
+    connection.expectMsg(ChunkedMessageEnd)
+    expectTerminated(actor)
+  }
+
+  it should "answer with an error when the view states are not available in time" in new ViewStatusStreamTest {
+    val actor = streamActor(Promise[ViewStatusStream]().future, 1 second)
+
+    watch(actor)
+
+    connection.expectMsgPF(3 seconds) {
+      case response: HttpResponse => response.status
+    } shouldBe ServiceUnavailable
+
+    expectTerminated(actor)
+  }
+}
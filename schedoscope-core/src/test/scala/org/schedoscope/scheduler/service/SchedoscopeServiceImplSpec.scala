@@ -13,6 +13,7 @@ import org.schedoscope.dsl.transformations.HiveTransformation
 import org.schedoscope.scheduler.actors.ViewManagerActor
 import org.schedoscope.scheduler.driver.{DriverRunOngoing, HiveDriver}
 import org.schedoscope.scheduler.messages.{GetViews, ViewStatusListResponse, ViewStatusResponse, _}
+import org.schedoscope.scheduler.utils.DependencyGraph
 import org.schedoscope.{Schedoscope, Settings, TestUtils}
 import test.extviews.ExternalShop
 import test.views.{Brand, ProductBrand}
@@ -81,7 +82,8 @@ class SchedoscopeServiceImplSpec extends TestKit(ActorSystem("schedoscope"))
         Schedoscope.settings,
         transformationManagerActor.ref,
         schemaManagerRouter.ref,
-        viewSchedulingListenerManagerActor.ref))
+        viewSchedulingListenerManagerActor.ref,
+        new DependencyGraph()(system.dispatcher)))
 
     Schedoscope.viewManagerActorBuilder = () => viewManagerActor
 
@@ -326,6 +328,70 @@ class SchedoscopeServiceImplSpec extends TestKit(ActorSystem("schedoscope"))
       Some(List(prodUrl01 + s"/${year}${month}${day}"))
   }
 
+  it should "return pages of views ordered by view url path along with an overview of all views" in new SchedoscopeServiceWithViewManagerTest {
+
+    val prodBrandViewActor = initializeViewWithDep(productBrandView01, brandDependency01, productDependency01)
+
+    val firstPage = Await.result(service.views(Some(prodBrandUrl01), None, None, None, Some(true), None, None, offset = Some(0), limit = Some(2)), TIMEOUT)
+
+    firstPage.overview shouldBe Map(initStatus -> 3)
+    firstPage.views.map(_.viewPath) shouldBe List(brandUrl01, prodUrl01 + s"/${year}${month}${day}")
+    firstPage.page shouldBe Some(ViewStatusPage(0, 2, 3, Some(2)))
+
+    val lastPage = Await.result(service.views(Some(prodBrandUrl01), None, None, None, Some(true), None, None, offset = firstPage.page.get.nextOffset, limit = Some(2)), TIMEOUT)
+
+    lastPage.overview shouldBe Map(initStatus -> 3)
+    lastPage.views.map(_.viewPath) shouldBe List(prodBrandUrl01 + s"/${year}${month}${day}")
+    lastPage.page shouldBe Some(ViewStatusPage(2, 2, 3, None))
+  }
+
+  it should "filter views by table" in new SchedoscopeServiceWithViewManagerTest {
+
+    val prodBrandViewActor = initializeViewWithDep(productBrandView01, brandDependency01, productDependency01)
+
+    val response = Await.result(service.views(Some(prodBrandUrl01), None, None, None, Some(true), None, None, table = Some(brandDependency01.tableName)), TIMEOUT)
+
+    response.overview shouldBe Map(initStatus -> 1)
+    response.views.map(_.viewPath) shouldBe List(brandUrl01)
+    response.page shouldBe None
+  }
+
+  it should "stream views in chunks listing each table only once" in new SchedoscopeServiceWithViewManagerTest {
+
+    val prodBrandViewActor = initializeViewWithDep(productBrandView01, brandDependency01, productDependency01)
+
+    val stream = Await.result(service.viewsStream(Some(prodBrandUrl01), None, None, None, Some(true), None, Some(true)), TIMEOUT)
+
+    stream.overview shouldBe Map(initStatus -> 3)
+    stream.total shouldBe 3
+
+    val streamedViews = stream.chunks.map(Await.result(_, TIMEOUT)).flatten.toList
+    streamedViews.count(_.isTable == Some(true)) shouldBe 3
+    streamedViews.filter(_.isTable == Some(false)).map(_.viewPath).sorted shouldBe
+      List(brandUrl01, prodUrl01 + s"/${year}${month}${day}", prodBrandUrl01 + s"/${year}${month}${day}")
+  }
+
+  it should "stream only the requested range of views or just the overview" in new SchedoscopeServiceWithViewManagerTest {
+
+    val prodBrandViewActor = initializeViewWithDep(productBrandView01, brandDependency01, productDependency01)
+
+    val page = Await.result(service.viewsStream(Some(prodBrandUrl01), None, None, None, Some(true), None, None, offset = Some(1), limit = Some(1)), TIMEOUT)
+
+    page.total shouldBe 3
+    page.page shouldBe Some(ViewStatusPage(1, 1, 3, Some(2)))
+    page.chunks.map(Await.result(_, TIMEOUT)).flatten.map(_.viewPath).toList shouldBe List(prodUrl01 + s"/${year}${month}${day}")
+
+    val rest = Await.result(service.viewsStream(Some(prodBrandUrl01), None, None, None, Some(true), None, None, offset = Some(1)), TIMEOUT)
+
+    rest.page shouldBe Some(ViewStatusPage(1, 2, 3, None))
+    rest.chunks.map(Await.result(_, TIMEOUT)).flatten.size shouldBe 2
+
+    val overview = Await.result(service.viewsStream(Some(prodBrandUrl01), None, None, None, Some(true), Some(true), None), TIMEOUT)
+
+    overview.overview shouldBe Map(initStatus -> 3)
+    overview.chunks shouldBe empty
+  }
+
   it should "initialize & get details all View and their dependencies no view provided" in new SchedoscopeServiceWithViewManagerTest {
 
     val prodBrandViewActor = initializeViewWithDep(productBrandView01, brandDependency01, productDependency01)
@@ -735,7 +801,7 @@ class SchedoscopeServiceImplSpec extends TestKit(ActorSystem("schedoscope"))
       ViewStatusListResponse(Success(List(ViewStatusResponse("materialized", productBrandView01, prodBrandViewActor.ref,
         errors = Some(false), incomplete = Some(false))))))
 
-    prodBrandViewActor.expectMsg(CommandForView(None, productBrandView01, MaterializeView(MaterializeViewMode.DEFAULT)))
+    prodBrandViewActor.expectMsg(CommandForViews(None, List(productBrandView01), MaterializeView(MaterializeViewMode.DEFAULT)))
 
     Await.result(response, TIMEOUT)
 
@@ -835,7 +901,7 @@ class SchedoscopeServiceImplSpec extends TestKit(ActorSystem("schedoscope"))
       ViewStatusListResponse(Success(List(ViewStatusResponse("invalidated", productBrandView01, prodBrandViewActor.ref,
         errors = Some(true), incomplete = Some(true))))))
 
-    prodBrandViewActor.expectMsg(CommandForView(None, productBrandView01, InvalidateView()))
+    prodBrandViewActor.expectMsg(CommandForViews(None, List(productBrandView01), InvalidateView()))
 
     Await.result(response, TIMEOUT)
 
@@ -0,0 +1,84 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.utils
+
+import org.scalatest.{FlatSpec, Matchers}
+
+class AdaptiveConcurrencyLimitTest extends FlatSpec with Matchers {
+
+  def adaptiveLimit(initial: Int, min: Int = 1, max: Int = 10) =
+    new AdaptiveConcurrencyLimit(initial, min, max, backOffRatio = 0.5, latencyTolerance = 2.0)
+
+  "An adaptive concurrency limit" should "grow by one per limit successful runs while transformations are waiting" in {
+    val limit = adaptiveLimit(2, max = 4)
+
+    limit.runCompleted(1000, succeeded = true, waiting = 5) shouldBe None
+    limit.runCompleted(1000, succeeded = true, waiting = 5) shouldBe Some("limit 2 -> 3: 5 transformations waiting")
+    limit.limit shouldBe 3
+
+    (1 to 3).foreach(_ => limit.runCompleted(1000, succeeded = true, waiting = 5))
+    limit.limit shouldBe 4
+
+    (1 to 10).foreach(_ => limit.runCompleted(1000, succeeded = true, waiting = 5))
+    limit.limit shouldBe 4
+    limit.lastDecision shouldBe "limit 3 -> 4: 5 transformations waiting"
+  }
+
+  it should "not grow when no transformations are waiting" in {
+    val limit = adaptiveLimit(2)
+
+    (1 to 10).foreach(_ => limit.runCompleted(1000, succeeded = true, waiting = 0))
+
+    limit.limit shouldBe 2
+  }
+
+  it should "back off at most once per limit runs upon failures" in {
+    val limit = adaptiveLimit(8)
+
+    limit.runCompleted(1000, succeeded = false, waiting = 5) shouldBe Some("limit 8 -> 4: failed run")
+
+    (1 to 3).foreach(_ => limit.runCompleted(1000, succeeded = false, waiting = 5))
+    limit.limit shouldBe 4
+
+    limit.runCompleted(1000, succeeded = false, waiting = 5)
+    limit.limit shouldBe 2
+  }
+
+  it should "not back off below its minimum" in {
+    val limit = adaptiveLimit(4, min = 3)
+
+    (1 to 20).foreach(_ => limit.runCompleted(1000, succeeded = false, waiting = 5))
+
+    limit.limit shouldBe 3
+  }
+
+  it should "back off when run times degrade" in {
+    val limit = adaptiveLimit(4)
+
+    (1 to 20).foreach(_ => limit.runCompleted(1000, succeeded = true, waiting = 0))
+    limit.limit shouldBe 4
+
+    limit.runCompleted(10000, succeeded = true, waiting = 5)
+
+    limit.limit shouldBe 2
+    limit.lastDecision should startWith("limit 4 -> 2: run time degraded")
+  }
+
+  it should "start within its bounds" in {
+    adaptiveLimit(20, max = 10).limit shouldBe 10
+    adaptiveLimit(0, min = 2).limit shouldBe 2
+  }
+}
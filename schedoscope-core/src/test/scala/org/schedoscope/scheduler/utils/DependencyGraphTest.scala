@@ -0,0 +1,112 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.utils
+
+import org.scalatest.{FlatSpec, Matchers}
+import org.schedoscope.dsl.Parameter.p
+import test.views.{ProductBrand, ProductBrandsNoOpMirrorDependent}
+
+import scala.concurrent.Await
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.duration._
+
+class DependencyGraphTest extends FlatSpec with Matchers {
+
+  "A dependency graph" should "assign stable ids to views" in {
+    val graph = new DependencyGraph()
+
+    val view = ProductBrand(p("ec0106"), p("2014"), p("01"), p("01"))
+    val sameView = ProductBrand(p("ec0106"), p("2014"), p("01"), p("01"))
+    val otherView = ProductBrand(p("ec0106"), p("2014"), p("01"), p("02"))
+
+    graph.idOf(view) shouldBe graph.idOf(sameView)
+    graph.idOf(view) should not be graph.idOf(otherView)
+    graph.viewOf(graph.idOf(view)) shouldBe view
+  }
+
+  it should "return the direct dependencies of a view in declaration order" in {
+    val graph = new DependencyGraph()
+
+    val view = ProductBrand(p("ec0106"), p("2014"), p("01"), p("01"))
+
+    graph.dependenciesOf(view) shouldBe view.dependencies
+  }
+
+  it should "return the transitive dependencies of a view" in {
+    val graph = new DependencyGraph()
+
+    val view = ProductBrandsNoOpMirrorDependent(p("2014"), p("01"), p("01"))
+
+    graph.transitiveDependenciesOf(view) shouldBe view.transitiveDependencies
+  }
+
+  it should "expand the dependencies of many views in parallel" in {
+    val graph = new DependencyGraph()
+
+    val views = (1 to 28).flatMap { day =>
+      List(
+        ProductBrandsNoOpMirrorDependent(p("2014"), p("02"), p(f"$day%02d")),
+        ProductBrand(p("ec0106"), p("2014"), p("02"), p(f"$day%02d")))
+    }
+
+    Await.result(graph.expand(views), 1 minute)
+
+    val expectedViews = (views ++ views.flatMap(_.transitiveDependencies)).map(_.urlPath).toSet
+
+    graph.size shouldBe expectedViews.size
+
+    views.foreach { v =>
+      graph.dependenciesOf(v) shouldBe v.dependencies
+    }
+  }
+
+  it should "compute the number and depth of the views depending on a view" in {
+    val graph = new DependencyGraph()
+
+    val view = ProductBrandsNoOpMirrorDependent(p("2014"), p("03"), p("01"))
+    val productBrand = ProductBrand(p("EC0101"), p("2014"), p("03"), p("01"))
+
+    Await.result(graph.expand(List(view)), 1 minute)
+
+    graph.transitiveDependentsCountOf(productBrand) shouldBe 2
+    graph.dependentsDepthOf(productBrand) shouldBe 2
+    graph.dependentsDepthOf(productBrand.dependencies.head) shouldBe 3
+    graph.dependentsDepthOf(view) shouldBe 0
+  }
+
+  it should "report the views whose dependents have changed only once" in {
+    val graph = new DependencyGraph()
+
+    val productBrand = ProductBrand(p("EC0101"), p("2014"), p("04"), p("01"))
+    val view = ProductBrandsNoOpMirrorDependent(p("2014"), p("04"), p("01"))
+
+    Await.result(graph.expand(List(productBrand)), 1 minute)
+
+    graph.takeViewsWithChangedDependents() shouldBe productBrand.transitiveDependencies
+    graph.takeViewsWithChangedDependents() shouldBe empty
+
+    Await.result(graph.expand(List(view)), 1 minute)
+
+    val changedViews = graph.takeViewsWithChangedDependents()
+    changedViews should contain(productBrand)
+    productBrand.transitiveDependencies.subsetOf(changedViews) shouldBe true
+    changedViews should not contain view
+
+    Await.result(graph.expand(List(view)), 1 minute)
+
+    graph.takeViewsWithChangedDependents() shouldBe empty
+  }
+}
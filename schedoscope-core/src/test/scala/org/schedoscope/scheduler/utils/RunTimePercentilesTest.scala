@@ -0,0 +1,62 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.utils
+
+import org.scalatest.{FlatSpec, Matchers}
+
+class RunTimePercentilesTest extends FlatSpec with Matchers {
+
+  "Run time percentiles" should "be unknown before the minimum number of runs" in {
+    val percentiles = new RunTimePercentiles()
+
+    (1 to 4).foreach(i => percentiles.record("hive", "checksum", i))
+
+    percentiles.percentile("hive", "checksum", 95, minimumRuns = 5) shouldBe None
+    percentiles.percentile("hive", "checksum", 95, minimumRuns = 4) shouldBe Some(4)
+  }
+
+  it should "be estimated from the recorded run times" in {
+    val percentiles = new RunTimePercentiles()
+
+    (1 to 100).reverse.foreach(i => percentiles.record("hive", "checksum", i))
+
+    percentiles.percentile("hive", "checksum", 95) shouldBe Some(95)
+    percentiles.percentile("hive", "checksum", 50) shouldBe Some(50)
+    percentiles.percentile("hive", "checksum", 100) shouldBe Some(100)
+  }
+
+  it should "be kept per transformation type and checksum" in {
+    val percentiles = new RunTimePercentiles()
+
+    percentiles.record("hive", "checksum", 10)
+    percentiles.record("hive", "other checksum", 1000)
+    percentiles.record("mapreduce", "checksum", 100000)
+
+    percentiles.percentile("hive", "checksum", 95) shouldBe Some(10)
+    percentiles.percentile("hive", "other checksum", 95) shouldBe Some(1000)
+    percentiles.percentile("mapreduce", "checksum", 95) shouldBe Some(100000)
+    percentiles.percentile("mapreduce", "other checksum", 95) shouldBe None
+  }
+
+  it should "only consider the most recent run times" in {
+    val percentiles = new RunTimePercentiles(window = 10)
+
+    (1 to 10).foreach(_ => percentiles.record("hive", "checksum", 100000))
+    (1 to 10).foreach(_ => percentiles.record("hive", "checksum", 10))
+
+    percentiles.percentile("hive", "checksum", 95) shouldBe Some(10)
+  }
+}
@@ -0,0 +1,139 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.utils
+
+import java.util.concurrent.CountDownLatch
+
+import akka.actor.{Actor, ActorSystem, Props}
+import com.typesafe.config.ConfigFactory
+import org.apache.hadoop.hive.metastore.IMetaStoreClient
+import org.scalatest.{FlatSpec, Matchers}
+
+class SchedulerMetricsTest extends FlatSpec with Matchers {
+
+  def histogramLines(name: String, label: String, counts: Seq[Long], sum: Long) = {
+    val bounds = LatencyHistogram.defaultBounds.map(_.toString) :+ "+Inf"
+
+    bounds.zip(counts.scanLeft(0l)(_ + _).tail).map {
+      case (le, count) => s"""${name}_bucket{$label,le="$le"} $count"""
+    }.toList ++ List(s"${name}_sum{$label} $sum", s"${name}_count{$label} ${counts.sum}")
+  }
+
+  "Scheduler metrics" should "render in a stable Prometheus text format" in {
+    val metrics = new SchedulerMetrics
+
+    metrics.mailboxDepth("view-manager").add(3)
+    metrics.mailboxDepth("table").add(2)
+    metrics.driverRunTime("hive").record(42)
+    metrics.driverRunTime("hive").record(42000)
+    metrics.driverRunTime("filesystem").record(0)
+    metrics.driverQueueWait("hive").record(7)
+
+    val noCounts = Seq.fill(LatencyHistogram.defaultBounds.length + 1)(0l)
+
+    val expected = List(
+      "# HELP schedoscope_mailbox_depth Number of messages waiting in the mailboxes of scheduler actors.",
+      "# TYPE schedoscope_mailbox_depth gauge",
+      """schedoscope_mailbox_depth{actor="table"} 2""",
+      """schedoscope_mailbox_depth{actor="view-manager"} 3""",
+      "# HELP schedoscope_driver_queue_wait_milliseconds Time transformations wait for a driver.",
+      "# TYPE schedoscope_driver_queue_wait_milliseconds histogram") ++
+      histogramLines("schedoscope_driver_queue_wait_milliseconds", """transformation="hive"""", noCounts.updated(2, 1l), 7) ++ List(
+      "# HELP schedoscope_driver_run_time_milliseconds Run time of transformations.",
+      "# TYPE schedoscope_driver_run_time_milliseconds histogram") ++
+      histogramLines("schedoscope_driver_run_time_milliseconds", """transformation="filesystem"""", noCounts.updated(0, 1l), 0) ++
+      histogramLines("schedoscope_driver_run_time_milliseconds", """transformation="hive"""", noCounts.updated(4, 1l).updated(13, 1l), 42042) ++ List(
+      "# HELP schedoscope_metastore_call_milliseconds Latency of metastore client calls.",
+      "# TYPE schedoscope_metastore_call_milliseconds histogram",
+      "# HELP schedoscope_driver_startup_milliseconds Time drivers take to start up and warm up their connections.",
+      "# TYPE schedoscope_driver_startup_milliseconds histogram",
+      "# HELP schedoscope_completion_handler_queue_depth Number of completion handler invocations waiting to be executed.",
+      "# TYPE schedoscope_completion_handler_queue_depth gauge",
+      "# HELP schedoscope_completion_handler_milliseconds Latency of driver run completion handlers.",
+      "# TYPE schedoscope_completion_handler_milliseconds histogram")
+
+    metrics.render.split("\n").toList shouldBe expected
+    metrics.render shouldBe metrics.render
+  }
+
+  "A latency histogram" should "count concurrent recordings exactly" in {
+    val histogram = new LatencyHistogram()
+
+    val threads = (1 to 8).map { _ =>
+      new Thread() {
+        override def run() = (1 to 100000).foreach(i => histogram.record(i % 1000))
+      }
+    }
+
+    threads.foreach(_.start())
+    threads.foreach(_.join())
+
+    histogram.count shouldBe 800000
+    histogram.sum shouldBe 8 * 100 * (0 until 1000).sum
+    histogram.bucketCounts.last shouldBe 0
+  }
+
+  "A metered mailbox" should "track the number of waiting messages" in {
+    val system = ActorSystem("metered-mailbox-test", ConfigFactory.parseString(
+      """metered-dispatcher {
+        |  mailbox-type = "org.schedoscope.scheduler.actors.MeteredMailbox"
+        |  mailbox-metric = "metered-mailbox-test"
+        |}""".stripMargin).withFallback(ConfigFactory.load()))
+
+    val started = new CountDownLatch(1)
+    val release = new CountDownLatch(1)
+
+    val actor = system.actorOf(Props(new Actor {
+      def receive = {
+        case "block" =>
+          started.countDown()
+          release.await()
+        case _ =>
+      }
+    }).withDispatcher("metered-dispatcher"))
+
+    val depth = SchedulerMetrics.mailboxDepth("metered-mailbox-test")
+
+    try {
+      actor ! "block"
+      started.await()
+
+      (1 to 5).foreach(i => actor ! i)
+      depth.sum shouldBe 5
+
+      release.countDown()
+
+      val deadline = System.currentTimeMillis() + 5000
+      while (depth.sum > 0 && System.currentTimeMillis() < deadline)
+        Thread.sleep(10)
+
+      depth.sum shouldBe 0
+    } finally {
+      release.countDown()
+      system.shutdown()
+    }
+  }
+
+  "A timed metastore client" should "record the latency of calls per method" in {
+    val metrics = new SchedulerMetrics
+
+    val client = metrics.timedMetastoreClient[IMetaStoreClient](null, classOf[IMetaStoreClient])
+
+    a[NullPointerException] should be thrownBy client.getAllDatabases
+
+    metrics.metastoreCall("getAllDatabases").count shouldBe 1
+  }
+}
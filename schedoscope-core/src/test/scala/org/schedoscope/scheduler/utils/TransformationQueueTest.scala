@@ -0,0 +1,84 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.utils
+
+import org.scalatest.{FlatSpec, Matchers}
+
+class TransformationQueueTest extends FlatSpec with Matchers {
+
+  class Clock {
+    var now = 0l
+
+    def apply() = now
+  }
+
+  def dequeueAll(queue: TransformationQueue) =
+    Iterator.continually(queue.dequeue()).takeWhile(_.isDefined).map(_.get._1).toList
+
+  "A transformation queue" should "dequeue commands in order of priority" in {
+    val queue = new TransformationQueue(tableFairnessWeight = 0, agingWeight = 0)
+
+    queue.enqueue("leaf", null, "a", 1)
+    queue.enqueue("root", null, "b", 100)
+    queue.enqueue("inner", null, "c", 10)
+
+    dequeueAll(queue) shouldBe List("root", "inner", "leaf")
+  }
+
+  it should "dequeue commands of equal priority in FIFO order" in {
+    val queue = new TransformationQueue(tableFairnessWeight = 0, agingWeight = 0)
+
+    (1 to 5).foreach { i => queue.enqueue(i, null, "a", 1) }
+
+    dequeueAll(queue) shouldBe List(1, 2, 3, 4, 5)
+  }
+
+  it should "interleave commands of different tables" in {
+    val queue = new TransformationQueue(tableFairnessWeight = 1, agingWeight = 0)
+
+    (1 to 3).foreach { i => queue.enqueue(s"a$i", null, "a", 10) }
+    (1 to 3).foreach { i => queue.enqueue(s"b$i", null, "b", 10) }
+
+    dequeueAll(queue) shouldBe List("a1", "b1", "a2", "b2", "a3", "b3")
+  }
+
+  it should "let waiting commands overtake more urgent but younger commands" in {
+    val clock = new Clock
+    val queue = new TransformationQueue(tableFairnessWeight = 0, agingWeight = 1, clock = clock.apply _)
+
+    queue.enqueue("old", null, "a", 1)
+    clock.now = 10 * 60000l
+    queue.enqueue("young", null, "b", 5)
+
+    dequeueAll(queue) shouldBe List("old", "young")
+  }
+
+  it should "report depth and wait times" in {
+    val clock = new Clock
+    val queue = new TransformationQueue(tableFairnessWeight = 0, agingWeight = 0, clock = clock.apply _)
+
+    queue.enqueue("first", null, "a", 1)
+    queue.enqueue("second", null, "a", 1)
+    clock.now = 1000l
+
+    queue.statistics shouldBe TransformationQueueStatistics(2, 1000l, 0l, 0l)
+
+    queue.dequeue()
+    clock.now = 3000l
+
+    queue.statistics shouldBe TransformationQueueStatistics(1, 3000l, 1000l, 1l)
+  }
+}
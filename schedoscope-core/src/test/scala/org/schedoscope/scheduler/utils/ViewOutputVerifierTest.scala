@@ -0,0 +1,96 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.utils
+
+import java.io.File
+import java.nio.file.Files
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{CountDownLatch, Executors}
+
+import org.apache.commons.io.FileUtils
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.fs.{FileSystem, FilterFileSystem, Path}
+import org.apache.hadoop.security.UserGroupInformation
+import org.scalatest.{FlatSpec, Matchers}
+
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.duration._
+import scala.concurrent.{Await, ExecutionContext, Future}
+
+class ViewOutputVerifierTest extends FlatSpec with Matchers {
+
+  class CountingFileSystem extends FilterFileSystem(FileSystem.getLocal(new Configuration())) {
+    val listings = new AtomicInteger()
+
+    override def listStatus(f: Path) = {
+      listings.incrementAndGet()
+      super.listStatus(f)
+    }
+  }
+
+  trait ViewFolders {
+    val fs = new CountingFileSystem()
+    val executor = Executors.newSingleThreadExecutor()
+    val verifier = new ViewOutputVerifier(fs, UserGroupInformation.getCurrentUser, ExecutionContext.fromExecutor(executor))
+
+    val parent = Files.createTempDirectory("output").toFile
+
+    FileUtils.writeStringToFile(new File(parent, "day=01/000000_0"), "data")
+    FileUtils.writeStringToFile(new File(parent, "day=02/000000_0"), "")
+    FileUtils.writeStringToFile(new File(parent, "day=03/_SUCCESS"), "")
+
+    def folder(day: String) = new File(parent, s"day=${day}").toString
+
+    def hasData(day: String, successFlag: Boolean = false) = Await.result(verifier.hasData(folder(day), successFlag), 5 seconds)
+  }
+
+  "The output verifier" should "tell folders with data from empty and missing folders" in new ViewFolders {
+    hasData("01") shouldBe true
+    hasData("02") shouldBe false
+    hasData("03") shouldBe false
+    hasData("04") shouldBe false
+  }
+
+  it should "check for success flags" in new ViewFolders {
+    hasData("01", successFlag = true) shouldBe false
+    hasData("03", successFlag = true) shouldBe true
+    hasData("04", successFlag = true) shouldBe false
+  }
+
+  it should "run identical checks queued up only once" in new ViewFolders {
+    val busy = new CountDownLatch(1)
+    executor.execute(new Runnable() {
+      def run() {
+        busy.await()
+      }
+    })
+
+    val checks = List("01", "02", "04", "01").map(day => verifier.hasData(folder(day)))
+    busy.countDown()
+
+    Await.result(Future.sequence(checks), 5 seconds) shouldBe List(true, false, false, true)
+    fs.listings.get shouldBe 3
+  }
+
+  it should "be shared per file system, user, and execution context" in {
+    val fs = FileSystem.getLocal(new Configuration())
+    val user = UserGroupInformation.getCurrentUser
+    val otherUser = UserGroupInformation.createRemoteUser("other")
+
+    ViewOutputVerifier(fs, user, global) should be theSameInstanceAs ViewOutputVerifier(fs, user, global)
+    ViewOutputVerifier(fs, otherUser, global) should not be theSameInstanceAs(ViewOutputVerifier(fs, user, global))
+  }
+}
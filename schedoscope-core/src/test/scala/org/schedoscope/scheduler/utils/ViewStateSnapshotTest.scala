@@ -0,0 +1,95 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.utils
+
+import java.io.File
+
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.fs.{FileSystem, Path}
+import org.scalatest.{FlatSpec, Matchers}
+import org.schedoscope.dsl.Parameter.p
+import org.schedoscope.scheduler.messages.MaterializeViewMode
+import org.schedoscope.scheduler.states.{CreatedByViewManager, Materialized, ReadFromSchemaManager, Transforming}
+import test.views.Brand
+
+class ViewStateSnapshotTest extends FlatSpec with Matchers {
+
+  val fs = FileSystem.getLocal(new Configuration())
+
+  def snapshotLocation = {
+    val file = File.createTempFile("view-states", ".snapshot")
+    file.deleteOnExit()
+    new Path(file.getAbsolutePath)
+  }
+
+  "A view state snapshot" should "read the metadata it has written" in {
+    val location = snapshotLocation
+    val metadata = Map(
+      "test.views/Brand/ec0101" -> ("checksum", 42l),
+      "test.views/Brand/ec0102" -> ("checksum", 0l),
+      "test.views/Product/ec0101/2014/01/01" -> ("anotherChecksum", 4711l))
+
+    ViewStateSnapshot.write(fs, location, metadata) shouldBe 3
+    ViewStateSnapshot.read(fs, location) shouldBe metadata
+
+    ViewStateSnapshot.write(fs, location, metadata.tail)
+    ViewStateSnapshot.read(fs, location) shouldBe metadata.tail
+  }
+
+  it should "replace a previous snapshot without leaving checksum or temporary files behind" in {
+    val location = snapshotLocation
+    val snapshotDirectory = new File(location.toString).getParentFile
+    val snapshotName = location.getName
+
+    ViewStateSnapshot.write(fs, location, Map("test.views/Brand/ec0101" -> ("checksum", 1l)))
+    ViewStateSnapshot.write(fs, location, Map("test.views/Brand/ec0101" -> ("checksum", 2l)))
+
+    ViewStateSnapshot.read(fs, location) shouldBe Map("test.views/Brand/ec0101" -> ("checksum", 2l))
+    snapshotDirectory.list().filter(_.contains(snapshotName)) shouldBe Array(snapshotName)
+  }
+
+  it should "be empty if it does not exist" in {
+    ViewStateSnapshot.read(fs, new Path(snapshotLocation, "missing")) shouldBe empty
+  }
+
+  it should "only contain views with stable states" in {
+    val view = Brand(p("ec0101"))
+
+    ViewStateSnapshot.metadataOf(ReadFromSchemaManager(view, "checksum", 42l)) shouldBe Some(("checksum", 42l))
+    ViewStateSnapshot.metadataOf(Materialized(view, "checksum", 42l, withErrors = false, incomplete = false)) shouldBe Some(("checksum", 42l))
+    ViewStateSnapshot.metadataOf(CreatedByViewManager(view)) shouldBe None
+    ViewStateSnapshot.metadataOf(Transforming(view, "checksum", Set(), MaterializeViewMode.DEFAULT, withErrors = false, incomplete = false)) shouldBe None
+  }
+
+  it should "load the states of 500k views in seconds" in {
+    val location = snapshotLocation
+    val metadata = (for (table <- 1 to 100; partition <- 1 to 5000)
+      yield s"test.views/Table${table}/ec0101/${partition}" -> (s"checksum${table}", partition.toLong)).toMap
+
+    val startWriting = System.currentTimeMillis()
+    ViewStateSnapshot.write(fs, location, metadata)
+    val writingTime = System.currentTimeMillis() - startWriting
+
+    val startReading = System.currentTimeMillis()
+    val readMetadata = ViewStateSnapshot.read(fs, location)
+    val readingTime = System.currentTimeMillis() - startReading
+
+    readMetadata shouldBe metadata
+    readingTime should be < 10000l
+
+    info(s"Wrote snapshot of ${metadata.size} views in ${writingTime} ms (${new File(location.toString).length} bytes), read it in ${readingTime} ms")
+  }
+}
@@ -0,0 +1,128 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.schema
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{CountDownLatch, TimeUnit}
+
+import org.scalatest.{FlatSpec, Matchers}
+
+import scala.concurrent.duration._
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.{Await, Future}
+
+class PartitionMetadataCacheTest extends FlatSpec with Matchers {
+
+  val partitions = List("2014/01/01" -> ("checksum", 1l), "2014/01/02" -> ("checksum", 2l))
+
+  "A partition metadata cache" should "load a table once" in {
+    val cache = new PartitionMetadataCache
+    val loads = new AtomicInteger()
+
+    cache.partitionsOf("db.table") {
+      loads.incrementAndGet()
+      partitions
+    }.get("2014/01/01") shouldBe ("checksum", 1l)
+
+    cache.partitionsOf("db.table") {
+      loads.incrementAndGet()
+      partitions
+    }.get("2014/01/02") shouldBe ("checksum", 2l)
+
+    loads.get shouldBe 1
+  }
+
+  it should "apply writes arriving while a table is being loaded after loading" in {
+    val cache = new PartitionMetadataCache
+    val loadStarted = new CountDownLatch(1)
+    val writesDone = new CountDownLatch(1)
+
+    val loading = Future {
+      cache.partitionsOf("db.table") {
+        loadStarted.countDown()
+        writesDone.await(10, TimeUnit.SECONDS)
+        partitions
+      }
+    }
+
+    loadStarted.await(10, TimeUnit.SECONDS)
+    cache.updateTimestamp("db.table", "2014/01/01", 42l, ("default", 0l))
+    cache.updateChecksum("db.table", "2014/01/02", "changed", ("default", 0l))
+    cache.put("db.table", "2014/01/03", ("created", 0l))
+    writesDone.countDown()
+
+    val cached = Await.result(loading, 10 seconds)
+
+    cached.get("2014/01/01") shouldBe ("checksum", 42l)
+    cached.get("2014/01/02") shouldBe ("changed", 2l)
+    cached.get("2014/01/03") shouldBe ("created", 0l)
+  }
+
+  it should "not cache failed loads" in {
+    val cache = new PartitionMetadataCache
+
+    a[RuntimeException] should be thrownBy cache.partitionsOf("db.table") {
+      throw new RuntimeException("metastore unavailable")
+    }
+
+    cache.isCached("db.table") shouldBe false
+    cache.partitionsOf("db.table")(partitions).size shouldBe 2
+  }
+
+  it should "load tables again once their time to live has passed" in {
+    val cache = new PartitionMetadataCache(timeToLive = 50 milliseconds)
+    val loads = new AtomicInteger()
+
+    def load = {
+      loads.incrementAndGet()
+      partitions
+    }
+
+    cache.partitionsOf("db.table")(load)
+    cache.partitionsOf("db.table")(load)
+    loads.get shouldBe 1
+
+    Thread.sleep(100)
+
+    cache.partitionsOf("db.table")(load)
+    loads.get shouldBe 2
+  }
+
+  it should "bound the number of tables loaded in parallel" in {
+    val cache = new PartitionMetadataCache(readConcurrency = 2)
+    val loading = new AtomicInteger()
+    val maxLoading = new AtomicInteger()
+
+    val loads = (1 to 8).map { table =>
+      Future {
+        cache.partitionsOf(s"db.table${table}") {
+          val concurrentLoads = loading.incrementAndGet()
+          maxLoading.synchronized {
+            maxLoading.set(math.max(maxLoading.get, concurrentLoads))
+          }
+          Thread.sleep(50)
+          loading.decrementAndGet()
+          partitions
+        }
+      }
+    }
+
+    Await.result(Future.sequence(loads), 10 seconds)
+
+    maxLoading.get should be <= 2
+    cache.size shouldBe 16
+  }
+}
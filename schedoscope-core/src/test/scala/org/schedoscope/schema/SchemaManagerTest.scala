@@ -0,0 +1,136 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.schema
+
+import java.lang.reflect.{InvocationHandler, InvocationTargetException, Method, Proxy}
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.apache.hadoop.hive.metastore.IMetaStoreClient
+import org.scalatest.{BeforeAndAfterEach, FlatSpec, Matchers}
+import org.schedoscope.dsl.Parameter.p
+import org.schedoscope.dsl.transformations.Checksum
+import org.schedoscope.test.resources.LocalTestResources
+import test.views.Click
+
+import scala.collection.JavaConversions.seqAsJavaList
+
+class SchemaManagerTest extends FlatSpec with Matchers with BeforeAndAfterEach {
+
+  lazy val resources = new LocalTestResources()
+
+  lazy val views = (for (month <- 1 to 12; day <- 1 to 28)
+    yield Click(p("EC0101"), p("2014"), p(f"${month}%02d"), p(f"${day}%02d"))).toList
+
+  lazy val initialMetadata = views.map(_ -> (Checksum.defaultDigest, 0l)).toMap
+
+  lazy val table = s"${views.head.dbName}.${views.head.n}"
+
+  var cache: PartitionMetadataCache = _
+
+  /**
+    * Each test starts with an empty table and an empty cache.
+    */
+  override def beforeEach() {
+    cache = new PartitionMetadataCache
+    SchemaManager(resources.metastoreClient, resources.connection, new PartitionMetadataCache).dropAndCreateTableSchema(views.head)
+  }
+
+  class MetastoreCallCounter(client: IMetaStoreClient) extends InvocationHandler {
+    val calls = new AtomicInteger()
+
+    def invoke(proxy: AnyRef, method: Method, args: Array[AnyRef]) = try {
+      calls.incrementAndGet()
+      method.invoke(client, (if (args == null) Array[AnyRef]() else args): _*)
+    } catch {
+      case e: InvocationTargetException => throw e.getCause
+    }
+  }
+
+  def schemaManagerCountingMetastoreCalls(cache: PartitionMetadataCache) = {
+    val counter = new MetastoreCallCounter(resources.metastoreClient)
+    val client = Proxy.newProxyInstance(getClass.getClassLoader, Array(classOf[IMetaStoreClient]), counter).asInstanceOf[IMetaStoreClient]
+
+    (SchemaManager(client, resources.connection, cache), counter.calls)
+  }
+
+  "The schema manager" should "create missing partitions and read existing partitions into its cache" in {
+    val (schemaManager, _) = schemaManagerCountingMetastoreCalls(new PartitionMetadataCache)
+
+    schemaManager.getTransformationMetadata(views) shouldBe initialMetadata
+
+    val (restartedSchemaManager, metastoreCalls) = schemaManagerCountingMetastoreCalls(cache)
+
+    val startReading = System.currentTimeMillis()
+    restartedSchemaManager.getTransformationMetadata(views) shouldBe initialMetadata
+    val readingTime = System.currentTimeMillis() - startReading
+
+    metastoreCalls.get shouldBe 2
+    cache.size shouldBe views.size
+
+    metastoreCalls.set(0)
+
+    val startReadingAgain = System.currentTimeMillis()
+    restartedSchemaManager.getTransformationMetadata(views) shouldBe initialMetadata
+    val readingAgainTime = System.currentTimeMillis() - startReadingAgain
+
+    metastoreCalls.get shouldBe 0
+
+    info(s"Read metadata of ${views.size} partitions in ${readingTime} ms from the metastore, in ${readingAgainTime} ms from the cache")
+  }
+
+  it should "keep its cache up to date when writing transformation metadata" in {
+    val (writingSchemaManager, _) = schemaManagerCountingMetastoreCalls(cache)
+    val (readingSchemaManager, metastoreCalls) = schemaManagerCountingMetastoreCalls(cache)
+
+    readingSchemaManager.getTransformationMetadata(views) shouldBe initialMetadata
+
+    val view = views.head
+    writingSchemaManager.setTransformationVersion(view)
+    writingSchemaManager.setTransformationTimestamp(view, 42l)
+
+    metastoreCalls.set(0)
+    readingSchemaManager.getTransformationMetadata(List(view)) shouldBe Map(view -> (view.transformation().checksum, 42l))
+    metastoreCalls.get shouldBe 0
+
+    val (restartedSchemaManager, _) = schemaManagerCountingMetastoreCalls(new PartitionMetadataCache)
+    restartedSchemaManager.getTransformationMetadata(List(view)) shouldBe Map(view -> (view.transformation().checksum, 42l))
+  }
+
+  it should "drop the cached partitions of a table when recreating it" in {
+    val (schemaManager, _) = schemaManagerCountingMetastoreCalls(cache)
+
+    schemaManager.getTransformationMetadata(views)
+    cache.isCached(table) shouldBe true
+
+    schemaManager.dropAndCreateTableSchema(views.head)
+    cache.isCached(table) shouldBe false
+  }
+
+  it should "drop the cached partitions of a table when a partition has been dropped outside of the cache" in {
+    val (schemaManager, _) = schemaManagerCountingMetastoreCalls(cache)
+    val view = views.head
+
+    schemaManager.getTransformationMetadata(views)
+    cache.isCached(table) shouldBe true
+
+    resources.metastoreClient.dropPartition(view.dbName, view.n, view.partitionValues(), false)
+
+    a[RetryableSchemaManagerException] should be thrownBy schemaManager.setTransformationVersion(view)
+    cache.isCached(table) shouldBe false
+
+    schemaManager.getTransformationMetadata(List(view)) shouldBe Map(view -> (Checksum.defaultDigest, 0l))
+  }
+}
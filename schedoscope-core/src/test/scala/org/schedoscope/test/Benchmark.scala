@@ -0,0 +1,24 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.test
+
+import org.scalatest.Tag
+
+/**
+  * Tag for long running benchmarks. These are excluded from the regular test run and only run with the
+  * benchmarks Maven profile.
+  */
+object Benchmark extends Tag("org.schedoscope.test.Benchmark")
@@ -18,6 +18,8 @@ package org.schedoscope.scheduler.driver
 import java.io.File
 import java.net.URI
 import java.util.Properties
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit.MILLISECONDS
 
 import com.typesafe.config.ConfigFactory
 import org.apache.hadoop.fs.Path
@@ -30,18 +32,23 @@ import org.schedoscope.dsl.transformations.OozieTransformation
 import org.schedoscope.test.resources.{OozieTestResources, TestResources}
 
 import scala.collection.JavaConversions.asScalaSet
+import scala.concurrent.duration._
 
 /**
   * This driver performs Oozie transformations.
   */
-class OozieDriver(val driverRunCompletionHandlerClassNames: List[String], val client: OozieClient) extends DriverOnNonBlockingApi[OozieTransformation] {
+class OozieDriver(val driverRunCompletionHandlerClassNames: List[String], val client: OozieClient, val poller: Option[OozieJobStatusPoller] = None) extends DriverOnNonBlockingApi[OozieTransformation] {
 
   def transformationName = "oozie"
 
   def run(t: OozieTransformation): DriverRunHandle[OozieTransformation] = try {
     val jobConf = createOozieJobConf(t)
     val oozieJobId = runOozieJob(jobConf)
-    new DriverRunHandle[OozieTransformation](this, new LocalDateTime(), t, oozieJobId)
+    val runHandle = new DriverRunHandle[OozieTransformation](this, new LocalDateTime(), t, oozieJobId)
+
+    poller.foreach(_.track(oozieJobId, jobConf.getProperty("user.name"), Some(runHandle)))
+
+    runHandle
   } catch {
     case e: Throwable => throw RetryableDriverException("Unexpected error occurred while running Oozie job", e)
   }
@@ -49,7 +56,7 @@ class OozieDriver(val driverRunCompletionHandlerClassNames: List[String], val cl
   def getDriverRunState(run: DriverRunHandle[OozieTransformation]) = {
     val jobId = run.stateHandle.toString
     try {
-      val state = getJobInfo(jobId).getStatus()
+      val state = poller.flatMap(_.status(jobId)).getOrElse(getJobInfo(jobId).getStatus())
 
       state match {
         case SUCCEEDED => DriverRunSucceeded[OozieTransformation](this, s"Oozie job ${jobId} succeeded")
@@ -65,11 +72,30 @@ class OozieDriver(val driverRunCompletionHandlerClassNames: List[String], val cl
     val jobId = run.stateHandle.toString
     try {
       client.kill(jobId)
+      poller.foreach(_.wakeUp())
     } catch {
       case e: Throwable => throw RetryableDriverException(s"Unexpected error occurred while killing Oozie job ${run.stateHandle}", e)
     }
   }
 
+  /**
+    * Verify that the Oozie server can be reached and speaks a supported web service version.
+    */
+  override def warmUp() {
+    client.validateWSVersion()
+  }
+
+  /**
+    * Stop polling the status of the run's job once its completion has been handled.
+    */
+  override def driverRunCompleted(run: DriverRunHandle[OozieTransformation], executor: CompletionHandlerExecutor) {
+    try {
+      super.driverRunCompleted(run, executor)
+    } finally {
+      poller.foreach(_.forget(run.stateHandle.toString))
+    }
+  }
+
   /**
     * Rig Oozie transformations prior to test by loading the workflow oozie.bundle into the test environment's HDFS
     * and tweak the path references accordingly
@@ -147,8 +173,51 @@ class OozieDriver(val driverRunCompletionHandlerClassNames: List[String], val cl
   */
 object OozieDriver extends DriverCompanionObject[OozieTransformation] {
 
-  def apply(ds: DriverSettings) = new OozieDriver(ds.driverRunCompletionHandlers, new OozieClient(ds.url))
+  private val clients = new ConcurrentHashMap[String, OozieClient]()
+
+  def apply(ds: DriverSettings) = {
+    val client = clientFor(ds.url)
+
+    new OozieDriver(ds.driverRunCompletionHandlers, client, pollerFor(ds, client))
+  }
+
+  def apply(ds: DriverSettings, testResources: TestResources) = {
+    val client = testResources.asInstanceOf[OozieTestResources].mo.getClient
+
+    new OozieDriver(List("org.schedoscope.test.resources.TestDriverRunCompletionHandler"), client, pollerFor(ds, client))
+  }
+
+  /**
+    * All Oozie drivers talking to the same Oozie server share a client and thus a job status poller.
+    */
+  private def clientFor(url: String) = {
+    val existing = clients.get(url)
+
+    if (existing != null)
+      existing
+    else {
+      val client = new OozieClient(url)
+      val raced = clients.putIfAbsent(url, client)
+      if (raced != null) raced else client
+    }
+  }
 
-  def apply(ds: DriverSettings, testResources: TestResources) =
-    new OozieDriver(List("org.schedoscope.test.resources.TestDriverRunCompletionHandler"), testResources.asInstanceOf[OozieTestResources].mo.getClient)
+  /**
+    * The shared job status poller of a client, unless batched status polling is disabled in the driver settings.
+    */
+  private def pollerFor(ds: DriverSettings, client: OozieClient) = {
+    def setting[T](read: => T, default: T) = try {
+      read
+    } catch {
+      case _: Throwable => default
+    }
+
+    if (setting(ds.config.getBoolean("statusPolling.enabled"), true))
+      Some(OozieJobStatusPoller(
+        client,
+        setting(FiniteDuration(ds.config.getDuration("statusPolling.minInterval", MILLISECONDS), MILLISECONDS), 1.second),
+        setting(FiniteDuration(ds.config.getDuration("statusPolling.maxInterval", MILLISECONDS), MILLISECONDS), 30.seconds)))
+    else
+      None
+  }
 }
\ No newline at end of file
@@ -0,0 +1,179 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.driver
+
+import java.util.concurrent._
+import java.util.concurrent.atomic.AtomicLong
+
+import org.apache.oozie.client.WorkflowJob.Status
+import org.apache.oozie.client.WorkflowJob.Status.{PREP, RUNNING, SUSPENDED}
+import org.apache.oozie.client.{OozieClient, WorkflowJob}
+import org.slf4j.LoggerFactory
+
+import scala.collection.JavaConversions._
+import scala.concurrent.duration._
+
+/**
+  * Polls the status of all Oozie workflow jobs in flight on behalf of the Oozie drivers sharing a client.
+  *
+  * Each round fetches the jobs still running with a single getJobsInfo call filtered by status and the users of the
+  * tracked jobs. Only tracked jobs no longer in that list, i.e., jobs that have just finished, are looked up
+  * individually. The interval between rounds doubles up to maxInterval while no job changes its status and falls
+  * back to minInterval as soon as one does or a new job is tracked. Tracking a new job only ever brings the next
+  * round forward.
+  *
+  * Status changes are pushed to the driver runs of the jobs.
+  */
+class OozieJobStatusPoller(val client: OozieClient, val minInterval: FiniteDuration, val maxInterval: FiniteDuration) {
+
+  val log = LoggerFactory.getLogger(classOf[OozieJobStatusPoller])
+
+  val pageSize = 1000
+
+  private class TrackedJob(val user: String, val run: Option[DriverRunHandle[_]]) {
+    @volatile var status: Status = PREP
+  }
+
+  private val jobs = new ConcurrentHashMap[String, TrackedJob]()
+
+  private val roundCounter = new AtomicLong()
+
+  private var interval = minInterval
+
+  private var nextRound: Option[ScheduledFuture[_]] = None
+
+  private lazy val executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory {
+    def newThread(r: Runnable) = {
+      val t = new Thread(r, "oozie-job-status-poller")
+      t.setDaemon(true)
+      t
+    }
+  })
+
+  /**
+    * Number of polling rounds performed so far.
+    */
+  def rounds = roundCounter.get
+
+  /**
+    * Start tracking the status of a job submitted for the given user.
+    */
+  def track(jobId: String, user: String, run: Option[DriverRunHandle[_]] = None) {
+    jobs.put(jobId, new TrackedJob(user, run))
+    wakeUp()
+  }
+
+  /**
+    * Stop tracking a job, e.g., after its driver run has completed.
+    */
+  def forget(jobId: String) {
+    jobs.remove(jobId)
+  }
+
+  /**
+    * The last polled status of a tracked job or None if the job is not tracked.
+    */
+  def status(jobId: String): Option[Status] = Option(jobs.get(jobId)).map(_.status)
+
+  /**
+    * Poll again with the minimum interval, e.g., after a job has been submitted or killed. A round already due
+    * within the minimum interval is left as is, so that continuous submissions cannot keep pushing it back.
+    */
+  def wakeUp() = synchronized {
+    interval = minInterval
+
+    if (!nextRound.exists(round => !round.isDone && round.getDelay(TimeUnit.MILLISECONDS) <= minInterval.toMillis))
+      schedule(minInterval)
+  }
+
+  private def schedule(delay: FiniteDuration) = synchronized {
+    nextRound.foreach(_.cancel(false))
+    nextRound = Some(executor.schedule(new Runnable {
+      def run() = poll()
+    }, delay.toMillis, TimeUnit.MILLISECONDS))
+  }
+
+  private def inFlight(status: Status) = status == PREP || status == RUNNING || status == SUSPENDED
+
+  private def poll() {
+    val jobsInFlight = jobs.filter { case (_, job) => inFlight(job.status) }
+
+    if (jobsInFlight.nonEmpty) try {
+      roundCounter.incrementAndGet()
+
+      val running = runningJobs(jobsInFlight.values.map(_.user).toSet)
+
+      var changed = false
+
+      for ((jobId, job) <- jobsInFlight) {
+        val status = running.getOrElse(jobId, client.getJobInfo(jobId).getStatus)
+
+        if (status != job.status) {
+          job.status = status
+          changed = true
+          job.run.foreach(_.stateChanged())
+        }
+      }
+
+      synchronized {
+        interval = if (changed) minInterval else (interval * 2).min(maxInterval)
+      }
+    } catch {
+      case t: Throwable => log.error("Could not poll status of Oozie jobs", t)
+    }
+
+    synchronized {
+      if (jobs.values.exists(job => inFlight(job.status)))
+        schedule(interval)
+      else
+        nextRound = None
+    }
+  }
+
+  private def runningJobs(users: Set[String]): Map[String, Status] = {
+    val filter = (
+      List(PREP, RUNNING, SUSPENDED).map(s => s"${OozieClient.FILTER_STATUS}=$s") ++
+        users.map(u => s"${OozieClient.FILTER_USER}=$u")
+      ).mkString(";")
+
+    def page(start: Int): List[WorkflowJob] = {
+      val jobsOnPage = client.getJobsInfo(filter, start, pageSize).toList
+      if (jobsOnPage.size < pageSize) jobsOnPage else jobsOnPage ++ page(start + pageSize)
+    }
+
+    page(1).map(j => j.getId -> j.getStatus).toMap
+  }
+}
+
+object OozieJobStatusPoller {
+
+  private val pollers = new ConcurrentHashMap[OozieClient, OozieJobStatusPoller]()
+
+  /**
+    * Return the poller shared by all drivers using the given Oozie client.
+    */
+  def apply(client: OozieClient, minInterval: FiniteDuration = 1.second, maxInterval: FiniteDuration = 30.seconds) = {
+    val existing = pollers.get(client)
+
+    if (existing != null)
+      existing
+    else {
+      val poller = new OozieJobStatusPoller(client, minInterval, maxInterval)
+      val raced = pollers.putIfAbsent(client, poller)
+      if (raced != null) raced else poller
+    }
+  }
+}
@@ -15,11 +15,63 @@
   */
 package org.schedoscope.scheduler.driver
 
+import java.lang.reflect.{InvocationHandler, Method, Proxy}
+import java.util.Properties
+import java.util.concurrent.atomic.AtomicLong
+
+import org.apache.oozie.client.WorkflowJob.Status
+import org.apache.oozie.client.WorkflowJob.Status.{RUNNING, SUCCEEDED}
+import org.apache.oozie.client.{OozieClient, WorkflowJob}
 import org.scalatest.{FlatSpec, Matchers}
 import org.schedoscope.dsl.transformations.OozieTransformation
 import org.schedoscope.test.resources.OozieTestResources
 import org.schedoscope.test.resources.TestDriverRunCompletionHandlerCallCounter._
 
+import scala.concurrent.duration._
+
+/**
+  * Oozie client delegating to another one while counting the status requests.
+  */
+class CountingOozieClient(client: OozieClient) extends OozieClient {
+
+  val jobsInfoCalls = new AtomicLong()
+
+  val jobInfoCalls = new AtomicLong()
+
+  override def run(conf: Properties) = client.run(conf)
+
+  override def kill(jobId: String) = client.kill(jobId)
+
+  override def getJobInfo(jobId: String) = {
+    jobInfoCalls.incrementAndGet()
+    client.getJobInfo(jobId)
+  }
+
+  override def getJobsInfo(filter: String, start: Int, len: Int) = {
+    jobsInfoCalls.incrementAndGet()
+    client.getJobsInfo(filter, start, len)
+  }
+}
+
+/**
+  * Oozie client reporting the job finished as succeeded and all other jobs as running, without a server.
+  */
+class StubOozieClient(finished: String) extends OozieClient {
+
+  def workflowJob(jobId: String, status: Status) =
+    Proxy.newProxyInstance(getClass.getClassLoader, Array(classOf[WorkflowJob]), new InvocationHandler {
+      def invoke(proxy: AnyRef, method: Method, args: Array[AnyRef]) = method.getName match {
+        case "getId" => jobId
+        case "getStatus" => status
+        case _ => null
+      }
+    }).asInstanceOf[WorkflowJob]
+
+  override def getJobInfo(jobId: String) = workflowJob(jobId, if (jobId == finished) SUCCEEDED else RUNNING)
+
+  override def getJobsInfo(filter: String, start: Int, len: Int) = new java.util.ArrayList[WorkflowJob]()
+}
+
 class OozieDriverTest extends FlatSpec with Matchers {
 
   lazy val resources: OozieTestResources = OozieTestResources()
@@ -115,4 +167,50 @@ class OozieDriverTest extends FlatSpec with Matchers {
 
     driverRunStartedCalled(runHandle) shouldBe true
   }
-}
\ No newline at end of file
+
+  it should "poll the status of concurrent Oozie jobs with a single request per round" in {
+    def runConcurrently(concurrency: Int) = {
+      val countingClient = new CountingOozieClient(cluster.getClient)
+      val poller = new OozieJobStatusPoller(countingClient, 100.milliseconds, 1.second)
+      val pollingDriver = new OozieDriver(List(), countingClient, Some(poller))
+
+      val runHandles = (1 to concurrency).map(_ => pollingDriver.run(workingOozieTransformation))
+
+      runHandles.foreach { runHandle =>
+        while (pollingDriver.getDriverRunState(runHandle).isInstanceOf[DriverRunOngoing[_]])
+          Thread.sleep(50)
+
+        pollingDriver.getDriverRunState(runHandle) shouldBe a[DriverRunSucceeded[_]]
+      }
+
+      (poller.rounds, countingClient.jobsInfoCalls.get, countingClient.jobInfoCalls.get)
+    }
+
+    val (fewRounds, fewListings, fewLookups) = runConcurrently(2)
+    val (manyRounds, manyListings, manyLookups) = runConcurrently(8)
+
+    fewListings shouldBe fewRounds
+    manyListings shouldBe manyRounds
+
+    fewLookups should be <= 2l
+    manyLookups should be <= 8l
+  }
+
+  it should "keep polling the status of Oozie jobs while new jobs are submitted continuously" in {
+    val poller = new OozieJobStatusPoller(new StubOozieClient("finished"), 100.milliseconds, 1.second)
+
+    poller.track("finished", "schedoscope")
+
+    val deadline = 5.seconds.fromNow
+    var submitted = 0
+
+    while (poller.status("finished") != Some(SUCCEEDED) && deadline.hasTimeLeft) {
+      poller.track(s"running-$submitted", "schedoscope")
+      submitted += 1
+      Thread.sleep(20)
+    }
+
+    poller.status("finished") shouldBe Some(SUCCEEDED)
+    poller.rounds should be > 0l
+  }
+}
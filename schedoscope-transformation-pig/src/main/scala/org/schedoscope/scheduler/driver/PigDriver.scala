@@ -19,6 +19,7 @@ import java.security.PrivilegedAction
 import java.util.Properties
 
 import org.apache.hadoop.security.UserGroupInformation
+import org.apache.pig.backend.executionengine.ExecJob
 import org.apache.pig.{ExecType, PigException, PigServer}
 import org.joda.time.LocalDateTime
 import org.schedoscope.Schedoscope
@@ -26,25 +27,93 @@ import org.schedoscope.conf.DriverSettings
 import org.schedoscope.dsl.transformations.PigTransformation
 import org.schedoscope.dsl.transformations.Transformation.replaceParameters
 import org.schedoscope.test.resources.TestResources
+import org.slf4j.LoggerFactory
 
-import scala.concurrent.Future
+import scala.collection.JavaConversions._
+import scala.concurrent.{Await, Future}
+import scala.util.{Failure, Success, Try}
+
+/**
+  * State handle of a Pig driver run: the future of the run's result and the Pig server executing it, if any.
+  */
+class PigRun {
+
+  @volatile var result: Future[DriverRunState[PigTransformation]] = _
+
+  @volatile var server: Option[PooledPigServer] = None
+
+  @volatile var killed = false
+
+  /**
+    * Stop the jobs the Pig server has launched for this run.
+    */
+  def kill() {
+    killed = true
+    server.foreach { s => s.server.getPigContext.getExecutionEngine.kill() }
+  }
+}
 
 /**
   * Driver for Pig transformations.
+  *
+  * Pig servers are taken from a pool per UGI, exec type, and properties and keep their registered libraries between runs.
+  * Scripts are executed in batch mode, so that the resulting jobs can be inspected and killed.
   */
-class PigDriver(val driverRunCompletionHandlerClassNames: List[String], val ugi: UserGroupInformation) extends DriverOnBlockingApi[PigTransformation] {
+class PigDriver(val driverRunCompletionHandlerClassNames: List[String], val ugi: UserGroupInformation, val pigServers: PigServerPool = new PigServerPool(0)) extends DriverOnBlockingApi[PigTransformation] {
+
+  val log = LoggerFactory.getLogger(classOf[PigDriver])
 
   def transformationName = "pig"
 
   /**
     * Construct a future-based driver run handle
     */
-  def run(t: PigTransformation): DriverRunHandle[PigTransformation] =
-    new DriverRunHandle[PigTransformation](this, new LocalDateTime(), t, Future {
+  def run(t: PigTransformation): DriverRunHandle[PigTransformation] = {
+    val pigRun = new PigRun()
+
+    pigRun.result = Future {
       // FIXME: future work: custom functions
-      executePigTransformation(t.latin, t.dirsToDelete, t.defaultLibraries, t.configuration.toMap, t.getViewUrl())
-    })
+      executePigTransformation(t.latin, t.dirsToDelete, t.defaultLibraries, t.configuration.toMap, t.getViewUrl(), pigRun)
+    }
+
+    new DriverRunHandle[PigTransformation](this, new LocalDateTime(), t, pigRun)
+  }
+
+  override def getDriverRunState(run: DriverRunHandle[PigTransformation]): DriverRunState[PigTransformation] = {
+    val runState = run.stateHandle.asInstanceOf[PigRun].result
+
+    runState.value match {
+      case Some(Success(state)) => state
+      case Some(Failure(t)) => throw t
+      case None => DriverRunOngoing[PigTransformation](this, run)
+    }
+  }
 
+  override def runAndWait(t: PigTransformation): DriverRunState[PigTransformation] =
+    Await.result(run(t).stateHandle.asInstanceOf[PigRun].result, runTimeOut)
+
+  /**
+    * Kill the MapReduce jobs of a running Pig script.
+    */
+  override def killRun(run: DriverRunHandle[PigTransformation]): Unit = try {
+    run.stateHandle.asInstanceOf[PigRun].kill()
+  } catch {
+    case t: Throwable => log.error("Pig driver failed to kill driver run", t)
+  }
+
+  /**
+    * Create a Pig server for the pool, if pooling is enabled, so that the first Pig script does not wait for it.
+    */
+  override def warmUp() {
+    if (pigServers.maxIdle > 0)
+      ugi.doAs(new PrivilegedAction[Unit]() {
+        def run() {
+          val execType = "MAPREDUCE"
+          val props = new Properties()
+          pigServers.giveBack(pigServers.borrow(ugi, execType, props, new PigServer(ExecType.fromString(execType), props)))
+        }
+      })
+  }
 
   /**
     * Rig Pig transformations prior to test by tweaking UDF path references to local classpath references.
@@ -58,8 +127,9 @@ class PigDriver(val driverRunCompletionHandlerClassNames: List[String], val ugi:
   /**
     * Really executed the given Pig Latin.
     */
-  def executePigTransformation(latin: String, directoriesToDelete: List[String], libraries: List[String], conf: Map[String, Any], view: String): DriverRunState[PigTransformation] = {
+  def executePigTransformation(latin: String, directoriesToDelete: List[String], libraries: List[String], conf: Map[String, Any], view: String, pigRun: PigRun = new PigRun()): DriverRunState[PigTransformation] = {
     val actualLatin = replaceParameters(latin, conf)
+    val execType = conf.getOrElse("exec.type", "MAPREDUCE").toString()
 
     val props = new Properties()
     conf.foreach(c => props.put(c._1, c._2.asInstanceOf[Object]))
@@ -68,22 +138,52 @@ class PigDriver(val driverRunCompletionHandlerClassNames: List[String], val ugi:
 
       def run(): DriverRunState[PigTransformation] = {
 
-        val ps = new PigServer(ExecType.fromString(conf.getOrElse("exec.type", "MAPREDUCE").toString()), props)
+        val pooled = pigServers.borrow(ugi, execType, props, new PigServer(ExecType.fromString(execType), props))
+        val ps = pooled.server
+
+        var reusable = false
+
+        pigRun.server = Some(pooled)
 
         try {
           ps.setJobName(view)
 
           directoriesToDelete.foreach(d => ps.deleteFile(d))
-          libraries.foreach(l => ps.registerJar(l))
+          pooled.registerLibraries(libraries)
+
+          ps.setBatchOn()
+
+          val jobs = try {
+            ps.registerQuery(actualLatin)
 
-          ps.registerQuery(actualLatin)
+            if (ps.isBatchEmpty) List() else ps.executeBatch().toList
+          } finally {
+            reusable = true
+            ps.discardBatch()
+          }
 
-          DriverRunSucceeded[PigTransformation](driver, s"Pig script ${actualLatin} executed")
+          val failedJob = jobs.find(_.getStatus == ExecJob.JOB_STATUS.FAILED)
+
+          if (pigRun.killed)
+            DriverRunFailed(driver, s"Pig script ${actualLatin} was killed", null)
+          else if (failedJob.isDefined)
+            DriverRunFailed(driver, s"Pig job failed while executing pig script ${actualLatin}", failedJob.get.getException)
+          else
+            DriverRunSucceeded[PigTransformation](driver, s"Pig script ${actualLatin} executed")
         } catch {
           // FIXME: do we need special handling for some exceptions here (similar to hive?)
           case e: PigException =>
             DriverRunFailed(driver, s"PigException encountered while executing pig script ${actualLatin}; Stacktrace is: ${e.getStackTrace}", e)
-          case t: Throwable => throw RetryableDriverException(s"Runtime exception while executing pig script ${actualLatin}", t)
+          case t: Throwable =>
+            reusable = false
+            throw RetryableDriverException(s"Runtime exception while executing pig script ${actualLatin}", t)
+        } finally {
+          pigRun.server = None
+
+          if (reusable && !pigRun.killed)
+            pigServers.giveBack(pooled)
+          else
+            pigServers.discard(pooled)
         }
       }
     })
@@ -98,10 +198,27 @@ class PigDriver(val driverRunCompletionHandlerClassNames: List[String], val ugi:
 object PigDriver extends DriverCompanionObject[PigTransformation] {
 
   def apply(ds: DriverSettings) =
-    new PigDriver(ds.driverRunCompletionHandlers, Schedoscope.settings.userGroupInformation)
+    new PigDriver(ds.driverRunCompletionHandlers, Schedoscope.settings.userGroupInformation, pigServers(ds))
 
   def apply(ds: DriverSettings, testResources: TestResources) =
-    new PigDriver(List("org.schedoscope.test.resources.TestDriverRunCompletionHandler"), testResources.ugi)
+    new PigDriver(List("org.schedoscope.test.resources.TestDriverRunCompletionHandler"), testResources.ugi, pigServers(ds))
+
+  private var sharedPigServers: Option[PigServerPool] = None
+
+  /**
+    * The Pig server pool shared by all Pig drivers. Its size is configured by pigServerPoolSize, defaulting to 0,
+    * i.e., no pooling.
+    */
+  def pigServers(ds: DriverSettings) = synchronized {
+    if (sharedPigServers.isEmpty)
+      sharedPigServers = Some(new PigServerPool(try {
+        ds.config.getInt("pigServerPoolSize")
+      } catch {
+        case _: Throwable => 0
+      }))
+
+    sharedPigServers.get
+  }
 
 
 }
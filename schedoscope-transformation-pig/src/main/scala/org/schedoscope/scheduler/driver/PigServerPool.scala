@@ -0,0 +1,122 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.driver
+
+import java.util.Properties
+import java.util.concurrent.{ConcurrentHashMap, LinkedBlockingQueue}
+
+import org.apache.hadoop.security.UserGroupInformation
+import org.apache.pig.PigServer
+
+import scala.collection.JavaConversions._
+import scala.collection.mutable
+import scala.util.Try
+
+/**
+  * A Pig server kept for reuse across driver runs, along with the libraries already registered with it and the
+  * properties it was connected with, i.e., those of the driver run that created it.
+  */
+class PooledPigServer(val server: PigServer, private[driver] val key: PigServerPool.Key) {
+
+  private val registeredLibraries = mutable.Set[String]()
+
+  private val initialProperties = server.getPigContext.getProperties.clone().asInstanceOf[Properties]
+
+  /**
+    * Register those of the given libraries with the Pig server that have not been registered before.
+    */
+  def registerLibraries(libraries: List[String]) =
+    libraries.filterNot(registeredLibraries.contains).foreach { l =>
+      server.registerJar(l)
+      registeredLibraries += l
+    }
+
+  /**
+    * Revert the server's properties to those it was connected with, dropping any changes made during the last
+    * driver run, e.g., its job name.
+    */
+  def reset() = {
+    val current = server.getPigContext.getProperties
+    current.clear()
+    current.putAll(initialProperties)
+  }
+}
+
+/**
+  * Pools Pig servers per UGI, exec type, and properties, so that driver runs do not pay for setting up a Pig server
+  * and registering the same libraries over and over again.
+  *
+  * Pig reads its properties when connecting a Pig server to its execution engine, so a server is only ever reused
+  * for driver runs with exactly the properties it was created with.
+  *
+  * @param maxIdle the maximum number of idle Pig servers to keep per UGI, exec type, and properties. 0 disables pooling.
+  */
+class PigServerPool(val maxIdle: Int) {
+
+  import PigServerPool.Key
+
+  private val idle = new ConcurrentHashMap[Key, LinkedBlockingQueue[PooledPigServer]]()
+
+  private def idleServers(key: Key) = {
+    val existing = idle.get(key)
+
+    if (existing != null)
+      existing
+    else {
+      val servers = new LinkedBlockingQueue[PooledPigServer](math.max(maxIdle, 1))
+      val raced = idle.putIfAbsent(key, servers)
+      if (raced != null) raced else servers
+    }
+  }
+
+  /**
+    * Take an idle Pig server for the given UGI, exec type, and properties or create one. The Pig server created
+    * must be constructed with these properties. Must be called within ugi.doAs.
+    */
+  def borrow(ugi: UserGroupInformation, execType: String, properties: Properties, create: => PigServer): PooledPigServer = {
+    val key = PigServerPool.key(ugi, execType, properties)
+    val pooled = if (maxIdle > 0) idleServers(key).poll() else null
+
+    if (pooled != null) pooled else new PooledPigServer(create, key)
+  }
+
+  /**
+    * Return a Pig server after a driver run, reverting it to the properties it was created with. If enough servers
+    * with these properties are idle already, it is shut down.
+    */
+  def giveBack(pooled: PooledPigServer) =
+    if (maxIdle <= 0)
+      discard(pooled)
+    else {
+      pooled.reset()
+
+      if (!idleServers(pooled.key).offer(pooled))
+        discard(pooled)
+    }
+
+  /**
+    * Shut down a Pig server that must not be reused, e.g., after its run has been killed.
+    */
+  def discard(pooled: PooledPigServer) = Try(pooled.server.shutdown())
+}
+
+object PigServerPool {
+
+  private[driver] type Key = (UserGroupInformation, String, Map[String, String])
+
+  private[driver] def key(ugi: UserGroupInformation, execType: String, properties: Properties): Key =
+    (ugi, execType.toUpperCase, properties.entrySet.map(e => e.getKey.toString -> e.getValue.toString).toMap)
+}
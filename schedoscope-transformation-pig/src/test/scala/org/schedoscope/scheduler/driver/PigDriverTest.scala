@@ -15,6 +15,9 @@
   */
 package org.schedoscope.scheduler.driver
 
+import java.util.Properties
+
+import org.apache.pig.impl.PigContext
 import org.scalatest.{FlatSpec, Matchers}
 import org.schedoscope.dsl.transformations.PigTransformation
 import org.schedoscope.test.resources.LocalTestResources
@@ -92,4 +95,69 @@ class PigDriverTest extends FlatSpec with Matchers {
 
     driverRunStartedCalled(runHandle) shouldBe true
   }
-}
\ No newline at end of file
+
+  it should "reuse pooled Pig servers and their registered libraries across runs" in {
+    def setupTime(pigServers: PigServerPool) = {
+      val pigDriver = new PigDriver(List(), testResources.ugi, pigServers)
+
+      pigDriver.runAndWait(okTransformation) shouldBe a[DriverRunSucceeded[_]]
+
+      val start = System.currentTimeMillis()
+      (1 to 10).foreach { _ =>
+        pigDriver.runAndWait(okTransformation) shouldBe a[DriverRunSucceeded[_]]
+      }
+      System.currentTimeMillis() - start
+    }
+
+    val unpooled = setupTime(new PigServerPool(0))
+    val pooled = setupTime(new PigServerPool(1))
+
+    info(s"10 Pig runs took ${unpooled} ms with a new Pig server each and ${pooled} ms with pooled Pig servers")
+
+    pooled should be < unpooled
+  }
+
+  it should "return pooled Pig servers after failed runs" in {
+    val pigServers = new PigServerPool(1)
+    val pigDriver = new PigDriver(List(), testResources.ugi, pigServers)
+
+    pigDriver.runAndWait(badTransformation) shouldBe a[DriverRunFailed[_]]
+    pigDriver.runAndWait(okTransformation) shouldBe a[DriverRunSucceeded[_]]
+  }
+
+  it should "pool Pig servers created with the properties of their run and revert changes made by the run" in {
+    val pigServers = new PigServerPool(1)
+    val pigDriver = new PigDriver(List(), testResources.ugi, pigServers)
+    val conf = Map("exec.type" -> "LOCAL", "schedoscope.test.property" -> "first run")
+
+    pigDriver.executePigTransformation("/* a comment */", List(), List(), conf, "test") shouldBe a[DriverRunSucceeded[_]]
+
+    val props = new Properties()
+    conf.foreach(c => props.put(c._1, c._2))
+
+    val pooled = pigServers.borrow(testResources.ugi, "LOCAL", props, fail("Pig server was not returned to the pool"))
+
+    pooled.server.getPigContext.getProperties.getProperty("schedoscope.test.property") shouldBe "first run"
+    pooled.server.getPigContext.getProperties.containsKey(PigContext.JOB_NAME) shouldBe false
+  }
+
+  it should "not reuse pooled Pig servers for runs with different properties" in {
+    val pigServers = new PigServerPool(1)
+    val pigDriver = new PigDriver(List(), testResources.ugi, pigServers)
+
+    pigDriver.executePigTransformation("/* a comment */", List(), List(),
+      Map("exec.type" -> "LOCAL", "schedoscope.test.property" -> "first run"), "test") shouldBe a[DriverRunSucceeded[_]]
+
+    val props = new Properties()
+    props.put("exec.type", "LOCAL")
+    props.put("schedoscope.test.property", "second run")
+
+    var created = false
+    pigServers.borrow(testResources.ugi, "LOCAL", props, {
+      created = true
+      null
+    })
+
+    created shouldBe true
+  }
+}
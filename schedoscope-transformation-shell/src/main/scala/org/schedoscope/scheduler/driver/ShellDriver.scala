@@ -3,44 +3,40 @@ package org.schedoscope.scheduler.driver
 import java.io.{File, FileWriter}
 
 import org.joda.time.LocalDateTime
+import org.schedoscope.Schedoscope
 import org.schedoscope.conf.DriverSettings
 import org.schedoscope.dsl.transformations.ShellTransformation
 import org.schedoscope.test.resources.TestResources
 import org.slf4j.LoggerFactory
 
-import scala.concurrent.Future
-import scala.language.reflectiveCalls
-import scala.sys.process._
+import scala.concurrent.Await
+import scala.concurrent.duration.Duration
+import scala.util.{Failure, Success, Try}
 
 /**
   * Driver for executing shell transformations.
+  *
+  * Scripts are run as processes watched by the ShellProcessMonitor, so a running script does not occupy a thread.
+  * Only the last outputBufferSize bytes of a script's standard output and error are kept and logged once it has finished.
   */
-class ShellDriver(val driverRunCompletionHandlerClassNames: List[String]) extends DriverOnBlockingApi[ShellTransformation] {
+class ShellDriver(val driverRunCompletionHandlerClassNames: List[String], val outputBufferSize: Int = 65536) extends DriverOnNonBlockingApi[ShellTransformation] {
 
   val log = LoggerFactory.getLogger(classOf[ShellDriver])
 
   def transformationName = "shell"
 
-  /**
-    * Construct a future-based driver run handle
-    */
-  def run(t: ShellTransformation): DriverRunHandle[ShellTransformation] =
-    new DriverRunHandle(this, new LocalDateTime(), t, Future {
-      doRun(t)
-    })
+  def runTimeOut: Duration = Schedoscope.settings.getDriverSettings(transformationName).timeout
 
   /**
-    * Actually run the shell transformation.
+    * Start the shell transformation process and hand it over to the process monitor.
     */
-  def doRun(t: ShellTransformation): DriverRunState[ShellTransformation] = {
-    val stdout = new StringBuilder
+  def run(t: ShellTransformation): DriverRunHandle[ShellTransformation] = {
     val environment = t.configuration.toSeq.map { case (k, v) => (k, v.toString) }
 
-    try {
-
-      val returnCode =
+    val shellRun = try {
+      val scriptFile =
         if (t.scriptFile != "")
-          Process(Seq(t.shell, t.scriptFile), None, environment: _*) ! ProcessLogger(log.info, log.error)
+          None
         else {
           val file = File.createTempFile("_schedoscope", ".sh")
 
@@ -55,19 +51,74 @@ class ShellDriver(val driverRunCompletionHandlerClassNames: List[String]) extend
             writer.close()
           }
 
-          scala.compat.Platform.collectGarbage() // JVM Windows related bug workaround JDK-4715154
           file.deleteOnExit()
 
-          Process(Seq(t.shell, file.getAbsolutePath), None, environment: _*) ! ProcessLogger(log.info, log.error)
+          Some(file)
         }
 
-      if (returnCode == 0)
-        DriverRunSucceeded[ShellTransformation](this, "Shell script finished")
-      else
-        DriverRunFailed[ShellTransformation](this, s"Shell script returned errorcode ${returnCode}", null)
+      val processBuilder = new ProcessBuilder(t.shell, scriptFile.map(_.getAbsolutePath).getOrElse(t.scriptFile))
 
+      environment.foreach { case (k, v) => processBuilder.environment().put(k, v) }
+
+      new ShellRun(t, processBuilder.start(), scriptFile, outputBufferSize)
     } catch {
-      case e: Throwable => DriverRunFailed[ShellTransformation](this, s"Shell script execution resulted in exception", e)
+      case e: Throwable => throw RetryableDriverException("Could not start shell script process because of exception", e)
+    }
+
+    val runHandle = new DriverRunHandle[ShellTransformation](this, new LocalDateTime(), t, shellRun)
+
+    shellRun.run = runHandle
+    ShellProcessMonitor.watch(shellRun)
+
+    runHandle
+  }
+
+  def getDriverRunState(run: DriverRunHandle[ShellTransformation]): DriverRunState[ShellTransformation] = {
+    val shellRun = run.stateHandle.asInstanceOf[ShellRun]
+
+    shellRun.exitCode.future.value match {
+      case None => DriverRunOngoing[ShellTransformation](this, run)
+
+      case Some(Success(returnCode)) =>
+        logOutput(shellRun)
+
+        if (returnCode == 0)
+          DriverRunSucceeded[ShellTransformation](this, "Shell script finished")
+        else
+          DriverRunFailed[ShellTransformation](this, s"Shell script returned errorcode ${returnCode}", null)
+
+      case Some(Failure(e)) => DriverRunFailed[ShellTransformation](this, s"Shell script execution resulted in exception", e)
+    }
+  }
+
+  /**
+    * Wait for the process to terminate instead of polling its state.
+    */
+  override def runAndWait(t: ShellTransformation): DriverRunState[ShellTransformation] = {
+    val runHandle = run(t)
+
+    Try(Await.ready(runHandle.stateHandle.asInstanceOf[ShellRun].exitCode.future, runTimeOut))
+
+    getDriverRunState(runHandle)
+  }
+
+  /**
+    * Kill the script process together with all processes it has started.
+    */
+  override def killRun(run: DriverRunHandle[ShellTransformation]): Unit = try {
+    ShellProcessMonitor.killTree(run.stateHandle.asInstanceOf[ShellRun].process)
+  } catch {
+    case t: Throwable => log.error("Shell driver failed to kill driver run", t)
+  }
+
+  private def logOutput(shellRun: ShellRun) = if (shellRun.outputLogged.compareAndSet(false, true)) {
+    val script = if (shellRun.transformation.scriptFile != "") shellRun.transformation.scriptFile else "inline script"
+
+    for ((buffer, kind) <- Seq((shellRun.stdout, "output"), (shellRun.stderr, "error output")) if buffer.contents.nonEmpty) {
+      val truncation = if (buffer.dropped > 0) s", first ${buffer.dropped} bytes dropped" else ""
+      val message = s"Shell ${kind} of ${script}${truncation}:\n${buffer.contents}"
+
+      if (buffer eq shellRun.stdout) log.info(message) else log.error(message)
     }
   }
 }
@@ -77,8 +128,17 @@ class ShellDriver(val driverRunCompletionHandlerClassNames: List[String]) extend
   */
 object ShellDriver extends DriverCompanionObject[ShellTransformation] {
 
-  def apply(ds: DriverSettings) = new ShellDriver(ds.driverRunCompletionHandlers)
+  def apply(ds: DriverSettings) = new ShellDriver(ds.driverRunCompletionHandlers, outputBufferSize(ds))
 
   def apply(ds: DriverSettings, testResources: TestResources) =
-    new ShellDriver(List("org.schedoscope.test.resources.TestDriverRunCompletionHandler"))
+    new ShellDriver(List("org.schedoscope.test.resources.TestDriverRunCompletionHandler"), outputBufferSize(ds))
+
+  /**
+    * Number of bytes of standard output and error to keep per shell script. Defaults to 64 KB.
+    */
+  def outputBufferSize(ds: DriverSettings) = try {
+    math.max(ds.config.getInt("outputBufferSize"), 1)
+  } catch {
+    case _: Throwable => 65536
+  }
 }
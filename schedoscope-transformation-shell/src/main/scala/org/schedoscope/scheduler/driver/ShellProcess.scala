@@ -0,0 +1,181 @@
+package org.schedoscope.scheduler.driver
+
+import java.io.{File, InputStream}
+import java.nio.charset.StandardCharsets.UTF_8
+import java.util.concurrent.{ConcurrentHashMap, Executors, ThreadFactory, TimeUnit}
+import java.util.concurrent.atomic.AtomicBoolean
+
+import org.schedoscope.dsl.transformations.ShellTransformation
+
+import scala.collection.JavaConversions._
+import scala.concurrent.Promise
+import scala.sys.process.{Process => ScalaProcess}
+import scala.util.Try
+
+/**
+  * Keeps the last bytes written to it, up to a fixed capacity. Older bytes are overwritten and counted as dropped.
+  */
+class OutputRingBuffer(val capacity: Int) {
+
+  private val buffer = new Array[Byte](capacity)
+
+  private var start = 0
+
+  private var size = 0
+
+  private var droppedBytes = 0l
+
+  def write(bytes: Array[Byte], offset: Int, length: Int) = synchronized {
+    val skipped = math.max(length - capacity, 0)
+
+    droppedBytes += skipped
+
+    for (i <- offset + skipped until offset + length) {
+      buffer((start + size) % capacity) = bytes(i)
+
+      if (size < capacity)
+        size += 1
+      else {
+        start = (start + 1) % capacity
+        droppedBytes += 1
+      }
+    }
+  }
+
+  def dropped = synchronized(droppedBytes)
+
+  def contents = synchronized {
+    val bytes = new Array[Byte](size)
+
+    for (i <- 0 until size)
+      bytes(i) = buffer((start + i) % capacity)
+
+    new String(bytes, UTF_8)
+  }
+}
+
+/**
+  * State handle of a shell driver run: the script process, the captured tails of its output, and the exit code once
+  * the process has terminated.
+  */
+class ShellRun(val transformation: ShellTransformation, val process: Process, val scriptFile: Option[File], outputBufferSize: Int) {
+
+  val stdout = new OutputRingBuffer(outputBufferSize)
+
+  val stderr = new OutputRingBuffer(outputBufferSize)
+
+  val exitCode = Promise[Int]()
+
+  val outputLogged = new AtomicBoolean(false)
+
+  @volatile var run: DriverRunHandle[ShellTransformation] = _
+
+  private val chunk = new Array[Byte](8192)
+
+  /**
+    * Copy whatever output is available without blocking and complete the exit code once the process has terminated.
+    * Returns whether the process is done.
+    */
+  def pump(): Boolean = {
+    drain(process.getInputStream, stdout)
+    drain(process.getErrorStream, stderr)
+
+    Try(process.exitValue()).toOption match {
+      case Some(code) =>
+        drain(process.getInputStream, stdout)
+        drain(process.getErrorStream, stderr)
+        Try(process.getInputStream.close())
+        Try(process.getErrorStream.close())
+        scriptFile.foreach(_.delete())
+        exitCode.trySuccess(code)
+        true
+
+      case None => false
+    }
+  }
+
+  private def drain(in: InputStream, to: OutputRingBuffer) = try {
+    var available = in.available()
+
+    while (available > 0) {
+      val read = in.read(chunk, 0, math.min(available, chunk.length))
+      if (read > 0)
+        to.write(chunk, 0, read)
+      available = if (read > 0) in.available() else 0
+    }
+  } catch {
+    case _: java.io.IOException => // stream has been closed with the process
+  }
+}
+
+/**
+  * Watches all running shell processes from a single thread: it copies their available output into the runs' ring
+  * buffers without ever blocking on a stream and notices their termination. Hence, no dispatcher thread is tied up
+  * for the duration of a shell script.
+  */
+object ShellProcessMonitor {
+
+  val pollInterval = 10
+
+  private val runs = new ConcurrentHashMap[ShellRun, java.lang.Boolean]()
+
+  private lazy val monitor = {
+    val executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory {
+      def newThread(r: Runnable) = {
+        val t = new Thread(r, "shell-process-monitor")
+        t.setDaemon(true)
+        t
+      }
+    })
+
+    executor.scheduleWithFixedDelay(new Runnable {
+      def run() = runs.keySet.foreach { shellRun =>
+        val done = try {
+          shellRun.pump()
+        } catch {
+          case t: Throwable =>
+            shellRun.exitCode.tryFailure(t)
+            true
+        }
+
+        if (done) {
+          runs.remove(shellRun)
+
+          if (shellRun.run != null)
+            shellRun.run.stateChanged()
+        }
+      }
+    }, pollInterval, pollInterval, TimeUnit.MILLISECONDS)
+
+    executor
+  }
+
+  def watch(shellRun: ShellRun) {
+    monitor
+    runs.put(shellRun, true)
+  }
+
+  /**
+    * Terminate a process together with all processes it has spawned.
+    */
+  def killTree(process: Process) {
+    pidOf(process).foreach { pid =>
+      val tree = pid :: descendantsOf(pid)
+      Try(ScalaProcess(Seq("kill", "-TERM") ++ tree.map(_.toString)).!)
+    }
+
+    process.destroy()
+  }
+
+  private def pidOf(process: Process) = Try {
+    val field = process.getClass.getDeclaredField("pid")
+    field.setAccessible(true)
+    field.getInt(process)
+  }.toOption
+
+  private def descendantsOf(pid: Int): List[Int] = {
+    val children = Try(ScalaProcess(Seq("pgrep", "-P", pid.toString)).lines_!.map(_.trim.toInt).toList).getOrElse(List())
+
+    children ++ children.flatMap(descendantsOf)
+  }
+}
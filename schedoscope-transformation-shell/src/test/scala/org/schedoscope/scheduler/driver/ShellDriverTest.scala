@@ -1,12 +1,17 @@
 package org.schedoscope.scheduler.driver
 
 import java.io.File
+import java.lang.management.ManagementFactory
 
 import org.scalatest.{FlatSpec, Matchers}
+import org.schedoscope.Schedoscope
 import org.schedoscope.dsl.transformations.ShellTransformation
 import org.schedoscope.test.resources.LocalTestResources
 import org.schedoscope.test.resources.TestDriverRunCompletionHandlerCallCounter._
 
+import scala.collection.JavaConversions._
+import scala.concurrent.duration._
+import scala.concurrent.{Await, Future}
 import scala.io.Source
 
 class ShellDriverTest extends FlatSpec with Matchers {
@@ -65,4 +70,56 @@ class ShellDriverTest extends FlatSpec with Matchers {
 
     driverRunStartedCalled(runHandle) shouldBe true
   }
+
+  it should "capture only the tail of a script's output" in {
+    val shellDriver = new ShellDriver(List(), outputBufferSize = 16)
+    val runHandle = shellDriver.run(ShellTransformation("for i in $(seq 1 1000); do echo line$i; done"))
+
+    while (shellDriver.getDriverRunState(runHandle).isInstanceOf[DriverRunOngoing[_]])
+      Thread.sleep(10)
+
+    val stdout = runHandle.stateHandle.asInstanceOf[ShellRun].stdout
+
+    stdout.contents shouldBe "ine999\nline1000\n"
+    stdout.dropped should be > 0l
+  }
+
+  it should "kill running shell transformations together with the processes they started" in {
+    val file = File.createTempFile("_schedoscope", ".out")
+    file.delete()
+
+    val runHandle = driver.run(ShellTransformation(s"(sleep 2; touch ${file.getAbsolutePath}) & sleep 2; touch ${file.getAbsolutePath}"))
+
+    Thread.sleep(500)
+    driver.killRun(runHandle)
+
+    while (driver.getDriverRunState(runHandle).isInstanceOf[DriverRunOngoing[_]])
+      Thread.sleep(10)
+
+    driver.getDriverRunState(runHandle) shouldBe a[DriverRunFailed[_]]
+
+    Thread.sleep(3000)
+    file.exists() shouldBe false
+  }
+
+  it should "run a 100-way fan-out without starving the driver dispatcher or forcing garbage collections" in {
+    def collections = ManagementFactory.getGarbageCollectorMXBeans.map(_.getCollectionCount).sum
+
+    val dispatcher = Schedoscope.actorSystem.dispatchers.lookup("akka.actor.future-driver-dispatcher")
+    val collectionsBefore = collections
+
+    val runHandles = (1 to 100).map(_ => driver.run(ShellTransformation("sleep 2")))
+
+    val dispatcherStart = System.currentTimeMillis()
+    Await.result(Future(System.currentTimeMillis())(dispatcher), 1.second) - dispatcherStart should be < 500l
+
+    runHandles.foreach { runHandle =>
+      while (driver.getDriverRunState(runHandle).isInstanceOf[DriverRunOngoing[_]])
+        Thread.sleep(10)
+
+      driver.getDriverRunState(runHandle) shouldBe a[DriverRunSucceeded[_]]
+    }
+
+    collections - collectionsBefore should be < 100l
+  }
 }
@@ -189,7 +189,9 @@ class SparkSubmitLauncher extends SparkLauncher {
     //
 
     try {
-      handle.setChildProc(process.start(), fullLoggerName)
+      val child = process.start()
+      handle.setChildProc(child, fullLoggerName)
+      watchExit(child, handle, listeners.collect { case l: ExitCodeListener => l })
       handle
     } catch {
       case e: IOException =>
@@ -197,6 +199,30 @@ class SparkSubmitLauncher extends SparkLauncher {
         throw e
     }
   }
+
+  /**
+    * Tell the exit code listeners about the termination of the spark-submit child process as soon as it happens
+    * rather than having them poll the app handle.
+    */
+  private def watchExit(child: Process, handle: SparkAppHandle, listeners: Seq[ExitCodeListener]) =
+    if (listeners.nonEmpty) {
+      val watcher = new Thread(s"spark-submit-exit-watcher-${COUNTER.incrementAndGet()}") {
+        override def run() {
+          val exitCode = child.waitFor()
+          listeners.foreach(_.exited(handle, exitCode))
+        }
+      }
+
+      watcher.setDaemon(true)
+      watcher.start()
+    }
+}
+
+/**
+  * A SparkAppHandle listener that is additionally notified of the exit code of the spark-submit child process.
+  */
+trait ExitCodeListener extends Listener {
+  def exited(handle: SparkAppHandle, exitCode: Int): Unit
 }
 
 /**
@@ -236,4 +262,4 @@ case class ExitCodeAwareChildProcAppHandle(childProcAppHandle: ChildProcAppHandl
       case t: IllegalThreadStateException => None
     }
   }
-}
\ No newline at end of file
+}
\ No newline at end of file
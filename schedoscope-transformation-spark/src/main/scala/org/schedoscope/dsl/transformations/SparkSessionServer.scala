@@ -0,0 +1,149 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.dsl.transformations
+
+import java.io._
+import java.net.{InetAddress, Socket}
+import java.nio.charset.StandardCharsets.UTF_8
+import java.util.Collections
+import java.util.concurrent.{ConcurrentHashMap, Executors, TimeUnit}
+
+import org.apache.spark.sql.hive.HiveContext
+import org.apache.spark.{SparkConf, SparkContext}
+
+/**
+  * Implements a long-lived Spark application that keeps a SparkContext and HiveContext warm and executes
+  * the Hive / SparkSQL statements it receives from SparkDriver over a local socket. This saves the JVM and
+  * executor start-up of a spark-submit per SparkSQLRunner statement.
+  *
+  * The application connects back to the port passed as its first argument, authenticates with the secret passed
+  * as its second argument, and runs up to the number of statements passed as its third argument concurrently.
+  * Each statement runs in its own job group so that it can be cancelled individually, and in a fresh HiveContext
+  * session, so that the current database and settings changed by a statement do not leak into subsequent ones.
+  */
+object SparkSessionServer {
+
+  /**
+    * Request to run a statement: job id followed by the statement
+    */
+  val RUN: Byte = 1
+
+  /**
+    * Request to cancel a statement: job id
+    */
+  val CANCEL: Byte = 2
+
+  /**
+    * Request to finish the running statements and stop the application
+    */
+  val SHUTDOWN: Byte = 3
+
+  def writeString(out: DataOutputStream, s: String) {
+    val bytes = s.getBytes(UTF_8)
+    out.writeInt(bytes.length)
+    out.write(bytes)
+  }
+
+  def readString(in: DataInputStream) = {
+    val bytes = new Array[Byte](in.readInt())
+    in.readFully(bytes)
+    new String(bytes, UTF_8)
+  }
+
+  def main(args: Array[String]) {
+
+    if (args.length != 3)
+      throw new IllegalArgumentException(s"Pass the driver port, secret, and maximum number of concurrent jobs as arguments")
+
+    val sc = new SparkContext(new SparkConf())
+    val hc = new HiveContext(sc)
+
+    val socket = new Socket(InetAddress.getLoopbackAddress, args(0).toInt)
+    val in = new DataInputStream(new BufferedInputStream(socket.getInputStream))
+    val out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream))
+
+    val jobs = Executors.newFixedThreadPool(args(2).toInt)
+    val cancelled = Collections.newSetFromMap(new ConcurrentHashMap[Long, java.lang.Boolean]())
+
+    def respond(id: Long, success: Boolean, message: String) = out.synchronized {
+      out.writeLong(id)
+      out.writeBoolean(success)
+      writeString(out, message)
+      out.flush()
+    }
+
+    def run(id: Long, statement: String) = new Runnable {
+      def run() = try {
+        if (cancelled.remove(id))
+          respond(id, false, s"Statement $id was cancelled before it started")
+        else {
+          sc.setJobGroup(id.toString, statement, interruptOnCancel = true)
+
+          println(s"Executing query $id:")
+          println("================")
+          println(statement)
+
+          hc.newSession().sql(statement)
+
+          respond(id, true, s"Statement $id completed")
+        }
+      } catch {
+        case t: Throwable =>
+          val trace = new StringWriter()
+          t.printStackTrace(new PrintWriter(trace))
+          respond(id, false, trace.toString)
+      } finally
+        sc.clearJobGroup()
+    }
+
+    try {
+
+      out.synchronized {
+        writeString(out, args(1))
+        out.flush()
+      }
+
+      var serving = true
+
+      while (serving) in.readByte() match {
+        case RUN =>
+          val id = in.readLong()
+          jobs.execute(run(id, readString(in)))
+
+        case CANCEL =>
+          val id = in.readLong()
+          cancelled.add(id)
+          sc.cancelJobGroup(id.toString)
+
+        case SHUTDOWN =>
+          serving = false
+
+        case request =>
+          throw new IOException(s"Unknown request $request")
+      }
+
+    } catch {
+      case _: EOFException => // driver is gone, nobody is left to wait for responses
+    } finally {
+      jobs.shutdown()
+      jobs.awaitTermination(Long.MaxValue, TimeUnit.MILLISECONDS)
+      socket.close()
+      sc.stop()
+    }
+
+    System.exit(0)
+  }
+}
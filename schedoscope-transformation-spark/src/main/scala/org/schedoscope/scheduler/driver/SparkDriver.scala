@@ -19,7 +19,7 @@ import java.io.File
 
 import org.apache.spark.launcher.SparkAppHandle.State._
 import org.apache.spark.launcher.SparkLauncher.{DRIVER_EXTRA_CLASSPATH, EXECUTOR_EXTRA_CLASSPATH}
-import org.apache.spark.launcher.{ExitCodeAwareChildProcAppHandle, SparkAppHandle, SparkSubmitLauncher}
+import org.apache.spark.launcher.{ExitCodeAwareChildProcAppHandle, ExitCodeListener, SparkAppHandle, SparkSubmitLauncher}
 import org.joda.time.LocalDateTime
 import org.schedoscope.Settings
 import org.schedoscope.conf.DriverSettings
@@ -27,16 +27,36 @@ import org.schedoscope.dsl.transformations.SparkTransformation
 import org.schedoscope.test.resources.TestResources
 import org.slf4j.LoggerFactory
 
+import scala.util.{Failure, Success}
+
 /**
-  * This driver runs Spark transformations
+  * This driver runs Spark transformations. By default, each transformation is submitted as a spark-submit process
+  * of its own. With the Spark session enabled, SparkSQLRunner transformations are instead submitted as statements
+  * to a long-lived Spark application shared by all Spark drivers (see SparkSessionService).
   */
-class SparkDriver(val driverRunCompletionHandlerClassNames: List[String]) extends DriverOnNonBlockingApi[SparkTransformation] {
+class SparkDriver(val driverRunCompletionHandlerClassNames: List[String],
+                  val sessionSettings: SparkSessionSettings = SparkSessionSettings(),
+                  val libDirectory: String = "") extends DriverOnNonBlockingApi[SparkTransformation] {
 
   val log = LoggerFactory.getLogger(classOf[SparkDriver])
 
   override def transformationName = "spark"
 
-  override def run(t: SparkTransformation): DriverRunHandle[SparkTransformation] = try {
+  override def run(t: SparkTransformation): DriverRunHandle[SparkTransformation] =
+    if (sessionSettings.enabled && SparkSessionService.canRun(t))
+      runInSession(t)
+    else
+      submit(t)
+
+  def runInSession(t: SparkTransformation): DriverRunHandle[SparkTransformation] = try {
+    val job = SparkSessionService(t.master, libDirectory, sessionSettings).submit(t.applicationArgs.head)
+
+    new DriverRunHandle[SparkTransformation](this, new LocalDateTime(), t, job)
+  } catch {
+    case t: Throwable => throw new RetryableDriverException("Could not submit statement to long-lived Spark application because of exception", t)
+  }
+
+  def submit(t: SparkTransformation): DriverRunHandle[SparkTransformation] = try {
     val l = new SparkSubmitLauncher()
 
     t match {
@@ -107,15 +127,33 @@ class SparkDriver(val driverRunCompletionHandlerClassNames: List[String]) extend
 
     }
 
-    new DriverRunHandle[SparkTransformation](this, new LocalDateTime(), t, l.startApplication())
+    val run = new DriverRunHandle[SparkTransformation](this, new LocalDateTime(), t, null)
+    val submitRun = new SparkSubmitRun(run)
+
+    submitRun.appHandle = l.startApplication(submitRun).asInstanceOf[ExitCodeAwareChildProcAppHandle]
+    run.stateHandle = submitRun
+
+    run
   } catch {
     case t: Throwable => throw new RetryableDriverException("Could not start Spark submit process because of exception", t)
   }
 
 
-  override def getDriverRunState(run: DriverRunHandle[SparkTransformation]): DriverRunState[SparkTransformation] = {
+  override def getDriverRunState(run: DriverRunHandle[SparkTransformation]): DriverRunState[SparkTransformation] = run.stateHandle match {
+
+    case job: SparkSessionJob => job.result match {
+      case Some(Success(message)) => DriverRunSucceeded(this, s"Driver run for Spark session statement ${job.id} succeeded: $message")
+      case Some(Failure(t)) => DriverRunFailed(this, s"Driver run for Spark session statement ${job.id} failed", t)
+      case None => DriverRunOngoing(this, run)
+    }
+
+    case _ => getSubmittedRunState(run)
+  }
+
+  def getSubmittedRunState(run: DriverRunHandle[SparkTransformation]): DriverRunState[SparkTransformation] = {
 
-    val appHandle = run.stateHandle.asInstanceOf[ExitCodeAwareChildProcAppHandle]
+    val submitRun = run.stateHandle.asInstanceOf[SparkSubmitRun]
+    val appHandle = submitRun.appHandle
     val appInfo = run.transformation match {
       case SparkTransformation(
       applicationName, mainJarOrPy, mainClass, applicationArgs,
@@ -125,7 +163,7 @@ class SparkDriver(val driverRunCompletionHandlerClassNames: List[String]) extend
 
     try {
       val handleState = appHandle.getState
-      val exitCode = appHandle.getExitCode
+      val exitCode: Option[Int] = submitRun.exitCode.orElse(appHandle.getExitCode.map(_.toInt))
 
       log.debug(s"checking Spark app handle for $appInfo - state: $handleState exit code: $exitCode")
 
@@ -150,7 +188,10 @@ class SparkDriver(val driverRunCompletionHandlerClassNames: List[String]) extend
   }
 
   override def killRun(run: DriverRunHandle[SparkTransformation]): Unit = try {
-    run.stateHandle.asInstanceOf[SparkAppHandle].kill()
+    run.stateHandle match {
+      case job: SparkSessionJob => SparkSessionService(run.transformation.master, libDirectory, sessionSettings).cancel(job)
+      case submitRun: SparkSubmitRun => submitRun.appHandle.kill()
+    }
   } catch {
     case t: Throwable => log.error("Spark driver failed to kill driver run", t)
   }
@@ -181,10 +222,34 @@ class SparkDriver(val driverRunCompletionHandlerClassNames: List[String]) extend
 
 }
 
+/**
+  * State handle of a driver run submitted via spark-submit. It listens to the Spark app handle and pushes state changes
+  * as well as the exit code of the spark-submit process to the driver run, so that the driver actor does not
+  * need to wait for its next poll to learn about them.
+  */
+class SparkSubmitRun(run: DriverRunHandle[SparkTransformation]) extends ExitCodeListener {
+
+  @volatile var appHandle: ExitCodeAwareChildProcAppHandle = _
+
+  @volatile var exitCode: Option[Int] = None
+
+  @volatile var exitedAt: Option[Long] = None
+
+  override def stateChanged(handle: SparkAppHandle) = run.stateChanged()
+
+  override def infoChanged(handle: SparkAppHandle) {}
+
+  override def exited(handle: SparkAppHandle, code: Int) {
+    exitCode = Some(code)
+    exitedAt = Some(System.currentTimeMillis())
+    run.stateChanged()
+  }
+}
+
 object SparkDriver extends DriverCompanionObject[SparkTransformation] {
 
   def apply(ds: DriverSettings) = {
-    new SparkDriver(ds.driverRunCompletionHandlers)
+    new SparkDriver(ds.driverRunCompletionHandlers, SparkSessionSettings.fromConfig(ds.config), ds.libDirectory)
   }
 
   def apply(driverSettings: DriverSettings, testResources: TestResources): Driver[SparkTransformation] =
@@ -0,0 +1,429 @@
+/**
+  * Copyright 2015 Otto (GmbH & Co KG)
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.schedoscope.scheduler.driver
+
+import java.io._
+import java.net.{InetAddress, ServerSocket, Socket}
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit.MILLISECONDS
+import java.util.concurrent.atomic.{AtomicInteger, AtomicLong}
+
+import com.typesafe.config.Config
+import org.apache.spark.launcher.SparkLauncher.{DRIVER_EXTRA_CLASSPATH, EXECUTOR_EXTRA_CLASSPATH}
+import org.apache.spark.launcher.{SparkAppHandle, SparkSubmitLauncher}
+import org.schedoscope.dsl.transformations.SparkSessionServer._
+import org.schedoscope.dsl.transformations.SparkTransformation.{classNameOf, jarOf}
+import org.schedoscope.dsl.transformations.{SparkSQLRunner, SparkSessionServer, SparkTransformation}
+import org.slf4j.LoggerFactory
+
+import scala.concurrent.duration._
+import scala.concurrent.{ExecutionContext, Promise}
+import scala.util.{Failure, Success, Try}
+
+/**
+  * Settings of the long-lived Spark application SparkDriver submits SparkSQLRunner statements to.
+  *
+  * @param enabled           whether to submit SparkSQLRunner statements to a long-lived application at all
+  * @param maxConcurrentJobs number of statements the application runs concurrently. Further statements are queued.
+  * @param maxLifetime       age after which an application accepts no further statements and is replaced
+  * @param startupTimeout    time to wait for a newly submitted application to connect back to the driver
+  */
+case class SparkSessionSettings(enabled: Boolean = false,
+                                maxConcurrentJobs: Int = 4,
+                                maxLifetime: FiniteDuration = 4 hours,
+                                startupTimeout: FiniteDuration = 5 minutes)
+
+object SparkSessionSettings {
+
+  /**
+    * Read the session settings from the session section of a driver configuration, falling back to defaults
+    * for missing values.
+    */
+  def fromConfig(config: Config) = {
+    val defaults = SparkSessionSettings()
+
+    def setting[T](read: Config => T, default: T) = try {
+      read(config.getConfig("session"))
+    } catch {
+      case _: Throwable => default
+    }
+
+    SparkSessionSettings(
+      setting(_.getBoolean("enabled"), defaults.enabled),
+      setting(c => math.max(c.getInt("maxConcurrentJobs"), 1), defaults.maxConcurrentJobs),
+      setting(c => FiniteDuration(c.getDuration("maxLifetime", MILLISECONDS), MILLISECONDS), defaults.maxLifetime),
+      setting(c => FiniteDuration(c.getDuration("startupTimeout", MILLISECONDS), MILLISECONDS), defaults.startupTimeout)
+    )
+  }
+}
+
+/**
+  * A statement submitted to a long-lived Spark application. Its result is set once the application
+  * reports back, the statement is killed, or the connection to the application is lost.
+  */
+class SparkSessionJob(val id: Long, val statement: String) {
+
+  @volatile private var outcome: Option[Try[String]] = None
+
+  def result = outcome
+
+  private[driver] def complete(r: Try[String]) = synchronized {
+    val completed = outcome.isEmpty
+    if (completed)
+      outcome = Some(r)
+    completed
+  }
+}
+
+/**
+  * Keeps a long-lived Spark application (SparkSessionServer) for a Spark master running and submits
+  * SparkSQLRunner statements to it over a loopback socket. The application is submitted in client deploy mode so
+  * that it can reach the driver locally. Once an application has exceeded its maximum lifetime or died, the next
+  * statement submits a fresh one; the old application is shut down as soon as its running statements are done.
+  *
+  * Applications are submitted asynchronously on a launcher thread. Submitting, cancelling, and shutting down never
+  * wait for an application to start: statements submitted while an application starts are sent to it once it has
+  * connected back, and fail if it does not.
+  */
+class SparkSessionService(val master: String, val libDirectory: String, val settings: SparkSessionSettings) {
+
+  val log = LoggerFactory.getLogger(classOf[SparkSessionService])
+
+  private val jobIds = new AtomicLong()
+
+  @volatile private var current: Option[Session] = None
+
+  /**
+    * Submit a SparkSQLRunner statement to the current application, starting one if necessary.
+    */
+  def submit(statement: String): SparkSessionJob = {
+    val job = new SparkSessionJob(jobIds.incrementAndGet(), statement)
+    val (s, replaced) = session()
+
+    replaced.foreach(_.retire())
+    s.send(job)
+    job
+  }
+
+  /**
+    * Cancel a submitted statement. The statement fails right away.
+    */
+  def cancel(job: SparkSessionJob) =
+    if (job.complete(Failure(new IllegalStateException(s"Spark session statement ${job.id} was killed"))))
+      current.foreach(_.cancel(job))
+
+  /**
+    * Shut down the current application after its running statements are done.
+    */
+  def shutdown() = {
+    val retiring = synchronized {
+      val s = current
+      current = None
+      s
+    }
+
+    retiring.foreach(_.retire())
+  }
+
+  /**
+    * The current application along with the application it replaces, if any. A new application is only
+    * launched asynchronously while holding the service's lock.
+    */
+  private def session() = synchronized {
+    current match {
+      case Some(s) if s.usable => (s, None)
+      case replaced =>
+        val s = new Session()
+        s.start()
+        current = Some(s)
+        (s, replaced)
+    }
+  }
+
+  /**
+    * Runs callbacks on the thread completing the connection to an application, or right away if it is completed.
+    */
+  private val callingThread = new ExecutionContext {
+    def execute(runnable: Runnable) = runnable.run()
+
+    def reportFailure(t: Throwable) = log.error("Spark session callback failed", t)
+  }
+
+  /**
+    * The socket connection to a started application
+    */
+  private case class Connection(appHandle: SparkAppHandle, socket: Socket) {
+    val out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream))
+
+    val in = new DataInputStream(new BufferedInputStream(socket.getInputStream))
+  }
+
+  private class Session {
+
+    val launchedAt = System.currentTimeMillis()
+
+    val pending = new ConcurrentHashMap[Long, SparkSessionJob]()
+
+    val running = new AtomicInteger()
+
+    @volatile var retired = false
+
+    @volatile var alive = true
+
+    /**
+      * The connection to the application, completed by a launcher thread once the application has connected back.
+      * Statements sent before are written to the application once it has connected, or fail if it does not.
+      */
+    val connection = Promise[Connection]()
+
+    def usable = alive && !retired && System.currentTimeMillis() - launchedAt < settings.maxLifetime.toMillis
+
+    /**
+      * Submit the application on a launcher thread of its own, not waiting for it to connect back.
+      */
+    def start() = {
+      val launcher = new Thread(s"spark-session-launcher-$master-$launchedAt") {
+        override def run() = connection.complete(Try {
+          val (appHandle, socket) = launch()
+          val c = Connection(appHandle, socket)
+
+          val reader = new Thread(s"spark-session-$master-$launchedAt") {
+            override def run() = receive(c)
+          }
+
+          reader.setDaemon(true)
+          reader.start()
+
+          c
+        } recoverWith {
+          case t: Throwable =>
+            log.error(s"Could not start long-lived Spark application for master $master", t)
+            alive = false
+            Failure(t)
+        })
+      }
+
+      launcher.setDaemon(true)
+      launcher.start()
+    }
+
+    def launch(): (SparkAppHandle, Socket) = {
+      val server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress)
+
+      try {
+        server.setSoTimeout(settings.startupTimeout.toMillis.toInt)
+
+        val secret = UUID.randomUUID().toString
+        val l = new SparkSubmitLauncher()
+
+        l.setAppName(s"schedoscope-spark-session-$launchedAt")
+        l.setAppResource(jarOf(SparkSessionServer))
+        l.setMainClass(classNameOf(SparkSessionServer))
+        l.addAppArgs(server.getLocalPort.toString, secret, settings.maxConcurrentJobs.toString)
+
+        if (master.startsWith("local"))
+          l.setLocalTestMode()
+        else {
+          l.setConf(DRIVER_EXTRA_CLASSPATH, libDirectory)
+          l.setConf(EXECUTOR_EXTRA_CLASSPATH, libDirectory)
+        }
+
+        l.setMaster(master)
+        l.setDeployMode("client")
+
+        log.info(s"Submitting long-lived Spark application for master $master")
+
+        val handle = l.startApplication()
+
+        try {
+          val socket = server.accept()
+          val connectedWith = readString(new DataInputStream(socket.getInputStream))
+
+          if (connectedWith != secret) {
+            socket.close()
+            throw new IOException("Long-lived Spark application connected with an invalid secret")
+          }
+
+          log.info(s"Long-lived Spark application for master $master connected after ${System.currentTimeMillis() - launchedAt} ms")
+
+          (handle, socket)
+        } catch {
+          case t: Throwable =>
+            handle.kill()
+            throw t
+        }
+      } finally
+        server.close()
+    }
+
+    /**
+      * The connection to the application, if it has connected already
+      */
+    def established = connection.future.value.flatMap(_.toOption)
+
+    def send(job: SparkSessionJob) = {
+      pending.put(job.id, job)
+      running.incrementAndGet()
+
+      connection.future.onComplete {
+        case Success(c) =>
+          if (job.result.isDefined) {
+            pending.remove(job.id)
+            jobDone()
+          } else try {
+            c.out.synchronized {
+              c.out.writeByte(RUN)
+              c.out.writeLong(job.id)
+              writeString(c.out, job.statement)
+              c.out.flush()
+            }
+          } catch {
+            case e: IOException => lost(e)
+          }
+
+        case Failure(t) =>
+          pending.remove(job.id)
+          job.complete(Failure(t))
+          jobDone()
+      }(callingThread)
+    }
+
+    def cancel(job: SparkSessionJob) = established.foreach { c =>
+      try {
+        c.out.synchronized {
+          c.out.writeByte(CANCEL)
+          c.out.writeLong(job.id)
+          c.out.flush()
+        }
+      } catch {
+        case e: IOException => lost(e)
+      }
+    }
+
+    def jobDone() =
+      if (running.decrementAndGet() == 0 && retired)
+        close()
+
+    def retire() = {
+      retired = true
+      if (running.get == 0)
+        close()
+    }
+
+    /**
+      * Shut down the application once it has connected.
+      */
+    def close() = connection.future.onSuccess {
+      case c => if (alive) try {
+        c.out.synchronized {
+          c.out.writeByte(SHUTDOWN)
+          c.out.flush()
+        }
+      } catch {
+        case e: IOException => lost(e)
+      }
+    }(callingThread)
+
+    def receive(c: Connection) = try {
+      val in = c.in
+
+      while (alive) {
+        val id = in.readLong()
+        val success = in.readBoolean()
+        val message = readString(in)
+
+        val job = pending.remove(id)
+
+        if (job != null)
+          job.complete(if (success) Success(message) else Failure(new SparkSessionException(message)))
+
+        jobDone()
+      }
+    } catch {
+      case t: Throwable => lost(t)
+    }
+
+    /**
+      * Fail all pending statements after the connection to the application was lost, including statements sent
+      * after the connection was already found lost.
+      */
+    def lost(t: Throwable) = {
+      val wasAlive = alive
+      alive = false
+
+      val unexpected = !retired || !pending.isEmpty
+
+      if (wasAlive && unexpected)
+        log.warn(s"Lost connection to long-lived Spark application for master $master", t)
+
+      val it = pending.values().iterator()
+      while (it.hasNext) {
+        it.next().complete(Failure(t))
+        it.remove()
+      }
+
+      if (wasAlive)
+        established.foreach { c =>
+          c.socket.close()
+
+          if (unexpected)
+            c.appHandle.kill()
+        }
+    }
+  }
+
+}
+
+/**
+  * Failure of a statement reported back by a long-lived Spark application.
+  */
+class SparkSessionException(message: String) extends RuntimeException(message)
+
+object SparkSessionService {
+
+  private val services = new ConcurrentHashMap[(String, String, SparkSessionSettings), SparkSessionService]()
+
+  /**
+    * Return the session service for a Spark master, library directory, and session settings. All Spark drivers
+    * configured alike share one long-lived application.
+    */
+  def apply(master: String, libDirectory: String, settings: SparkSessionSettings) = {
+    val key = (master, libDirectory, settings)
+    val existing = services.get(key)
+
+    if (existing != null)
+      existing
+    else {
+      val service = new SparkSessionService(master, libDirectory, settings)
+      val raced = services.putIfAbsent(key, service)
+      if (raced != null) raced else service
+    }
+  }
+
+  /**
+    * Whether a Spark transformation can be run as a statement in a long-lived Spark application. This is the case
+    * for plain SparkSQLRunner transformations that do not carry their own Spark configuration, arguments, or environment.
+    */
+  def canRun(t: SparkTransformation) =
+    t.mainClass == classNameOf(SparkSQLRunner) &&
+      t.applicationArgs.size == 1 &&
+      t.configuration.isEmpty &&
+      t.additionalJars.isEmpty &&
+      t.additionalPys.isEmpty &&
+      t.additionalFiles.isEmpty &&
+      t.propertiesFile == null
+}
@@ -16,15 +16,18 @@
 package org.schedoscope.scheduler.driver
 
 import java.io.File
+import java.util.concurrent.{LinkedBlockingQueue, TimeUnit}
 
 import org.apache.commons.io.FileUtils
 import org.scalatest.{BeforeAndAfter, FlatSpec, Matchers}
-import org.schedoscope.dsl.transformations.SparkTransformation
 import org.schedoscope.dsl.transformations.SparkTransformation.{classNameOf, jarOf}
+import org.schedoscope.dsl.transformations.{SparkSQLRunner, SparkTransformation}
 import org.schedoscope.spark.test.{FailingSimpleFileWriter, SimpleFileWriter}
 import org.schedoscope.test.resources.LocalTestResources
 import org.schedoscope.test.resources.TestDriverRunCompletionHandlerCallCounter._
 
+import scala.util.{Failure, Success}
+
 class SparkDriverTest extends FlatSpec with Matchers with BeforeAndAfter {
 
   lazy val testResources = new LocalTestResources()
@@ -47,6 +50,28 @@ class SparkDriverTest extends FlatSpec with Matchers with BeforeAndAfter {
       List(outpath, "one argument", "another argument")
     ), testResources)
 
+  lazy val sessionDriver = new SparkDriver(
+    List("org.schedoscope.test.resources.TestDriverRunCompletionHandler"),
+    SparkSessionSettings(enabled = true, maxConcurrentJobs = 2)
+  )
+
+  def sparkSqlTransformation(statement: String) = SparkTransformation(
+    classNameOf(SparkSQLRunner),
+    jarOf(SparkSQLRunner),
+    classNameOf(SparkSQLRunner),
+    List(statement),
+    "local[*]", "client"
+  )
+
+  def runToCompletion(d: SparkDriver, t: SparkTransformation) = {
+    val runHandle = d.run(t)
+
+    while (d.getDriverRunState(runHandle).isInstanceOf[DriverRunOngoing[_]])
+      Thread.sleep(10)
+
+    d.getDriverRunState(runHandle)
+  }
+
   var outpath: String = null
 
   before {
@@ -120,6 +145,29 @@ class SparkDriverTest extends FlatSpec with Matchers with BeforeAndAfter {
     driver.getDriverRunState(driverRunHandle) shouldBe a[DriverRunFailed[_]]
   }
 
+  it should "push the completion of Spark transformations within milliseconds of the spark-submit process exiting" in {
+    val runHandle = driver.run(successfulSparkTransformation)
+    val submitRun = runHandle.stateHandle.asInstanceOf[SparkSubmitRun]
+
+    val signalled = new LinkedBlockingQueue[(Long, DriverRunState[SparkTransformation])]()
+
+    runHandle.onStateChange(() => signalled.put((System.currentTimeMillis(), driver.getDriverRunState(runHandle))))
+
+    var finalSignal: (Long, DriverRunState[SparkTransformation]) = null
+
+    while (finalSignal == null) {
+      val signal = signalled.poll(2, TimeUnit.MINUTES)
+      signal should not be null
+
+      if (!signal._2.isInstanceOf[DriverRunOngoing[_]])
+        finalSignal = signal
+    }
+
+    finalSignal._2 shouldBe a[DriverRunSucceeded[_]]
+    submitRun.exitCode shouldBe Some(0)
+    finalSignal._1 - submitRun.exitedAt.get should be < 100l
+  }
+
   it should "call its DriverRunCompletitionHandlers' driverRunCompleted upon request" in {
     val runHandle = driver.run(successfulSparkTransformation)
 
@@ -137,4 +185,68 @@ class SparkDriverTest extends FlatSpec with Matchers with BeforeAndAfter {
 
     driverRunStartedCalled(runHandle) shouldBe true
   }
+
+  it should "run SparkSQLRunner statements in a long-lived Spark application when the session is enabled" in {
+    val statements = (1 to 10).map(_ => sparkSqlTransformation("SHOW DATABASES"))
+
+    val submitStart = System.currentTimeMillis()
+    statements.foreach {
+      runToCompletion(driver.asInstanceOf[SparkDriver], _) shouldBe a[DriverRunSucceeded[_]]
+    }
+    val submitTime = System.currentTimeMillis() - submitStart
+
+    try {
+      val sessionStart = System.currentTimeMillis()
+      statements.foreach {
+        runToCompletion(sessionDriver, _) shouldBe a[DriverRunSucceeded[_]]
+      }
+      val sessionTime = System.currentTimeMillis() - sessionStart
+
+      info(s"10 SparkSQLRunner statements took ${submitTime} ms with spark-submit and ${sessionTime} ms in a long-lived Spark application")
+
+      sessionTime should be < submitTime / 3
+    } finally
+      SparkSessionService("local[*]", "", sessionDriver.sessionSettings).shutdown()
+  }
+
+  it should "return errors of statements run in a long-lived Spark application" in {
+    try {
+      runToCompletion(sessionDriver, sparkSqlTransformation("SELECT FROM WHERE")) shouldBe a[DriverRunFailed[_]]
+      runToCompletion(sessionDriver, sparkSqlTransformation("SHOW DATABASES")) shouldBe a[DriverRunSucceeded[_]]
+    } finally
+      SparkSessionService("local[*]", "", sessionDriver.sessionSettings).shutdown()
+  }
+
+  it should "neither wait for a long-lived Spark application to start when submitting nor when cancelling statements" in {
+    val service = SparkSessionService("local[*]", "", SparkSessionSettings(enabled = true, maxConcurrentJobs = 1))
+
+    try {
+      val submitStart = System.currentTimeMillis()
+      val cancelledJob = service.submit("SHOW DATABASES")
+      service.cancel(cancelledJob)
+      System.currentTimeMillis() - submitStart should be < 1000l
+
+      cancelledJob.result.get shouldBe a[Failure[_]]
+
+      val job = service.submit("SHOW DATABASES")
+      job.result shouldBe None
+
+      while (job.result.isEmpty)
+        Thread.sleep(10)
+
+      job.result.get shouldBe a[Success[_]]
+    } finally
+      service.shutdown()
+  }
+
+  it should "fall back to spark-submit for transformations a long-lived Spark application cannot run" in {
+    val runHandle = sessionDriver.run(successfulSparkTransformation)
+
+    runHandle.stateHandle shouldBe a[SparkSubmitRun]
+
+    while (sessionDriver.getDriverRunState(runHandle).isInstanceOf[DriverRunOngoing[_]])
+      Thread.sleep(10)
+
+    sessionDriver.getDriverRunState(runHandle) shouldBe a[DriverRunSucceeded[_]]
+  }
 }